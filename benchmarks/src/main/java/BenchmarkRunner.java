@@ -0,0 +1,630 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * A small benchmark harness for the device classes.
+ * Each benchmark is a workload that performs a fixed number of operations per call and
+ * returns a value, which the runner consumes so the JIT cannot discard the work.
+ * Every benchmark runs a number of timed warmup iterations followed by measured iterations,
+ * and the results are printed as a table and written as JSON.
+ * <p>
+ * Each measured iteration also records how many bytes the calling thread allocated per
+ * operation, like the normalized allocation rate of JMH's GC profiler. Work that a benchmark
+ * hands to other threads is not counted. The allocation is reported as NaN on JVMs that
+ * cannot measure it.
+ * <p>
+ * Each result reports the standard deviation of its measured iterations, as
+ * {@code scoreStdDev} in the JSON. It is not a confidence interval like JMH's
+ * {@code scoreError}.
+ * <p>
+ * By default each suite runs in a fresh JVM, started with the same JVM options as the
+ * runner, as JMH forks each benchmark. Suites that share a JVM change each other's results:
+ * the JIT compiles a call site for the device classes it has seen so far, so the
+ * {@code Dispatch.*} benchmarks would measure whatever type profiles earlier suites left
+ * behind. {@code -fork false} runs every suite in this JVM, which is quicker but should only
+ * be compared with other unforked runs. Benchmarks of the same suite always share a JVM.
+ * <p>
+ * The device classes live in the default package, which JMH does not support, so this
+ * harness follows the same warmup/measure/consume model without it.
+ * <p>
+ * Usage: {@code java -jar benchmarks.jar [-f regex] [-o results.json] [-wi n] [-i n] [-t ms]
+ * [-fork true|false]}
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class BenchmarkRunner
+{
+    private static final String DEFAULT_RESULTS_FILE       = "benchmark-results.json";
+    private static final int    DEFAULT_WARMUP_ITERATIONS  = 3;
+    private static final int    DEFAULT_ITERATIONS         = 5;
+    private static final long   DEFAULT_ITERATION_MILLIS   = 500;
+    private static final long   NANOS_PER_MILLI            = 1_000_000L;
+    private static final String SUITE_OPTION               = "-suite";
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private static volatile long sink;
+
+    private final List<Benchmark> benchmarks;
+    private final int             warmupIterations;
+    private final int             iterations;
+    private final long            iterationNanos;
+    private double                allocatedBytesPerOp;
+
+    /**
+     * Constructs a BenchmarkRunner.
+     *
+     * @param warmupIterations the number of untimed iterations to run before measuring
+     * @param iterations       the number of measured iterations
+     * @param iterationMillis  how long each iteration runs for, in milliseconds
+     */
+    public BenchmarkRunner(final int warmupIterations,
+                           final int iterations,
+                           final long iterationMillis)
+    {
+        if (warmupIterations < 0 || iterations <= 0 || iterationMillis <= 0)
+        {
+            throw new IllegalArgumentException("Iteration counts and time must be positive");
+        }
+
+        this.benchmarks       = new ArrayList<>();
+        this.warmupIterations = warmupIterations;
+        this.iterations       = iterations;
+        this.iterationNanos   = iterationMillis * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Registers a benchmark.
+     *
+     * @param name              the name of the benchmark, usually {@code Suite.case}
+     * @param operationsPerCall how many operations one call of the workload performs
+     * @param workload          the work to measure; its result is consumed by the runner
+     */
+    public void add(final String name,
+                    final int operationsPerCall,
+                    final LongSupplier workload)
+    {
+        if (operationsPerCall <= 0)
+        {
+            throw new IllegalArgumentException("Operations per call must be positive");
+        }
+        benchmarks.add(new Benchmark(name, operationsPerCall, workload));
+    }
+
+    /**
+     * Runs every registered benchmark whose name matches the filter.
+     *
+     * @param filter the pattern benchmark names must contain
+     * @return the results in the order the benchmarks ran
+     */
+    public List<Result> run(final Pattern filter)
+    {
+        final List<Result> results;
+        results = new ArrayList<>();
+
+        for (final Benchmark benchmark : benchmarks)
+        {
+            if (filter.matcher(benchmark.name).find())
+            {
+                final Result result;
+                result = measure(benchmark);
+
+                System.out.printf(Locale.ROOT, "%-60s %14.2f sd %10.2f ns/op %12.1f B/op%n",
+                                  result.name, result.mean, result.stdDev, result.allocation);
+                results.add(result);
+            }
+        }
+
+        return results;
+    }
+
+    /*
+     * Runs the warmup and measured iterations of one benchmark.
+     */
+    private Result measure(final Benchmark benchmark)
+    {
+        final double[] scores;
+        final double[] allocations;
+
+        scores      = new double[iterations];
+        allocations = new double[iterations];
+
+        for (int i = 0; i < warmupIterations; i++)
+        {
+            iterate(benchmark);
+        }
+        for (int i = 0; i < iterations; i++)
+        {
+            scores[i]      = iterate(benchmark);
+            allocations[i] = allocatedBytesPerOp;
+        }
+
+        return new Result(benchmark.name, scores, allocations);
+    }
+
+    /*
+     * Calls the workload until the iteration time is used up and returns the average
+     * time per operation in nanoseconds. Leaves the bytes allocated per operation in
+     * allocatedBytesPerOp.
+     */
+    private double iterate(final Benchmark benchmark)
+    {
+        final long allocatedBefore;
+        final long start;
+        long       calls;
+        long       elapsed;
+        long       consumed;
+
+        allocatedBefore = allocatedBytes();
+        start           = System.nanoTime();
+        calls           = 0;
+        consumed        = 0;
+
+        do
+        {
+            consumed += benchmark.workload.getAsLong();
+            calls++;
+            elapsed = System.nanoTime() - start;
+        }
+        while (elapsed < iterationNanos);
+
+        sink                = consumed;
+        allocatedBytesPerOp = allocatedBefore < 0 ? Double.NaN :
+                              (double) (allocatedBytes() - allocatedBefore) / (calls * benchmark.operationsPerCall);
+
+        return (double) elapsed / (calls * benchmark.operationsPerCall);
+    }
+
+    /*
+     * Returns the HotSpot bean that counts the bytes each thread allocates, or null if this
+     * JVM does not have one or cannot count.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter()
+    {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads &&
+            threads.isThreadAllocatedMemorySupported())
+        {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /*
+     * Returns the bytes the calling thread has allocated so far, or -1 if they cannot be counted.
+     */
+    private static long allocatedBytes()
+    {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Writes results as a JSON array, one object per benchmark on its own line.
+     *
+     * @param results the results to write
+     * @param file    the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeJson(final List<Result> results,
+                                 final Path file) throws IOException
+    {
+        final List<String> objects;
+        objects = new ArrayList<>();
+
+        for (final Result result : results)
+        {
+            objects.add(toJson(result));
+        }
+
+        writeJsonObjects(objects, file);
+    }
+
+    /*
+     * Formats one result as a JSON object.
+     */
+    private static String toJson(final Result result)
+    {
+        final StringBuilder json;
+        json = new StringBuilder();
+
+        json.append("{\"benchmark\": \"");
+        escape(result.name, json);
+        json.append("\", \"unit\": \"ns/op\", \"score\": ");
+        json.append(format(result.mean));
+        json.append(", \"scoreStdDev\": ");
+        json.append(format(result.stdDev));
+        json.append(", \"allocatedBytesPerOp\": ");
+        json.append(Double.isNaN(result.allocation) ? "null" : format(result.allocation));
+        json.append(", \"rawData\": [");
+        for (int j = 0; j < result.scores.length; j++)
+        {
+            if (j > 0)
+            {
+                json.append(", ");
+            }
+            json.append(format(result.scores[j]));
+        }
+        json.append("]}");
+
+        return json.toString();
+    }
+
+    /*
+     * Appends text as the contents of a JSON string, escaping quotes, backslashes and
+     * control characters.
+     */
+    private static void escape(final String text,
+                               final StringBuilder json)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char c;
+            c = text.charAt(i);
+
+            if (c == '"' || c == '\\')
+            {
+                json.append('\\').append(c);
+            }
+            else if (c < ' ')
+            {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+    }
+
+    /*
+     * Writes JSON objects as an array, one object per line.
+     */
+    private static void writeJsonObjects(final List<String> objects,
+                                         final Path file) throws IOException
+    {
+        try (final Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            out.write("[\n");
+            for (int i = 0; i < objects.size(); i++)
+            {
+                out.write("  ");
+                out.write(objects.get(i));
+                out.write(i < objects.size() - 1 ? ",\n" : "\n");
+            }
+            out.write("]\n");
+        }
+    }
+
+    /*
+     * Reads back the objects of a file written by writeJsonObjects.
+     */
+    private static List<String> readJsonObjects(final Path file) throws IOException
+    {
+        final List<String> objects;
+        objects = new ArrayList<>();
+
+        for (final String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+        {
+            if (line.startsWith("  {"))
+            {
+                objects.add(line.substring(2, line.endsWith(",") ? line.length() - 1 : line.length()));
+            }
+        }
+
+        return objects;
+    }
+
+    /*
+     * Formats a score independently of the default locale.
+     */
+    private static String format(final double value)
+    {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Registers the benchmark suites, runs the ones matching the filter and writes the
+     * results as JSON. Unless {@code -fork false} is given, each suite runs in its own JVM.
+     *
+     * @param args optional {@code -f regex}, {@code -o file}, {@code -wi n}, {@code -i n},
+     *             {@code -t millis} and {@code -fork true|false} arguments
+     * @throws IOException if the results file cannot be written or a forked suite fails
+     * @throws IllegalArgumentException if an option is unknown or has no value
+     */
+    public static void main(final String[] args) throws IOException
+    {
+        String  filter;
+        String  output;
+        int     warmup;
+        int     measured;
+        long    millis;
+        boolean fork;
+        String  suite;
+
+        filter   = "";
+        output   = DEFAULT_RESULTS_FILE;
+        warmup   = DEFAULT_WARMUP_ITERATIONS;
+        measured = DEFAULT_ITERATIONS;
+        millis   = DEFAULT_ITERATION_MILLIS;
+        fork     = true;
+        suite    = null;
+
+        for (int i = 0; i < args.length; i += 2)
+        {
+            if (i + 1 == args.length)
+            {
+                throw new IllegalArgumentException("Option " + args[i] + " needs a value");
+            }
+
+            switch (args[i])
+            {
+                case "-f" -> filter = args[i + 1];
+                case "-o" -> output = args[i + 1];
+                case "-wi" -> warmup = Integer.parseInt(args[i + 1]);
+                case "-i" -> measured = Integer.parseInt(args[i + 1]);
+                case "-t" -> millis = Long.parseLong(args[i + 1]);
+                case "-fork" -> fork = parseBoolean(args[i], args[i + 1]);
+                case SUITE_OPTION -> suite = args[i + 1];
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        final Map<String, Consumer<BenchmarkRunner>> suites;
+        final BenchmarkRunner                        runner;
+        final Pattern                                pattern;
+
+        suites  = suites();
+        runner  = new BenchmarkRunner(warmup, measured, millis);
+        pattern = Pattern.compile(filter);
+
+        if (suite != null)
+        {
+            // This JVM was forked to run one suite
+            if (!suites.containsKey(suite))
+            {
+                throw new IllegalArgumentException("Unknown suite " + suite);
+            }
+            suites.keySet().retainAll(List.of(suite));
+        }
+
+        if (fork && suite == null)
+        {
+            final List<String> objects;
+            objects = new ArrayList<>();
+
+            for (final String name : suites.keySet())
+            {
+                objects.addAll(runForked(name, filter, warmup, measured, millis));
+            }
+            writeJsonObjects(objects, Paths.get(output));
+        }
+        else
+        {
+            for (final Consumer<BenchmarkRunner> register : suites.values())
+            {
+                register.accept(runner);
+            }
+            writeJson(runner.run(pattern), Paths.get(output));
+        }
+
+        if (suite == null)
+        {
+            System.out.println("Results written to " + output);
+        }
+    }
+
+    /*
+     * Parses a true or false option value, rejecting anything else.
+     */
+    private static boolean parseBoolean(final String option,
+                                        final String value)
+    {
+        return switch (value)
+        {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException("Option " + option + " must be true or false");
+        };
+    }
+
+    /*
+     * Returns every benchmark suite by the prefix of its benchmark names, in the order
+     * the suites run.
+     */
+    private static Map<String, Consumer<BenchmarkRunner>> suites()
+    {
+        final Map<String, Consumer<BenchmarkRunner>> suites;
+        suites = new LinkedHashMap<>();
+
+        suites.put("Construction", ConstructionBenchmarks::register);
+        suites.put("Equality", EqualityBenchmarks::register);
+        suites.put("Rendering", RenderingBenchmarks::register);
+        suites.put("Dispatch", DispatchBenchmarks::register);
+        suites.put("Loading", LoadingBenchmarks::register);
+        suites.put("Snapshot", SnapshotBenchmarks::register);
+        suites.put("Contention", ContentionBenchmarks::register);
+        suites.put("OffHeap", OffHeapBenchmarks::register);
+        suites.put("Journal", JournalBenchmarks::register);
+        suites.put("Dedup", DedupBenchmarks::register);
+        suites.put("Query", QueryBenchmarks::register);
+        suites.put("RangeIndex", RangeIndexBenchmarks::register);
+        suites.put("Report", ReportBenchmarks::register);
+        suites.put("Sort", SortBenchmarks::register);
+        suites.put("Diff", DiffBenchmarks::register);
+        suites.put("Builder", BuilderBenchmarks::register);
+        suites.put("Cache", CacheBenchmarks::register);
+        suites.put("Shard", ShardBenchmarks::register);
+        suites.put("Feed", FeedBenchmarks::register);
+        suites.put("History", HistoryBenchmarks::register);
+        suites.put("Metrics", MetricsBenchmarks::register);
+
+        return suites;
+    }
+
+    /*
+     * Runs one suite in a fresh JVM with this JVM's options and class path, and returns
+     * the JSON objects of its results. The forked JVM prints its table to this one's output.
+     */
+    private static List<String> runForked(final String suite,
+                                          final String filter,
+                                          final int warmup,
+                                          final int measured,
+                                          final long millis) throws IOException
+    {
+        final Path         results;
+        final List<String> command;
+
+        results = Files.createTempFile("benchmark-" + suite, ".json");
+        command = new ArrayList<>();
+
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), BenchmarkRunner.class.getName(),
+                               SUITE_OPTION, suite,
+                               "-f", filter,
+                               "-wi", Integer.toString(warmup),
+                               "-i", Integer.toString(measured),
+                               "-t", Long.toString(millis),
+                               "-o", results.toString()));
+
+        try
+        {
+            final int exitCode;
+            exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+
+            if (exitCode != 0)
+            {
+                throw new IOException("Suite " + suite + " failed with exit code " + exitCode);
+            }
+
+            return readJsonObjects(results);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running suite " + suite, e);
+        }
+        finally
+        {
+            Files.deleteIfExists(results);
+        }
+    }
+
+    /*
+     * A registered benchmark.
+     */
+    private static final class Benchmark
+    {
+        private final String       name;
+        private final int          operationsPerCall;
+        private final LongSupplier workload;
+
+        private Benchmark(final String name,
+                          final int operationsPerCall,
+                          final LongSupplier workload)
+        {
+            this.name              = name;
+            this.operationsPerCall = operationsPerCall;
+            this.workload          = workload;
+        }
+    }
+
+    /**
+     * The measured scores of one benchmark, in nanoseconds per operation, and the bytes it
+     * allocated per operation.
+     */
+    public static final class Result
+    {
+        private final String   name;
+        private final double[] scores;
+        private final double   mean;
+        private final double   stdDev;
+        private final double   allocation;
+
+        private Result(final String name,
+                       final double[] scores,
+                       final double[] allocations)
+        {
+            double sum;
+            double squares;
+            double allocated;
+
+            sum       = 0;
+            squares   = 0;
+            allocated = 0;
+            for (final double score : scores)
+            {
+                sum += score;
+            }
+            for (final double bytes : allocations)
+            {
+                allocated += bytes;
+            }
+
+            this.name       = name;
+            this.scores     = scores;
+            this.mean       = sum / scores.length;
+            this.allocation = allocated / allocations.length;
+
+            for (final double score : scores)
+            {
+                squares += (score - mean) * (score - mean);
+            }
+            this.stdDev = scores.length > 1 ? Math.sqrt(squares / (scores.length - 1)) : 0;
+        }
+
+        /**
+         * Getter for the benchmark name.
+         *
+         * @return the benchmark name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Getter for the mean score.
+         *
+         * @return the mean time per operation in nanoseconds
+         */
+        public double getMean()
+        {
+            return mean;
+        }
+
+        /**
+         * Getter for the standard deviation of the scores.
+         *
+         * @return the standard deviation in nanoseconds
+         */
+        public double getStdDev()
+        {
+            return stdDev;
+        }
+
+        /**
+         * Getter for the mean allocation.
+         *
+         * @return the bytes the calling thread allocated per operation, or NaN if unknown
+         */
+        public double getAllocatedBytesPerOp()
+        {
+            return allocation;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmarks for ingesting 100,000 parsed records with {@link DeviceBuilder} against
+ * constructing a device for each record and copying it into a store, scored per record.
+ * Each pair writes to a binary {@link DeviceSnapshotWriter} and to a fresh columnar
+ * {@link DeviceRegistry}; the B/op column shows what each record costs the young
+ * generation. The registry cases include growing the registry's own columns.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class BuilderBenchmarks
+{
+    private static final int  RECORDS = 100_000;
+    private static final long SEED    = 2522L;
+
+    private BuilderBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the builder benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<Records> records;
+        final Path          snapshotFile;
+
+        records      = new Lazy<>(() -> new Records(Fleets.mixed(RECORDS, SEED)));
+        snapshotFile = temporaryFile();
+
+        runner.add("Builder.construct.snapshot", RECORDS, () ->
+        {
+            try (final DeviceSnapshotWriter writer = new DeviceSnapshotWriter(snapshotFile))
+            {
+                records.get().construct(writer::write);
+                return writer.getRecordCount();
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+        runner.add("Builder.builder.snapshot", RECORDS, () ->
+        {
+            try (final DeviceSnapshotWriter writer = new DeviceSnapshotWriter(snapshotFile))
+            {
+                records.get().build(writer);
+                return writer.getRecordCount();
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+        runner.add("Builder.construct.registry", RECORDS, () ->
+        {
+            final DeviceRegistry registry;
+            registry = new DeviceRegistry();
+
+            try
+            {
+                records.get().construct(registry::add);
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            return registry.getIPodCount();
+        });
+        runner.add("Builder.builder.registry", RECORDS, () ->
+        {
+            final DeviceRegistry registry;
+            registry = new DeviceRegistry();
+
+            records.get().build(registry);
+            return registry.getIPodCount();
+        });
+    }
+
+    /*
+     * Creates a temporary file that is deleted when the JVM exits.
+     */
+    private static Path temporaryFile()
+    {
+        try
+        {
+            final Path file;
+            file = Files.createTempFile("fleet", ".snapshot");
+
+            file.toFile().deleteOnExit();
+
+            return file;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Accepts a constructed device.
+     */
+    @FunctionalInterface
+    private interface DeviceConsumer
+    {
+        void accept(IDevice device) throws IOException;
+    }
+
+    /*
+     * Records as a parser would produce them: a type and primitive fields, in columns.
+     */
+    private static final class Records
+    {
+        private final byte[]    types;
+        private final double[]  doubles;
+        private final int[]     ints;
+        private final boolean[] flags;
+        private final String[]  texts;
+
+        private Records(final IDevice[] fleet)
+        {
+            types   = new byte[fleet.length];
+            doubles = new double[fleet.length];
+            ints    = new int[fleet.length];
+            flags   = new boolean[fleet.length];
+            texts   = new String[fleet.length];
+
+            for (int i = 0; i < fleet.length; i++)
+            {
+                if (fleet[i] instanceof IPhone16 iPhone16)
+                {
+                    types[i]   = DeviceSnapshot.IPHONE16;
+                    doubles[i] = iPhone16.getRemainingPlanMinutes();
+                    texts[i]   = iPhone16.getPlanCarrier();
+                    flags[i]   = iPhone16.isHighResCamera();
+                    ints[i]    = iPhone16.getMemoryGigabytes();
+                }
+                else if (fleet[i] instanceof IPhone iPhone)
+                {
+                    types[i]   = DeviceSnapshot.IPHONE;
+                    doubles[i] = iPhone.getRemainingPlanMinutes();
+                    texts[i]   = iPhone.getPlanCarrier();
+                }
+                else if (fleet[i] instanceof IPod iPod)
+                {
+                    types[i]   = DeviceSnapshot.IPOD;
+                    doubles[i] = iPod.getCurrentVolumeDB();
+                    ints[i]    = iPod.getNumSongsStored();
+                }
+                else
+                {
+                    types[i] = DeviceSnapshot.IPAD;
+                    flags[i] = ((IPad) fleet[i]).hasCase();
+                    texts[i] = ((IPad) fleet[i]).getOSVersion();
+                }
+            }
+        }
+
+        /*
+         * Constructs a device for every record and hands it to the consumer.
+         */
+        private void construct(final DeviceConsumer consumer) throws IOException
+        {
+            for (int i = 0; i < types.length; i++)
+            {
+                switch (types[i])
+                {
+                    case DeviceSnapshot.IPHONE -> consumer.accept(new IPhone(doubles[i], texts[i]));
+                    case DeviceSnapshot.IPHONE16 -> consumer.accept(new IPhone16(doubles[i], texts[i], flags[i], ints[i]));
+                    case DeviceSnapshot.IPOD -> consumer.accept(new IPod(doubles[i], ints[i]));
+                    default -> consumer.accept(new IPad(flags[i], texts[i]));
+                }
+            }
+        }
+
+        /*
+         * Commits every record to the sink through this thread's builder.
+         */
+        private void build(final DeviceSink sink)
+        {
+            final DeviceBuilder builder;
+            builder = DeviceBuilder.forCurrentThread();
+
+            for (int i = 0; i < types.length; i++)
+            {
+                switch (types[i])
+                {
+                    case DeviceSnapshot.IPHONE -> builder.remainingPlanMinutes(doubles[i])
+                                                         .planCarrier(texts[i])
+                                                         .commitIPhone(sink);
+                    case DeviceSnapshot.IPHONE16 -> builder.remainingPlanMinutes(doubles[i])
+                                                           .planCarrier(texts[i])
+                                                           .highResCamera(flags[i])
+                                                           .memoryGigabytes(ints[i])
+                                                           .commitIPhone16(sink);
+                    case DeviceSnapshot.IPOD -> builder.currentVolumeDB(doubles[i])
+                                                       .numSongsStored(ints[i])
+                                                       .commitIPod(sink);
+                    default -> builder.hasCase(flags[i])
+                                      .OSVersion(texts[i])
+                                      .commitIPad(sink);
+                }
+            }
+        }
+    }
+}
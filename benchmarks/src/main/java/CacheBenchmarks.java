@@ -0,0 +1,206 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks for {@link RenderingCache} serving the details of a fleet of 1,000,000 devices
+ * to a trace of 1,048,576 lookups drawn from a Zipfian distribution, scored per lookup:
+ * rendering every lookup afresh as a baseline, an LRU cache of the same size built on
+ * {@link LinkedHashMap}, and the cache, each holding 0.1% and 1% of the fleet. Traces are
+ * drawn with skews of 0.8 and 0.99. The caches print their hit ratio when first run.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class CacheBenchmarks
+{
+    private static final int      FLEET_SIZE   = 1_000_000;
+    private static final int      TRACE_LENGTH = 1 << 20;
+    private static final int[]    CACHE_SIZES  = {1_000, 10_000};
+    private static final double[] SKEWS        = {0.8, 0.99};
+    private static final long     SEED         = 2522L;
+
+    private CacheBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the cache benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<IDevice[]> fleet;
+        fleet = new Lazy<>(() -> Fleets.mixed(FLEET_SIZE, SEED));
+
+        for (final double skew : SKEWS)
+        {
+            final Lazy<int[]> trace;
+            final String      suffix;
+
+            trace  = new Lazy<>(() -> zipfian(skew));
+            suffix = String.format(Locale.ROOT, ".s%03d", Math.round(skew * 100));
+
+            runner.add("Cache.render" + suffix, TRACE_LENGTH, () ->
+            {
+                final IDevice[]     devices;
+                final StringBuilder text;
+                long                chars;
+
+                devices = fleet.get();
+                text    = new StringBuilder();
+                chars   = 0;
+
+                for (final int index : trace.get())
+                {
+                    text.setLength(0);
+                    DeviceDispatch.writeDetails(devices[index], text);
+                    chars += text.toString().length();
+                }
+                return chars;
+            });
+            for (final int size : CACHE_SIZES)
+            {
+                final Lazy<LruCache>       lru;
+                final Lazy<RenderingCache> cache;
+                final boolean[]            reported;
+
+                lru      = new Lazy<>(() -> new LruCache(size));
+                cache    = new Lazy<>(() -> new RenderingCache(size));
+                reported = new boolean[2];
+
+                runner.add("Cache.lru." + size + suffix, TRACE_LENGTH, () ->
+                {
+                    final IDevice[] devices;
+                    final LruCache  renderings;
+                    long            chars;
+
+                    devices    = fleet.get();
+                    renderings = lru.get();
+                    chars      = 0;
+
+                    for (final int index : trace.get())
+                    {
+                        chars += renderings.get(index, devices[index]).length();
+                    }
+                    if (!reported[0])
+                    {
+                        System.out.printf(Locale.ROOT, "  hit ratio %.3f%n", (double) renderings.hits / TRACE_LENGTH);
+                        reported[0] = true;
+                    }
+                    return chars;
+                });
+                runner.add("Cache.wTinyLfu." + size + suffix, TRACE_LENGTH, () ->
+                {
+                    final IDevice[]      devices;
+                    final RenderingCache renderings;
+                    long                 chars;
+
+                    devices    = fleet.get();
+                    renderings = cache.get();
+                    chars      = 0;
+
+                    for (final int index : trace.get())
+                    {
+                        chars += renderings.get(devices[index]).length();
+                    }
+                    if (!reported[1])
+                    {
+                        System.out.printf(Locale.ROOT, "  hit ratio %.3f, %d evictions%n",
+                                          renderings.getStats().getHitRatio(),
+                                          renderings.getStats().getEvictionCount());
+                        reported[1] = true;
+                    }
+                    return chars;
+                });
+            }
+        }
+    }
+
+    /*
+     * Draws a trace of device indexes in which the i-th most popular device, in a random
+     * order of the fleet, is looked up in proportion to 1 / i^skew.
+     */
+    private static int[] zipfian(final double skew)
+    {
+        final Random   random;
+        final double[] cumulative;
+        final int[]    popularity;
+        final int[]    trace;
+        double         total;
+
+        random     = new Random(SEED);
+        cumulative = new double[FLEET_SIZE];
+        popularity = new int[FLEET_SIZE];
+        trace      = new int[TRACE_LENGTH];
+        total      = 0;
+
+        for (int i = 0; i < FLEET_SIZE; i++)
+        {
+            final int swap;
+
+            total            += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i]     = total;
+            swap              = random.nextInt(i + 1);
+            popularity[i]     = popularity[swap];
+            popularity[swap]  = i;
+        }
+        for (int i = 0; i < TRACE_LENGTH; i++)
+        {
+            final int rank;
+            rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+
+            trace[i] = popularity[Math.min(FLEET_SIZE - 1, rank < 0 ? -rank - 1 : rank)];
+        }
+
+        return trace;
+    }
+
+    /*
+     * A least recently used cache of renderings by fleet index.
+     */
+    private static final class LruCache extends LinkedHashMap<Integer, String>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int maximumSize;
+        private long      hits;
+
+        private LruCache(final int maximumSize)
+        {
+            super(maximumSize * 2, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        private String get(final int index,
+                           final IDevice device)
+        {
+            String text;
+            text = get(index);
+
+            if (text == null)
+            {
+                final StringBuilder details;
+                details = new StringBuilder();
+
+                DeviceDispatch.writeDetails(device, details);
+                text = details.toString();
+                put(index, text);
+            }
+            else
+            {
+                hits++;
+            }
+            return text;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, String> eldest)
+        {
+            return size() > maximumSize;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Benchmarks for constructing and validating every device subclass.
+ * The invalid cases measure the cost of a rejected value, which includes building the
+ * error message and filling in the exception's stack trace, against rejecting the same
+ * value through {@link DeviceFactory} without an exception.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class ConstructionBenchmarks
+{
+    private static final int BATCH = 1_024;
+
+    private ConstructionBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the construction benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        runner.add("Construction.iPhone", BATCH, () ->
+        {
+            long hash = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                hash += new IPhone(i + 1.0, "Verizon").hashCode();
+            }
+            return hash;
+        });
+        runner.add("Construction.iPhone16", BATCH, () ->
+        {
+            long hash = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                hash += new IPhone16(i + 1.0, "Verizon", (i & 1) == 0, IPhone16.MODEL_256_GB).hashCode();
+            }
+            return hash;
+        });
+        runner.add("Construction.iPod", BATCH, () ->
+        {
+            long hash = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                hash += new IPod(i % 100, i).hashCode();
+            }
+            return hash;
+        });
+        runner.add("Construction.iPad", BATCH, () ->
+        {
+            long hash = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                hash += new IPad((i & 1) == 0, "iPadOS 17").hashCode();
+            }
+            return hash;
+        });
+        runner.add("Construction.iPodInvalidVolume", BATCH, () ->
+        {
+            long rejected = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                try
+                {
+                    new IPod(IPod.MAX_VOLUME_DB + 1, i);
+                }
+                catch (final IllegalArgumentException e)
+                {
+                    rejected++;
+                }
+            }
+            return rejected;
+        });
+        runner.add("Construction.iPhone16InvalidMemory", BATCH, () ->
+        {
+            long rejected = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                try
+                {
+                    new IPhone16(i + 1.0, "Verizon", true, i);
+                }
+                catch (final IllegalArgumentException e)
+                {
+                    rejected++;
+                }
+            }
+            return rejected;
+        });
+        runner.add("Construction.iPodInvalidVolumeFactory", BATCH, () ->
+        {
+            final DeviceFactory factory;
+            factory = new DeviceFactory(new ViolationCounts());
+
+            long rejected = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                if (factory.createIPod(IPod.MAX_VOLUME_DB + 1, i) == null)
+                {
+                    rejected++;
+                }
+            }
+            return rejected;
+        });
+        runner.add("Construction.iPhone16InvalidMemoryFactory", BATCH, () ->
+        {
+            final DeviceFactory factory;
+            factory = new DeviceFactory(new ViolationCounts());
+
+            long rejected = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                if (factory.createIPhone16(i + 1.0, "Verizon", true, i) == null)
+                {
+                    rejected++;
+                }
+            }
+            return rejected;
+        });
+    }
+}
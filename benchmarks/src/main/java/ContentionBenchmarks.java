@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Contention benchmarks for updating {@link IPad#hasCase()} and {@link IPod#getCurrentVolumeDB()}
+ * from 1 to 64 threads at once. Every call starts the same task on each thread of a fixed
+ * pool and waits for all of them, so the score is the time per update across all threads.
+ * <ul>
+ *     <li>{@code volumeClamp} and {@code hasCaseToggle} update a few hot devices with the
+ *         atomic setters</li>
+ *     <li>{@code volumeGlobalLock} does the same volume updates under one shared lock</li>
+ *     <li>{@code bulkStriped} and {@code bulkSingleStripe} run {@link StripedDeviceFleet}
+ *         bulk updates over a shared fleet with many stripes and with one</li>
+ * </ul>
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class ContentionBenchmarks
+{
+    private static final int[] THREAD_COUNTS      = {1, 2, 4, 8, 16, 32, 64};
+    private static final int   HOT_DEVICES        = 16;
+    private static final int   UPDATES_PER_THREAD = 16_384;
+    private static final int   FLEET_SIZE         = 4_096;
+    private static final int   BULK_PER_THREAD    = 4;
+    private static final int   STRIPES            = 64;
+    private static final long  SEED               = 2522L;
+
+    private ContentionBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the contention benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final IPod[]             hotIPods;
+        final IPad[]             hotIPads;
+        final Object             globalLock;
+        final StripedDeviceFleet striped;
+        final StripedDeviceFleet singleStripe;
+        final String             osVersion;
+
+        hotIPods     = new IPod[HOT_DEVICES];
+        hotIPads     = new IPad[HOT_DEVICES];
+        globalLock   = new Object();
+        striped      = fleet(STRIPES);
+        singleStripe = fleet(1);
+        osVersion    = Fleets.OS_VERSIONS[0];
+
+        for (int i = 0; i < HOT_DEVICES; i++)
+        {
+            hotIPods[i] = new IPod(IPod.MAX_VOLUME_DB, i);
+            hotIPads[i] = new IPad(false, osVersion);
+        }
+
+        for (final int threads : THREAD_COUNTS)
+        {
+            final ExecutorService pool;
+            final String          suffix;
+
+            pool   = Executors.newFixedThreadPool(threads, ContentionBenchmarks::daemon);
+            suffix = String.format(Locale.ROOT, ".t%02d", threads);
+
+            runner.add("Contention.volumeClamp" + suffix, threads * UPDATES_PER_THREAD, () ->
+                runOnThreads(pool, threads, thread ->
+                {
+                    long lowered = 0;
+                    for (int i = 0; i < UPDATES_PER_THREAD; i++)
+                    {
+                        final IPod iPod;
+                        iPod = hotIPods[(thread + i) & (HOT_DEVICES - 1)];
+
+                        if ((i & 1) == 0)
+                        {
+                            iPod.setCurrentVolumeDB(IPod.MAX_VOLUME_DB);
+                        }
+                        else if (iPod.clampCurrentVolumeDB(i & 63))
+                        {
+                            lowered++;
+                        }
+                    }
+                    return lowered;
+                }));
+            runner.add("Contention.volumeGlobalLock" + suffix, threads * UPDATES_PER_THREAD, () ->
+                runOnThreads(pool, threads, thread ->
+                {
+                    long lowered = 0;
+                    for (int i = 0; i < UPDATES_PER_THREAD; i++)
+                    {
+                        final IPod iPod;
+                        iPod = hotIPods[(thread + i) & (HOT_DEVICES - 1)];
+
+                        synchronized (globalLock)
+                        {
+                            if ((i & 1) == 0)
+                            {
+                                iPod.setCurrentVolumeDB(IPod.MAX_VOLUME_DB);
+                            }
+                            else if (iPod.getCurrentVolumeDB() > (i & 63))
+                            {
+                                iPod.setCurrentVolumeDB(i & 63);
+                                lowered++;
+                            }
+                        }
+                    }
+                    return lowered;
+                }));
+            runner.add("Contention.hasCaseToggle" + suffix, threads * UPDATES_PER_THREAD, () ->
+                runOnThreads(pool, threads, thread ->
+                {
+                    long toggled = 0;
+                    for (int i = 0; i < UPDATES_PER_THREAD; i++)
+                    {
+                        final IPad    iPad;
+                        final boolean hasCase;
+
+                        iPad    = hotIPads[(thread + i) & (HOT_DEVICES - 1)];
+                        hasCase = iPad.hasCase();
+
+                        if (iPad.compareAndSetHasCase(hasCase, !hasCase))
+                        {
+                            toggled++;
+                        }
+                    }
+                    return toggled;
+                }));
+            runner.add("Contention.bulkStriped" + suffix, threads * BULK_PER_THREAD * FLEET_SIZE, () ->
+                runOnThreads(pool, threads, thread -> bulkUpdates(striped, osVersion, thread)));
+            runner.add("Contention.bulkSingleStripe" + suffix, threads * BULK_PER_THREAD * FLEET_SIZE, () ->
+                runOnThreads(pool, threads, thread -> bulkUpdates(singleStripe, osVersion, thread)));
+        }
+    }
+
+    /*
+     * Creates a fleet of IPads and IPods with the given number of stripes.
+     */
+    private static StripedDeviceFleet fleet(final int stripes)
+    {
+        final StripedDeviceFleet fleet;
+        final IDevice[]          devices;
+
+        fleet   = new StripedDeviceFleet(stripes);
+        devices = Fleets.iPods(FLEET_SIZE / 2, SEED);
+
+        for (final IDevice device : devices)
+        {
+            fleet.add((IPod) device);
+            fleet.add(new IPad(false, Fleets.OS_VERSIONS[fleet.getIPadCount() % Fleets.OS_VERSIONS.length]));
+        }
+
+        return fleet;
+    }
+
+    /*
+     * Runs one thread's share of bulk updates, alternating case flags and volume limits.
+     */
+    private static long bulkUpdates(final StripedDeviceFleet fleet,
+                                    final String osVersion,
+                                    final int thread)
+    {
+        long changed = 0;
+        for (int i = 0; i < BULK_PER_THREAD; i++)
+        {
+            changed += fleet.setHasCase(osVersion, ((thread + i) & 1) == 0);
+            changed += fleet.clampCurrentVolumeDB(IPod.MAX_VOLUME_DB - i);
+        }
+        return changed;
+    }
+
+    /*
+     * Runs the task once on each of the given number of pool threads and returns the
+     * sum of their results.
+     */
+    static long runOnThreads(final ExecutorService pool,
+                             final int threads,
+                             final IntToLongFunction task)
+    {
+        final List<Callable<Long>> tasks;
+        tasks = new ArrayList<>(threads);
+
+        for (int i = 0; i < threads; i++)
+        {
+            final int thread;
+            thread = i;
+
+            tasks.add(() -> task.applyAsLong(thread));
+        }
+
+        try
+        {
+            long sum = 0;
+            for (final Future<Long> result : pool.invokeAll(tasks))
+            {
+                sum += result.get();
+            }
+            return sum;
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (final ExecutionException e)
+        {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /*
+     * Creates a daemon thread so idle pools do not keep the JVM alive.
+     */
+    private static Thread daemon(final Runnable task)
+    {
+        final Thread thread;
+        thread = new Thread(task);
+
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmarks for {@link DeviceDeduplicator} against a {@link HashSet} deduplicating the
+ * same stream of a million devices, about half of them repeats. The deduplicator runs with
+ * a budget large enough to keep every key in memory, and with the smallest budget, where
+ * almost every key is spilled to disk. The false-positive and spill rates of each
+ * deduplicator are printed when its benchmark is first run.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DedupBenchmarks
+{
+    private static final int  STREAM_SIZE  = 1_000_000;
+    private static final int  KEY_SPACE    = STREAM_SIZE;
+    private static final long LARGE_BUDGET = 64L << 20;
+    private static final long SEED         = 2522L;
+
+    private DedupBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the deduplication benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<IDevice[]> stream;
+        final Path            spillDirectory;
+
+        stream         = new Lazy<>(() -> stream(STREAM_SIZE, SEED));
+        spillDirectory = temporaryDirectory();
+
+        runner.add("Dedup.hashSet.1M", STREAM_SIZE, () ->
+        {
+            final Set<IDevice> seen;
+            long               distinct;
+
+            seen     = new HashSet<>();
+            distinct = 0;
+
+            for (final IDevice device : stream.get())
+            {
+                if (seen.add(device))
+                {
+                    distinct++;
+                }
+            }
+            return distinct;
+        });
+        runner.add("Dedup.inMemory.1M", STREAM_SIZE, new DedupWorkload("inMemory", stream, LARGE_BUDGET, spillDirectory)::run);
+        runner.add("Dedup.spilling.1M", STREAM_SIZE,
+                   new DedupWorkload("spilling", stream, DeviceDeduplicator.MIN_MEMORY_BYTES, spillDirectory)::run);
+    }
+
+    /*
+     * Builds a stream of IPhones, IPhone16s, IPods and IPads whose equality keys are drawn
+     * from a space about as large as the stream, so roughly half of the devices are repeats.
+     */
+    private static IDevice[] stream(final int size,
+                                    final long seed)
+    {
+        final IDevice[] devices;
+        final Random    random;
+
+        devices = new IDevice[size];
+        random  = new Random(seed);
+
+        for (int i = 0; i < size; i++)
+        {
+            devices[i] = switch (random.nextInt(4))
+            {
+                case 0 -> new IPhone(IPhone.MIN_MINUTES_REQUIRED + random.nextInt(KEY_SPACE) / 4.0,
+                                     Fleets.carrier(random));
+                case 1 -> new IPhone16(IPhone.MIN_MINUTES_REQUIRED + random.nextInt(KEY_SPACE) / 4.0,
+                                       Fleets.carrier(random), random.nextBoolean(), IPhone16.MODEL_256_GB);
+                case 2 -> new IPod(Fleets.volume(random), random.nextInt(KEY_SPACE));
+                default -> Fleets.iPad(random);
+            };
+        }
+
+        return devices;
+    }
+
+    /*
+     * Creates a temporary directory for run files. The deduplicator deletes its runs when
+     * closed, so only the empty directory is left to delete on exit.
+     */
+    private static Path temporaryDirectory()
+    {
+        try
+        {
+            final Path directory;
+            directory = Files.createTempDirectory("dedup");
+
+            directory.toFile().deleteOnExit();
+
+            return directory;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Deduplicates the stream with a fresh deduplicator and reports its rates once.
+     */
+    private static final class DedupWorkload
+    {
+        private final String          name;
+        private final Lazy<IDevice[]> stream;
+        private final long            memoryBytes;
+        private final Path            spillDirectory;
+        private boolean               reported;
+
+        private DedupWorkload(final String name,
+                              final Lazy<IDevice[]> stream,
+                              final long memoryBytes,
+                              final Path spillDirectory)
+        {
+            this.name           = name;
+            this.stream         = stream;
+            this.memoryBytes    = memoryBytes;
+            this.spillDirectory = spillDirectory;
+        }
+
+        private long run()
+        {
+            try (final DeviceDeduplicator deduplicator = new DeviceDeduplicator(memoryBytes, STREAM_SIZE, spillDirectory))
+            {
+                for (final IDevice device : stream.get())
+                {
+                    deduplicator.add(device);
+                }
+
+                if (!reported)
+                {
+                    System.out.printf(Locale.ROOT, "  %s: %d distinct, false positives %.4f, spilled %.3f, %d disk lookups%n",
+                                      name, deduplicator.getDistinctCount(), deduplicator.getFalsePositiveRate(),
+                                      deduplicator.getSpillRate(), deduplicator.getDiskLookups());
+                    reported = true;
+                }
+
+                return deduplicator.getDistinctCount();
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
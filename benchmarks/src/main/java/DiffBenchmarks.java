@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmarks for {@link SnapshotDiff} on two snapshots of a fleet of 1,000,000 devices, a day
+ * apart: between them about one device in a hundred is removed, one is added, and one
+ * changes its volume or case. Scores are per record read, counting both snapshots, so the
+ * diff can be compared with only scanning both snapshots, and with diffing a snapshot
+ * against itself, where nothing is reported. The changed case prints the diff's counts and
+ * throughput when first run.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DiffBenchmarks
+{
+    private static final int                   FLEET_SIZE  = 1_000_000;
+    private static final int                   CHANGE_RATE = 100;
+    private static final long                  SEED        = 2522L;
+    private static final SnapshotDiff.Listener IGNORE      = new SnapshotDiff.Listener()
+    {
+    };
+
+    private DiffBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the diff benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<DeviceSnapshot[]> snapshots;
+        final boolean[]              reported;
+
+        snapshots = new Lazy<>(DiffBenchmarks::writeSnapshots);
+        reported  = new boolean[1];
+
+        runner.add("Diff.scanBoth", 2 * FLEET_SIZE, () -> scan(snapshots.get()[0]) + scan(snapshots.get()[1]));
+        runner.add("Diff.unchanged", 2 * FLEET_SIZE, () ->
+        {
+            final DeviceSnapshot yesterday;
+            yesterday = snapshots.get()[0];
+
+            return SnapshotDiff.diff(yesterday, yesterday, IGNORE).getChangedCount();
+        });
+        runner.add("Diff.changed", 2 * FLEET_SIZE, () ->
+        {
+            final SnapshotDiff.DiffResult result;
+            result = SnapshotDiff.diff(snapshots.get()[0], snapshots.get()[1], IGNORE);
+
+            if (!reported[0])
+            {
+                System.out.printf(Locale.ROOT, "  %d added, %d removed, %d changed at %.1fM devices/s%n",
+                                  result.getAddedCount(), result.getRemovedCount(), result.getChangedCount(),
+                                  result.getDevicesPerSecond() / 1e6);
+                reported[0] = true;
+            }
+            return result.getChangedCount();
+        });
+    }
+
+    /*
+     * Writes yesterday's fleet, changes, removes and adds devices, and writes today's fleet,
+     * both sorted into SnapshotDiff.ORDER.
+     */
+    private static DeviceSnapshot[] writeSnapshots()
+    {
+        final Random        random;
+        final List<IDevice> fleet;
+        final List<IDevice> today;
+        final Path          yesterdayFile;
+        final Path          todayFile;
+
+        random        = new Random(SEED);
+        fleet         = new ArrayList<>(Arrays.asList(Fleets.mixed(FLEET_SIZE, SEED)));
+        today         = new ArrayList<>(FLEET_SIZE);
+        yesterdayFile = temporaryFile();
+        todayFile     = temporaryFile();
+
+        fleet.sort(SnapshotDiff.ORDER);
+        write(fleet, yesterdayFile);
+
+        for (final IDevice device : fleet)
+        {
+            final int roll;
+            roll = random.nextInt(CHANGE_RATE);
+
+            if (roll == 0)
+            {
+                continue;
+            }
+            if (roll == 1 && device instanceof IPod iPod)
+            {
+                iPod.setCurrentVolumeDB(Fleets.volume(random));
+            }
+            else if (roll == 1 && device instanceof IPad iPad)
+            {
+                iPad.setHasCase(!iPad.hasCase());
+            }
+            today.add(device);
+        }
+        today.addAll(Arrays.asList(Fleets.mixed(FLEET_SIZE / CHANGE_RATE, SEED + 1)));
+        today.sort(SnapshotDiff.ORDER);
+        write(today, todayFile);
+
+        try
+        {
+            return new DeviceSnapshot[] {DeviceSnapshot.open(yesterdayFile), DeviceSnapshot.open(todayFile)};
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Reads one field of every record, as the diff does at least.
+     */
+    private static long scan(final DeviceSnapshot snapshot)
+    {
+        final DeviceSnapshot.Cursor cursor;
+        long                        sum;
+
+        cursor = snapshot.cursor();
+        sum    = 0;
+
+        for (long i = 0; i < snapshot.size(); i++)
+        {
+            sum += cursor.moveTo(i).getType();
+        }
+        return sum;
+    }
+
+    private static void write(final List<IDevice> fleet,
+                              final Path file)
+    {
+        try (final DeviceSnapshotWriter writer = new DeviceSnapshotWriter(file))
+        {
+            for (final IDevice device : fleet)
+            {
+                writer.write(device);
+            }
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Creates a temporary file that is deleted when the JVM exits.
+     */
+    private static Path temporaryFile()
+    {
+        try
+        {
+            final Path file;
+            file = Files.createTempFile("fleet", ".snapshot");
+
+            file.toFile().deleteOnExit();
+
+            return file;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Benchmarks for virtual calls across {@link IDevice} collections. The mixed fleet holds
+ * all four device types in shuffled order, so its call sites are megamorphic, while the
+ * IPod-only fleet keeps them monomorphic for comparison. The {@code Sealed} cases make the
+ * same calls on the mixed fleet through {@link DeviceDispatch}, which gives each type its
+ * own call site.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DispatchBenchmarks
+{
+    private static final int  FLEET_SIZE = 100_000;
+    private static final long SEED       = 2522L;
+
+    private DispatchBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the dispatch benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final IDevice[] mixed;
+        final IDevice[] iPods;
+
+        mixed = Fleets.mixed(FLEET_SIZE, SEED);
+        iPods = Fleets.iPods(FLEET_SIZE, SEED);
+
+        runner.add("Dispatch.hashCodeMixed", FLEET_SIZE, () -> sumHashCodes(mixed));
+        runner.add("Dispatch.hashCodeMonomorphic", FLEET_SIZE, () -> sumHashCodes(iPods));
+        runner.add("Dispatch.equalsMixed", FLEET_SIZE, () -> countEqualNeighbours(mixed));
+        runner.add("Dispatch.equalsMonomorphic", FLEET_SIZE, () -> countEqualNeighbours(iPods));
+        runner.add("Dispatch.hashCodeMixedSealed", FLEET_SIZE, () ->
+        {
+            long sum = 0;
+            for (final IDevice device : mixed)
+            {
+                sum += DeviceDispatch.hashCode(device);
+            }
+            return sum;
+        });
+        runner.add("Dispatch.equalsMixedSealed", FLEET_SIZE, () ->
+        {
+            long count = 0;
+            for (int i = 1; i < mixed.length; i++)
+            {
+                if (DeviceDispatch.equals(mixed[i], mixed[i - 1]))
+                {
+                    count++;
+                }
+            }
+            return count;
+        });
+        runner.add("Dispatch.writeDetailsMixed", FLEET_SIZE, () ->
+        {
+            final StringBuilder text;
+            text = new StringBuilder();
+
+            long length = 0;
+            for (final IDevice device : mixed)
+            {
+                text.setLength(0);
+                try
+                {
+                    device.writeDetails(text);
+                }
+                catch (final IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                length += text.length();
+            }
+            return length;
+        });
+        runner.add("Dispatch.writeDetailsMixedSealed", FLEET_SIZE, () ->
+        {
+            final StringBuilder text;
+            text = new StringBuilder();
+
+            long length = 0;
+            for (final IDevice device : mixed)
+            {
+                text.setLength(0);
+                DeviceDispatch.writeDetails(device, text);
+                length += text.length();
+            }
+            return length;
+        });
+    }
+
+    /*
+     * Sums the hash codes of every device.
+     */
+    private static long sumHashCodes(final IDevice[] devices)
+    {
+        long sum = 0;
+        for (final IDevice device : devices)
+        {
+            sum += device.hashCode();
+        }
+        return sum;
+    }
+
+    /*
+     * Counts the devices that are equal to the device before them.
+     */
+    private static long countEqualNeighbours(final IDevice[] devices)
+    {
+        long count = 0;
+        for (int i = 1; i < devices.length; i++)
+        {
+            if (devices[i].equals(devices[i - 1]))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+}
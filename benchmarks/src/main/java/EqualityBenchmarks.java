@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmarks for {@code equals}/{@code hashCode} under {@link HashMap} and {@link HashSet}
+ * workloads, and for {@link DeviceEqualityIndex} against a {@code HashMap<IDevice, List>}
+ * answering the same "which devices are equal to this one" lookups.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class EqualityBenchmarks
+{
+    private static final int  FLEET_SIZE = 100_000;
+    private static final int  PROBES     = 1_024;
+    private static final long SEED       = 2522L;
+
+    private EqualityBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the equality benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final IDevice[]                    fleet;
+        final IDevice[]                    probes;
+        final Set<IDevice>                 set;
+        final Map<IDevice, List<Integer>>  map;
+        final DeviceEqualityIndex          index;
+
+        fleet  = Fleets.mixed(FLEET_SIZE, SEED);
+        probes = Fleets.mixed(PROBES, SEED + 1);
+        set    = new HashSet<>();
+        map    = new HashMap<>();
+        index  = new DeviceEqualityIndex();
+
+        for (int i = 0; i < fleet.length; i++)
+        {
+            set.add(fleet[i]);
+            map.computeIfAbsent(fleet[i], d -> new ArrayList<>()).add(i);
+            index.add(fleet[i], i);
+        }
+
+        runner.add("Equality.hashSetBuild", FLEET_SIZE, () ->
+        {
+            final Set<IDevice> built;
+            built = new HashSet<>();
+
+            for (final IDevice device : fleet)
+            {
+                built.add(device);
+            }
+            return built.size();
+        });
+        runner.add("Equality.hashSetContains", PROBES, () ->
+        {
+            long found = 0;
+            for (final IDevice probe : probes)
+            {
+                if (set.contains(probe))
+                {
+                    found++;
+                }
+            }
+            return found;
+        });
+        runner.add("Equality.hashMapBuild", FLEET_SIZE, () ->
+        {
+            final Map<IDevice, List<Integer>> built;
+            built = new HashMap<>();
+
+            for (int i = 0; i < fleet.length; i++)
+            {
+                built.computeIfAbsent(fleet[i], d -> new ArrayList<>()).add(i);
+            }
+            return built.size();
+        });
+        runner.add("Equality.indexBuild", FLEET_SIZE, () ->
+        {
+            final DeviceEqualityIndex built;
+            built = new DeviceEqualityIndex();
+
+            for (int i = 0; i < fleet.length; i++)
+            {
+                built.add(fleet[i], i);
+            }
+            return built.countEqual(fleet[0]);
+        });
+        runner.add("Equality.hashMapAllEqual", PROBES, () ->
+        {
+            long sum = 0;
+            for (final IDevice probe : probes)
+            {
+                final List<Integer> ids;
+                ids = map.get(probe);
+
+                if (ids != null)
+                {
+                    for (final int id : ids)
+                    {
+                        sum += id;
+                    }
+                }
+            }
+            return sum;
+        });
+        runner.add("Equality.indexAllEqual", PROBES, () ->
+        {
+            final long[] sum;
+            sum = new long[1];
+
+            for (final IDevice probe : probes)
+            {
+                index.forEachEqual(probe, id -> sum[0] += id);
+            }
+            return sum[0];
+        });
+        registerIPadEquals(runner);
+        registerPhoneHashCode(runner);
+    }
+
+    /*
+     * Hashes phones through their cached hashCode, and by recomputing the hash from the
+     * remaining minutes as hashCode did before it was cached.
+     */
+    private static void registerPhoneHashCode(final BenchmarkRunner runner)
+    {
+        final IPhone[] phones;
+        final Random   random;
+
+        phones = new IPhone[PROBES];
+        random = new Random(SEED);
+
+        for (int i = 0; i < PROBES; i++)
+        {
+            phones[i] = random.nextBoolean() ? Fleets.iPhone(random) : Fleets.iPhone16(random);
+        }
+
+        runner.add("Equality.phoneHashCode", PROBES, () ->
+        {
+            long hash = 0;
+            for (final IPhone phone : phones)
+            {
+                hash += phone.hashCode();
+            }
+            return hash;
+        });
+        runner.add("Equality.phoneHashCodeUncached", PROBES, () ->
+        {
+            long hash = 0;
+            for (final IPhone phone : phones)
+            {
+                hash += phone.computeHashCode();
+            }
+            return hash;
+        });
+    }
+
+    /*
+     * Compares IPads whose OS versions are equal but separate String instances, as they
+     * would be after parsing them from a file.
+     */
+    private static void registerIPadEquals(final BenchmarkRunner runner)
+    {
+        final IPad[] left;
+        final IPad[] right;
+        final Random random;
+
+        left   = new IPad[PROBES];
+        right  = new IPad[PROBES];
+        random = new Random(SEED);
+
+        for (int i = 0; i < PROBES; i++)
+        {
+            final String osVersion;
+            osVersion = Fleets.osVersion(random);
+
+            left[i]  = new IPad(random.nextBoolean(), new String(osVersion));
+            right[i] = new IPad(random.nextBoolean(), new String(osVersion));
+        }
+
+        runner.add("Equality.iPadEquals", PROBES, () ->
+        {
+            long equal = 0;
+            for (int i = 0; i < PROBES; i++)
+            {
+                if (left[i].equals(right[i]))
+                {
+                    equal++;
+                }
+            }
+            return equal;
+        });
+    }
+}
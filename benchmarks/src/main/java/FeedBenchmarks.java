@@ -0,0 +1,145 @@
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmarks for {@link DeviceChangeFeed}, scored per mutation: 1,048,576 volume and case
+ * changes spread over 4,096 IPods and IPads from 1 and 4 threads, with no feed running as a
+ * baseline, and with a feed started before and closed after the changes, so the score
+ * includes delivering the last batch. The feeds coalesce with no window and with a window
+ * of a millisecond, and print how many changes were dropped or coalesced and their lag
+ * when first run.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class FeedBenchmarks
+{
+    private static final int[]  THREAD_COUNTS = {1, 4};
+    private static final long[] WINDOWS       = {0L, 1_000_000L};
+    private static final int    DEVICES       = 4_096;
+    private static final int    MUTATIONS     = 1 << 20;
+
+    private FeedBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the feed benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final IPod[] iPods;
+        final IPad[] iPads;
+
+        iPods = new IPod[DEVICES / 2];
+        iPads = new IPad[DEVICES / 2];
+
+        for (int i = 0; i < iPods.length; i++)
+        {
+            iPods[i] = new IPod(IPod.MAX_VOLUME_DB, i);
+            iPads[i] = new IPad(false, Fleets.OS_VERSIONS[i % Fleets.OS_VERSIONS.length]);
+        }
+
+        for (final int threads : THREAD_COUNTS)
+        {
+            final ExecutorService pool;
+            final String          suffix;
+
+            pool   = Executors.newFixedThreadPool(threads, FeedBenchmarks::daemon);
+            suffix = String.format(Locale.ROOT, ".t%02d", threads);
+
+            runner.add("Feed.off" + suffix, MUTATIONS, () ->
+                ContentionBenchmarks.runOnThreads(pool, threads,
+                                                  thread -> mutate(iPods, iPads, thread, MUTATIONS / threads)));
+            for (final long window : WINDOWS)
+            {
+                final boolean[] reported;
+                reported = new boolean[1];
+
+                runner.add(String.format(Locale.ROOT, "Feed.on.w%dus%s", window / 1_000L, suffix), MUTATIONS, () ->
+                {
+                    final DeviceChangeFeed feed;
+                    final LongAdder        received;
+
+                    feed     = new DeviceChangeFeed(DeviceChangeFeed.DEFAULT_CAPACITY, window,
+                                                    DeviceChangeFeed.DEFAULT_MAX_BATCH);
+                    received = new LongAdder();
+
+                    feed.subscribe(changes -> received.add(changes.size()));
+                    feed.start();
+                    try
+                    {
+                        ContentionBenchmarks.runOnThreads(pool, threads,
+                                                          thread -> mutate(iPods, iPads, thread, MUTATIONS / threads));
+                    }
+                    finally
+                    {
+                        feed.close();
+                    }
+
+                    if (!reported[0])
+                    {
+                        final DeviceChangeFeed.Stats stats;
+                        stats = feed.getStats();
+
+                        System.out.printf(Locale.ROOT,
+                                          "  %d dropped, %d coalesced, %d delivered in %d batches, lag p50 < %d us, p99 < %d us%n",
+                                          stats.getDroppedCount(), stats.getCoalescedCount(),
+                                          stats.getDeliveredCount(), stats.getBatchCount(),
+                                          feed.getLagHistogram().getPercentile(0.5) / 1_000L,
+                                          feed.getLagHistogram().getPercentile(0.99) / 1_000L);
+                        reported[0] = true;
+                    }
+                    return received.sum();
+                });
+            }
+        }
+    }
+
+    /*
+     * Makes one thread's share of the changes, alternating between IPod volumes and IPad
+     * case flags, and returns how many IPods it lowered.
+     */
+    private static long mutate(final IPod[] iPods,
+                               final IPad[] iPads,
+                               final int thread,
+                               final int mutations)
+    {
+        long lowered = 0;
+        for (int i = 0; i < mutations; i++)
+        {
+            final int device;
+            device = (i * 7 + thread) & (iPods.length - 1);
+
+            if ((i & 1) == 0)
+            {
+                iPads[device].setHasCase((i & 2) == 0);
+            }
+            else if ((i & 2) == 0)
+            {
+                iPods[device].setCurrentVolumeDB(IPod.MAX_VOLUME_DB);
+            }
+            else if (iPods[device].clampCurrentVolumeDB(i & 63))
+            {
+                lowered++;
+            }
+        }
+        return lowered;
+    }
+
+    /*
+     * Creates a daemon thread so idle pools do not keep the JVM alive.
+     */
+    private static Thread daemon(final Runnable task)
+    {
+        final Thread thread;
+        thread = new Thread(task);
+
+        thread.setDaemon(true);
+        return thread;
+    }
+}
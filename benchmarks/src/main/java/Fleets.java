@@ -0,0 +1,202 @@
+import java.util.Random;
+
+/**
+ * Builds reproducible fleets of randomly generated devices for the benchmarks.
+ * Every value passes the validation of the matching constructor.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class Fleets
+{
+    static final String[] CARRIERS    = {"Verizon", "T-Mobile", "AT&T", "Rogers", "Bell", "Telus", "Fido", "Koodo"};
+    static final String[] OS_VERSIONS = {"iPadOS 14", "iPadOS 15", "iPadOS 16", "iPadOS 17", "iPadOS 18"};
+
+    private static final int DEVICE_TYPES     = 4;
+    private static final int MAX_MINUTES      = 5_000;
+    private static final int MAX_SONGS        = 10_000;
+    private static final int DISTINCT_MINUTES = 4;
+
+    private Fleets()
+    {
+    }
+
+    /**
+     * Creates a random IPhone.
+     *
+     * @param random the source of randomness
+     * @return a new IPhone
+     */
+    static IPhone iPhone(final Random random)
+    {
+        return new IPhone(minutes(random), carrier(random));
+    }
+
+    /**
+     * Creates a random IPhone16.
+     *
+     * @param random the source of randomness
+     * @return a new IPhone16
+     */
+    static IPhone16 iPhone16(final Random random)
+    {
+        return new IPhone16(minutes(random),
+                            carrier(random),
+                            random.nextBoolean(),
+                            random.nextBoolean() ? IPhone16.MODEL_256_GB : IPhone16.MODEL_512_GB);
+    }
+
+    /**
+     * Creates a random IPod.
+     *
+     * @param random the source of randomness
+     * @return a new IPod
+     */
+    static IPod iPod(final Random random)
+    {
+        return new IPod(volume(random), random.nextInt(MAX_SONGS));
+    }
+
+    /**
+     * Creates a random IPad.
+     *
+     * @param random the source of randomness
+     * @return a new IPad
+     */
+    static IPad iPad(final Random random)
+    {
+        return new IPad(random.nextBoolean(), osVersion(random));
+    }
+
+    /**
+     * Creates a fleet with an even, shuffled mix of all four device types.
+     *
+     * @param size the number of devices
+     * @param seed the random seed
+     * @return the devices
+     */
+    static IDevice[] mixed(final int size,
+                           final long seed)
+    {
+        final Random    random;
+        final IDevice[] devices;
+
+        random  = new Random(seed);
+        devices = new IDevice[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            switch (random.nextInt(DEVICE_TYPES))
+            {
+                case 0 -> devices[i] = iPhone(random);
+                case 1 -> devices[i] = iPhone16(random);
+                case 2 -> devices[i] = iPod(random);
+                default -> devices[i] = iPad(random);
+            }
+        }
+
+        return devices;
+    }
+
+    /**
+     * Creates a fleet of IPods only.
+     *
+     * @param size the number of devices
+     * @param seed the random seed
+     * @return the devices
+     */
+    static IDevice[] iPods(final int size,
+                           final long seed)
+    {
+        final Random    random;
+        final IDevice[] devices;
+
+        random  = new Random(seed);
+        devices = new IDevice[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            devices[i] = iPod(random);
+        }
+
+        return devices;
+    }
+
+    /**
+     * Creates a registry with an even mix of all four device types, added column by column
+     * without creating device objects.
+     *
+     * @param size the number of devices
+     * @param seed the random seed
+     * @return the registry
+     */
+    static DeviceRegistry registry(final int size,
+                                   final long seed)
+    {
+        final Random         random;
+        final DeviceRegistry registry;
+
+        random   = new Random(seed);
+        registry = new DeviceRegistry();
+
+        for (int i = 0; i < size; i++)
+        {
+            switch (random.nextInt(DEVICE_TYPES))
+            {
+                case 0 -> registry.addIPhone(minutes(random), carrier(random));
+                case 1 -> registry.addIPhone16(minutes(random),
+                                               carrier(random),
+                                               random.nextBoolean(),
+                                               random.nextBoolean() ? IPhone16.MODEL_256_GB : IPhone16.MODEL_512_GB);
+                case 2 -> registry.addIPod(volume(random), random.nextInt(MAX_SONGS));
+                default -> registry.addIPad(random.nextBoolean(), osVersion(random));
+            }
+        }
+
+        return registry;
+    }
+
+    /**
+     * Returns a random whole number of plan minutes, at least the required minimum.
+     *
+     * @param random the source of randomness
+     * @return the minutes
+     */
+    static double minutes(final Random random)
+    {
+        return IPhone.MIN_MINUTES_REQUIRED + random.nextInt(MAX_MINUTES) + random.nextInt(DISTINCT_MINUTES) / 4.0;
+    }
+
+    /**
+     * Returns a random volume within the allowed range.
+     *
+     * @param random the source of randomness
+     * @return the volume in dB
+     */
+    static double volume(final Random random)
+    {
+        return IPod.MIN_VOLUME_DB + random.nextDouble() * (IPod.MAX_VOLUME_DB - IPod.MIN_VOLUME_DB);
+    }
+
+    /**
+     * Returns a random carrier name.
+     *
+     * @param random the source of randomness
+     * @return the carrier
+     */
+    static String carrier(final Random random)
+    {
+        return CARRIERS[random.nextInt(CARRIERS.length)];
+    }
+
+    /**
+     * Returns a random OS version.
+     *
+     * @param random the source of randomness
+     * @return the OS version
+     */
+    static String osVersion(final Random random)
+    {
+        return OS_VERSIONS[random.nextInt(OS_VERSIONS.length)];
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmarks for {@link DeviceHistory} over a week of minute-by-minute snapshots of 1,000
+ * devices, scored per point. Two kinds of series are generated: plan minutes that stay put
+ * between calls and drain by one each minute during them, and IPod volumes that sit at a
+ * level and are turned up or down in half decibel steps now and then. A third of the
+ * snapshots are taken a few milliseconds late. Each kind is appended, decoded in full, and
+ * downsampled into hourly aggregates, and {@code raw} sums the same points from plain
+ * arrays as a baseline for decoding. The append cases print the compression ratio when
+ * first run.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class HistoryBenchmarks
+{
+    private static final int    DEVICES          = 1_000;
+    private static final int    POINTS           = 7 * 24 * 60;
+    private static final long   START_MILLIS     = 1_700_000_000_000L;
+    private static final long   MINUTE_MILLIS    = 60_000L;
+    private static final long   HOUR_MILLIS      = 60 * MINUTE_MILLIS;
+    private static final double CALL_CHANCE      = 0.02;
+    private static final double ADJUST_CHANCE    = 0.01;
+    private static final double LATE_CHANCE      = 1.0 / 3.0;
+    private static final int    MAX_LATE_MILLIS  = 5;
+    private static final int    MAX_CALL_MINUTES = 30;
+    private static final long   SEED             = 2522L;
+
+    private HistoryBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the history benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<Points> minutes;
+        final Lazy<Points> volumes;
+
+        minutes = new Lazy<>(() -> Points.generate(true));
+        volumes = new Lazy<>(() -> Points.generate(false));
+
+        register(runner, "minutes", minutes);
+        register(runner, "volume", volumes);
+    }
+
+    /*
+     * Registers the cases for one kind of series.
+     */
+    private static void register(final BenchmarkRunner runner,
+                                 final String kind,
+                                 final Lazy<Points> points)
+    {
+        final Lazy<DeviceHistory> history;
+        final boolean[]           reported;
+
+        history  = new Lazy<>(() -> points.get().append());
+        reported = new boolean[1];
+
+        runner.add("History.append." + kind, DEVICES * POINTS, () ->
+        {
+            final DeviceHistory appended;
+            appended = points.get().append();
+
+            if (!reported[0])
+            {
+                System.out.printf(Locale.ROOT, "  %s: %.2f bytes per point, %.1fx smaller than raw%n", kind,
+                                  (double) appended.getCompressedBytes() / appended.getPointCount(),
+                                  appended.getCompressionRatio());
+                reported[0] = true;
+            }
+            return appended.getPointCount();
+        });
+        runner.add("History.raw." + kind, DEVICES * POINTS, () ->
+        {
+            final double[] sum;
+            sum = new double[1];
+
+            for (int device = 0; device < DEVICES; device++)
+            {
+                final long[]   times;
+                final double[] values;
+
+                times  = points.get().times[device];
+                values = points.get().values[device];
+
+                for (int i = 0; i < POINTS; i++)
+                {
+                    sum[0] += values[i] + times[i];
+                }
+            }
+            return (long) sum[0];
+        });
+        runner.add("History.decode." + kind, DEVICES * POINTS, () ->
+        {
+            final double[] sum;
+            sum = new double[1];
+
+            for (int device = 0; device < DEVICES; device++)
+            {
+                history.get().read(device, Long.MIN_VALUE, Long.MAX_VALUE,
+                                   (timestampMillis, value) -> sum[0] += value + timestampMillis);
+            }
+            return (long) sum[0];
+        });
+        runner.add("History.hourly." + kind, DEVICES * POINTS, () ->
+        {
+            long buckets;
+            buckets = 0;
+
+            for (int device = 0; device < DEVICES; device++)
+            {
+                buckets += history.get().aggregate(device, START_MILLIS, Long.MAX_VALUE, HOUR_MILLIS).size();
+            }
+            return buckets;
+        });
+    }
+
+    /*
+     * Every device's timestamps and values, as they would be kept without compression.
+     */
+    private static final class Points
+    {
+        private final long[][]   times;
+        private final double[][] values;
+
+        private Points()
+        {
+            times  = new long[DEVICES][POINTS];
+            values = new double[DEVICES][POINTS];
+        }
+
+        /*
+         * Generates plan minute series if minutes is true, otherwise volume series.
+         */
+        private static Points generate(final boolean minutes)
+        {
+            final Random random;
+            final Points points;
+
+            random = new Random(SEED);
+            points = new Points();
+
+            for (int device = 0; device < DEVICES; device++)
+            {
+                double value;
+                int    callLeft;
+
+                value    = minutes ? 100 + random.nextInt(4_900) : Math.floor(random.nextDouble() * 200) / 2;
+                callLeft = 0;
+
+                for (int i = 0; i < POINTS; i++)
+                {
+                    points.times[device][i] = START_MILLIS + i * MINUTE_MILLIS +
+                                              (random.nextDouble() < LATE_CHANCE ? random.nextInt(MAX_LATE_MILLIS) : 0);
+
+                    if (minutes)
+                    {
+                        if (callLeft == 0 && random.nextDouble() < CALL_CHANCE)
+                        {
+                            callLeft = 1 + random.nextInt(MAX_CALL_MINUTES);
+                        }
+                        if (callLeft > 0 && value > 1.0)
+                        {
+                            value--;
+                            callLeft--;
+                        }
+                    }
+                    else if (random.nextDouble() < ADJUST_CHANCE)
+                    {
+                        value = Math.max(IPod.MIN_VOLUME_DB,
+                                         Math.min(IPod.MAX_VOLUME_DB, value + (random.nextInt(9) - 4) * 0.5));
+                    }
+                    points.values[device][i] = value;
+                }
+            }
+
+            return points;
+        }
+
+        /*
+         * Appends every point to a new history.
+         */
+        private DeviceHistory append()
+        {
+            final DeviceHistory history;
+            history = new DeviceHistory();
+
+            for (int device = 0; device < DEVICES; device++)
+            {
+                final DeviceHistory.Series series;
+                series = history.series(device);
+
+                for (int i = 0; i < POINTS; i++)
+                {
+                    series.append(times[device][i], values[device][i]);
+                }
+            }
+
+            return history;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks for {@link DeviceJournal}: how many changes per second it can record without
+ * syncing, syncing in batches, and with many threads each syncing every change so group
+ * commit can share forces between them; and how long recovering a fleet from a checkpoint
+ * and a log tail takes.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class JournalBenchmarks
+{
+    private static final int[] THREAD_COUNTS    = {1, 4, 16};
+    private static final int   FLEET_SIZE       = 65_536;
+    private static final int   BATCH            = 16_384;
+    private static final int   SYNC_EVERY       = 1_024;
+    private static final int   SYNCS_PER_THREAD = 64;
+    private static final int   RECOVERY_DEVICES = 1_000_000;
+    private static final int   RECOVERY_CHANGES = 1_000_000;
+    private static final long  SEED             = 2522L;
+
+    private JournalBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the journal benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<DeviceJournal> journal;
+        final Lazy<Path>          recoveryDirectory;
+        final ExecutorService     pool;
+
+        journal           = new Lazy<>(() -> journal(FLEET_SIZE));
+        recoveryDirectory = new Lazy<>(JournalBenchmarks::recoveryDirectory);
+        pool              = Executors.newCachedThreadPool(JournalBenchmarks::daemon);
+
+        runner.add("Journal.setHasCase", BATCH, () ->
+        {
+            try
+            {
+                return changes(journal.get(), 0, BATCH, 0);
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+        runner.add("Journal.setHasCaseSync" + SYNC_EVERY, BATCH, () ->
+        {
+            try
+            {
+                return changes(journal.get(), 0, BATCH, SYNC_EVERY);
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+        for (final int threads : THREAD_COUNTS)
+        {
+            runner.add(String.format("Journal.groupCommit.t%02d", threads), threads * SYNCS_PER_THREAD, () ->
+            {
+                final DeviceJournal target;
+                target = journal.get();
+
+                return ContentionBenchmarks.runOnThreads(pool, threads, thread ->
+                {
+                    try
+                    {
+                        return changes(target, thread, SYNCS_PER_THREAD, 1);
+                    }
+                    catch (final IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            });
+        }
+        runner.add("Journal.recover.1M", RECOVERY_DEVICES + RECOVERY_CHANGES, () ->
+        {
+            try (final DeviceJournal recovered = DeviceJournal.open(recoveryDirectory.get()))
+            {
+                return recovered.size();
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /*
+     * Toggles the case of count iPads, starting from a different device for each thread,
+     * and syncs every syncEvery changes, or never if it is 0.
+     */
+    private static long changes(final DeviceJournal journal,
+                                final int thread,
+                                final int count,
+                                final int syncEvery) throws IOException
+    {
+        for (int i = 0; i < count; i++)
+        {
+            // Even ids are iPads
+            journal.setHasCase(((thread * count + i) * 2) & (FLEET_SIZE - 1), (i & 1) == 0);
+            if (syncEvery > 0 && (i + 1) % syncEvery == 0)
+            {
+                journal.sync();
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Creates a journal in a new temporary directory holding alternating iPads and iPods.
+     */
+    private static DeviceJournal journal(final int size)
+    {
+        try
+        {
+            final DeviceJournal journal;
+            final Random        random;
+
+            journal = DeviceJournal.open(temporaryDirectory());
+            random  = new Random(SEED);
+
+            for (int i = 0; i < size; i += 2)
+            {
+                journal.add(Fleets.iPad(random));
+                journal.add(Fleets.iPod(random));
+            }
+            journal.sync();
+
+            return journal;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Creates a journal directory whose fleet must be recovered from a checkpoint of
+     * RECOVERY_DEVICES devices and a log of RECOVERY_CHANGES changes.
+     */
+    private static Path recoveryDirectory()
+    {
+        try
+        {
+            final Path   directory;
+            final Random random;
+
+            directory = temporaryDirectory();
+            random    = new Random(SEED);
+
+            try (final DeviceJournal journal = DeviceJournal.open(directory, Long.MAX_VALUE))
+            {
+                for (int i = 0; i < RECOVERY_DEVICES; i += 2)
+                {
+                    journal.add(Fleets.iPad(random));
+                    journal.add(Fleets.iPod(random));
+                }
+                journal.checkpoint();
+
+                for (int i = 0; i < RECOVERY_CHANGES; i += 2)
+                {
+                    journal.setHasCase(i, random.nextBoolean());
+                    journal.setCurrentVolumeDB(i + 1, Fleets.volume(random));
+                }
+            }
+
+            return directory;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Creates a temporary directory that is deleted with its contents when the JVM exits.
+     */
+    private static Path temporaryDirectory() throws IOException
+    {
+        final Path directory;
+        directory = Files.createTempDirectory("journal");
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            try (final Stream<Path> files = Files.walk(directory))
+            {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+            catch (final IOException e)
+            {
+                // Nothing more can be done while the JVM exits
+            }
+        }));
+
+        return directory;
+    }
+
+    /*
+     * Creates a daemon thread so the pool does not keep the JVM alive.
+     */
+    private static Thread daemon(final Runnable task)
+    {
+        final Thread thread;
+        thread = new Thread(task);
+
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.function.Supplier;
+
+/**
+ * A value that is built the first time it is needed, so large fleets are only created
+ * when a benchmark that uses them runs.
+ *
+ * @param <T> the type of the value
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class Lazy<T>
+{
+    private final Supplier<T> factory;
+    private T                 value;
+
+    /**
+     * Constructs a Lazy value.
+     *
+     * @param factory builds the value when it is first needed
+     */
+    Lazy(final Supplier<T> factory)
+    {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the value, building it on the first call.
+     *
+     * @return the value
+     */
+    synchronized T get()
+    {
+        if (value == null)
+        {
+            value = factory.get();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmarks for {@link DeviceLoader} reading a generated inventory file, either into
+ * device objects or straight into a {@link DeviceRegistry}. Scores are per record, so
+ * records per second is one billion divided by the score.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class LoadingBenchmarks
+{
+    private static final int  RECORDS     = 500_000;
+    private static final long SEED        = 2522L;
+    private static final int  CHUNK_BYTES = 1 << 20;
+
+    private LoadingBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the loading benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Path         file;
+        final DeviceLoader loader;
+
+        file   = writeInventory(RECORDS, SEED);
+        loader = new DeviceLoader(ForkJoinPool.commonPool(), CHUNK_BYTES);
+
+        runner.add("Loading.toObjects", RECORDS, () -> load(loader, file, false));
+        runner.add("Loading.toRegistry", RECORDS, () -> load(loader, file, true));
+    }
+
+    /*
+     * Loads the file and returns the number of records loaded.
+     */
+    private static long load(final DeviceLoader loader,
+                             final Path file,
+                             final boolean registry)
+    {
+        try
+        {
+            if (registry)
+            {
+                return loader.load(file, DeviceRegistry::new).getRecords();
+            }
+            return loader.load(file, DeviceListSink::new).getRecords();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a temporary inventory file of random devices in the {@link DeviceLoader} format.
+     *
+     * @param records the number of records to write
+     * @param seed    the random seed
+     * @return the file, deleted when the JVM exits
+     */
+    static Path writeInventory(final int records,
+                               final long seed)
+    {
+        try
+        {
+            final Path   file;
+            final Random random;
+
+            file   = Files.createTempFile("inventory", ".csv");
+            random = new Random(seed);
+            file.toFile().deleteOnExit();
+
+            try (final Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+            {
+                for (final IDevice device : Fleets.mixed(records, random.nextLong()))
+                {
+                    out.write(toRecord(device));
+                    out.write('\n');
+                }
+            }
+
+            return file;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Formats a device as one inventory record.
+     */
+    private static String toRecord(final IDevice device)
+    {
+        if (device instanceof IPhone16)
+        {
+            final IPhone16 iPhone16;
+            iPhone16 = (IPhone16) device;
+
+            return "IPhone16," + iPhone16.getRemainingPlanMinutes() + "," + iPhone16.getPlanCarrier() + ","
+                   + iPhone16.isHighResCamera() + "," + iPhone16.getMemoryGigabytes();
+        }
+        if (device instanceof IPhone)
+        {
+            final IPhone iPhone;
+            iPhone = (IPhone) device;
+
+            return "IPhone," + iPhone.getRemainingPlanMinutes() + "," + iPhone.getPlanCarrier();
+        }
+        if (device instanceof IPod)
+        {
+            final IPod iPod;
+            iPod = (IPod) device;
+
+            return "IPod," + iPod.getCurrentVolumeDB() + "," + iPod.getNumSongsStored();
+        }
+
+        final IPad iPad;
+        iPad = (IPad) device;
+
+        return "IPad," + iPad.hasCase() + "," + iPad.getOSVersion();
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Benchmarks for the cost of {@link DeviceMetrics} on the instrumented device operations:
+ * construction, {@code equals}, {@code hashCode}, {@code printDetails} and rejected values.
+ * <p>
+ * Whether metrics are recorded is fixed when the JVM starts, so each case is named with an
+ * {@code .on} or {@code .off} suffix. Run the suite once as usual and once with
+ * {@code -Ddevices.metrics=true}, and compare the two to see the overhead.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class MetricsBenchmarks
+{
+    private static final int    FLEET_SIZE     = 10_000;
+    private static final int    BATCH          = 1_000;
+    private static final long   SEED           = 2522L;
+    private static final double INVALID_VOLUME = 150.0;
+    private static final int    SONGS          = 200;
+
+    private MetricsBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the metrics benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final String        suffix;
+        final IDevice[]     fleet;
+        final IDevice[]     copies;
+        final PrintStream   discard;
+        final DeviceFactory factory;
+
+        suffix  = DeviceMetrics.isEnabled() ? ".on" : ".off";
+        fleet   = Fleets.mixed(FLEET_SIZE, SEED);
+        copies  = Fleets.mixed(FLEET_SIZE, SEED);
+        discard = new PrintStream(OutputStream.nullOutputStream());
+        factory = new DeviceFactory(new ViolationCounts());
+
+        runner.add("Metrics.construct" + suffix, BATCH, () ->
+        {
+            long songs = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                songs += new IPod(i % 100, SONGS).getNumSongsStored();
+            }
+            return songs;
+        });
+        runner.add("Metrics.equals" + suffix, FLEET_SIZE, () ->
+        {
+            long equal = 0;
+            for (int i = 0; i < FLEET_SIZE; i++)
+            {
+                if (fleet[i].equals(copies[i]))
+                {
+                    equal++;
+                }
+            }
+            return equal;
+        });
+        runner.add("Metrics.hashCode" + suffix, FLEET_SIZE, () ->
+        {
+            long hash = 0;
+            for (final IDevice device : fleet)
+            {
+                hash += device.hashCode();
+            }
+            return hash;
+        });
+        runner.add("Metrics.printDetails" + suffix, BATCH, () ->
+        {
+            final PrintStream out;
+            out = System.out;
+
+            System.setOut(discard);
+            try
+            {
+                for (int i = 0; i < BATCH; i++)
+                {
+                    fleet[i].printDetails();
+                }
+            }
+            finally
+            {
+                System.setOut(out);
+            }
+            return BATCH;
+        });
+        runner.add("Metrics.invalidFactory" + suffix, BATCH, () ->
+        {
+            long rejected = 0;
+            for (int i = 0; i < BATCH; i++)
+            {
+                if (factory.createIPod(INVALID_VOLUME, SONGS) == null)
+                {
+                    rejected++;
+                }
+            }
+            return rejected;
+        });
+    }
+}
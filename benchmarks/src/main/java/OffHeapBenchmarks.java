@@ -0,0 +1,182 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Benchmarks for {@link OffHeapDeviceStore} against device objects on the heap.
+ * <ul>
+ *     <li>{@code fullGcOnHeap} and {@code fullGcOffHeap} time a full collection while a fleet
+ *         of 5 million devices is held as objects or in the store; the score is the pause
+ *         per collection</li>
+ *     <li>{@code scan} cases sum a field over 1 million devices, per device</li>
+ *     <li>{@code pointLookup}, {@code clampInPlace} and {@code materialize} read, update or
+ *         create one random IPod, per IPod</li>
+ * </ul>
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class OffHeapBenchmarks
+{
+    private static final int  GC_FLEET   = 5_000_000;
+    private static final int  SCAN_FLEET = 1_000_000;
+    private static final int  PROBES     = 1_024;
+    private static final long SEED       = 2522L;
+
+    private OffHeapBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the off-heap benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final GcFleet                  gcFleet;
+        final Lazy<IDevice[]>          objects;
+        final Lazy<OffHeapDeviceStore> store;
+        final Lazy<int[]>              probes;
+
+        gcFleet = new GcFleet();
+        objects = new Lazy<>(() -> Fleets.mixed(SCAN_FLEET, SEED));
+        store   = new Lazy<>(() -> store(objects.get()));
+        probes  = new Lazy<>(() -> new Random(SEED).ints(PROBES, 0, store.get().getIPodCount()).toArray());
+
+        runner.add("OffHeap.fullGcOnHeap.5M", 1, () ->
+        {
+            gcFleet.holdOnHeap();
+            return fullGc();
+        });
+        runner.add("OffHeap.fullGcOffHeap.5M", 1, () ->
+        {
+            gcFleet.holdOffHeap();
+            return fullGc();
+        });
+        runner.add("OffHeap.scanObjects", SCAN_FLEET, () ->
+        {
+            long songs = 0;
+            for (final IDevice device : objects.get())
+            {
+                if (device instanceof IPod)
+                {
+                    songs += ((IPod) device).getNumSongsStored();
+                }
+            }
+            return songs;
+        });
+        runner.add("OffHeap.scanStore", SCAN_FLEET, () ->
+        {
+            final long[] songs;
+            songs = new long[1];
+
+            store.get().scanIPods((index, currentVolumeDB, numSongsStored) -> songs[0] += numSongsStored);
+            return songs[0];
+        });
+        runner.add("OffHeap.pointLookup", PROBES, () ->
+        {
+            final OffHeapDeviceStore iPods;
+            double                   sum;
+
+            iPods = store.get();
+            sum   = 0;
+            for (final int index : probes.get())
+            {
+                sum += iPods.getIPodCurrentVolumeDB(index);
+            }
+            return (long) sum;
+        });
+        runner.add("OffHeap.clampInPlace", PROBES, () ->
+        {
+            final OffHeapDeviceStore iPods;
+            long                     lowered;
+
+            iPods   = store.get();
+            lowered = 0;
+            for (final int index : probes.get())
+            {
+                iPods.setIPodCurrentVolumeDB(index, IPod.MAX_VOLUME_DB);
+                if (iPods.clampIPodCurrentVolumeDB(index, index & 63))
+                {
+                    lowered++;
+                }
+            }
+            return lowered;
+        });
+        runner.add("OffHeap.materialize", PROBES, () ->
+        {
+            final OffHeapDeviceStore iPods;
+            long                     hash;
+
+            iPods = store.get();
+            hash  = 0;
+            for (final int index : probes.get())
+            {
+                hash += iPods.toIPod(index).hashCode();
+            }
+            return hash;
+        });
+    }
+
+    /*
+     * Copies devices into a new store.
+     */
+    private static OffHeapDeviceStore store(final IDevice[] devices)
+    {
+        final OffHeapDeviceStore store;
+        store = new OffHeapDeviceStore();
+
+        for (final IDevice device : devices)
+        {
+            store.add(device);
+        }
+
+        return store;
+    }
+
+    /*
+     * Runs a full collection and returns the number of collections seen so far.
+     */
+    private static long fullGc()
+    {
+        long collections;
+        collections = 0;
+
+        System.gc();
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            collections += collector.getCollectionCount();
+        }
+
+        return collections;
+    }
+
+    /*
+     * Holds the GC fleet either as objects or in a store, never both, so each full
+     * collection only sees one of them.
+     */
+    private static final class GcFleet
+    {
+        private IDevice[]          objects;
+        private OffHeapDeviceStore store;
+
+        private void holdOnHeap()
+        {
+            if (objects == null)
+            {
+                store   = null;
+                objects = Fleets.mixed(GC_FLEET, SEED);
+            }
+        }
+
+        private void holdOffHeap()
+        {
+            if (store == null)
+            {
+                objects = null;
+                store   = OffHeapBenchmarks.store(Fleets.mixed(GC_FLEET, SEED));
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToLongFunction;
+
+/**
+ * Benchmarks for {@link FleetQuery} over registries of 1 million and 100 million devices.
+ * Scores are per device in the registry, whatever the query matches.
+ * The 1 million device cases also run the same carrier totals as an ad-hoc
+ * {@code instanceof} loop over device objects and as a query on a single-threaded pool.
+ * <p>
+ * The 100 million device registry needs about 2GB of heap, so run it with {@code -Xmx4g}.
+ * Registries are only built when a benchmark that uses them runs.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class QueryBenchmarks
+{
+    private static final int  SMALL_FLEET = 1_000_000;
+    private static final int  LARGE_FLEET = 100_000_000;
+    private static final long SEED        = 2522L;
+
+    private QueryBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the query benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        registerQueries(runner, "1M", SMALL_FLEET);
+        registerQueries(runner, "100M", LARGE_FLEET);
+
+        final Lazy<FleetQuery> serial;
+        final Lazy<IDevice[]>  objects;
+
+        serial  = query(SMALL_FLEET, new ForkJoinPool(1));
+        objects = new Lazy<>(() -> Fleets.mixed(SMALL_FLEET, SEED));
+
+        runner.add("Query.serialMinutesByCarrier.1M", SMALL_FLEET, () ->
+            serial.get().iPhones().minutesByCarrier().size());
+        runner.add("Query.loopMinutesByCarrier.1M", SMALL_FLEET, () ->
+        {
+            final Map<String, Double> totals;
+            totals = new HashMap<>();
+
+            for (final IDevice device : objects.get())
+            {
+                if (device instanceof IPhone)
+                {
+                    final IPhone iPhone;
+                    iPhone = (IPhone) device;
+
+                    totals.merge(iPhone.getPlanCarrier(), iPhone.getRemainingPlanMinutes(), Double::sum);
+                }
+            }
+            return totals.size();
+        });
+    }
+
+    /*
+     * Registers the queries over a lazily built registry of the given size.
+     */
+    private static void registerQueries(final BenchmarkRunner runner,
+                                        final String label,
+                                        final int size)
+    {
+        final Lazy<FleetQuery> query;
+        query = query(size, ForkJoinPool.commonPool());
+
+        add(runner, "Query.minutesByCarrier." + label, size, query,
+            q -> q.iPhones().minutesByCarrier().size());
+        add(runner, "Query.filteredCount." + label, size, query,
+            q -> q.iPhones().whereCarrier(Fleets.CARRIERS[0]).whereMinutes(m -> m > 1_000).count());
+        add(runner, "Query.countByMemory." + label, size, query,
+            q -> q.iPhone16s().countByMemoryGigabytes().size());
+        add(runner, "Query.volumeHistogram." + label, size, query,
+            q -> q.iPods().volumeHistogram(IPod.MIN_VOLUME_DB, IPod.MAX_VOLUME_DB, 20).getTotal());
+        add(runner, "Query.osVersions." + label, size, query,
+            q -> q.iPads().countByOSVersion().size());
+    }
+
+    /*
+     * Returns a query over a registry of random devices that is built the first time it is needed.
+     */
+    private static Lazy<FleetQuery> query(final int size,
+                                          final ForkJoinPool pool)
+    {
+        return new Lazy<>(() -> new FleetQuery(Fleets.registry(size, SEED), pool));
+    }
+
+    /*
+     * Registers one query benchmark.
+     */
+    private static void add(final BenchmarkRunner runner,
+                            final String name,
+                            final int size,
+                            final Lazy<FleetQuery> query,
+                            final ToLongFunction<FleetQuery> workload)
+    {
+        runner.add(name, size, () -> workload.applyAsLong(query.get()));
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Random;
+
+/**
+ * Benchmarks for {@link DoubleRangeIndex} over 1 million and 100 million random plan
+ * minutes: counting the minutes below a threshold, finding a percentile and walking the
+ * ids in a one-minute range, each scored per query, against counting with a scan of the
+ * minutes column; adding a batch of minutes to the full index, scored per minute added;
+ * and building an index of a million minutes in bulk or one minute at a time.
+ * <p>
+ * Building the 100 million minute index needs about 3.5GB of heap, so run it with
+ * {@code -Xmx4g}. Indexes are only built when a benchmark that uses them runs.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class RangeIndexBenchmarks
+{
+    private static final int  SMALL_INDEX = 1_000_000;
+    private static final int  LARGE_INDEX = 100_000_000;
+    private static final int  QUERIES     = 1_024;
+    private static final int  ADD_BATCH   = 65_536;
+    private static final long SEED        = 2522L;
+
+    private RangeIndexBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the range index benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final double[]       thresholds;
+        final Lazy<double[]> values;
+        final Random         random;
+
+        thresholds = new double[QUERIES];
+        values     = new Lazy<>(() -> minutes(SMALL_INDEX, SEED));
+        random     = new Random(SEED + 1);
+
+        for (int i = 0; i < QUERIES; i++)
+        {
+            thresholds[i] = Fleets.minutes(random);
+        }
+
+        registerQueries(runner, "1M", SMALL_INDEX, thresholds);
+        registerQueries(runner, "100M", LARGE_INDEX, thresholds);
+
+        runner.add("RangeIndex.build.1M", SMALL_INDEX, () ->
+            DoubleRangeIndex.of(values.get(), SMALL_INDEX).size());
+        runner.add("RangeIndex.addEach.1M", SMALL_INDEX, () ->
+        {
+            final double[]         minutes;
+            final DoubleRangeIndex index;
+
+            minutes = values.get();
+            index   = new DoubleRangeIndex();
+
+            for (int i = 0; i < SMALL_INDEX; i++)
+            {
+                index.add(minutes[i], i);
+            }
+            return index.size();
+        });
+    }
+
+    /*
+     * Registers the queries over a lazily built index of the given size.
+     */
+    private static void registerQueries(final BenchmarkRunner runner,
+                                        final String label,
+                                        final int size,
+                                        final double[] thresholds)
+    {
+        final Lazy<Indexed> indexed;
+        final Random        random;
+
+        indexed = new Lazy<>(() -> new Indexed(minutes(size, SEED)));
+        random  = new Random(SEED + 2);
+
+        runner.add("RangeIndex.countBelow." + label, QUERIES, () ->
+        {
+            final DoubleRangeIndex index;
+            long                   total;
+
+            index = indexed.get().index;
+            total = 0;
+
+            for (final double threshold : thresholds)
+            {
+                total += index.countBelow(threshold);
+            }
+            return total;
+        });
+        runner.add("RangeIndex.percentile." + label, QUERIES, () ->
+        {
+            final DoubleRangeIndex index;
+            double                 total;
+
+            index = indexed.get().index;
+            total = 0;
+
+            for (int i = 0; i < QUERIES; i++)
+            {
+                total += index.getPercentile((double) i / QUERIES);
+            }
+            return (long) total;
+        });
+        runner.add("RangeIndex.iterateMinute." + label, QUERIES, () ->
+        {
+            final DoubleRangeIndex index;
+            final long[]           total;
+
+            index = indexed.get().index;
+            total = new long[1];
+
+            for (final double threshold : thresholds)
+            {
+                index.forEachBetween(threshold, threshold + 1.0, id -> total[0] += id);
+            }
+            return total[0];
+        });
+        runner.add("RangeIndex.scanCountBelow." + label, 1, () ->
+        {
+            final double[] minutes;
+            final double   threshold;
+            long           count;
+
+            minutes   = indexed.get().values;
+            threshold = thresholds[random.nextInt(QUERIES)];
+            count     = 0;
+
+            for (final double value : minutes)
+            {
+                if (value < threshold)
+                {
+                    count++;
+                }
+            }
+            return count;
+        });
+        runner.add("RangeIndex.addInto." + label, ADD_BATCH, () ->
+        {
+            final DoubleRangeIndex index;
+            index = indexed.get().index;
+
+            for (int i = 0; i < ADD_BATCH; i++)
+            {
+                index.add(Fleets.minutes(random), index.size());
+            }
+            return index.size();
+        });
+    }
+
+    /*
+     * Returns size random plan minutes.
+     */
+    private static double[] minutes(final int size,
+                                    final long seed)
+    {
+        final double[] minutes;
+        final Random   random;
+
+        minutes = new double[size];
+        random  = new Random(seed);
+
+        for (int i = 0; i < size; i++)
+        {
+            minutes[i] = Fleets.minutes(random);
+        }
+
+        return minutes;
+    }
+
+    /*
+     * A column of minutes and an index built from it.
+     */
+    private static final class Indexed
+    {
+        private final double[]         values;
+        private final DoubleRangeIndex index;
+
+        private Indexed(final double[] values)
+        {
+            this.values = values;
+            this.index  = DoubleRangeIndex.of(values, values.length);
+        }
+    }
+}
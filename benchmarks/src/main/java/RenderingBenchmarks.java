@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmarks for rendering device details with the cached {@code toString}, with
+ * {@link IDevice#writeDetails(Appendable)} into a reused buffer, and in bulk through
+ * {@link DeviceDetailsWriter}. The {@code toStringUncached} case builds each String from
+ * {@code writeDetails} as {@code toString} did before it was cached, and the IPad and IPod
+ * cases change the device between renderings so the cache has to be refreshed.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class RenderingBenchmarks
+{
+    private static final int  FLEET_SIZE = 10_000;
+    private static final long SEED       = 2522L;
+
+    private RenderingBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the rendering benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final IDevice[]           fleet;
+        final IPad[]              iPads;
+        final IPod[]              iPods;
+        final StringBuilder       buffer;
+        final CountingChannel     channel;
+        final DeviceDetailsWriter writer;
+        final Random              random;
+
+        fleet   = Fleets.mixed(FLEET_SIZE, SEED);
+        iPads   = new IPad[FLEET_SIZE];
+        iPods   = new IPod[FLEET_SIZE];
+        buffer  = new StringBuilder();
+        channel = new CountingChannel();
+        writer  = new DeviceDetailsWriter(channel);
+        random  = new Random(SEED);
+
+        for (int i = 0; i < FLEET_SIZE; i++)
+        {
+            iPads[i] = Fleets.iPad(random);
+            iPods[i] = Fleets.iPod(random);
+        }
+
+        runner.add("Rendering.toString", FLEET_SIZE, () ->
+        {
+            long length = 0;
+            for (final IDevice device : fleet)
+            {
+                length += device.toString().length();
+            }
+            return length;
+        });
+        runner.add("Rendering.toStringUncached", FLEET_SIZE, () ->
+        {
+            long length = 0;
+            for (final IDevice device : fleet)
+            {
+                final StringBuilder details;
+                details = new StringBuilder();
+
+                try
+                {
+                    device.writeDetails(details);
+                }
+                catch (final IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                length += details.toString().length();
+            }
+            return length;
+        });
+        runner.add("Rendering.iPadToggleCase", FLEET_SIZE, () ->
+        {
+            long length = 0;
+            for (final IPad iPad : iPads)
+            {
+                iPad.setHasCase(!iPad.hasCase());
+                length += iPad.toString().length();
+            }
+            return length;
+        });
+        runner.add("Rendering.iPodChangeVolume", FLEET_SIZE, () ->
+        {
+            long length = 0;
+            for (final IPod iPod : iPods)
+            {
+                iPod.setCurrentVolumeDB(IPod.MAX_VOLUME_DB - iPod.getCurrentVolumeDB());
+                length += iPod.toString().length();
+            }
+            return length;
+        });
+        runner.add("Rendering.writeDetails", FLEET_SIZE, () ->
+        {
+            long length = 0;
+            for (final IDevice device : fleet)
+            {
+                buffer.setLength(0);
+                try
+                {
+                    device.writeDetails(buffer);
+                }
+                catch (final IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                length += buffer.length();
+            }
+            return length;
+        });
+        runner.add("Rendering.bulkWriter", FLEET_SIZE, () ->
+        {
+            try
+            {
+                writer.writeAll(Arrays.asList(fleet));
+                writer.flush();
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            return channel.written;
+        });
+    }
+
+    /*
+     * A channel that discards what it is given and counts the bytes.
+     */
+    private static final class CountingChannel implements WritableByteChannel
+    {
+        private long written;
+
+        @Override
+        public int write(final ByteBuffer source)
+        {
+            final int length;
+            length = source.remaining();
+
+            source.position(source.limit());
+            written += length;
+
+            return length;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
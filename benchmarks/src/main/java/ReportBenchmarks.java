@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Benchmarks for {@link DeviceReportRunner} reporting on 100,000 devices, scored per device:
+ * rendering on one thread into the same chunks as a baseline, the runner with 1 to 8
+ * renderers and a sink that only counts characters, and the runner with a sink that takes
+ * a tenth of a millisecond per chunk, so the renderers are held back by backpressure. The
+ * slow sink cases print how long the renderers waited and the most chunks ever queued
+ * when first run.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class ReportBenchmarks
+{
+    private static final int[] RENDERER_COUNTS = {1, 2, 4, 8};
+    private static final int   FLEET_SIZE      = 100_000;
+    private static final int   QUEUE_CAPACITY  = DeviceReportRunner.DEFAULT_QUEUE_CAPACITY;
+    private static final int   CHUNK_DEVICES   = DeviceReportRunner.DEFAULT_CHUNK_DEVICES;
+    private static final long  SLOW_SINK_NANOS = 100_000L;
+    private static final long  SEED            = 2522L;
+
+    private ReportBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the report benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<List<IDevice>> fleet;
+        fleet = new Lazy<>(() -> Arrays.asList(Fleets.mixed(FLEET_SIZE, SEED)));
+
+        runner.add("Report.sequential", FLEET_SIZE, () ->
+        {
+            final List<IDevice> devices;
+            final StringBuilder text;
+            final CountingSink  sink;
+
+            devices = fleet.get();
+            text    = new StringBuilder();
+            sink    = new CountingSink();
+
+            try
+            {
+                for (int from = 0; from < devices.size(); from += CHUNK_DEVICES)
+                {
+                    for (int i = from; i < Math.min(devices.size(), from + CHUNK_DEVICES); i++)
+                    {
+                        devices.get(i).writeDetails(text);
+                        text.append(System.lineSeparator());
+                    }
+                    sink.write(text.toString());
+                    text.setLength(0);
+                }
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            return sink.chars;
+        });
+        for (final int renderers : RENDERER_COUNTS)
+        {
+            final Lazy<DeviceReportRunner> reports;
+            reports = new Lazy<>(() -> new DeviceReportRunner(renderers, QUEUE_CAPACITY, CHUNK_DEVICES));
+
+            runner.add(String.format("Report.renderers.t%02d", renderers), FLEET_SIZE, () ->
+            {
+                final CountingSink sink;
+                sink = new CountingSink();
+
+                report(reports.get(), fleet.get(), sink);
+                return sink.chars;
+            });
+        }
+        for (final int renderers : RENDERER_COUNTS)
+        {
+            final Lazy<DeviceReportRunner> reports;
+            final boolean[]                reported;
+
+            reports  = new Lazy<>(() -> new DeviceReportRunner(renderers, QUEUE_CAPACITY, CHUNK_DEVICES));
+            reported = new boolean[1];
+
+            runner.add(String.format("Report.slowSink.t%02d", renderers), FLEET_SIZE, () ->
+            {
+                final DeviceReportRunner.ReportResult result;
+                result = report(reports.get(), fleet.get(), chunk -> LockSupport.parkNanos(SLOW_SINK_NANOS));
+
+                if (!reported[0])
+                {
+                    System.out.printf(Locale.ROOT, "  t%02d: renderers waited %.1f ms, at most %d of %d chunks queued%n",
+                                      renderers, result.getBackpressureNanos() / 1e6,
+                                      result.getPeakQueuedChunks(), result.getChunkCount());
+                    reported[0] = true;
+                }
+                return result.getDeviceCount();
+            });
+        }
+    }
+
+    /*
+     * Reports on the devices to one sink.
+     */
+    private static DeviceReportRunner.ReportResult report(final DeviceReportRunner reports,
+                                                          final List<IDevice> devices,
+                                                          final ReportSink sink)
+    {
+        try
+        {
+            return reports.run(devices, List.of(sink));
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * A sink that only counts the characters it is given.
+     */
+    private static final class CountingSink implements ReportSink
+    {
+        private long chars;
+
+        @Override
+        public void write(final String chunk)
+        {
+            chars += chunk.length();
+        }
+    }
+}
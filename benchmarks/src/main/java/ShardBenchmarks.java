@@ -0,0 +1,98 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scaling benchmarks for {@link ShardedDeviceFleet} over 1,000,000 devices spread by
+ * equality key over 1 to 8 shards, scored per device. {@code direct} runs the same bulk
+ * update over an array on the calling thread as a baseline. {@code toggle} scatters a
+ * case flag update, {@code count} scatters a query that counts matching phones, and
+ * {@code ingest} adds every device to an empty fleet in shard batches and removes them
+ * again. On a machine with at least as many cores as shards, each doubling of the shards
+ * should come close to halving the time per device.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class ShardBenchmarks
+{
+    private static final int[] SHARD_COUNTS = {1, 2, 4, 8};
+    private static final int   FLEET_SIZE   = 1_000_000;
+    private static final long  SEED         = 2522L;
+
+    private ShardBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the shard benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<List<IDevice>> fleet;
+        final String              osVersion;
+        final String              carrier;
+        final boolean[]           hasCase;
+
+        fleet     = new Lazy<>(() -> Arrays.asList(Fleets.mixed(FLEET_SIZE, SEED)));
+        osVersion = Fleets.OS_VERSIONS[0];
+        carrier   = Fleets.CARRIERS[0];
+        hasCase   = new boolean[1];
+
+        runner.add("Shard.direct.toggle", FLEET_SIZE, () ->
+        {
+            final int code;
+            long      changed;
+
+            code       = IPad.OS_VERSIONS.find(osVersion);
+            changed    = 0;
+            hasCase[0] = !hasCase[0];
+
+            for (final IDevice device : fleet.get())
+            {
+                if (device instanceof IPad iPad &&
+                    iPad.hasOSVersion(code, osVersion) &&
+                    iPad.compareAndSetHasCase(!hasCase[0], hasCase[0]))
+                {
+                    changed++;
+                }
+            }
+            return changed;
+        });
+        for (final int shards : SHARD_COUNTS)
+        {
+            final Lazy<ShardedDeviceFleet> sharded;
+            final Lazy<ShardedDeviceFleet> empty;
+            final String                   suffix;
+
+            sharded = new Lazy<>(() ->
+            {
+                final ShardedDeviceFleet shardedFleet;
+                shardedFleet = new ShardedDeviceFleet(shards, ShardedDeviceFleet.Partitioning.EQUALITY_HASH);
+
+                shardedFleet.addAll(fleet.get());
+                return shardedFleet;
+            });
+            empty   = new Lazy<>(() -> new ShardedDeviceFleet(shards, ShardedDeviceFleet.Partitioning.EQUALITY_HASH));
+            suffix  = String.format(".s%02d", shards);
+
+            runner.add("Shard.toggle" + suffix, FLEET_SIZE, () ->
+            {
+                hasCase[0] = !hasCase[0];
+                return sharded.get().setHasCase(osVersion, hasCase[0]);
+            });
+            runner.add("Shard.count" + suffix, FLEET_SIZE, () ->
+                sharded.get().count(device -> device instanceof IPhone iPhone &&
+                                              iPhone.getPlanCarrier().equals(carrier)));
+            runner.add("Shard.ingest" + suffix, FLEET_SIZE, () ->
+            {
+                final ShardedDeviceFleet shardedFleet;
+                shardedFleet = empty.get();
+
+                shardedFleet.addAll(fleet.get());
+                return shardedFleet.removeIf(device -> true);
+            });
+        }
+    }
+}
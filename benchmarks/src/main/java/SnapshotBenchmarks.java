@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmarks for the binary snapshot format against text: writing a fleet with
+ * {@link DeviceSnapshotWriter} or {@link DeviceDetailsWriter}, and scanning it back with a
+ * {@link DeviceSnapshot} cursor or parsing the same fleet from text with {@link DeviceLoader}.
+ * Scores are per device.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class SnapshotBenchmarks
+{
+    private static final int  FLEET_SIZE  = 200_000;
+    private static final long SEED        = 2522L;
+    private static final int  CHUNK_BYTES = 1 << 20;
+
+    private SnapshotBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the snapshot benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final IDevice[]    fleet;
+        final Path         binaryFile;
+        final Path         textFile;
+        final Path         inventoryFile;
+        final DeviceLoader loader;
+
+        fleet         = Fleets.mixed(FLEET_SIZE, SEED);
+        binaryFile    = temporaryFile(".snapshot");
+        textFile      = temporaryFile(".txt");
+        inventoryFile = LoadingBenchmarks.writeInventory(FLEET_SIZE, SEED);
+        loader        = new DeviceLoader(ForkJoinPool.commonPool(), CHUNK_BYTES);
+
+        writeBinary(fleet, binaryFile);
+
+        runner.add("Snapshot.writeBinary", FLEET_SIZE, () -> writeBinary(fleet, binaryFile));
+        runner.add("Snapshot.writeText", FLEET_SIZE, () -> writeText(fleet, textFile));
+        runner.add("Snapshot.scanBinary", FLEET_SIZE, () -> scanBinary(binaryFile));
+        runner.add("Snapshot.parseText", FLEET_SIZE, () ->
+        {
+            try
+            {
+                return loader.load(inventoryFile, MinutesSink::new).getRecords();
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /*
+     * Creates a temporary file that is deleted when the JVM exits.
+     */
+    private static Path temporaryFile(final String suffix)
+    {
+        try
+        {
+            final Path file;
+            file = Files.createTempFile("fleet", suffix);
+
+            file.toFile().deleteOnExit();
+
+            return file;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long writeBinary(final IDevice[] fleet,
+                                    final Path file)
+    {
+        try (final DeviceSnapshotWriter writer = new DeviceSnapshotWriter(file))
+        {
+            for (final IDevice device : fleet)
+            {
+                writer.write(device);
+            }
+            return writer.getRecordCount();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long writeText(final IDevice[] fleet,
+                                  final Path file)
+    {
+        try (final FileChannel channel = FileChannel.open(file,
+                                                          StandardOpenOption.CREATE,
+                                                          StandardOpenOption.TRUNCATE_EXISTING,
+                                                          StandardOpenOption.WRITE))
+        {
+            final DeviceDetailsWriter writer;
+            writer = new DeviceDetailsWriter(channel);
+
+            for (final IDevice device : fleet)
+            {
+                writer.write(device);
+            }
+            writer.flush();
+
+            return channel.size();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Sums the remaining plan minutes of every phone in the snapshot.
+     */
+    private static long scanBinary(final Path file)
+    {
+        try
+        {
+            final DeviceSnapshot        snapshot;
+            final DeviceSnapshot.Cursor cursor;
+            double                      minutes;
+
+            snapshot = DeviceSnapshot.open(file);
+            cursor   = snapshot.cursor();
+            minutes  = 0;
+
+            for (long i = 0; i < snapshot.size(); i++)
+            {
+                cursor.moveTo(i);
+                if (cursor.getType() == DeviceSnapshot.IPHONE || cursor.getType() == DeviceSnapshot.IPHONE16)
+                {
+                    minutes += cursor.getRemainingPlanMinutes();
+                }
+            }
+
+            return (long) minutes;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * A sink that only sums the remaining plan minutes, like scanBinary.
+     */
+    private static final class MinutesSink implements DeviceSink
+    {
+        private double minutes;
+
+        @Override
+        public void acceptIPhone(final double remainingPlanMinutes,
+                                 final String planCarrier)
+        {
+            minutes += remainingPlanMinutes;
+        }
+
+        @Override
+        public void acceptIPhone16(final double remainingPlanMinutes,
+                                   final String planCarrier,
+                                   final boolean highResCamera,
+                                   final int memoryGigabytes)
+        {
+            minutes += remainingPlanMinutes;
+        }
+
+        @Override
+        public void acceptIPod(final double currentVolumeDB,
+                               final int numSongsStored)
+        {
+        }
+
+        @Override
+        public void acceptIPad(final boolean hasCase,
+                               final String OSVersion)
+        {
+        }
+    }
+}
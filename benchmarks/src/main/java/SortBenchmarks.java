@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmarks for {@link DeviceSort} against {@link List#sort} and {@link Arrays#parallelSort}
+ * with a comparator, sorting a million IPhones by remaining plan minutes and a million
+ * IPods by number of songs, scored per device. Every case sorts a fresh copy of the same
+ * shuffled devices, and the radix sort runs both on the common pool and on a single thread.
+ * The {@code orderMinutes} cases sort only a primitive column of minutes: the radix sort
+ * returns the sorted positions, while {@link Arrays#parallelSort(double[])} sorts the values
+ * alone, for reference.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class SortBenchmarks
+{
+    private static final int  FLEET_SIZE = 1_000_000;
+    private static final long SEED       = 2522L;
+
+    private static final Comparator<IPhone> BY_MINUTES = Comparator.comparingDouble(IPhone::getRemainingPlanMinutes);
+    private static final Comparator<IPod>   BY_SONGS   = Comparator.comparingInt(IPod::getNumSongsStored);
+
+    private SortBenchmarks()
+    {
+    }
+
+    /**
+     * Registers the sort benchmarks.
+     *
+     * @param runner the runner to register with
+     */
+    static void register(final BenchmarkRunner runner)
+    {
+        final Lazy<List<IPhone>> iPhones;
+        final Lazy<List<IPod>>   iPods;
+        final Lazy<double[]>     minutes;
+        final DeviceSort         parallel;
+        final DeviceSort         serial;
+
+        iPhones  = new Lazy<>(SortBenchmarks::iPhones);
+        iPods    = new Lazy<>(SortBenchmarks::iPods);
+        minutes  = new Lazy<>(() -> iPhones.get().stream().mapToDouble(IPhone::getRemainingPlanMinutes).toArray());
+        parallel = new DeviceSort();
+        serial   = new DeviceSort(new ForkJoinPool(1));
+
+        runner.add("Sort.listSort.iPhoneMinutes", FLEET_SIZE, () ->
+        {
+            final List<IPhone> copy;
+            copy = new ArrayList<>(iPhones.get());
+
+            copy.sort(BY_MINUTES);
+            return copy.size();
+        });
+        runner.add("Sort.parallelSort.iPhoneMinutes", FLEET_SIZE, () ->
+        {
+            final IPhone[] copy;
+            copy = iPhones.get().toArray(new IPhone[0]);
+
+            Arrays.parallelSort(copy, BY_MINUTES);
+            return copy.length;
+        });
+        runner.add("Sort.radix.iPhoneMinutes", FLEET_SIZE, () ->
+        {
+            final List<IPhone> copy;
+            copy = new ArrayList<>(iPhones.get());
+
+            parallel.sortByDouble(copy, IPhone::getRemainingPlanMinutes);
+            return copy.size();
+        });
+        runner.add("Sort.radixSerial.iPhoneMinutes", FLEET_SIZE, () ->
+        {
+            final List<IPhone> copy;
+            copy = new ArrayList<>(iPhones.get());
+
+            serial.sortByDouble(copy, IPhone::getRemainingPlanMinutes);
+            return copy.size();
+        });
+        runner.add("Sort.listSort.iPodSongs", FLEET_SIZE, () ->
+        {
+            final List<IPod> copy;
+            copy = new ArrayList<>(iPods.get());
+
+            copy.sort(BY_SONGS);
+            return copy.size();
+        });
+        runner.add("Sort.parallelSort.iPodSongs", FLEET_SIZE, () ->
+        {
+            final IPod[] copy;
+            copy = iPods.get().toArray(new IPod[0]);
+
+            Arrays.parallelSort(copy, BY_SONGS);
+            return copy.length;
+        });
+        runner.add("Sort.radix.iPodSongs", FLEET_SIZE, () ->
+        {
+            final List<IPod> copy;
+            copy = new ArrayList<>(iPods.get());
+
+            parallel.sortByInt(copy, IPod::getNumSongsStored);
+            return copy.size();
+        });
+        runner.add("Sort.radixSerial.iPodSongs", FLEET_SIZE, () ->
+        {
+            final List<IPod> copy;
+            copy = new ArrayList<>(iPods.get());
+
+            serial.sortByInt(copy, IPod::getNumSongsStored);
+            return copy.size();
+        });
+        runner.add("Sort.orderMinutes.radix", FLEET_SIZE, () ->
+            parallel.orderByDouble(minutes.get(), FLEET_SIZE).length);
+        runner.add("Sort.orderMinutes.parallelSortValues", FLEET_SIZE, () ->
+        {
+            final double[] copy;
+            copy = minutes.get().clone();
+
+            Arrays.parallelSort(copy);
+            return copy.length;
+        });
+    }
+
+    /*
+     * Returns a million random IPhones.
+     */
+    private static List<IPhone> iPhones()
+    {
+        final List<IPhone> iPhones;
+        final Random       random;
+
+        iPhones = new ArrayList<>(FLEET_SIZE);
+        random  = new Random(SEED);
+
+        for (int i = 0; i < FLEET_SIZE; i++)
+        {
+            iPhones.add(Fleets.iPhone(random));
+        }
+        return iPhones;
+    }
+
+    /*
+     * Returns a million random IPods.
+     */
+    private static List<IPod> iPods()
+    {
+        final List<IPod> iPods;
+        final Random     random;
+
+        iPods  = new ArrayList<>(FLEET_SIZE);
+        random = new Random(SEED);
+
+        for (int i = 0; i < FLEET_SIZE; i++)
+        {
+            iPods.add(Fleets.iPod(random));
+        }
+        return iPods;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * A Bloom filter over 64-bit hashes. It answers whether a hash might have been added: a
+ * "no" is always right, and a "yes" is wrong with a probability that depends on how full
+ * the filter is. Each hash sets {@link #getHashCount()} bits, chosen by double hashing
+ * from the two halves of the 64-bit hash, so callers should pass well-mixed hashes.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class BloomFilter
+{
+    private static final int    MAX_HASH_COUNT = 16;
+    private static final double LN_2           = Math.log(2.0);
+
+    private final long[] words;
+    private final long   mask;
+    private final int    hashCount;
+
+    /**
+     * Constructs an empty BloomFilter that fits in a memory budget, with the number of
+     * bits each hash sets chosen to minimize false positives at the expected size.
+     *
+     * @param memoryBytes   the most memory the bits may use; rounded down to a power of two,
+     *                      at least 8 bytes
+     * @param expectedCount how many distinct hashes are expected to be added
+     * @throws IllegalArgumentException if memoryBytes is less than 8 or expectedCount is not positive
+     */
+    public BloomFilter(final long memoryBytes,
+                       final long expectedCount)
+    {
+        if (memoryBytes < Long.BYTES || expectedCount <= 0)
+        {
+            throw new IllegalArgumentException("Memory must be at least 8 bytes and the expected count positive");
+        }
+
+        final long words;
+        final long bits;
+
+        words = Long.highestOneBit(Math.min(memoryBytes / Long.BYTES, 1L << 30));
+        bits  = words * Long.SIZE;
+
+        this.words     = new long[(int) words];
+        this.mask      = bits - 1;
+        this.hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT, Math.round((double) bits / expectedCount * LN_2)));
+    }
+
+    /**
+     * Adds a hash.
+     *
+     * @param hash the hash to add
+     */
+    public void put(final long hash)
+    {
+        final long step;
+        long       bit;
+
+        step = Long.rotateLeft(hash, Integer.SIZE) | 1L;
+        bit  = hash;
+
+        for (int i = 0; i < hashCount; i++)
+        {
+            final long index;
+            index = bit & mask;
+
+            words[(int) (index >>> 6)] |= 1L << index;
+            bit += step;
+        }
+    }
+
+    /**
+     * Returns whether a hash might have been added.
+     *
+     * @param hash the hash to look for
+     * @return false if the hash was certainly never added
+     */
+    public boolean mightContain(final long hash)
+    {
+        final long step;
+        long       bit;
+
+        step = Long.rotateLeft(hash, Integer.SIZE) | 1L;
+        bit  = hash;
+
+        for (int i = 0; i < hashCount; i++)
+        {
+            final long index;
+            index = bit & mask;
+
+            if ((words[(int) (index >>> 6)] & 1L << index) == 0)
+            {
+                return false;
+            }
+            bit += step;
+        }
+
+        return true;
+    }
+
+    /**
+     * Getter for the number of bits in the filter.
+     *
+     * @return the number of bits
+     */
+    public long getBitCount()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * Getter for the number of bits each hash sets.
+     *
+     * @return the number of hash functions
+     */
+    public int getHashCount()
+    {
+        return hashCount;
+    }
+
+    /**
+     * Getter for how much memory the bits use.
+     *
+     * @return the size of the filter in bytes
+     */
+    public long getMemoryBytes()
+    {
+        return (long) words.length * Long.BYTES;
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * A reusable, mutable builder that validates one device record at a time and commits its
+ * fields straight to a {@link DeviceSink}, such as a {@link DeviceRegistry},
+ * {@link OffHeapDeviceStore} or {@link DeviceSnapshotWriter}, without creating a device object.
+ * Ingesting a fleet through one builder per thread allocates nothing per record, where
+ * constructing each device only to copy it into a store creates an object, and for an
+ * IPhone16 a boxed Double, that becomes garbage straight away.
+ * <p>
+ * Set every field the device type needs and then call its commit method, which runs the
+ * same checks as the matching constructor before handing the fields to the sink. A commit
+ * clears the builder, whether or not the record was valid, so no field carries over into
+ * the next record. A builder is not thread-safe; {@link #forCurrentThread()} returns one
+ * per thread.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceBuilder
+{
+    private static final int MINUTES         = 1;
+    private static final int CARRIER         = 1 << 1;
+    private static final int CAMERA          = 1 << 2;
+    private static final int MEMORY          = 1 << 3;
+    private static final int VOLUME          = 1 << 4;
+    private static final int SONGS           = 1 << 5;
+    private static final int CASE            = 1 << 6;
+    private static final int OS_VERSION      = 1 << 7;
+    private static final int IPHONE_FIELDS   = MINUTES | CARRIER;
+    private static final int IPHONE16_FIELDS = IPHONE_FIELDS | CAMERA | MEMORY;
+    private static final int IPOD_FIELDS     = VOLUME | SONGS;
+    private static final int IPAD_FIELDS     = CASE | OS_VERSION;
+
+    private static final ThreadLocal<DeviceBuilder> BUILDERS = ThreadLocal.withInitial(DeviceBuilder::new);
+
+    private int     fields;
+    private double  remainingPlanMinutes;
+    private String  planCarrier;
+    private boolean highResCamera;
+    private int     memoryGigabytes;
+    private double  currentVolumeDB;
+    private int     numSongsStored;
+    private boolean hasCase;
+    private String  OSVersion;
+
+    /**
+     * Constructs an empty DeviceBuilder.
+     */
+    public DeviceBuilder()
+    {
+    }
+
+    /**
+     * Returns the calling thread's builder, creating it on first use. The builder is
+     * cleared of any fields left from a record that was never committed.
+     *
+     * @return the builder for the current thread
+     */
+    public static DeviceBuilder forCurrentThread()
+    {
+        return BUILDERS.get().clear();
+    }
+
+    /**
+     * Clears every field that has been set.
+     *
+     * @return this builder
+     */
+    public DeviceBuilder clear()
+    {
+        fields      = 0;
+        planCarrier = null;
+        OSVersion   = null;
+
+        return this;
+    }
+
+    /**
+     * Sets the remaining plan minutes of an IPhone or IPhone16.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @return this builder
+     */
+    public DeviceBuilder remainingPlanMinutes(final double remainingPlanMinutes)
+    {
+        this.remainingPlanMinutes = remainingPlanMinutes;
+        fields                   |= MINUTES;
+
+        return this;
+    }
+
+    /**
+     * Sets the plan carrier of an IPhone or IPhone16.
+     *
+     * @param planCarrier the carrier for the plan
+     * @return this builder
+     */
+    public DeviceBuilder planCarrier(final String planCarrier)
+    {
+        this.planCarrier = planCarrier;
+        fields          |= CARRIER;
+
+        return this;
+    }
+
+    /**
+     * Sets whether an IPhone16 has a high resolution camera.
+     *
+     * @param highResCamera whether the phone has a high-res camera
+     * @return this builder
+     */
+    public DeviceBuilder highResCamera(final boolean highResCamera)
+    {
+        this.highResCamera = highResCamera;
+        fields            |= CAMERA;
+
+        return this;
+    }
+
+    /**
+     * Sets the memory of an IPhone16.
+     *
+     * @param memoryGigabytes the amount of memory for the phone
+     * @return this builder
+     */
+    public DeviceBuilder memoryGigabytes(final int memoryGigabytes)
+    {
+        this.memoryGigabytes = memoryGigabytes;
+        fields              |= MEMORY;
+
+        return this;
+    }
+
+    /**
+     * Sets the current volume of an IPod.
+     *
+     * @param currentVolumeDB the current volume in decibels (dB)
+     * @return this builder
+     */
+    public DeviceBuilder currentVolumeDB(final double currentVolumeDB)
+    {
+        this.currentVolumeDB = currentVolumeDB;
+        fields              |= VOLUME;
+
+        return this;
+    }
+
+    /**
+     * Sets the number of songs stored on an IPod.
+     *
+     * @param numSongsStored the number of songs stored on the iPod
+     * @return this builder
+     */
+    public DeviceBuilder numSongsStored(final int numSongsStored)
+    {
+        this.numSongsStored = numSongsStored;
+        fields             |= SONGS;
+
+        return this;
+    }
+
+    /**
+     * Sets whether an IPad has a protective case.
+     *
+     * @param hasCase true if the iPad has a protective case
+     * @return this builder
+     */
+    public DeviceBuilder hasCase(final boolean hasCase)
+    {
+        this.hasCase = hasCase;
+        fields      |= CASE;
+
+        return this;
+    }
+
+    /**
+     * Sets the OS version of an IPad.
+     *
+     * @param OSVersion the operating system version of the iPad
+     * @return this builder
+     */
+    public DeviceBuilder OSVersion(final String OSVersion)
+    {
+        this.OSVersion = OSVersion;
+        fields        |= OS_VERSION;
+
+        return this;
+    }
+
+    /**
+     * Validates the remaining plan minutes and plan carrier as an IPhone and commits them.
+     *
+     * @param sink the sink to commit to
+     * @throws IllegalArgumentException if a value fails the {@link IPhone} validation
+     * @throws IllegalStateException    if a field of an IPhone has not been set
+     */
+    public void commitIPhone(final DeviceSink sink)
+    {
+        try
+        {
+            requireFields(sink, IPHONE_FIELDS);
+            IPhone.checkRemainingPlanMinutes(remainingPlanMinutes);
+            IPhone.checkPlanCarrier(planCarrier);
+
+            sink.acceptIPhone(remainingPlanMinutes, planCarrier);
+        }
+        finally
+        {
+            clear();
+        }
+    }
+
+    /**
+     * Validates the fields of an IPhone16 and commits them.
+     *
+     * @param sink the sink to commit to
+     * @throws IllegalArgumentException if a value fails the {@link IPhone16} validation
+     * @throws IllegalStateException    if a field of an IPhone16 has not been set
+     */
+    public void commitIPhone16(final DeviceSink sink)
+    {
+        try
+        {
+            requireFields(sink, IPHONE16_FIELDS);
+            IPhone.checkRemainingPlanMinutes(remainingPlanMinutes);
+            IPhone.checkPlanCarrier(planCarrier);
+            IPhone16.checkMemoryGB(memoryGigabytes);
+
+            sink.acceptIPhone16(remainingPlanMinutes, planCarrier, highResCamera, memoryGigabytes);
+        }
+        finally
+        {
+            clear();
+        }
+    }
+
+    /**
+     * Validates the current volume and number of songs as an IPod and commits them.
+     *
+     * @param sink the sink to commit to
+     * @throws IllegalArgumentException if a value fails the {@link IPod} validation
+     * @throws IllegalStateException    if a field of an IPod has not been set
+     */
+    public void commitIPod(final DeviceSink sink)
+    {
+        try
+        {
+            requireFields(sink, IPOD_FIELDS);
+            IPod.checkCurrentVolumeDB(currentVolumeDB);
+            IPod.checkNumSongsStored(numSongsStored);
+
+            sink.acceptIPod(currentVolumeDB, numSongsStored);
+        }
+        finally
+        {
+            clear();
+        }
+    }
+
+    /**
+     * Commits whether an IPad has a case and its OS version.
+     *
+     * @param sink the sink to commit to
+     * @throws IllegalStateException if a field of an IPad has not been set
+     */
+    public void commitIPad(final DeviceSink sink)
+    {
+        try
+        {
+            requireFields(sink, IPAD_FIELDS);
+
+            sink.acceptIPad(hasCase, OSVersion);
+        }
+        finally
+        {
+            clear();
+        }
+    }
+
+    /*
+     * Throws if the sink is null or any of the required fields has not been set.
+     */
+    private void requireFields(final DeviceSink sink,
+                               final int required)
+    {
+        if (sink == null)
+        {
+            throw new IllegalArgumentException("Sink must not be null");
+        }
+        if ((fields & required) != required)
+        {
+            throw new IllegalStateException("Not every field of the device has been set");
+        }
+    }
+}
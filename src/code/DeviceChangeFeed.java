@@ -0,0 +1,711 @@
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A feed of the changes made to {@link IPad#hasCase()} and {@link IPod#getCurrentVolumeDB()},
+ * and to the case flags of IPads in a {@link DeviceRegistry},
+ * while it runs, delivered to subscribers in batches.
+ * <p>
+ * Every setter of those fields, including the compare-and-set and clamp methods when they
+ * succeed, publishes the new value into a bounded, lock-free ring buffer. Publishing never
+ * blocks the mutating thread: it claims a slot with one compare-and-set, and if the ring is
+ * full the change is dropped and counted instead. While no feed is running, a mutation only
+ * reads one volatile field.
+ * <p>
+ * One dispatcher thread drains the ring. Changes to the same device within
+ * {@code windowNanos} of its first pending change are coalesced into one, and the pending
+ * changes are delivered as a batch once the oldest has waited a window or the batch is
+ * full. Each change carries the value its device holds when the batch is delivered, so
+ * racing mutators that publish out of order never leave a subscriber with a stale value.
+ * Subscribers are called in turn on the dispatcher thread, so a slow subscriber holds back
+ * the feed and shows up as lag, then as drops. The time from each change to its delivery
+ * is recorded in {@link #getLagHistogram()}.
+ * <p>
+ * A change to a registry's IPad, whether made through the registry or one of its views, is
+ * published with one {@link DeviceRegistry.IPadView} per IPad, so changes to the same IPad
+ * coalesce. A registry has a single writer, so its changes are published in order and
+ * carry the value drained rather than one read again. Only one feed runs at a time.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceChangeFeed implements Closeable
+{
+    /**
+     * The number of changes the ring holds if no capacity is given.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * The most changes in a batch if no limit is given.
+     */
+    public static final int DEFAULT_MAX_BATCH = 1_024;
+
+    private static final int  MAX_CAPACITY      = 1 << 30;
+    private static final long IDLE_PARK_NANOS   = 50_000L;
+    private static final long CLOSE_WAIT_MILLIS = 1_000L;
+
+    private static final VarHandle TAIL;
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    static
+    {
+        try
+        {
+            TAIL = MethodHandles.lookup().findVarHandle(DeviceChangeFeed.class, "tail", long.class);
+        }
+        catch (final ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static volatile DeviceChangeFeed active;
+
+    private final long[]           sequences;
+    private final IDevice[]        devices;
+    private final long[]           values;
+    private final long[]           stamps;
+    private final int              mask;
+    private final long             windowNanos;
+    private final int              maxBatch;
+    private final List<Subscriber> subscribers;
+    private final LongAdder        dropped;
+    private final LatencyHistogram lag;
+    private final Thread           dispatcher;
+    private volatile long          tail;
+    private volatile long          head;
+    private volatile boolean       running;
+    private volatile long          coalesced;
+    private volatile long          delivered;
+    private volatile long          batches;
+    private volatile long          maxLagNanos;
+    private volatile long          subscriberFailures;
+
+    /**
+     * Constructs a DeviceChangeFeed with the default capacity and batch size.
+     *
+     * @param windowNanos how long changes to the same device are coalesced, in nanoseconds
+     * @throws IllegalArgumentException if windowNanos is negative
+     */
+    public DeviceChangeFeed(final long windowNanos)
+    {
+        this(DEFAULT_CAPACITY, windowNanos, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Constructs a DeviceChangeFeed. It captures nothing until it is started.
+     *
+     * @param capacity    the minimum number of changes the ring holds before dropping;
+     *                    rounded up to a power of two
+     * @param windowNanos how long changes to the same device are coalesced, in nanoseconds
+     * @param maxBatch    the most changes delivered in one batch
+     * @throws IllegalArgumentException if capacity or maxBatch is not positive, capacity is
+     *                                  too large or windowNanos is negative
+     */
+    public DeviceChangeFeed(final int capacity,
+                            final long windowNanos,
+                            final int maxBatch)
+    {
+        if (capacity <= 0 || capacity > MAX_CAPACITY || maxBatch <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30 and batch size positive");
+        }
+        if (windowNanos < 0)
+        {
+            throw new IllegalArgumentException("Window must not be negative");
+        }
+
+        final int length;
+        length = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+
+        this.sequences   = new long[length];
+        this.devices     = new IDevice[length];
+        this.values      = new long[length];
+        this.stamps      = new long[length];
+        this.mask        = length - 1;
+        this.windowNanos = windowNanos;
+        this.maxBatch    = maxBatch;
+        this.subscribers = new CopyOnWriteArrayList<>();
+        this.dropped     = new LongAdder();
+        this.lag         = new LatencyHistogram();
+        this.dispatcher  = new Thread(this::dispatch, "device-change-feed");
+
+        // Slot i is free for the change with sequence number i
+        for (int i = 0; i < length; i++)
+        {
+            sequences[i] = i;
+        }
+        dispatcher.setDaemon(true);
+    }
+
+    /*
+     * Publishes a change of an IPad's case flag to the running feed, if any.
+     */
+    static void recordHasCase(final IPad iPad,
+                              final boolean hasCase)
+    {
+        final DeviceChangeFeed feed;
+        feed = active;
+
+        if (feed != null)
+        {
+            feed.publish(iPad, hasCase ? 1L : 0L);
+        }
+    }
+
+    /*
+     * Publishes a change of a registry IPad's case flag to the running feed, if any.
+     */
+    static void recordHasCase(final DeviceRegistry registry,
+                              final int index,
+                              final boolean hasCase)
+    {
+        final DeviceChangeFeed feed;
+        feed = active;
+
+        if (feed != null)
+        {
+            feed.publish(registry.feedView(index), hasCase ? 1L : 0L);
+        }
+    }
+
+    /*
+     * Publishes a change of an IPod's volume to the running feed, if any.
+     */
+    static void recordCurrentVolumeDB(final IPod iPod,
+                                      final double currentVolumeDB)
+    {
+        final DeviceChangeFeed feed;
+        feed = active;
+
+        if (feed != null)
+        {
+            feed.publish(iPod, Double.doubleToRawLongBits(currentVolumeDB));
+        }
+    }
+
+    /**
+     * Adds a subscriber that receives every batch delivered from now on.
+     *
+     * @param subscriber the subscriber to add
+     * @throws IllegalArgumentException if subscriber is null
+     */
+    public void subscribe(final Subscriber subscriber)
+    {
+        if (subscriber == null)
+        {
+            throw new IllegalArgumentException("Subscriber must not be null");
+        }
+
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Removes a subscriber. A batch already being delivered may still reach it.
+     *
+     * @param subscriber the subscriber to remove
+     */
+    public void unsubscribe(final Subscriber subscriber)
+    {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Starts capturing changes and delivering them.
+     *
+     * @throws IllegalStateException if this feed has already been started, or another feed
+     *                               is running
+     */
+    public void start()
+    {
+        synchronized (DeviceChangeFeed.class)
+        {
+            if (active != null || dispatcher.getState() != Thread.State.NEW)
+            {
+                throw new IllegalStateException("A feed is already running or this one has been started");
+            }
+
+            running = true;
+            active  = this;
+            dispatcher.start();
+        }
+    }
+
+    /**
+     * Stops capturing changes, delivers the changes already captured and stops the
+     * dispatcher. Waits at most a second for the last batch.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (DeviceChangeFeed.class)
+        {
+            if (active == this)
+            {
+                active = null;
+            }
+        }
+
+        running = false;
+        LockSupport.unpark(dispatcher);
+
+        if (dispatcher.isAlive())
+        {
+            try
+            {
+                dispatcher.join(CLOSE_WAIT_MILLIS);
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Getter for how long each delivered change waited after it was first made.
+     *
+     * @return the live lag histogram
+     */
+    public LatencyHistogram getLagHistogram()
+    {
+        return lag;
+    }
+
+    /**
+     * Returns the counts of what this feed has captured, dropped, coalesced and delivered.
+     * The counts are read one after another, so while changes are being made they are
+     * approximate.
+     *
+     * @return the statistics
+     */
+    public Stats getStats()
+    {
+        final long published;
+        published = tail;
+
+        return new Stats(published, dropped.sum(), coalesced, delivered, batches,
+                         published - head, maxLagNanos, subscriberFailures);
+    }
+
+    /*
+     * Claims the next slot in the ring and fills it, or counts a drop if the ring is full.
+     * A slot is free for the change numbered n when its sequence is n, and holds that
+     * change once its sequence is n + 1.
+     */
+    private void publish(final IDevice device,
+                         final long value)
+    {
+        long claimed;
+        int  slot;
+
+        claimed = (long) TAIL.getVolatile(this);
+
+        while (true)
+        {
+            final long sequence;
+
+            slot     = (int) claimed & mask;
+            sequence = (long) SEQUENCES.getAcquire(sequences, slot);
+
+            if (sequence == claimed)
+            {
+                if (TAIL.compareAndSet(this, claimed, claimed + 1))
+                {
+                    break;
+                }
+                claimed = (long) TAIL.getVolatile(this);
+            }
+            else if (sequence < claimed)
+            {
+                // The dispatcher has not yet freed the change a full ring ago
+                dropped.increment();
+                return;
+            }
+            else
+            {
+                claimed = (long) TAIL.getVolatile(this);
+            }
+        }
+
+        devices[slot] = device;
+        values[slot]  = value;
+        stamps[slot]  = System.nanoTime();
+        SEQUENCES.setRelease(sequences, slot, claimed + 1);
+    }
+
+    /*
+     * Drains the ring, coalesces changes per device and delivers batches until the feed is
+     * closed and every published change has been delivered.
+     */
+    private void dispatch()
+    {
+        final Map<IDevice, Change> pending;
+        final List<Change>         batch;
+        long                       next;
+
+        pending = new IdentityHashMap<>();
+        batch   = new ArrayList<>();
+        next    = 0;
+
+        while (true)
+        {
+            final boolean open;
+            final long    drainedTo;
+
+            // Read before draining, so changes published before close() are all drained
+            open      = running;
+            drainedTo = drain(next, pending, batch);
+
+            if (!batch.isEmpty() &&
+                (!open || batch.size() >= maxBatch || System.nanoTime() - batch.get(0).firstNanos >= windowNanos))
+            {
+                deliver(pending, batch);
+            }
+            else if (drainedTo == next)
+            {
+                // A change whose slot is claimed but not yet filled is still to come
+                if (!open && batch.isEmpty() && next == tail)
+                {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            next = drainedTo;
+        }
+    }
+
+    /*
+     * Takes published changes from the ring, starting at the given sequence number, until
+     * the ring is empty, the batch is full or a batch's worth has been taken, so the window
+     * is checked often even while coalescing keeps the batch small. Returns the next
+     * sequence number.
+     */
+    private long drain(final long from,
+                       final Map<IDevice, Change> pending,
+                       final List<Change> batch)
+    {
+        long next;
+        next = from;
+
+        while (batch.size() < maxBatch && next - from < maxBatch)
+        {
+            final int     slot;
+            final IDevice device;
+            final long    value;
+            final long    stamp;
+            Change        change;
+
+            slot = (int) next & mask;
+
+            if ((long) SEQUENCES.getAcquire(sequences, slot) != next + 1)
+            {
+                break;
+            }
+
+            device        = devices[slot];
+            value         = values[slot];
+            stamp         = stamps[slot];
+            devices[slot] = null;
+            SEQUENCES.setRelease(sequences, slot, next + sequences.length);
+            next++;
+
+            change = pending.get(device);
+
+            if (change == null)
+            {
+                change = new Change(device, value, stamp);
+                pending.put(device, change);
+                batch.add(change);
+            }
+            else
+            {
+                change.value = value;
+                change.updates++;
+                coalesced++;
+            }
+        }
+
+        head = next;
+        return next;
+    }
+
+    /*
+     * Hands the batch to every subscriber, records the lag of each change and clears the
+     * batch. A subscriber that throws is counted and skipped for this batch.
+     *
+     * Each change's value is read again from its device first. A mutator sets the field
+     * and then publishes, so two racing mutators can publish in the opposite order to
+     * their writes, and the last value drained may not be the one the device holds. Every
+     * write is published after it is made, so the value read here is at least as new as
+     * every change in the batch, and a write made since will be in a later batch.
+     */
+    private void deliver(final Map<IDevice, Change> pending,
+                         final List<Change> batch)
+    {
+        final List<Change> view;
+        final long         now;
+        long               worst;
+
+        view  = Collections.unmodifiableList(batch);
+        now   = System.nanoTime();
+        worst = maxLagNanos;
+
+        for (final Change change : batch)
+        {
+            change.refresh();
+        }
+        for (final Subscriber subscriber : subscribers)
+        {
+            try
+            {
+                subscriber.onChanges(view);
+            }
+            catch (final RuntimeException e)
+            {
+                subscriberFailures++;
+            }
+        }
+        for (final Change change : batch)
+        {
+            final long waited;
+            waited = now - change.firstNanos;
+
+            lag.record(waited);
+            worst = Math.max(worst, waited);
+        }
+
+        maxLagNanos = worst;
+        delivered  += batch.size();
+        batches++;
+        pending.clear();
+        batch.clear();
+    }
+
+    /**
+     * Receives batches of changes from a {@link DeviceChangeFeed}.
+     */
+    @FunctionalInterface
+    public interface Subscriber
+    {
+        /**
+         * Receives one batch of changes, on the feed's dispatcher thread. The list is only
+         * valid during the call, but the changes in it may be kept.
+         *
+         * @param changes the changes, in the order each device was first changed; at most
+         *                one per device
+         */
+        void onChanges(List<Change> changes);
+    }
+
+    /**
+     * The latest value of one device's field after one or more coalesced changes.
+     */
+    public static final class Change
+    {
+        private final IDevice device;
+        private final long    firstNanos;
+        private long          value;
+        private int           updates;
+
+        private Change(final IDevice device,
+                       final long value,
+                       final long firstNanos)
+        {
+            this.device     = device;
+            this.value      = value;
+            this.firstNanos = firstNanos;
+            this.updates    = 1;
+        }
+
+        /*
+         * Replaces the drained value with the one the device holds now. A registry view
+         * keeps the drained value, since its registry's changes are already in order.
+         */
+        private void refresh()
+        {
+            if (device instanceof IPad iPad)
+            {
+                value = iPad.hasCase() ? 1L : 0L;
+            }
+            else if (device instanceof IPod iPod)
+            {
+                value = Double.doubleToRawLongBits(iPod.getCurrentVolumeDB());
+            }
+        }
+
+        /**
+         * Getter for the device that changed.
+         *
+         * @return the IPad or IPod, or the registry view of an IPad
+         */
+        public IDevice getDevice()
+        {
+            return device;
+        }
+
+        /**
+         * Getter for whether a changed IPad now has a case.
+         *
+         * @return the latest value for an IPad or IPad view; false for an IPod
+         */
+        public boolean hasCase()
+        {
+            return (device instanceof IPad || device instanceof DeviceRegistry.IPadView) && value != 0L;
+        }
+
+        /**
+         * Getter for the volume a changed IPod now has.
+         *
+         * @return the latest volume in decibels (dB) for an IPod; NaN for an IPad
+         */
+        public double getCurrentVolumeDB()
+        {
+            return device instanceof IPod ? Double.longBitsToDouble(value) : Double.NaN;
+        }
+
+        /**
+         * Getter for the number of changes coalesced into this one.
+         *
+         * @return the number of changes, at least 1
+         */
+        public int getUpdateCount()
+        {
+            return updates;
+        }
+
+        /**
+         * Getter for when the first of the coalesced changes was made.
+         *
+         * @return the time from {@link System#nanoTime()}
+         */
+        public long getFirstChangeNanos()
+        {
+            return firstNanos;
+        }
+    }
+
+    /**
+     * Counts of what a {@link DeviceChangeFeed} has done since it was started.
+     */
+    public static final class Stats
+    {
+        private final long published;
+        private final long dropped;
+        private final long coalesced;
+        private final long delivered;
+        private final long batches;
+        private final long backlog;
+        private final long maxLagNanos;
+        private final long subscriberFailures;
+
+        private Stats(final long published,
+                      final long dropped,
+                      final long coalesced,
+                      final long delivered,
+                      final long batches,
+                      final long backlog,
+                      final long maxLagNanos,
+                      final long subscriberFailures)
+        {
+            this.published          = published;
+            this.dropped            = dropped;
+            this.coalesced          = coalesced;
+            this.delivered          = delivered;
+            this.batches            = batches;
+            this.backlog            = backlog;
+            this.maxLagNanos        = maxLagNanos;
+            this.subscriberFailures = subscriberFailures;
+        }
+
+        /**
+         * Getter for the number of changes put in the ring.
+         *
+         * @return the number of changes captured
+         */
+        public long getPublishedCount()
+        {
+            return published;
+        }
+
+        /**
+         * Getter for the number of changes lost because the ring was full.
+         *
+         * @return the number of drops
+         */
+        public long getDroppedCount()
+        {
+            return dropped;
+        }
+
+        /**
+         * Getter for the number of changes folded into an earlier change to the same device.
+         *
+         * @return the number of coalesced changes
+         */
+        public long getCoalescedCount()
+        {
+            return coalesced;
+        }
+
+        /**
+         * Getter for the number of changes delivered after coalescing.
+         *
+         * @return the number of changes delivered
+         */
+        public long getDeliveredCount()
+        {
+            return delivered;
+        }
+
+        /**
+         * Getter for the number of batches delivered.
+         *
+         * @return the number of batches
+         */
+        public long getBatchCount()
+        {
+            return batches;
+        }
+
+        /**
+         * Getter for the number of changes in the ring not yet taken by the dispatcher.
+         *
+         * @return the backlog
+         */
+        public long getBacklog()
+        {
+            return backlog;
+        }
+
+        /**
+         * Getter for the longest any change waited to be delivered.
+         *
+         * @return the lag in nanoseconds
+         */
+        public long getMaxLagNanos()
+        {
+            return maxLagNanos;
+        }
+
+        /**
+         * Getter for the number of times a subscriber threw.
+         *
+         * @return the number of failed deliveries
+         */
+        public long getSubscriberFailureCount()
+        {
+            return subscriberFailures;
+        }
+    }
+}
@@ -0,0 +1,979 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A streaming deduplication stage that passes on the first device of each equality class and
+ * drops every later device equal to it, using the same rules as each device's {@code equals}
+ * method, within a fixed memory budget.
+ * <p>
+ * Each device is reduced to its equality key, as in {@link DeviceEqualityIndex}: the device
+ * class (with IPhone16s split by camera quality) and a primitive form of the fields its
+ * {@code equals} compares. A {@link BloomFilter} of the keys seen so far gets
+ * {@value #BLOOM_BITS_PER_KEY} bits per expected device, up to half of the memory budget, and
+ * the rest holds an exact open-addressing table of keys. A key the Bloom
+ * filter has never seen is new without any further lookup. Only keys the filter might have
+ * seen are looked up exactly, first in the table and then on disk.
+ * <p>
+ * When the table fills up, its keys are sorted by hash and spilled to a run file in the spill
+ * directory, with a small in-memory index of the first hash in each 4KB block, so a disk
+ * lookup reads one block per run. Whenever {@value #MERGE_FACTOR} runs of the same size tier
+ * exist, they are merged into one run of the next tier. This keeps the number of runs
+ * logarithmic in the number of keys.
+ * <p>
+ * The results are exactly those of keeping a {@code HashSet} of every device passed on, with
+ * one exception that cannot be bounded: an IPhone whose remaining plan minutes are NaN is
+ * equal to nothing, not even itself, so it is always passed on. A {@code HashSet} would
+ * still drop the same object if it were added twice.
+ * This class is not thread-safe.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceDeduplicator implements Closeable
+{
+    /**
+     * The smallest memory budget a deduplicator accepts.
+     */
+    public static final long MIN_MEMORY_BYTES = 1L << 20;
+
+    static final int MERGE_FACTOR       = 4;
+    static final int BLOOM_BITS_PER_KEY = 10;
+
+    private static final byte EMPTY                            = 0;
+    private static final byte IPHONE                           = 1;
+    private static final byte IPHONE16_WITH_HIGH_RES_CAMERA    = 2;
+    private static final byte IPHONE16_WITHOUT_HIGH_RES_CAMERA = 3;
+    private static final byte IPOD                             = 4;
+    private static final byte IPAD                             = 5;
+    private static final byte NOT_EQUAL_TO_ANYTHING            = 6;
+    private static final int  RECORD_BYTES                     = 17;
+    private static final int  BLOCK_RECORDS                    = 240;
+    private static final int  BLOCK_BYTES                      = RECORD_BYTES * BLOCK_RECORDS;
+    private static final int  IO_BUFFER_BYTES                  = BLOCK_BYTES * 16;
+    private static final long GOLDEN_RATIO                     = 0x9E3779B97F4A7C15L;
+    private static final long MIX_1                            = 0xFF51AFD7ED558CCDL;
+    private static final long MIX_2                            = 0xC4CEB9FE1A85EC53L;
+    private static final long INLINE_KEYS                      = 1L << 32;
+
+    private final Path         spillDirectory;
+    private final BloomFilter  bloomFilter;
+    private final long[]       tableHashes;
+    private final long[]       tableKeys;
+    private final byte[]       tableTags;
+    private final int          maxTableSize;
+    private final ByteBuffer   block;
+    private final ByteBuffer[] mergeBuffers;
+    private final List<Run>    runs;
+    private final SymbolTable  inlineOSVersions;
+    private int                tableSize;
+    private long               devicesSeen;
+    private long               distinctCount;
+    private long               bloomMisses;
+    private long               falsePositives;
+    private long               spilledKeys;
+    private long               diskLookups;
+
+    /**
+     * Constructs a DeviceDeduplicator.
+     *
+     * @param memoryBytes    the memory budget for the Bloom filter and the in-memory table,
+     *                       at least {@value #MIN_MEMORY_BYTES}
+     * @param expectedCount  how many distinct devices are expected, used to size the Bloom filter
+     * @param spillDirectory the directory for run files; they are deleted by {@link #close()}
+     * @throws IllegalArgumentException if memoryBytes or expectedCount is too small
+     */
+    public DeviceDeduplicator(final long memoryBytes,
+                              final long expectedCount,
+                              final Path spillDirectory)
+    {
+        if (memoryBytes < MIN_MEMORY_BYTES)
+        {
+            throw new IllegalArgumentException("Memory budget must be at least " + MIN_MEMORY_BYTES + " bytes");
+        }
+
+        final long bloomBytes;
+        final long buffersBytes;
+        final long tableBytes;
+        final int  tableCapacity;
+
+        bloomBytes = Math.max(Long.BYTES, Math.min(memoryBytes / 2, expectedCount * BLOOM_BITS_PER_KEY / Byte.SIZE));
+
+        this.spillDirectory   = spillDirectory;
+        this.bloomFilter      = new BloomFilter(bloomBytes, expectedCount);
+        this.block            = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.mergeBuffers     = new ByteBuffer[MERGE_FACTOR + 1];
+        this.runs             = new ArrayList<>();
+        this.inlineOSVersions = new SymbolTable();
+
+        for (int i = 0; i < mergeBuffers.length; i++)
+        {
+            mergeBuffers[i] = ByteBuffer.allocateDirect(IO_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        buffersBytes  = BLOCK_BYTES + (long) IO_BUFFER_BYTES * mergeBuffers.length;
+        tableBytes    = Math.max(memoryBytes - bloomFilter.getMemoryBytes() - buffersBytes, RECORD_BYTES * 2);
+        tableCapacity = (int) Long.highestOneBit(Math.min(tableBytes / RECORD_BYTES, 1 << 30));
+
+        this.tableHashes  = new long[tableCapacity];
+        this.tableKeys    = new long[tableCapacity];
+        this.tableTags    = new byte[tableCapacity];
+        this.maxTableSize = tableCapacity / 2;
+    }
+
+    /**
+     * Offers the next device of the stream.
+     *
+     * @param device the device
+     * @return true if no device offered before it is equal to it, so it should be passed on
+     * @throws IOException if a run file cannot be read or written
+     * @throws IllegalArgumentException if the device is not an IPhone, IPhone16, IPod or IPad
+     */
+    public boolean add(final IDevice device) throws IOException
+    {
+        if (DeviceRegistry.isView(device))
+        {
+            return add(DeviceRegistry.materialize(device));
+        }
+
+        final byte tag;
+        tag = tagFor(device);
+
+        devicesSeen++;
+
+        if (tag == NOT_EQUAL_TO_ANYTHING)
+        {
+            distinctCount++;
+            return true;
+        }
+
+        final long key;
+        final long hash;
+
+        key  = keyFor(device);
+        hash = hash(tag, key);
+
+        if (!bloomFilter.mightContain(hash))
+        {
+            bloomMisses++;
+            bloomFilter.put(hash);
+        }
+        else if (tableContains(hash, tag, key) || runsContain(hash, tag, key))
+        {
+            return false;
+        }
+        else
+        {
+            falsePositives++;
+        }
+
+        distinctCount++;
+        insert(hash, tag, key);
+
+        return true;
+    }
+
+    /**
+     * Passes every device that is not equal to an earlier one to the action, in order.
+     *
+     * @param devices the stream of devices
+     * @param action  the action to run for each distinct device
+     * @throws IOException if a run file cannot be read or written
+     */
+    public void forEachDistinct(final Iterable<? extends IDevice> devices,
+                                final Consumer<? super IDevice> action) throws IOException
+    {
+        for (final IDevice device : devices)
+        {
+            if (add(device))
+            {
+                action.accept(device);
+            }
+        }
+    }
+
+    /**
+     * Getter for how many devices have been offered.
+     *
+     * @return the number of devices seen
+     */
+    public long getDevicesSeen()
+    {
+        return devicesSeen;
+    }
+
+    /**
+     * Getter for how many devices were passed on.
+     *
+     * @return the number of distinct devices
+     */
+    public long getDistinctCount()
+    {
+        return distinctCount;
+    }
+
+    /**
+     * Getter for how many new devices the Bloom filter wrongly reported as possibly seen,
+     * each of which cost an exact lookup.
+     *
+     * @return the number of false positives
+     */
+    public long getFalsePositiveCount()
+    {
+        return falsePositives;
+    }
+
+    /**
+     * Returns the fraction of new devices the Bloom filter wrongly reported as possibly seen.
+     *
+     * @return the false-positive rate, or 0 if no device has been checked
+     */
+    public double getFalsePositiveRate()
+    {
+        final long checked;
+        checked = bloomMisses + falsePositives;
+
+        return checked == 0 ? 0.0 : (double) falsePositives / checked;
+    }
+
+    /**
+     * Getter for how many distinct keys have been spilled to disk.
+     *
+     * @return the number of spilled keys
+     */
+    public long getSpilledCount()
+    {
+        return spilledKeys;
+    }
+
+    /**
+     * Returns the fraction of distinct keys that have been spilled to disk.
+     *
+     * @return the spill rate, or 0 if there are no keys
+     */
+    public double getSpillRate()
+    {
+        final long keys;
+        keys = spilledKeys + tableSize;
+
+        return keys == 0 ? 0.0 : (double) spilledKeys / keys;
+    }
+
+    /**
+     * Getter for how many lookups had to read run files.
+     *
+     * @return the number of disk lookups
+     */
+    public long getDiskLookups()
+    {
+        return diskLookups;
+    }
+
+    /**
+     * Getter for the number of run files on disk.
+     *
+     * @return the number of runs
+     */
+    public int getRunCount()
+    {
+        return runs.size();
+    }
+
+    /**
+     * Closes and deletes every run file.
+     *
+     * @throws IOException if a run file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException
+    {
+        IOException thrown;
+        thrown = null;
+
+        for (final Run run : runs)
+        {
+            try
+            {
+                run.delete();
+            }
+            catch (final IOException e)
+            {
+                if (thrown == null)
+                {
+                    thrown = e;
+                }
+                else
+                {
+                    thrown.addSuppressed(e);
+                }
+            }
+        }
+        runs.clear();
+
+        if (thrown != null)
+        {
+            throw thrown;
+        }
+    }
+
+    /*
+     * Returns the equality class of a device. Classes are compared exactly, as equals does.
+     */
+    private static byte tagFor(final IDevice device)
+    {
+        final Class<?> type;
+        type = device.getClass();
+
+        if (type == IPhone16.class)
+        {
+            final IPhone16 iPhone16;
+            iPhone16 = (IPhone16) device;
+
+            if (Double.isNaN(iPhone16.getRemainingPlanMinutes()))
+            {
+                return NOT_EQUAL_TO_ANYTHING;
+            }
+            return iPhone16.isHighResCamera() ? IPHONE16_WITH_HIGH_RES_CAMERA : IPHONE16_WITHOUT_HIGH_RES_CAMERA;
+        }
+        if (type == IPhone.class)
+        {
+            return Double.isNaN(((IPhone) device).getRemainingPlanMinutes()) ? NOT_EQUAL_TO_ANYTHING : IPHONE;
+        }
+        if (type == IPod.class)
+        {
+            return IPOD;
+        }
+        if (type == IPad.class)
+        {
+            return IPAD;
+        }
+        throw new IllegalArgumentException("Unsupported device type");
+    }
+
+    /*
+     * Returns the primitive equality key of a device. Adding 0.0 turns -0.0 into 0.0,
+     * since equals compares minutes with ==. An IPad whose OS version did not fit in the
+     * shared table is keyed by a code from this deduplicator's own table, offset past every
+     * shared code.
+     */
+    private long keyFor(final IDevice device)
+    {
+        if (device instanceof IPhone)
+        {
+            return Double.doubleToLongBits(((IPhone) device).getRemainingPlanMinutes() + 0.0);
+        }
+        if (device instanceof IPod)
+        {
+            return ((IPod) device).getNumSongsStored();
+        }
+
+        final IPad iPad;
+        iPad = (IPad) device;
+
+        if (iPad.getOSVersionCode() == SymbolTable.NO_SYMBOL && iPad.getOSVersion() != null)
+        {
+            return INLINE_KEYS + inlineOSVersions.encode(iPad.getOSVersion());
+        }
+
+        return iPad.getOSVersionCode();
+    }
+
+    /*
+     * Mixes an equality class and key into a 64-bit hash.
+     */
+    private static long hash(final byte tag,
+                             final long key)
+    {
+        long hash;
+        hash = key * GOLDEN_RATIO + tag;
+
+        hash ^= hash >>> 33;
+        hash *= MIX_1;
+        hash ^= hash >>> 33;
+        hash *= MIX_2;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    /*
+     * Returns whether the in-memory table holds the key.
+     */
+    private boolean tableContains(final long hash,
+                                  final byte tag,
+                                  final long key)
+    {
+        final int mask;
+        int       slot;
+
+        mask = tableTags.length - 1;
+        slot = (int) hash & mask;
+
+        while (tableTags[slot] != EMPTY)
+        {
+            if (tableHashes[slot] == hash && tableTags[slot] == tag && tableKeys[slot] == key)
+            {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /*
+     * Adds a key that is not yet in the table, spilling the table to disk when it is full.
+     */
+    private void insert(final long hash,
+                        final byte tag,
+                        final long key) throws IOException
+    {
+        final int mask;
+        int       slot;
+
+        mask = tableTags.length - 1;
+        slot = (int) hash & mask;
+
+        while (tableTags[slot] != EMPTY)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        tableHashes[slot] = hash;
+        tableKeys[slot]   = key;
+        tableTags[slot]   = tag;
+        tableSize++;
+
+        if (tableSize >= maxTableSize)
+        {
+            spill();
+        }
+    }
+
+    /*
+     * Returns whether any run file holds the key.
+     */
+    private boolean runsContain(final long hash,
+                                final byte tag,
+                                final long key) throws IOException
+    {
+        if (runs.isEmpty())
+        {
+            return false;
+        }
+
+        diskLookups++;
+        for (final Run run : runs)
+        {
+            if (run.contains(hash, tag, key, block))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Sorts the table's keys by hash in place, writes them to a new run and empties the
+     * table. Then merges runs while MERGE_FACTOR runs share a tier.
+     */
+    private void spill() throws IOException
+    {
+        int count;
+        count = 0;
+
+        for (int slot = 0; slot < tableTags.length; slot++)
+        {
+            if (tableTags[slot] != EMPTY)
+            {
+                tableHashes[count] = tableHashes[slot];
+                tableKeys[count]   = tableKeys[slot];
+                tableTags[count]   = tableTags[slot];
+                count++;
+            }
+        }
+        Arrays.fill(tableTags, count, tableTags.length, EMPTY);
+        sort(0, count - 1);
+
+        final Run.Writer writer;
+        writer = new Run.Writer(Files.createTempFile(spillDirectory, "dedup", ".run"), mergeBuffers[MERGE_FACTOR]);
+
+        for (int i = 0; i < count; i++)
+        {
+            writer.write(tableHashes[i], tableTags[i], tableKeys[i]);
+        }
+        runs.add(writer.finish(0));
+
+        Arrays.fill(tableTags, 0, count, EMPTY);
+        spilledKeys += count;
+        tableSize    = 0;
+
+        mergeTiers();
+    }
+
+    /*
+     * Sorts the compacted table entries between lo and hi inclusive by hash. The hashes are
+     * well mixed, so a plain quicksort with a middle pivot is not at risk of its worst case.
+     */
+    private void sort(final int lo,
+                      final int hi)
+    {
+        int low;
+        int high;
+
+        low  = lo;
+        high = hi;
+
+        while (low < high)
+        {
+            final long pivot;
+            int        i;
+            int        j;
+
+            pivot = tableHashes[(low + high) >>> 1];
+            i     = low;
+            j     = high;
+
+            while (i <= j)
+            {
+                while (tableHashes[i] < pivot)
+                {
+                    i++;
+                }
+                while (tableHashes[j] > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            // Recurse into the smaller side and loop on the larger to bound the stack
+            if (j - low < high - i)
+            {
+                sort(low, j);
+                low = i;
+            }
+            else
+            {
+                sort(i, high);
+                high = j;
+            }
+        }
+    }
+
+    /*
+     * Swaps two compacted table entries.
+     */
+    private void swap(final int i,
+                      final int j)
+    {
+        final long hash;
+        final long key;
+        final byte tag;
+
+        hash = tableHashes[i];
+        key  = tableKeys[i];
+        tag  = tableTags[i];
+
+        tableHashes[i] = tableHashes[j];
+        tableKeys[i]   = tableKeys[j];
+        tableTags[i]   = tableTags[j];
+
+        tableHashes[j] = hash;
+        tableKeys[j]   = key;
+        tableTags[j]   = tag;
+    }
+
+    /*
+     * Merges MERGE_FACTOR runs of the same tier into one run of the next tier, repeatedly.
+     */
+    private void mergeTiers() throws IOException
+    {
+        boolean merged;
+        do
+        {
+            merged = false;
+
+            final int   tier;
+            final Run[] inputs;
+            int         found;
+
+            tier   = runs.get(runs.size() - 1).tier;
+            inputs = new Run[MERGE_FACTOR];
+            found  = 0;
+
+            for (final Run run : runs)
+            {
+                if (run.tier == tier && found < MERGE_FACTOR)
+                {
+                    inputs[found++] = run;
+                }
+            }
+
+            if (found == MERGE_FACTOR)
+            {
+                final Run output;
+                output = merge(inputs, tier + 1);
+
+                for (final Run input : inputs)
+                {
+                    runs.remove(input);
+                    input.delete();
+                }
+                runs.add(output);
+                merged = true;
+            }
+        }
+        while (merged);
+    }
+
+    /*
+     * Merges sorted runs into one sorted run.
+     */
+    private Run merge(final Run[] inputs,
+                      final int tier) throws IOException
+    {
+        final Run.Reader[] readers;
+        final Run.Writer   writer;
+
+        readers = new Run.Reader[inputs.length];
+        writer  = new Run.Writer(Files.createTempFile(spillDirectory, "dedup", ".run"), mergeBuffers[MERGE_FACTOR]);
+
+        for (int i = 0; i < inputs.length; i++)
+        {
+            readers[i] = inputs[i].reader(mergeBuffers[i]);
+        }
+
+        while (true)
+        {
+            int smallest;
+            smallest = -1;
+
+            for (int i = 0; i < readers.length; i++)
+            {
+                if (readers[i].hasRecord() &&
+                    (smallest < 0 || readers[i].hash() < readers[smallest].hash()))
+                {
+                    smallest = i;
+                }
+            }
+            if (smallest < 0)
+            {
+                break;
+            }
+
+            writer.write(readers[smallest].hash(), readers[smallest].tag(), readers[smallest].key());
+            readers[smallest].next();
+        }
+
+        return writer.finish(tier);
+    }
+
+    /*
+     * A run file: keys sorted by hash as fixed-width records of hash, key and tag, with the
+     * first hash of every block kept in memory.
+     */
+    private static final class Run
+    {
+        private final Path        file;
+        private final FileChannel channel;
+        private final long        count;
+        private final long[]      blockFirstHashes;
+        private final int         tier;
+
+        private Run(final Path file,
+                    final FileChannel channel,
+                    final long count,
+                    final long[] blockFirstHashes,
+                    final int tier)
+        {
+            this.file             = file;
+            this.channel          = channel;
+            this.count            = count;
+            this.blockFirstHashes = blockFirstHashes;
+            this.tier             = tier;
+        }
+
+        /*
+         * Returns whether the run holds the key, reading blocks into the given buffer. Starts
+         * at the last block whose first hash is below the hash, since records with an equal
+         * hash may begin at the end of that block.
+         */
+        private boolean contains(final long hash,
+                                 final byte tag,
+                                 final long key,
+                                 final ByteBuffer block) throws IOException
+        {
+            int lo;
+            int hi;
+
+            lo = 0;
+            hi = blockFirstHashes.length - 1;
+
+            while (lo < hi)
+            {
+                final int mid;
+                mid = (lo + hi + 1) >>> 1;
+
+                if (blockFirstHashes[mid] < hash)
+                {
+                    lo = mid;
+                }
+                else
+                {
+                    hi = mid - 1;
+                }
+            }
+
+            for (int b = lo; b < blockFirstHashes.length; b++)
+            {
+                if (blockFirstHashes[b] > hash)
+                {
+                    return false;
+                }
+
+                readBlock(b, block);
+                while (block.hasRemaining())
+                {
+                    final long recordHash;
+                    recordHash = block.getLong();
+
+                    if (recordHash > hash)
+                    {
+                        return false;
+                    }
+
+                    final long recordKey;
+                    final byte recordTag;
+
+                    recordKey = block.getLong();
+                    recordTag = block.get();
+
+                    if (recordHash == hash && recordTag == tag && recordKey == key)
+                    {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        /*
+         * Reads one block of records into the buffer and flips it.
+         */
+        private void readBlock(final int index,
+                               final ByteBuffer block) throws IOException
+        {
+            final long start;
+            final long records;
+            long       position;
+
+            start    = (long) index * BLOCK_BYTES;
+            records  = Math.min(BLOCK_RECORDS, count - (long) index * BLOCK_RECORDS);
+            position = start;
+
+            block.clear().limit((int) records * RECORD_BYTES);
+            while (block.hasRemaining())
+            {
+                final int read;
+                read = channel.read(block, position);
+
+                if (read < 0)
+                {
+                    throw new IOException("Run file " + file + " is shorter than expected");
+                }
+                position += read;
+            }
+            block.flip();
+        }
+
+        /*
+         * Returns a reader over every record, reading through the given buffer.
+         */
+        private Reader reader(final ByteBuffer buffer) throws IOException
+        {
+            return new Reader(this, buffer);
+        }
+
+        /*
+         * Closes and deletes the run file.
+         */
+        private void delete() throws IOException
+        {
+            try
+            {
+                channel.close();
+            }
+            finally
+            {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        /*
+         * Reads a run's records in order.
+         */
+        private static final class Reader
+        {
+            private final Run        run;
+            private final ByteBuffer buffer;
+            private long             position;
+            private long             remaining;
+            private long             hash;
+            private long             key;
+            private byte             tag;
+
+            private Reader(final Run run,
+                           final ByteBuffer buffer) throws IOException
+            {
+                this.run       = run;
+                this.buffer    = buffer;
+                this.remaining = run.count;
+
+                buffer.clear().flip();
+                next();
+            }
+
+            private boolean hasRecord()
+            {
+                return tag != EMPTY;
+            }
+
+            private long hash()
+            {
+                return hash;
+            }
+
+            private long key()
+            {
+                return key;
+            }
+
+            private byte tag()
+            {
+                return tag;
+            }
+
+            /*
+             * Moves to the next record, refilling the buffer when it runs out.
+             */
+            private void next() throws IOException
+            {
+                if (remaining == 0)
+                {
+                    tag = EMPTY;
+                    return;
+                }
+                if (!buffer.hasRemaining())
+                {
+                    final long records;
+                    records = Math.min(remaining, IO_BUFFER_BYTES / RECORD_BYTES);
+
+                    buffer.clear().limit((int) records * RECORD_BYTES);
+                    while (buffer.hasRemaining())
+                    {
+                        final int read;
+                        read = run.channel.read(buffer, position);
+
+                        if (read < 0)
+                        {
+                            throw new IOException("Run file " + run.file + " is shorter than expected");
+                        }
+                        position += read;
+                    }
+                    buffer.flip();
+                }
+
+                hash = buffer.getLong();
+                key  = buffer.getLong();
+                tag  = buffer.get();
+                remaining--;
+            }
+        }
+
+        /*
+         * Writes records in hash order to a new run file.
+         */
+        private static final class Writer
+        {
+            private final Path        file;
+            private final FileChannel channel;
+            private final ByteBuffer  buffer;
+            private long[]            blockFirstHashes;
+            private long              count;
+
+            private Writer(final Path file,
+                           final ByteBuffer buffer) throws IOException
+            {
+                this.file             = file;
+                this.channel          = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                this.buffer           = buffer.clear();
+                this.blockFirstHashes = new long[16];
+            }
+
+            private void write(final long hash,
+                               final byte tag,
+                               final long key) throws IOException
+            {
+                if (count % BLOCK_RECORDS == 0)
+                {
+                    final int index;
+                    index = (int) (count / BLOCK_RECORDS);
+
+                    if (index == blockFirstHashes.length)
+                    {
+                        blockFirstHashes = Arrays.copyOf(blockFirstHashes, index * 2);
+                    }
+                    blockFirstHashes[index] = hash;
+                }
+                if (buffer.remaining() < RECORD_BYTES)
+                {
+                    drain();
+                }
+
+                buffer.putLong(hash);
+                buffer.putLong(key);
+                buffer.put(tag);
+                count++;
+            }
+
+            /*
+             * Writes what is left in the buffer and returns the finished run.
+             */
+            private Run finish(final int tier) throws IOException
+            {
+                final int blocks;
+                blocks = (int) ((count + BLOCK_RECORDS - 1) / BLOCK_RECORDS);
+
+                drain();
+                return new Run(file, channel, count, Arrays.copyOf(blockFirstHashes, blocks), tier);
+            }
+
+            private void drain() throws IOException
+            {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the details of many devices to a channel in bulk.
+ * Each device is rendered with {@link DeviceDispatch#writeDetails(IDevice, StringBuilder)}
+ * into one reusable buffer and followed by a line separator, so the text matches calling
+ * {@link IDevice#printDetails()} on every device. The text is encoded in UTF-8 unless
+ * another charset is given; {@code printDetails} uses the console's charset, so the bytes
+ * only match it when the two charsets agree. The buffer is only encoded and written to the
+ * channel once it grows past its capacity, and no locks are taken.
+ * This class is not thread-safe; use one writer per thread.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceDetailsWriter implements Flushable
+{
+    private static final int    DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int    MIN_BUFFER_SIZE     = 2;
+    private static final String LINE_SEPARATOR      = System.lineSeparator();
+
+    private final WritableByteChannel channel;
+    private final StringBuilder       text;
+    private final CharBuffer          chars;
+    private final ByteBuffer          bytes;
+    private final CharsetEncoder      encoder;
+    private final int                 bufferSize;
+
+    /**
+     * Constructs a DeviceDetailsWriter that writes UTF-8 with a default buffer size.
+     *
+     * @param channel the channel to write device details to
+     */
+    public DeviceDetailsWriter(final WritableByteChannel channel)
+    {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a DeviceDetailsWriter that writes UTF-8.
+     *
+     * @param channel    the channel to write device details to
+     * @param bufferSize the number of characters to collect before writing to the channel
+     * @throws IllegalArgumentException if channel is null or bufferSize is less than 2
+     */
+    public DeviceDetailsWriter(final WritableByteChannel channel,
+                               final int bufferSize)
+    {
+        this(channel, bufferSize, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Constructs a DeviceDetailsWriter.
+     *
+     * @param channel    the channel to write device details to
+     * @param bufferSize the number of characters to collect before writing to the channel;
+     *                   at least 2, so a surrogate pair split between chunks always fits
+     * @param charset    the charset to encode the details in
+     * @throws IllegalArgumentException if channel or charset is null or bufferSize is less
+     *                                  than 2
+     */
+    public DeviceDetailsWriter(final WritableByteChannel channel,
+                               final int bufferSize,
+                               final Charset charset)
+    {
+        if (channel == null)
+        {
+            throw new IllegalArgumentException("Channel must not be null");
+        }
+        if (bufferSize < MIN_BUFFER_SIZE)
+        {
+            throw new IllegalArgumentException("Buffer size must be at least " + MIN_BUFFER_SIZE);
+        }
+        if (charset == null)
+        {
+            throw new IllegalArgumentException("Charset must not be null");
+        }
+
+        this.channel    = channel;
+        this.bufferSize = bufferSize;
+        this.text       = new StringBuilder(bufferSize * 2);
+        this.chars      = CharBuffer.allocate(bufferSize);
+        this.encoder    = charset.newEncoder();
+        this.bytes      = ByteBuffer.allocateDirect(bufferSize * (int) Math.ceil(encoder.maxBytesPerChar()));
+    }
+
+    /**
+     * Writes the details of one device followed by a line separator.
+     *
+     * @param device the device to write
+     * @throws IOException if the channel cannot be written to
+     */
+    public void write(final IDevice device) throws IOException
+    {
+        DeviceDispatch.writeDetails(device, text);
+        text.append(LINE_SEPARATOR);
+
+        if (text.length() >= bufferSize)
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the details of every device in the collection.
+     *
+     * @param devices the devices to write
+     * @throws IOException if the channel cannot be written to
+     */
+    public void writeAll(final Iterable<? extends IDevice> devices) throws IOException
+    {
+        for (final IDevice device : devices)
+        {
+            write(device);
+        }
+    }
+
+    /**
+     * Encodes everything buffered so far and writes it to the channel.
+     *
+     * @throws IOException if the channel cannot be written to
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        int start;
+        start = 0;
+
+        encoder.reset();
+        while (start < text.length())
+        {
+            final int end;
+            end = Math.min(text.length(), start + chars.capacity());
+
+            chars.clear();
+            text.getChars(start, end, chars.array(), 0);
+            chars.limit(end - start);
+
+            encode(end == text.length());
+            start = end - chars.remaining();
+        }
+        text.setLength(0);
+    }
+
+    /*
+     * Encodes the chunk in chars, writing the bytes to the channel whenever the byte buffer fills.
+     * Characters left over (half of a surrogate pair) stay in chars and are copied again at
+     * the start of the next chunk; since chars holds at least two, each chunk makes progress.
+     */
+    private void encode(final boolean endOfInput) throws IOException
+    {
+        CoderResult result;
+        result = encoder.encode(chars, bytes, endOfInput);
+
+        while (result.isOverflow())
+        {
+            drain();
+            result = encoder.encode(chars, bytes, endOfInput);
+        }
+        if (result.isError())
+        {
+            result.throwException();
+        }
+        if (endOfInput)
+        {
+            while (encoder.flush(bytes).isOverflow())
+            {
+                drain();
+            }
+        }
+        drain();
+    }
+
+    /*
+     * Writes every byte in the byte buffer to the channel.
+     */
+    private void drain() throws IOException
+    {
+        bytes.flip();
+        while (bytes.hasRemaining())
+        {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Type-specialized versions of the {@link IDevice} methods that hot loops over mixed fleets
+ * call. A virtual call on a shuffled fleet sees every device type at the same call site,
+ * so the JIT cannot inline it. Because {@link IDevice} is sealed, these methods can test
+ * for each concrete type in turn with a pattern and make the call on that type, giving
+ * every type its own call site that only ever sees one receiver and can be inlined.
+ * Registry views are rare in mixed fleets, so they share the last, virtual call.
+ * <p>
+ * Each method returns exactly what the matching {@link IDevice} method would.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceDispatch
+{
+    private DeviceDispatch()
+    {
+    }
+
+    /**
+     * Returns the device's hash code.
+     *
+     * @param device the device
+     * @return the same value as {@code device.hashCode()}
+     */
+    public static int hashCode(final IDevice device)
+    {
+        if (device instanceof IPod iPod)
+        {
+            return iPod.hashCode();
+        }
+        if (device instanceof IPad iPad)
+        {
+            return iPad.hashCode();
+        }
+        if (device instanceof IPhone16 iPhone16)
+        {
+            return iPhone16.hashCode();
+        }
+        if (device instanceof IPhone iPhone)
+        {
+            return iPhone.hashCode();
+        }
+        return device.hashCode();
+    }
+
+    /**
+     * Returns whether the device equals another object.
+     *
+     * @param device the device
+     * @param other  the object to compare with
+     * @return the same value as {@code device.equals(other)}
+     */
+    public static boolean equals(final IDevice device,
+                                 final Object other)
+    {
+        if (device instanceof IPod iPod)
+        {
+            return iPod.equals(other);
+        }
+        if (device instanceof IPad iPad)
+        {
+            return iPad.equals(other);
+        }
+        if (device instanceof IPhone16 iPhone16)
+        {
+            return iPhone16.equals(other);
+        }
+        if (device instanceof IPhone iPhone)
+        {
+            return iPhone.equals(other);
+        }
+        return device.equals(other);
+    }
+
+    /**
+     * Appends the device's details to the given Appendable.
+     *
+     * @param device the device
+     * @param out    the Appendable to write to
+     * @throws IOException if out cannot be written to
+     */
+    public static void writeDetails(final IDevice device,
+                                    final Appendable out) throws IOException
+    {
+        if (device instanceof IPod iPod)
+        {
+            iPod.writeDetails(out);
+        }
+        else if (device instanceof IPad iPad)
+        {
+            iPad.writeDetails(out);
+        }
+        else if (device instanceof IPhone16 iPhone16)
+        {
+            iPhone16.writeDetails(out);
+        }
+        else if (device instanceof IPhone iPhone)
+        {
+            iPhone.writeDetails(out);
+        }
+        else
+        {
+            device.writeDetails(out);
+        }
+    }
+
+    /**
+     * Appends the device's details to a StringBuilder.
+     *
+     * @param device the device
+     * @param out    the StringBuilder to write to
+     */
+    public static void writeDetails(final IDevice device,
+                                    final StringBuilder out)
+    {
+        try
+        {
+            writeDetails(device, (Appendable) out);
+        }
+        catch (final IOException e)
+        {
+            // StringBuilder never throws IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the device's details as a String.
+     *
+     * @param device the device
+     * @return the same String as {@code device.toString()}
+     */
+    public static String toString(final IDevice device)
+    {
+        if (device instanceof IPod iPod)
+        {
+            return iPod.toString();
+        }
+        if (device instanceof IPad iPad)
+        {
+            return iPad.toString();
+        }
+        if (device instanceof IPhone16 iPhone16)
+        {
+            return iPhone16.toString();
+        }
+        if (device instanceof IPhone iPhone)
+        {
+            return iPhone.toString();
+        }
+        return device.toString();
+    }
+
+    /**
+     * Prints the device's details to the console.
+     *
+     * @param device the device
+     */
+    public static void printDetails(final IDevice device)
+    {
+        if (device instanceof IPod iPod)
+        {
+            iPod.printDetails();
+        }
+        else if (device instanceof IPad iPad)
+        {
+            iPad.printDetails();
+        }
+        else if (device instanceof IPhone16 iPhone16)
+        {
+            iPhone16.printDetails();
+        }
+        else if (device instanceof IPhone iPhone)
+        {
+            iPhone.printDetails();
+        }
+        else
+        {
+            device.printDetails();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.function.IntConsumer;
+
+/**
+ * An index that answers "which devices are equal to this one" using the same rules as each
+ * device's {@code equals} method. Every device type has its own {@link LongMultiIndex} keyed
+ * on a primitive form of its full equality key:
+ * <ul>
+ *     <li>{@link IPhone} by remaining plan minutes</li>
+ *     <li>{@link IPhone16} by remaining plan minutes and camera quality</li>
+ *     <li>{@link IPod} by number of songs stored</li>
+ *     <li>{@link IPad} by OS version code</li>
+ * </ul>
+ * An IPad whose OS version did not fit in the shared {@link IPad#OS_VERSIONS} table is keyed
+ * by a code from the index's own table instead, offset past every shared code.
+ * Minutes are compared as {@code equals} compares them, with {@code ==}: -0.0 matches 0.0,
+ * and a phone whose minutes are NaN is equal to nothing, so it is never indexed and never
+ * matches. A registry view is indexed and looked up as the device it shows. Each device is
+ * stored with an int id chosen by the caller, for example its index in a
+ * {@link DeviceRegistry}.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceEqualityIndex
+{
+    private static final long INLINE_KEYS = 1L << 32;
+
+    private final LongMultiIndex iPhones;
+    private final LongMultiIndex iPhone16sWithHighResCamera;
+    private final LongMultiIndex iPhone16sWithoutHighResCamera;
+    private final LongMultiIndex iPods;
+    private final LongMultiIndex iPads;
+    private final SymbolTable    inlineOSVersions;
+
+    /**
+     * Constructs an empty DeviceEqualityIndex.
+     */
+    public DeviceEqualityIndex()
+    {
+        iPhones                       = new LongMultiIndex();
+        iPhone16sWithHighResCamera    = new LongMultiIndex();
+        iPhone16sWithoutHighResCamera = new LongMultiIndex();
+        iPods                         = new LongMultiIndex();
+        iPads                         = new LongMultiIndex();
+        inlineOSVersions              = new SymbolTable();
+    }
+
+    /*
+     * Returns the index that holds devices of the same class as the given device.
+     */
+    private LongMultiIndex indexFor(final IDevice device)
+    {
+        final Class<?> type;
+        type = device.getClass();
+
+        if (type == IPhone16.class)
+        {
+            final IPhone16 iPhone16;
+            iPhone16 = (IPhone16) device;
+
+            return iPhone16.isHighResCamera() ? iPhone16sWithHighResCamera : iPhone16sWithoutHighResCamera;
+        }
+        if (type == IPhone.class)
+        {
+            return iPhones;
+        }
+        if (type == IPod.class)
+        {
+            return iPods;
+        }
+        if (type == IPad.class)
+        {
+            return iPads;
+        }
+        throw new IllegalArgumentException("Unsupported device type");
+    }
+
+    /*
+     * Returns whether the given device is equal to nothing, not even itself: a phone
+     * whose minutes are NaN, since equals compares minutes with ==.
+     */
+    private static boolean isEqualToNothing(final IDevice device)
+    {
+        return device instanceof IPhone && Double.isNaN(((IPhone) device).getRemainingPlanMinutes());
+    }
+
+    /*
+     * Returns the primitive equality key of the given device. Adding 0.0 turns -0.0 into
+     * 0.0, since equals compares minutes with ==. Only adding puts an inline OS version in
+     * inlineOSVersions; a lookup of one that was never added finds NO_SYMBOL, whose key
+     * INLINE_KEYS - 1 no device is stored under.
+     */
+    private long keyFor(final IDevice device,
+                        final boolean adding)
+    {
+        if (device instanceof IPhone)
+        {
+            final IPhone iPhone;
+            iPhone = (IPhone) device;
+
+            return Double.doubleToLongBits(iPhone.getRemainingPlanMinutes() + 0.0);
+        }
+        if (device instanceof IPod)
+        {
+            final IPod iPod;
+            iPod = (IPod) device;
+
+            return iPod.getNumSongsStored();
+        }
+
+        final IPad iPad;
+        iPad = (IPad) device;
+
+        if (iPad.getOSVersionCode() == SymbolTable.NO_SYMBOL && iPad.getOSVersion() != null)
+        {
+            final int code;
+            code = adding ? inlineOSVersions.encode(iPad.getOSVersion()) : inlineOSVersions.find(iPad.getOSVersion());
+
+            return INLINE_KEYS + code;
+        }
+
+        return iPad.getOSVersionCode();
+    }
+
+    /**
+     * Adds a device to the index under the given id. A phone whose minutes are NaN is
+     * equal to nothing, so it is not stored.
+     *
+     * @param device the device to add
+     * @param id     the id to report when the device matches a lookup
+     */
+    public void add(final IDevice device,
+                    final int id)
+    {
+        if (DeviceRegistry.isView(device))
+        {
+            add(DeviceRegistry.materialize(device), id);
+            return;
+        }
+
+        final LongMultiIndex index;
+        index = indexFor(device);
+
+        if (!isEqualToNothing(device))
+        {
+            index.add(keyFor(device, true), id);
+        }
+    }
+
+    /**
+     * Returns how many indexed devices are equal to the probe.
+     *
+     * @param probe the device to look up
+     * @return the number of equal devices
+     */
+    public int countEqual(final IDevice probe)
+    {
+        if (DeviceRegistry.isView(probe))
+        {
+            return countEqual(DeviceRegistry.materialize(probe));
+        }
+
+        final LongMultiIndex index;
+        index = indexFor(probe);
+
+        return isEqualToNothing(probe) ? 0 : index.count(keyFor(probe, false));
+    }
+
+    /**
+     * Passes the id of every indexed device equal to the probe to the action,
+     * in the order the devices were added.
+     *
+     * @param probe  the device to look up
+     * @param action the action to run for each matching id
+     */
+    public void forEachEqual(final IDevice probe,
+                             final IntConsumer action)
+    {
+        if (DeviceRegistry.isView(probe))
+        {
+            forEachEqual(DeviceRegistry.materialize(probe), action);
+            return;
+        }
+
+        final LongMultiIndex index;
+        index = indexFor(probe);
+
+        if (!isEqualToNothing(probe))
+        {
+            index.forEach(keyFor(probe, false), action);
+        }
+    }
+}
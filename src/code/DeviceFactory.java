@@ -0,0 +1,105 @@
+/**
+ * Creates devices without throwing for invalid values.
+ * Values are checked with {@link DeviceValidation} before a constructor is called, and
+ * a rejected record returns null and is counted in a {@link ViolationCounts}, with no
+ * exception or message created. The constructors themselves still throw as before.
+ * This class is not thread-safe; use one factory per thread.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceFactory
+{
+    private final ViolationCounts violations;
+    private int                   lastResult;
+
+    /**
+     * Constructs a DeviceFactory.
+     *
+     * @param violations the sink that counts rejected records
+     */
+    public DeviceFactory(final ViolationCounts violations)
+    {
+        if (violations == null)
+        {
+            throw new IllegalArgumentException("Violation counts must not be null");
+        }
+        this.violations = violations;
+    }
+
+    /**
+     * Creates an IPhone if the values are valid.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @return the new IPhone, or null if the values are invalid
+     */
+    public IPhone createIPhone(final double remainingPlanMinutes,
+                               final String planCarrier)
+    {
+        lastResult = DeviceValidation.validateIPhone(remainingPlanMinutes, planCarrier);
+
+        return violations.record(lastResult) ? new IPhone(remainingPlanMinutes, planCarrier) : null;
+    }
+
+    /**
+     * Creates an IPhone16 if the values are valid.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @param highResCamera        whether the phone has a high-res camera
+     * @param memoryGigabytes      the amount of memory for the phone
+     * @return the new IPhone16, or null if the values are invalid
+     */
+    public IPhone16 createIPhone16(final double remainingPlanMinutes,
+                                   final String planCarrier,
+                                   final boolean highResCamera,
+                                   final int memoryGigabytes)
+    {
+        lastResult = DeviceValidation.validateIPhone16(remainingPlanMinutes, planCarrier, memoryGigabytes);
+
+        return violations.record(lastResult) ?
+               new IPhone16(remainingPlanMinutes, planCarrier, highResCamera, memoryGigabytes) :
+               null;
+    }
+
+    /**
+     * Creates an IPod if the values are valid.
+     *
+     * @param currentVolumeDB the current volume in decibels (dB)
+     * @param numSongsStored  the number of songs stored on the iPod
+     * @return the new IPod, or null if the values are invalid
+     */
+    public IPod createIPod(final double currentVolumeDB,
+                           final int numSongsStored)
+    {
+        lastResult = DeviceValidation.validateIPod(currentVolumeDB, numSongsStored);
+
+        return violations.record(lastResult) ? new IPod(currentVolumeDB, numSongsStored) : null;
+    }
+
+    /**
+     * Creates an IPad. An IPad has no fields that can be rejected.
+     *
+     * @param hasCase   true if the iPad has a protective case
+     * @param OSVersion the operating system version of the iPad
+     * @return the new IPad
+     */
+    public IPad createIPad(final boolean hasCase,
+                           final String OSVersion)
+    {
+        lastResult = DeviceValidation.VALID;
+
+        return new IPad(hasCase, OSVersion);
+    }
+
+    /**
+     * Getter for the result code of the most recent create call.
+     *
+     * @return {@link DeviceValidation#VALID} or the rules that were broken
+     */
+    public int getLastResult()
+    {
+        return lastResult;
+    }
+}
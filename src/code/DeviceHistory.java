@@ -0,0 +1,905 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compressed history of one numeric value per device over time, such as the
+ * {@link IPhone#getRemainingPlanMinutes() remaining plan minutes} of a phone or the
+ * {@link IPod#getCurrentVolumeDB() volume} of an IPod, recorded at every fleet snapshot.
+ * <p>
+ * Each device's series is encoded as in Facebook's Gorilla time-series store. A timestamp
+ * is stored as the change in the gap since the previous one, which is a single bit when
+ * snapshots are taken at a steady rate. A value is XORed with the previous value, and only
+ * the bits in between the leading and trailing zeros of the result are kept, which is a
+ * single bit when the value has not changed and a few bits when it changes slowly. Raw,
+ * each point takes 16 bytes; a minute-by-minute series of plan minutes that only drain
+ * during calls takes about 1.
+ * <p>
+ * Points are grouped into blocks of {@value #BLOCK_POINTS} that decode independently. Each
+ * block keeps the count, minimum, maximum and sum of its values, so range reads skip the
+ * blocks outside the range, and downsampled aggregates use a block's summary without
+ * decoding it when the block falls in one bucket. Timestamps are milliseconds and must not
+ * decrease within a device's series. A DeviceHistory is not thread-safe.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceHistory
+{
+    /**
+     * The number of points in a block.
+     */
+    public static final int BLOCK_POINTS = 1_024;
+
+    private static final int RAW_POINT_BYTES = Long.BYTES + Double.BYTES;
+
+    private final Map<Long, Series> series;
+
+    /**
+     * Constructs an empty DeviceHistory.
+     */
+    public DeviceHistory()
+    {
+        series = new HashMap<>();
+    }
+
+    /**
+     * Returns the series of a device, creating an empty one on first use. Appending through
+     * the series saves looking the device up for every point.
+     *
+     * @param deviceId the caller's id for the device
+     * @return the device's series
+     */
+    public Series series(final long deviceId)
+    {
+        return series.computeIfAbsent(deviceId, id -> new Series());
+    }
+
+    /**
+     * Appends a value to a device's series.
+     *
+     * @param deviceId        the caller's id for the device
+     * @param timestampMillis the time of the value, in milliseconds
+     * @param value           the value
+     * @throws IllegalArgumentException if timestampMillis is before the device's last point
+     */
+    public void append(final long deviceId,
+                       final long timestampMillis,
+                       final double value)
+    {
+        series(deviceId).append(timestampMillis, value);
+    }
+
+    /**
+     * Appends a device's current value to its series: the remaining plan minutes of an
+     * IPhone or IPhone16, or the current volume of an IPod, or of a registry view of one.
+     *
+     * @param deviceId        the caller's id for the device
+     * @param timestampMillis the time of the snapshot, in milliseconds
+     * @param device          the device as it was at that time
+     * @throws IllegalArgumentException if the device is not a phone or IPod, or
+     *                                  timestampMillis is before the device's last point
+     */
+    public void append(final long deviceId,
+                       final long timestampMillis,
+                       final IDevice device)
+    {
+        final double value;
+
+        if (device instanceof IPhone iPhone)
+        {
+            value = iPhone.getRemainingPlanMinutes();
+        }
+        else if (device instanceof IPod iPod)
+        {
+            value = iPod.getCurrentVolumeDB();
+        }
+        else if (device instanceof DeviceRegistry.IPhoneView iPhone)
+        {
+            value = iPhone.getRemainingPlanMinutes();
+        }
+        else if (device instanceof DeviceRegistry.IPhone16View iPhone16)
+        {
+            value = iPhone16.getRemainingPlanMinutes();
+        }
+        else if (device instanceof DeviceRegistry.IPodView iPod)
+        {
+            value = iPod.getCurrentVolumeDB();
+        }
+        else
+        {
+            throw new IllegalArgumentException("Only phones and IPods have a history");
+        }
+
+        append(deviceId, timestampMillis, value);
+    }
+
+    /**
+     * Passes every point of a device's series from fromMillis to toMillis, inclusive, to
+     * the consumer in time order.
+     *
+     * @param deviceId   the caller's id for the device
+     * @param fromMillis the start of the range
+     * @param toMillis   the end of the range
+     * @param consumer   receives each point
+     * @return the number of points read; 0 if the device has no history
+     */
+    public int read(final long deviceId,
+                    final long fromMillis,
+                    final long toMillis,
+                    final PointConsumer consumer)
+    {
+        final Series deviceSeries;
+        deviceSeries = series.get(deviceId);
+
+        return deviceSeries == null ? 0 : deviceSeries.read(fromMillis, toMillis, consumer);
+    }
+
+    /**
+     * Summarizes a device's series from fromMillis to toMillis, inclusive, in buckets of
+     * bucketMillis starting at fromMillis.
+     *
+     * @param deviceId     the caller's id for the device
+     * @param fromMillis   the start of the range and of the first bucket
+     * @param toMillis     the end of the range
+     * @param bucketMillis the length of each bucket
+     * @return the buckets that hold at least one point, in time order
+     * @throws IllegalArgumentException if bucketMillis is not positive
+     */
+    public List<Aggregate> aggregate(final long deviceId,
+                                     final long fromMillis,
+                                     final long toMillis,
+                                     final long bucketMillis)
+    {
+        final Series deviceSeries;
+        deviceSeries = series.get(deviceId);
+
+        if (deviceSeries == null)
+        {
+            Series.checkBucket(bucketMillis);
+            return List.of();
+        }
+
+        return deviceSeries.aggregate(fromMillis, toMillis, bucketMillis);
+    }
+
+    /**
+     * Getter for the number of devices with a series.
+     *
+     * @return the number of devices
+     */
+    public int getDeviceCount()
+    {
+        return series.size();
+    }
+
+    /**
+     * Getter for the number of points stored over all devices.
+     *
+     * @return the number of points
+     */
+    public long getPointCount()
+    {
+        long points;
+        points = 0;
+
+        for (final Series deviceSeries : series.values())
+        {
+            points += deviceSeries.getPointCount();
+        }
+
+        return points;
+    }
+
+    /**
+     * Getter for the number of bytes the encoded points take over all devices, not
+     * counting the block summaries.
+     *
+     * @return the number of bytes
+     */
+    public long getCompressedBytes()
+    {
+        long bytes;
+        bytes = 0;
+
+        for (final Series deviceSeries : series.values())
+        {
+            bytes += deviceSeries.getCompressedBytes();
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Returns how many times smaller the points are encoded than as a raw timestamp and
+     * double each.
+     *
+     * @return the compression ratio, or 0 if nothing has been stored
+     */
+    public double getCompressionRatio()
+    {
+        final long bytes;
+        bytes = getCompressedBytes();
+
+        return bytes == 0 ? 0.0 : (double) getPointCount() * RAW_POINT_BYTES / bytes;
+    }
+
+    /**
+     * Receives the points of a series without boxing them.
+     */
+    @FunctionalInterface
+    public interface PointConsumer
+    {
+        /**
+         * Receives one point.
+         *
+         * @param timestampMillis the time of the point, in milliseconds
+         * @param value           the value
+         */
+        void accept(long timestampMillis,
+                    double value);
+    }
+
+    /**
+     * The history of one device.
+     */
+    public static final class Series
+    {
+        private final List<Block> blocks;
+        private long              points;
+
+        private Series()
+        {
+            blocks = new ArrayList<>();
+        }
+
+        /*
+         * Throws if a bucket length is not positive.
+         */
+        private static void checkBucket(final long bucketMillis)
+        {
+            if (bucketMillis <= 0)
+            {
+                throw new IllegalArgumentException("Bucket length must be positive");
+            }
+        }
+
+        /**
+         * Appends a value to the series.
+         *
+         * @param timestampMillis the time of the value, in milliseconds
+         * @param value           the value
+         * @throws IllegalArgumentException if timestampMillis is before the last point
+         */
+        public void append(final long timestampMillis,
+                           final double value)
+        {
+            Block last;
+            last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+
+            if (last != null && timestampMillis < last.lastTime)
+            {
+                throw new IllegalArgumentException("Timestamp " + timestampMillis + " is before the last point");
+            }
+            if (last == null || last.count == BLOCK_POINTS)
+            {
+                if (last != null)
+                {
+                    last.seal();
+                }
+                last = new Block();
+                blocks.add(last);
+            }
+
+            last.append(timestampMillis, value);
+            points++;
+        }
+
+        /**
+         * Passes every point from fromMillis to toMillis, inclusive, to the consumer in
+         * time order.
+         *
+         * @param fromMillis the start of the range
+         * @param toMillis   the end of the range
+         * @param consumer   receives each point
+         * @return the number of points read
+         */
+        public int read(final long fromMillis,
+                        final long toMillis,
+                        final PointConsumer consumer)
+        {
+            final Decoder decoder;
+            int           read;
+
+            decoder = new Decoder();
+            read    = 0;
+
+            for (int i = firstBlockEndingAtOrAfter(fromMillis); i < blocks.size(); i++)
+            {
+                final Block block;
+                block = blocks.get(i);
+
+                if (block.firstTime > toMillis)
+                {
+                    break;
+                }
+
+                decoder.reset(block);
+                while (decoder.next())
+                {
+                    if (decoder.time > toMillis)
+                    {
+                        break;
+                    }
+                    if (decoder.time >= fromMillis)
+                    {
+                        consumer.accept(decoder.time, decoder.value);
+                        read++;
+                    }
+                }
+            }
+
+            return read;
+        }
+
+        /**
+         * Summarizes the points from fromMillis to toMillis, inclusive, in buckets of
+         * bucketMillis starting at fromMillis. A block that lies wholly in one bucket is
+         * summarized without being decoded.
+         *
+         * @param fromMillis   the start of the range and of the first bucket
+         * @param toMillis     the end of the range
+         * @param bucketMillis the length of each bucket
+         * @return the buckets that hold at least one point, in time order
+         * @throws IllegalArgumentException if bucketMillis is not positive
+         */
+        public List<Aggregate> aggregate(final long fromMillis,
+                                         final long toMillis,
+                                         final long bucketMillis)
+        {
+            checkBucket(bucketMillis);
+
+            final List<Aggregate> buckets;
+            final Decoder         decoder;
+
+            buckets = new ArrayList<>();
+            decoder = new Decoder();
+
+            for (int i = firstBlockEndingAtOrAfter(fromMillis); i < blocks.size(); i++)
+            {
+                final Block block;
+                block = blocks.get(i);
+
+                if (block.firstTime > toMillis)
+                {
+                    break;
+                }
+
+                if (block.firstTime >= fromMillis && block.lastTime <= toMillis &&
+                    bucketOf(block.firstTime, fromMillis, bucketMillis) == bucketOf(block.lastTime, fromMillis, bucketMillis))
+                {
+                    bucketFor(buckets, block.firstTime, fromMillis, bucketMillis)
+                        .add(block.count, block.min, block.max, block.sum, block.lastValue);
+                    continue;
+                }
+
+                decoder.reset(block);
+                while (decoder.next())
+                {
+                    if (decoder.time > toMillis)
+                    {
+                        break;
+                    }
+                    if (decoder.time >= fromMillis)
+                    {
+                        bucketFor(buckets, decoder.time, fromMillis, bucketMillis)
+                            .add(1, decoder.value, decoder.value, decoder.value, decoder.value);
+                    }
+                }
+            }
+
+            return buckets;
+        }
+
+        /**
+         * Getter for the number of points in the series.
+         *
+         * @return the number of points
+         */
+        public long getPointCount()
+        {
+            return points;
+        }
+
+        /**
+         * Getter for the number of bytes the encoded points take, not counting the block
+         * summaries.
+         *
+         * @return the number of bytes
+         */
+        public long getCompressedBytes()
+        {
+            long bits;
+            bits = 0;
+
+            for (final Block block : blocks)
+            {
+                bits += block.bitCount;
+            }
+
+            return (bits + Byte.SIZE - 1) / Byte.SIZE;
+        }
+
+        /*
+         * Returns the index of the first block whose last point is at or after the time.
+         */
+        private int firstBlockEndingAtOrAfter(final long timeMillis)
+        {
+            int low;
+            int high;
+
+            low  = 0;
+            high = blocks.size();
+
+            while (low < high)
+            {
+                final int middle;
+                middle = (low + high) >>> 1;
+
+                if (blocks.get(middle).lastTime < timeMillis)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        /*
+         * Returns the index of the bucket a time falls in.
+         */
+        private static long bucketOf(final long timeMillis,
+                                     final long fromMillis,
+                                     final long bucketMillis)
+        {
+            return (timeMillis - fromMillis) / bucketMillis;
+        }
+
+        /*
+         * Returns the bucket a time falls in, adding it if it is after the last bucket.
+         * Times arrive in order, so the bucket is always the last one or a new one.
+         */
+        private static Aggregate bucketFor(final List<Aggregate> buckets,
+                                           final long timeMillis,
+                                           final long fromMillis,
+                                           final long bucketMillis)
+        {
+            final long start;
+            start = fromMillis + bucketOf(timeMillis, fromMillis, bucketMillis) * bucketMillis;
+
+            if (buckets.isEmpty() || buckets.get(buckets.size() - 1).startMillis != start)
+            {
+                buckets.add(new Aggregate(start));
+            }
+
+            return buckets.get(buckets.size() - 1);
+        }
+    }
+
+    /**
+     * The count, minimum, maximum, mean and last value of the points in one bucket.
+     */
+    public static final class Aggregate
+    {
+        private final long startMillis;
+        private int        count;
+        private double     min;
+        private double     max;
+        private double     sum;
+        private double     last;
+
+        private Aggregate(final long startMillis)
+        {
+            this.startMillis = startMillis;
+            this.min         = Double.POSITIVE_INFINITY;
+            this.max         = Double.NEGATIVE_INFINITY;
+        }
+
+        /*
+         * Adds the summary of one or more later points.
+         */
+        private void add(final int count,
+                         final double min,
+                         final double max,
+                         final double sum,
+                         final double last)
+        {
+            this.count += count;
+            this.min    = Math.min(this.min, min);
+            this.max    = Math.max(this.max, max);
+            this.sum   += sum;
+            this.last   = last;
+        }
+
+        /**
+         * Getter for the start of the bucket.
+         *
+         * @return the time in milliseconds
+         */
+        public long getStartMillis()
+        {
+            return startMillis;
+        }
+
+        /**
+         * Getter for the number of points in the bucket.
+         *
+         * @return the number of points, at least 1
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Getter for the smallest value in the bucket.
+         *
+         * @return the minimum
+         */
+        public double getMin()
+        {
+            return min;
+        }
+
+        /**
+         * Getter for the largest value in the bucket.
+         *
+         * @return the maximum
+         */
+        public double getMax()
+        {
+            return max;
+        }
+
+        /**
+         * Returns the mean of the values in the bucket.
+         *
+         * @return the mean
+         */
+        public double getMean()
+        {
+            return sum / count;
+        }
+
+        /**
+         * Getter for the latest value in the bucket.
+         *
+         * @return the last value
+         */
+        public double getLast()
+        {
+            return last;
+        }
+    }
+
+    /*
+     * Up to BLOCK_POINTS points encoded into a bit stream, most significant bit first, with
+     * a summary of their values and the state the next point is encoded against.
+     */
+    private static final class Block
+    {
+        private static final int INITIAL_WORDS = 16;
+
+        private long[] words;
+        private long   bitCount;
+        private int    count;
+        private long   firstTime;
+        private long   lastTime;
+        private long   lastDelta;
+        private long   lastBits;
+        private int    lastLeading;
+        private int    lastTrailing;
+        private double lastValue;
+        private double min;
+        private double max;
+        private double sum;
+
+        private Block()
+        {
+            words = new long[INITIAL_WORDS];
+            min   = Double.POSITIVE_INFINITY;
+            max   = Double.NEGATIVE_INFINITY;
+        }
+
+        private void append(final long timeMillis,
+                            final double value)
+        {
+            final long bits;
+            bits = Double.doubleToRawLongBits(value);
+
+            if (count == 0)
+            {
+                write(timeMillis, Long.SIZE);
+                write(bits, Long.SIZE);
+                firstTime   = timeMillis;
+                lastLeading = Long.SIZE;
+            }
+            else
+            {
+                final long delta;
+                delta = timeMillis - lastTime;
+
+                writeDeltaOfDelta(delta - lastDelta);
+                writeXor(bits ^ lastBits);
+                lastDelta = delta;
+            }
+
+            lastTime  = timeMillis;
+            lastBits  = bits;
+            lastValue = value;
+            min       = Math.min(min, value);
+            max       = Math.max(max, value);
+            sum      += value;
+            count++;
+        }
+
+        /*
+         * Writes the change in the gap between timestamps: '0' for none, then '10', '110'
+         * and '1110' followed by 7, 9 and 12 bits, and '1111' followed by all 64.
+         */
+        private void writeDeltaOfDelta(final long deltaOfDelta)
+        {
+            if (deltaOfDelta == 0)
+            {
+                write(0b0, 1);
+            }
+            else if (fits(deltaOfDelta, 7))
+            {
+                write(0b10, 2);
+                write(deltaOfDelta, 7);
+            }
+            else if (fits(deltaOfDelta, 9))
+            {
+                write(0b110, 3);
+                write(deltaOfDelta, 9);
+            }
+            else if (fits(deltaOfDelta, 12))
+            {
+                write(0b1110, 4);
+                write(deltaOfDelta, 12);
+            }
+            else
+            {
+                write(0b1111, 4);
+                write(deltaOfDelta, Long.SIZE);
+            }
+        }
+
+        /*
+         * Writes a value XORed with the previous one: '0' if they are equal, '10' and the
+         * meaningful bits if they fit in the previous window of leading and trailing zeros,
+         * or '11', 5 bits of leading zeros, 6 bits of length less one and the meaningful bits.
+         */
+        private void writeXor(final long xor)
+        {
+            if (xor == 0)
+            {
+                write(0b0, 1);
+                return;
+            }
+
+            final int leading;
+            final int trailing;
+
+            // Only 5 bits hold the leading zeros
+            leading  = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            trailing = Long.numberOfTrailingZeros(xor);
+
+            if (leading >= lastLeading && trailing >= lastTrailing)
+            {
+                write(0b10, 2);
+                write(xor >>> lastTrailing, Long.SIZE - lastLeading - lastTrailing);
+            }
+            else
+            {
+                final int length;
+                length = Long.SIZE - leading - trailing;
+
+                write(0b11, 2);
+                write(leading, 5);
+                write(length - 1, 6);
+                write(xor >>> trailing, length);
+                lastLeading  = leading;
+                lastTrailing = trailing;
+            }
+        }
+
+        /*
+         * Returns whether a value fits in the given number of bits as a signed number.
+         */
+        private static boolean fits(final long value,
+                                    final int bits)
+        {
+            return value >= -(1L << (bits - 1)) && value < 1L << (bits - 1);
+        }
+
+        /*
+         * Appends the low bits of a value to the stream.
+         */
+        private void write(final long value,
+                           final int bits)
+        {
+            final int  word;
+            final int  used;
+            final long masked;
+
+            word   = (int) (bitCount >>> 6);
+            used   = (int) (bitCount & 63);
+            masked = bits == Long.SIZE ? value : value & ((1L << bits) - 1);
+
+            if (word + 1 >= words.length)
+            {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+
+            if (used + bits <= Long.SIZE)
+            {
+                words[word] |= masked << (Long.SIZE - used - bits);
+            }
+            else
+            {
+                final int spill;
+                spill = used + bits - Long.SIZE;
+
+                words[word]     |= masked >>> spill;
+                words[word + 1] |= masked << (Long.SIZE - spill);
+            }
+            bitCount += bits;
+        }
+
+        /*
+         * Releases the space left over at the end of a full block.
+         */
+        private void seal()
+        {
+            words = Arrays.copyOf(words, (int) ((bitCount + Long.SIZE - 1) >>> 6));
+        }
+    }
+
+    /*
+     * Reads the points of one block back in order.
+     */
+    private static final class Decoder
+    {
+        private Block  block;
+        private long   position;
+        private int    read;
+        private long   time;
+        private long   delta;
+        private long   bits;
+        private int    leading;
+        private int    trailing;
+        private double value;
+
+        private void reset(final Block block)
+        {
+            this.block    = block;
+            this.position = 0;
+            this.read     = 0;
+            this.delta    = 0;
+            this.leading  = Long.SIZE;
+            this.trailing = 0;
+        }
+
+        /*
+         * Decodes the next point into time and value, or returns false at the end.
+         */
+        private boolean next()
+        {
+            if (read == block.count)
+            {
+                return false;
+            }
+
+            if (read == 0)
+            {
+                time = readBits(Long.SIZE);
+                bits = readBits(Long.SIZE);
+            }
+            else
+            {
+                delta += readDeltaOfDelta();
+                time  += delta;
+                bits  ^= readXor();
+            }
+
+            value = Double.longBitsToDouble(bits);
+            read++;
+            return true;
+        }
+
+        private long readDeltaOfDelta()
+        {
+            if (readBits(1) == 0)
+            {
+                return 0;
+            }
+            if (readBits(1) == 0)
+            {
+                return signed(readBits(7), 7);
+            }
+            if (readBits(1) == 0)
+            {
+                return signed(readBits(9), 9);
+            }
+            if (readBits(1) == 0)
+            {
+                return signed(readBits(12), 12);
+            }
+            return readBits(Long.SIZE);
+        }
+
+        private long readXor()
+        {
+            if (readBits(1) == 0)
+            {
+                return 0;
+            }
+            if (readBits(1) == 1)
+            {
+                final int length;
+
+                leading  = (int) readBits(5);
+                length   = (int) readBits(6) + 1;
+                trailing = Long.SIZE - leading - length;
+            }
+
+            return readBits(Long.SIZE - leading - trailing) << trailing;
+        }
+
+        /*
+         * Sign-extends the low bits of a value.
+         */
+        private static long signed(final long value,
+                                   final int bits)
+        {
+            return value << (Long.SIZE - bits) >> (Long.SIZE - bits);
+        }
+
+        /*
+         * Reads the next bits of the stream as an unsigned number.
+         */
+        private long readBits(final int bits)
+        {
+            final long[] words;
+            final int    word;
+            final int    used;
+            long         result;
+
+            words = block.words;
+            word  = (int) (position >>> 6);
+            used  = (int) (position & 63);
+
+            if (used + bits <= Long.SIZE)
+            {
+                result = words[word] << used >>> (Long.SIZE - bits);
+            }
+            else
+            {
+                final int spill;
+                spill = used + bits - Long.SIZE;
+
+                result = words[word] << used >>> (used - spill) | words[word + 1] >>> (Long.SIZE - spill);
+            }
+            position += bits;
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,1150 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * A fleet of devices whose creations and changes are recorded in a write-ahead log in a
+ * directory, so the fleet survives a restart.
+ * <p>
+ * Every change made through the journal is applied to the device in memory and appended to
+ * the current log as one record. Records are buffered and written to the log with batched
+ * {@link FileChannel} writes, and {@link #sync()} forces every record appended so far to
+ * disk. Syncs use group commit: the thread that forces the log swaps in a second buffer
+ * first, so other threads keep appending while it waits for the disk, and a thread whose
+ * records are already being forced waits for that force instead of starting another. One
+ * force therefore covers every thread that synced while it ran.
+ * <p>
+ * A checkpoint writes the whole fleet as a {@link DeviceSnapshot} and starts a new, empty
+ * log, after which the older log and checkpoint are deleted. Checkpoints are written by
+ * {@link #checkpoint()} and automatically whenever the current log grows past a size.
+ * {@link #open(Path)} recovers the fleet by loading the latest checkpoint and replaying the
+ * logs written after it. Every record carries a CRC-32C checksum, so a record torn by a
+ * crash at the end of the last log is detected and discarded along with anything after it.
+ * <p>
+ * Devices are identified by the order they were added in. Only changes made through the
+ * journal are recorded; changing a device returned by {@link #get(int)} directly is not.
+ * This class is thread-safe.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceJournal implements DeviceSink, Closeable
+{
+    /**
+     * The log size, in bytes, at which a checkpoint is written if none is asked for sooner.
+     */
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    static final byte SET_HAS_CASE        = 5;
+    static final byte SET_VOLUME_DB       = 6;
+    static final int  RECORD_HEADER_BYTES = 8;
+
+    private static final int    BUFFER_BYTES        = 1 << 20;
+    private static final int    NULL_TEXT           = -1;
+    private static final int    MAX_TEXT_BYTES      = Short.MAX_VALUE;
+    private static final int    MAX_PAYLOAD_BYTES   = 16 + MAX_TEXT_BYTES;
+    private static final int    SET_HAS_CASE_BYTES  = 6;
+    private static final int    SET_VOLUME_DB_BYTES = 13;
+    private static final String LOG_PREFIX          = "journal-";
+    private static final String LOG_SUFFIX          = ".log";
+    private static final String CHECKPOINT_PREFIX   = "checkpoint-";
+    private static final String CHECKPOINT_SUFFIX   = ".snapshot";
+    private static final String TEMPORARY_SUFFIX    = ".tmp";
+
+    private final Path          directory;
+    private final long          checkpointBytes;
+    private final Object        lock;
+    private final List<IDevice> devices;
+    private final CRC32C        checksum;
+    private ByteBuffer          active;
+    private ByteBuffer          spare;
+    private FileChannel         log;
+    private long                generation;
+    private long                logBytes;
+    private long                appendedBytes;
+    private long                durableBytes;
+    private long                syncCount;
+    private boolean             forcing;
+    private IOException         failure;
+
+    private DeviceJournal(final Path directory,
+                          final long checkpointBytes,
+                          final List<IDevice> devices,
+                          final FileChannel log,
+                          final long generation,
+                          final long logBytes)
+    {
+        this.directory       = directory;
+        this.checkpointBytes = checkpointBytes;
+        this.lock            = new Object();
+        this.devices         = devices;
+        this.checksum        = new CRC32C();
+        this.active          = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.spare           = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.log             = log;
+        this.generation      = generation;
+        this.logBytes        = logBytes;
+    }
+
+    /**
+     * Opens the journal in a directory, recovering the fleet it holds, with the default
+     * checkpoint size.
+     *
+     * @param directory the directory of the journal; created if it does not exist
+     * @return the journal
+     * @throws IOException if the directory cannot be read or a log or checkpoint is corrupt
+     */
+    public static DeviceJournal open(final Path directory) throws IOException
+    {
+        return open(directory, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Opens the journal in a directory, recovering the fleet it holds.
+     * The fleet is loaded from the latest checkpoint and every log written after it is
+     * replayed. If the last log ends in a torn record, it is truncated before the record.
+     *
+     * @param directory       the directory of the journal; created if it does not exist
+     * @param checkpointBytes the log size, in bytes, at which a checkpoint is written
+     * @return the journal
+     * @throws IOException if the directory cannot be read or a log or checkpoint is corrupt
+     */
+    public static DeviceJournal open(final Path directory,
+                                     final long checkpointBytes) throws IOException
+    {
+        if (checkpointBytes <= 0)
+        {
+            throw new IllegalArgumentException("Checkpoint size must be positive");
+        }
+
+        final long          checkpointGeneration;
+        final List<IDevice> devices;
+        long                generation;
+        long                logBytes;
+
+        Files.createDirectories(directory);
+        checkpointGeneration = latestCheckpoint(directory);
+        devices              = new ArrayList<>();
+        generation           = checkpointGeneration;
+        logBytes             = 0;
+
+        if (checkpointGeneration > 0)
+        {
+            loadCheckpoint(checkpointFile(directory, checkpointGeneration), devices);
+        }
+
+        while (Files.exists(logFile(directory, generation)))
+        {
+            final Path log;
+            log = logFile(directory, generation);
+
+            logBytes = replay(log, devices);
+
+            if (Files.exists(logFile(directory, generation + 1)))
+            {
+                if (logBytes != Files.size(log))
+                {
+                    throw new IOException("Journal log " + log + " is corrupt before its end");
+                }
+                generation++;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        syncDirectory(directory);
+        deleteStaleFiles(directory, checkpointGeneration);
+
+        final FileChannel log;
+        log = FileChannel.open(logFile(directory, generation),
+                               StandardOpenOption.CREATE,
+                               StandardOpenOption.WRITE);
+
+        log.truncate(logBytes);
+        log.position(logBytes);
+
+        return new DeviceJournal(directory, checkpointBytes, devices, log, generation, logBytes);
+    }
+
+    /**
+     * Adds a device to the fleet. A registry view is added as a copy of the device it shows.
+     *
+     * @param device the device to add
+     * @return the id of the device
+     * @throws IOException if the log cannot be written
+     */
+    public int add(final IDevice device) throws IOException
+    {
+        if (DeviceRegistry.isView(device))
+        {
+            return add(DeviceRegistry.materialize(device));
+        }
+
+        final String text;
+        final byte[] textBytes;
+
+        if (device instanceof IPhone)
+        {
+            text = ((IPhone) device).getPlanCarrier();
+        }
+        else if (device instanceof IPad)
+        {
+            text = ((IPad) device).getOSVersion();
+        }
+        else if (device instanceof IPod)
+        {
+            text = null;
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unsupported device type");
+        }
+        textBytes = encode(text);
+
+        synchronized (lock)
+        {
+            final int id;
+
+            reserve(MAX_PAYLOAD_BYTES - MAX_TEXT_BYTES + (textBytes == null ? 0 : textBytes.length));
+            id = devices.size();
+            devices.add(device);
+
+            final int start;
+            start = startRecord();
+
+            if (device instanceof IPhone16)
+            {
+                final IPhone16 iPhone16;
+                iPhone16 = (IPhone16) device;
+
+                active.put(DeviceSnapshot.IPHONE16);
+                active.put(iPhone16.isHighResCamera() ? DeviceSnapshot.FLAG_SET : 0);
+                active.putInt(iPhone16.getMemoryGigabytes());
+                active.putDouble(iPhone16.getRemainingPlanMinutes());
+                putText(textBytes);
+            }
+            else if (device instanceof IPhone)
+            {
+                active.put(DeviceSnapshot.IPHONE);
+                active.putDouble(((IPhone) device).getRemainingPlanMinutes());
+                putText(textBytes);
+            }
+            else if (device instanceof IPod)
+            {
+                final IPod iPod;
+                iPod = (IPod) device;
+
+                active.put(DeviceSnapshot.IPOD);
+                active.putInt(iPod.getNumSongsStored());
+                active.putDouble(iPod.getCurrentVolumeDB());
+            }
+            else
+            {
+                active.put(DeviceSnapshot.IPAD);
+                active.put(((IPad) device).hasCase() ? DeviceSnapshot.FLAG_SET : 0);
+                putText(textBytes);
+            }
+
+            endRecord(start);
+            return id;
+        }
+    }
+
+    @Override
+    public void acceptIPhone(final double remainingPlanMinutes,
+                             final String planCarrier)
+    {
+        addUnchecked(new IPhone(remainingPlanMinutes, planCarrier));
+    }
+
+    @Override
+    public void acceptIPhone16(final double remainingPlanMinutes,
+                               final String planCarrier,
+                               final boolean highResCamera,
+                               final int memoryGigabytes)
+    {
+        addUnchecked(new IPhone16(remainingPlanMinutes, planCarrier, highResCamera, memoryGigabytes));
+    }
+
+    @Override
+    public void acceptIPod(final double currentVolumeDB,
+                           final int numSongsStored)
+    {
+        addUnchecked(new IPod(currentVolumeDB, numSongsStored));
+    }
+
+    @Override
+    public void acceptIPad(final boolean hasCase,
+                           final String OSVersion)
+    {
+        addUnchecked(new IPad(hasCase, OSVersion));
+    }
+
+    /*
+     * Adds a device from the sink methods, which cannot throw IOException.
+     */
+    private void addUnchecked(final IDevice device)
+    {
+        try
+        {
+            add(device);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Changes whether an iPad has a protective case and records the change.
+     *
+     * @param id      the id of the iPad
+     * @param hasCase true if the iPad has a case, false otherwise
+     * @throws IOException if the log cannot be written
+     * @throws IllegalArgumentException if the device is not an IPad
+     */
+    public void setHasCase(final int id,
+                           final boolean hasCase) throws IOException
+    {
+        synchronized (lock)
+        {
+            final IPad iPad;
+            iPad = device(id, IPad.class);
+
+            reserve(SET_HAS_CASE_BYTES);
+            iPad.setHasCase(hasCase);
+            writeSetHasCase(id, hasCase);
+        }
+    }
+
+    /**
+     * Changes the current volume of an iPod and records the change.
+     *
+     * @param id              the id of the iPod
+     * @param currentVolumeDB the new volume. must be between
+     *                        {@value IPod#MIN_VOLUME_DB} and {@value IPod#MAX_VOLUME_DB}
+     * @throws IOException if the log cannot be written
+     * @throws IllegalArgumentException if the device is not an IPod or the volume is out of range
+     */
+    public void setCurrentVolumeDB(final int id,
+                                   final double currentVolumeDB) throws IOException
+    {
+        IPod.checkCurrentVolumeDB(currentVolumeDB);
+
+        synchronized (lock)
+        {
+            final IPod iPod;
+            iPod = device(id, IPod.class);
+
+            reserve(SET_VOLUME_DB_BYTES);
+            iPod.setCurrentVolumeDB(currentVolumeDB);
+            writeSetVolumeDB(id, currentVolumeDB);
+        }
+    }
+
+    /**
+     * Lowers the current volume of an iPod to maxVolumeDB if it is above it, and records
+     * the change if there was one.
+     *
+     * @param id          the id of the iPod
+     * @param maxVolumeDB the highest volume to allow. must be between
+     *                    {@value IPod#MIN_VOLUME_DB} and {@value IPod#MAX_VOLUME_DB}
+     * @return true if the volume was lowered
+     * @throws IOException if the log cannot be written
+     * @throws IllegalArgumentException if the device is not an IPod or the volume is out of range
+     */
+    public boolean clampCurrentVolumeDB(final int id,
+                                        final double maxVolumeDB) throws IOException
+    {
+        IPod.checkCurrentVolumeDB(maxVolumeDB);
+
+        synchronized (lock)
+        {
+            final IPod iPod;
+            iPod = device(id, IPod.class);
+
+            reserve(SET_VOLUME_DB_BYTES);
+            if (!iPod.clampCurrentVolumeDB(maxVolumeDB))
+            {
+                return false;
+            }
+            writeSetVolumeDB(id, maxVolumeDB);
+            return true;
+        }
+    }
+
+    /**
+     * Getter for a device in the fleet.
+     *
+     * @param id the id of the device
+     * @return the device
+     */
+    public IDevice get(final int id)
+    {
+        synchronized (lock)
+        {
+            return devices.get(id);
+        }
+    }
+
+    /**
+     * Getter for the number of devices in the fleet.
+     *
+     * @return the number of devices
+     */
+    public int size()
+    {
+        synchronized (lock)
+        {
+            return devices.size();
+        }
+    }
+
+    /**
+     * Getter for the number of the current log. It starts at 0 and goes up by one with
+     * every checkpoint.
+     *
+     * @return the generation of the current log
+     */
+    public long getGeneration()
+    {
+        synchronized (lock)
+        {
+            return generation;
+        }
+    }
+
+    /**
+     * Getter for the number of bytes appended to the logs since the journal was opened.
+     *
+     * @return the number of bytes appended
+     */
+    public long getAppendedBytes()
+    {
+        synchronized (lock)
+        {
+            return appendedBytes;
+        }
+    }
+
+    /**
+     * Getter for how many times the log has been forced to disk by {@link #sync()}.
+     * With group commit this is usually fewer than the number of calls to sync.
+     *
+     * @return the number of forces
+     */
+    public long getSyncCount()
+    {
+        synchronized (lock)
+        {
+            return syncCount;
+        }
+    }
+
+    /**
+     * Makes every record appended so far, by any thread, durable.
+     * If another thread is already forcing the log, this waits for it and then forces
+     * whatever it did not cover in one more batch.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void sync() throws IOException
+    {
+        final ByteBuffer  batch;
+        final FileChannel channel;
+        final long        batchEnd;
+
+        synchronized (lock)
+        {
+            final long target;
+            target = appendedBytes;
+
+            checkUsable();
+            while (forcing && durableBytes < target)
+            {
+                await();
+                checkUsable();
+            }
+            if (durableBytes >= target)
+            {
+                return;
+            }
+
+            forcing  = true;
+            batch    = active;
+            active   = spare;
+            spare    = batch;
+            channel  = log;
+            batchEnd = appendedBytes;
+        }
+
+        IOException thrown;
+        thrown = null;
+
+        try
+        {
+            drain(batch, channel);
+            channel.force(false);
+        }
+        catch (final IOException e)
+        {
+            thrown = e;
+        }
+
+        synchronized (lock)
+        {
+            if (thrown == null)
+            {
+                durableBytes = batchEnd;
+                syncCount++;
+            }
+            else
+            {
+                failure = thrown;
+            }
+            forcing = false;
+            lock.notifyAll();
+        }
+
+        if (thrown != null)
+        {
+            throw thrown;
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the whole fleet and starts a new log. Changes wait while the
+     * checkpoint is written.
+     *
+     * @throws IOException if the checkpoint or log cannot be written
+     */
+    public void checkpoint() throws IOException
+    {
+        synchronized (lock)
+        {
+            checkUsable();
+            awaitIdle();
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * Syncs the log and closes the journal. Closing a closed journal does nothing.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (lock)
+        {
+            if (!log.isOpen())
+            {
+                return;
+            }
+        }
+
+        try
+        {
+            sync();
+        }
+        finally
+        {
+            synchronized (lock)
+            {
+                awaitIdleUninterruptibly();
+                if (failure == null)
+                {
+                    failure = new ClosedChannelException();
+                }
+                log.close();
+            }
+        }
+    }
+
+    /*
+     * Returns the device with the given id, checking that it has the expected type.
+     */
+    private <T extends IDevice> T device(final int id,
+                                         final Class<T> type)
+    {
+        final IDevice device;
+        device = devices.get(id);
+
+        if (!type.isInstance(device))
+        {
+            throw new IllegalArgumentException("Device " + id + " is not an " + type.getSimpleName());
+        }
+
+        return type.cast(device);
+    }
+
+    /*
+     * Makes room for a record with the given payload size in the active buffer, writing
+     * the buffer to the log first if it is full. Called with the lock held, before the
+     * change is applied, so a change is never applied without being recorded.
+     */
+    private void reserve(final int payloadBytes) throws IOException
+    {
+        checkUsable();
+        if (active.remaining() < RECORD_HEADER_BYTES + payloadBytes)
+        {
+            awaitIdle();
+            drain(active, log);
+        }
+    }
+
+    /*
+     * Starts a record at the current position and returns its start.
+     */
+    private int startRecord()
+    {
+        final int start;
+        start = active.position();
+
+        active.position(start + RECORD_HEADER_BYTES);
+        return start;
+    }
+
+    /*
+     * Fills in the length and checksum of the record that started at start, and writes a
+     * checkpoint if the log has grown past its size.
+     */
+    private void endRecord(final int start) throws IOException
+    {
+        final int end;
+        end = active.position();
+
+        checksum.reset();
+        active.limit(end).position(start + RECORD_HEADER_BYTES);
+        checksum.update(active);
+        active.limit(active.capacity());
+
+        active.putInt(start, end - start - RECORD_HEADER_BYTES);
+        active.putInt(start + Integer.BYTES, (int) checksum.getValue());
+
+        appendedBytes += end - start;
+        logBytes      += end - start;
+
+        if (logBytes >= checkpointBytes)
+        {
+            awaitIdle();
+            if (logBytes >= checkpointBytes)
+            {
+                writeCheckpoint();
+            }
+        }
+    }
+
+    /*
+     * Appends a SET_HAS_CASE record. Room must have been reserved.
+     */
+    private void writeSetHasCase(final int id,
+                                 final boolean hasCase) throws IOException
+    {
+        final int start;
+        start = startRecord();
+
+        active.put(SET_HAS_CASE);
+        active.putInt(id);
+        active.put(hasCase ? DeviceSnapshot.FLAG_SET : 0);
+        endRecord(start);
+    }
+
+    /*
+     * Appends a SET_VOLUME_DB record. Room must have been reserved.
+     */
+    private void writeSetVolumeDB(final int id,
+                                  final double currentVolumeDB) throws IOException
+    {
+        final int start;
+        start = startRecord();
+
+        active.put(SET_VOLUME_DB);
+        active.putInt(id);
+        active.putDouble(currentVolumeDB);
+        endRecord(start);
+    }
+
+    /*
+     * Appends a length-prefixed String, or NULL_TEXT for null.
+     */
+    private void putText(final byte[] textBytes)
+    {
+        if (textBytes == null)
+        {
+            active.putShort((short) NULL_TEXT);
+        }
+        else
+        {
+            active.putShort((short) textBytes.length);
+            active.put(textBytes);
+        }
+    }
+
+    /*
+     * Encodes a String as UTF-8, checking that its length fits in a record.
+     */
+    private static byte[] encode(final String text)
+    {
+        if (text == null)
+        {
+            return null;
+        }
+
+        final byte[] bytes;
+        bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length > MAX_TEXT_BYTES)
+        {
+            throw new IllegalArgumentException("Text is too long to journal: " + bytes.length + " bytes");
+        }
+
+        return bytes;
+    }
+
+    /*
+     * Writes the active buffer to the log, forces it, starts the next log, writes the fleet
+     * to the next checkpoint and deletes the older logs and checkpoints. Called with the
+     * lock held and no force in progress.
+     *
+     * The checkpoint is written to a temporary file and renamed when complete, so a crash
+     * part way through leaves the previous checkpoint and both logs to recover from. The
+     * rename is forced to disk before the older files are deleted.
+     */
+    private void writeCheckpoint() throws IOException
+    {
+        final long next;
+        final Path temporary;
+
+        next      = generation + 1;
+        temporary = directory.resolve(checkpointFile(directory, next).getFileName() + TEMPORARY_SUFFIX);
+
+        try
+        {
+            drain(active, log);
+            log.force(false);
+            log.close();
+            log = FileChannel.open(logFile(directory, next),
+                                   StandardOpenOption.CREATE,
+                                   StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.WRITE);
+
+            try (final DeviceSnapshotWriter writer = new DeviceSnapshotWriter(temporary))
+            {
+                for (final IDevice device : devices)
+                {
+                    writer.write(device);
+                }
+            }
+            try (final FileChannel written = FileChannel.open(temporary, StandardOpenOption.WRITE))
+            {
+                written.force(true);
+            }
+            Files.move(temporary, checkpointFile(directory, next),
+                       StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            syncDirectory(directory);
+            deleteStaleFiles(directory, next);
+        }
+        catch (final IOException e)
+        {
+            failure = e;
+            throw e;
+        }
+
+        generation   = next;
+        logBytes     = 0;
+        durableBytes = appendedBytes;
+    }
+
+    /*
+     * Writes everything in a buffer to a channel and clears the buffer.
+     */
+    private static void drain(final ByteBuffer buffer,
+                              final FileChannel channel) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /*
+     * Throws the error that broke the journal, if any. Once a write has failed the log
+     * may be missing records, so nothing more may be appended.
+     */
+    private void checkUsable() throws IOException
+    {
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /*
+     * Waits, with the lock held, until no thread is forcing the log.
+     */
+    private void awaitIdle() throws IOException
+    {
+        while (forcing)
+        {
+            await();
+        }
+        checkUsable();
+    }
+
+    /*
+     * Waits until no thread is forcing the log, even if interrupted.
+     */
+    private void awaitIdleUninterruptibly()
+    {
+        boolean interrupted;
+        interrupted = false;
+
+        while (forcing)
+        {
+            try
+            {
+                lock.wait();
+            }
+            catch (final InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Waits on the lock for a force to finish.
+     */
+    private void await() throws InterruptedIOException
+    {
+        try
+        {
+            lock.wait();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        }
+    }
+
+    /*
+     * Returns the generation of the newest complete checkpoint, or 0 if there is none.
+     */
+    private static long latestCheckpoint(final Path directory) throws IOException
+    {
+        long latest;
+        latest = 0;
+
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                                                                          CHECKPOINT_PREFIX + "*" + CHECKPOINT_SUFFIX))
+        {
+            for (final Path file : files)
+            {
+                latest = Math.max(latest, generationOf(file, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX));
+            }
+        }
+
+        return latest;
+    }
+
+    /*
+     * Forces the journal directory's entries to disk, so a renamed checkpoint or a newly
+     * created log survives a crash. Stale files may only be deleted after this: otherwise
+     * their deletion could reach the disk while the rename that replaced them does not.
+     */
+    private static void syncDirectory(final Path directory) throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+    }
+
+    /*
+     * Deletes logs and checkpoints older than the checkpoint that was loaded, and any
+     * checkpoint left half written by a crash.
+     */
+    private static void deleteStaleFiles(final Path directory,
+                                         final long checkpointGeneration) throws IOException
+    {
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory))
+        {
+            for (final Path file : files)
+            {
+                final String name;
+                name = file.getFileName().toString();
+
+                if (name.startsWith(CHECKPOINT_PREFIX) && name.endsWith(TEMPORARY_SUFFIX) ||
+                    name.startsWith(CHECKPOINT_PREFIX) && name.endsWith(CHECKPOINT_SUFFIX) &&
+                    generationOf(file, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX) < checkpointGeneration ||
+                    name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX) &&
+                    generationOf(file, LOG_PREFIX, LOG_SUFFIX) < checkpointGeneration)
+                {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /*
+     * Parses the generation out of a log or checkpoint file name.
+     */
+    private static long generationOf(final Path file,
+                                     final String prefix,
+                                     final String suffix) throws IOException
+    {
+        final String name;
+        name = file.getFileName().toString();
+
+        try
+        {
+            return Long.parseUnsignedLong(name.substring(prefix.length(), name.length() - suffix.length()), 16);
+        }
+        catch (final NumberFormatException e)
+        {
+            throw new IOException("Unexpected file in journal directory: " + name, e);
+        }
+    }
+
+    /*
+     * Returns the path of the log of a generation.
+     */
+    private static Path logFile(final Path directory,
+                                final long generation)
+    {
+        return directory.resolve(String.format("%s%016x%s", LOG_PREFIX, generation, LOG_SUFFIX));
+    }
+
+    /*
+     * Returns the path of the checkpoint that starts a generation.
+     */
+    private static Path checkpointFile(final Path directory,
+                                       final long generation)
+    {
+        return directory.resolve(String.format("%s%016x%s", CHECKPOINT_PREFIX, generation, CHECKPOINT_SUFFIX));
+    }
+
+    /*
+     * Adds every device in a checkpoint to the fleet.
+     */
+    private static void loadCheckpoint(final Path file,
+                                       final List<IDevice> devices) throws IOException
+    {
+        final DeviceSnapshot        snapshot;
+        final DeviceSnapshot.Cursor cursor;
+
+        snapshot = DeviceSnapshot.open(file);
+        cursor   = snapshot.cursor();
+
+        for (long i = 0; i < snapshot.size(); i++)
+        {
+            devices.add(cursor.moveTo(i).toDevice());
+        }
+    }
+
+    /*
+     * Applies every intact record in a log to the fleet and returns the length of the
+     * intact part. Reading stops at the first record that is incomplete or fails its
+     * checksum.
+     */
+    private static long replay(final Path file,
+                               final List<IDevice> devices) throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final ByteBuffer buffer;
+            final CRC32C     checksum;
+            long             intact;
+
+            buffer   = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            checksum = new CRC32C();
+            intact   = 0;
+
+            buffer.flip();
+
+            while (fill(channel, buffer, RECORD_HEADER_BYTES))
+            {
+                final int length;
+                final int expected;
+
+                length   = buffer.getInt();
+                expected = buffer.getInt();
+
+                if (length <= 0 || length > MAX_PAYLOAD_BYTES || !fill(channel, buffer, length))
+                {
+                    break;
+                }
+
+                final int start;
+                final int limit;
+
+                start = buffer.position();
+                limit = buffer.limit();
+
+                checksum.reset();
+                buffer.limit(start + length);
+                checksum.update(buffer);
+
+                if ((int) checksum.getValue() != expected)
+                {
+                    break;
+                }
+
+                buffer.position(start);
+                apply(buffer, devices, file);
+                if (buffer.hasRemaining())
+                {
+                    throw new IOException("Journal log " + file + " has a malformed record at " + intact);
+                }
+                buffer.limit(limit);
+
+                intact += RECORD_HEADER_BYTES + length;
+            }
+
+            return intact;
+        }
+    }
+
+    /*
+     * Makes sure the buffer holds at least count unread bytes, reading more from the channel
+     * if needed. Returns false if the channel ends first.
+     */
+    private static boolean fill(final FileChannel channel,
+                                final ByteBuffer buffer,
+                                final int count) throws IOException
+    {
+        if (buffer.remaining() >= count)
+        {
+            return true;
+        }
+
+        buffer.compact();
+        while (buffer.position() < count)
+        {
+            if (channel.read(buffer) < 0)
+            {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+
+        return true;
+    }
+
+    /*
+     * Applies one record, whose payload is between the buffer's position and limit.
+     */
+    private static void apply(final ByteBuffer record,
+                              final List<IDevice> devices,
+                              final Path file) throws IOException
+    {
+        final byte type;
+        type = record.get();
+
+        try
+        {
+            switch (type)
+            {
+                case DeviceSnapshot.IPHONE ->
+                {
+                    final double minutes;
+                    minutes = record.getDouble();
+
+                    devices.add(new IPhone(minutes, getText(record)));
+                }
+                case DeviceSnapshot.IPHONE16 ->
+                {
+                    final boolean camera;
+                    final int     memory;
+                    final double  minutes;
+
+                    camera  = record.get() == DeviceSnapshot.FLAG_SET;
+                    memory  = record.getInt();
+                    minutes = record.getDouble();
+
+                    devices.add(new IPhone16(minutes, getText(record), camera, memory));
+                }
+                case DeviceSnapshot.IPOD ->
+                {
+                    final int songs;
+                    songs = record.getInt();
+
+                    devices.add(new IPod(record.getDouble(), songs));
+                }
+                case DeviceSnapshot.IPAD ->
+                {
+                    final boolean hasCase;
+                    hasCase = record.get() == DeviceSnapshot.FLAG_SET;
+
+                    devices.add(new IPad(hasCase, getText(record)));
+                }
+                case SET_HAS_CASE ->
+                {
+                    final int id;
+                    id = record.getInt();
+
+                    ((IPad) devices.get(id)).setHasCase(record.get() == DeviceSnapshot.FLAG_SET);
+                }
+                case SET_VOLUME_DB ->
+                {
+                    final int id;
+                    id = record.getInt();
+
+                    ((IPod) devices.get(id)).setCurrentVolumeDB(record.getDouble());
+                }
+                default -> throw new IOException("Journal log " + file + " has an unknown record type " + type);
+            }
+        }
+        catch (final RuntimeException e)
+        {
+            throw new IOException("Journal log " + file + " has a record that cannot be applied", e);
+        }
+    }
+
+    /*
+     * Reads a length-prefixed String written by putText.
+     */
+    private static String getText(final ByteBuffer record)
+    {
+        final short length;
+        length = record.getShort();
+
+        if (length == NULL_TEXT)
+        {
+            return null;
+        }
+
+        final byte[] bytes;
+        bytes = new byte[length];
+
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
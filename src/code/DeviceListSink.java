@@ -0,0 +1,61 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DeviceSink} that constructs a device object for every record it accepts.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceListSink implements DeviceSink
+{
+    private final List<IDevice> devices;
+
+    /**
+     * Constructs an empty DeviceListSink.
+     */
+    public DeviceListSink()
+    {
+        devices = new ArrayList<>();
+    }
+
+    @Override
+    public void acceptIPhone(final double remainingPlanMinutes,
+                             final String planCarrier)
+    {
+        devices.add(new IPhone(remainingPlanMinutes, planCarrier));
+    }
+
+    @Override
+    public void acceptIPhone16(final double remainingPlanMinutes,
+                               final String planCarrier,
+                               final boolean highResCamera,
+                               final int memoryGigabytes)
+    {
+        devices.add(new IPhone16(remainingPlanMinutes, planCarrier, highResCamera, memoryGigabytes));
+    }
+
+    @Override
+    public void acceptIPod(final double currentVolumeDB,
+                           final int numSongsStored)
+    {
+        devices.add(new IPod(currentVolumeDB, numSongsStored));
+    }
+
+    @Override
+    public void acceptIPad(final boolean hasCase,
+                           final String OSVersion)
+    {
+        devices.add(new IPad(hasCase, OSVersion));
+    }
+
+    /**
+     * Getter for the devices created so far, in the order their records were accepted.
+     *
+     * @return the devices
+     */
+    public List<IDevice> getDevices()
+    {
+        return devices;
+    }
+}
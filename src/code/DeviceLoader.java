@@ -0,0 +1,878 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Loads device records in bulk from a delimited text file.
+ * The file is split into chunks on line boundaries, every chunk is memory-mapped and
+ * parsed in parallel on a {@link ForkJoinPool}, and each valid record is handed to a
+ * {@link DeviceSink} created for that chunk. Numbers are parsed straight from the mapped
+ * bytes, and carrier and OS version names are looked up in a per-chunk cache, so no
+ * String is created for each field.
+ * <p>
+ * Each line holds one record, with fields separated by commas:
+ * <pre>
+ * IPhone,remainingPlanMinutes,planCarrier
+ * IPhone16,remainingPlanMinutes,planCarrier,highResCamera,memoryGigabytes
+ * IPod,currentVolumeDB,numSongsStored
+ * IPad,hasCase,OSVersion
+ * </pre>
+ * Records that are malformed or fail the constructors' validation are counted as errors
+ * for their chunk and skipped. Validation goes through {@link DeviceValidation}, so a
+ * rejected record costs no exception, and the broken rules are totalled in
+ * {@link LoadResult#getViolations()}.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceLoader
+{
+    static final byte           FIELD_SEPARATOR     = ',';
+    static final byte           LINE_SEPARATOR      = '\n';
+    static final int            MAX_RECORD_BYTES    = 4_096;
+    private static final byte   CARRIAGE_RETURN     = '\r';
+    private static final int    DEFAULT_CHUNK_BYTES = 1 << 22;
+
+    private static final byte[] IPHONE_TAG   = "IPhone".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IPHONE16_TAG = "IPhone16".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IPOD_TAG     = "IPod".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IPAD_TAG     = "IPad".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE         = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE        = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private final ForkJoinPool pool;
+    private final int          chunkBytes;
+
+    /**
+     * Constructs a DeviceLoader that uses the common fork-join pool and 4MB chunks.
+     */
+    public DeviceLoader()
+    {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Constructs a DeviceLoader.
+     *
+     * @param pool       the pool to parse chunks on
+     * @param chunkBytes the approximate size of each chunk in bytes
+     */
+    public DeviceLoader(final ForkJoinPool pool,
+                        final int chunkBytes)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        if (chunkBytes <= 0)
+        {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        this.pool       = pool;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Loads every record in the file.
+     *
+     * @param file  the file to load
+     * @param sinks creates one sink per chunk; it is called from the loading thread
+     * @param <S>   the type of sink
+     * @return the sinks in file order along with record, error and throughput counts
+     * @throws IOException if the file cannot be read
+     */
+    public <S extends DeviceSink> LoadResult<S> load(final Path file,
+                                                     final Supplier<S> sinks) throws IOException
+    {
+        final long start;
+        start = System.nanoTime();
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final long              size;
+            final int               chunks;
+            final List<S>           chunkSinks;
+            final long[]            records;
+            final long[]            errors;
+            final ViolationCounts[] violations;
+
+            size       = channel.size();
+            chunks     = (int) Math.max(1, (size + chunkBytes - 1) / chunkBytes);
+            chunkSinks = new ArrayList<>(chunks);
+            records    = new long[chunks];
+            errors     = new long[chunks];
+            violations = new ViolationCounts[chunks];
+
+            for (int i = 0; i < chunks; i++)
+            {
+                chunkSinks.add(sinks.get());
+                violations[i] = new ViolationCounts();
+            }
+
+            try
+            {
+                pool.invoke(new ChunkTask(channel, size, chunkSinks, records, errors, violations, 0, chunks));
+            }
+            catch (final UncheckedIOException e)
+            {
+                throw e.getCause();
+            }
+
+            return new LoadResult<>(chunkSinks, records, errors, violations, System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * Parses a range of chunks, splitting the range in half until one chunk is left.
+     */
+    private final class ChunkTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel                channel;
+        private final long                       size;
+        private final List<? extends DeviceSink> sinks;
+        private final long[]                     records;
+        private final long[]                     errors;
+        private final ViolationCounts[]          violations;
+        private final int                        from;
+        private final int                        to;
+
+        private ChunkTask(final FileChannel channel,
+                          final long size,
+                          final List<? extends DeviceSink> sinks,
+                          final long[] records,
+                          final long[] errors,
+                          final ViolationCounts[] violations,
+                          final int from,
+                          final int to)
+        {
+            this.channel    = channel;
+            this.size       = size;
+            this.sinks      = sinks;
+            this.records    = records;
+            this.errors     = errors;
+            this.violations = violations;
+            this.from       = from;
+            this.to         = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                try
+                {
+                    parseChunk(from);
+                }
+                catch (final IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            else
+            {
+                final int middle;
+                middle = (from + to) >>> 1;
+
+                invokeAll(new ChunkTask(channel, size, sinks, records, errors, violations, from, middle),
+                          new ChunkTask(channel, size, sinks, records, errors, violations, middle, to));
+            }
+        }
+
+        /*
+         * Maps one chunk and parses every record that starts inside it. A record that runs
+         * past the end of the chunk is finished here and skipped by the next chunk.
+         */
+        private void parseChunk(final int chunk) throws IOException
+        {
+            final long             start;
+            final long             end;
+            final long             mapStart;
+            final long             mapEnd;
+            final MappedByteBuffer buffer;
+            final RecordParser     parser;
+            final int              limit;
+
+            start    = (long) chunk * chunkBytes;
+            end      = Math.min(size, start + chunkBytes);
+            mapStart = start == 0 ? 0 : start - 1;
+            mapEnd   = Math.min(size, end + MAX_RECORD_BYTES);
+            buffer   = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            parser   = new RecordParser(buffer, violations[chunk]);
+            limit    = (int) (end - mapStart);
+
+            int pos;
+            pos = (int) (start - mapStart);
+
+            if (start > 0 && buffer.get(pos - 1) != LINE_SEPARATOR)
+            {
+                pos = parser.indexOfLineEnd(pos) + 1;
+            }
+
+            while (pos < limit)
+            {
+                int lineEnd;
+                lineEnd = parser.indexOfLineEnd(pos);
+
+                if (lineEnd == buffer.limit() && mapEnd < size)
+                {
+                    errors[chunk]++;
+                    break;
+                }
+
+                if (parser.parse(pos, lineEnd, sinks.get(chunk)))
+                {
+                    records[chunk]++;
+                }
+                else if (!parser.isBlank())
+                {
+                    errors[chunk]++;
+                }
+                pos = lineEnd + 1;
+            }
+        }
+    }
+
+    /*
+     * Parses records out of one mapped chunk. Not thread-safe; each chunk has its own parser.
+     */
+    private static final class RecordParser
+    {
+        private static final int      MAX_EXACT_DIGITS = 15;
+        private static final int      MAX_EXACT_SCALE  = 22;
+        private static final double[] POWERS_OF_TEN    = new double[MAX_EXACT_SCALE + 1];
+
+        static
+        {
+            POWERS_OF_TEN[0] = 1.0;
+            for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            {
+                POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+            }
+        }
+
+        private final MappedByteBuffer buffer;
+        private final ViolationCounts  violations;
+        private final SymbolCache      symbols;
+        private boolean                malformed;
+        private boolean                blank;
+
+        private RecordParser(final MappedByteBuffer buffer,
+                             final ViolationCounts violations)
+        {
+            this.buffer     = buffer;
+            this.violations = violations;
+            this.symbols    = new SymbolCache();
+        }
+
+        /*
+         * Returns the index of the next line separator at or after from,
+         * or the buffer limit if there is none.
+         */
+        private int indexOfLineEnd(final int from)
+        {
+            int pos;
+            pos = from;
+
+            while (pos < buffer.limit() && buffer.get(pos) != LINE_SEPARATOR)
+            {
+                pos++;
+            }
+
+            return pos;
+        }
+
+        /*
+         * Returns the index of the next field separator at or after from, or to if there is none.
+         */
+        private int indexOfFieldEnd(final int from,
+                                    final int to)
+        {
+            int pos;
+            pos = from;
+
+            while (pos < to && buffer.get(pos) != FIELD_SEPARATOR)
+            {
+                pos++;
+            }
+
+            return pos;
+        }
+
+        /*
+         * Returns whether the last line passed to parse was empty.
+         */
+        private boolean isBlank()
+        {
+            return blank;
+        }
+
+        /*
+         * Parses the record in [from, to) and hands it to the sink.
+         * Returns false if the line is blank, malformed or fails validation.
+         */
+        private boolean parse(final int from,
+                              final int lineEnd,
+                              final DeviceSink sink)
+        {
+            int to;
+            to = lineEnd;
+
+            if (to > from && buffer.get(to - 1) == CARRIAGE_RETURN)
+            {
+                to--;
+            }
+
+            blank     = from == to;
+            malformed = false;
+
+            if (blank)
+            {
+                return false;
+            }
+
+            final int tagEnd;
+            tagEnd = indexOfFieldEnd(from, to);
+
+            if (matches(from, tagEnd, IPHONE16_TAG))
+            {
+                return parseIPhone16(tagEnd, to, sink);
+            }
+            if (matches(from, tagEnd, IPHONE_TAG))
+            {
+                return parseIPhone(tagEnd, to, sink);
+            }
+            if (matches(from, tagEnd, IPOD_TAG))
+            {
+                return parseIPod(tagEnd, to, sink);
+            }
+            if (matches(from, tagEnd, IPAD_TAG))
+            {
+                return parseIPad(tagEnd, to, sink);
+            }
+
+            return false;
+        }
+
+        private boolean parseIPhone(final int tagEnd,
+                                    final int to,
+                                    final DeviceSink sink)
+        {
+            final int    minutesEnd;
+            final double minutes;
+            final String carrier;
+
+            minutesEnd = indexOfFieldEnd(tagEnd + 1, to);
+            minutes    = parseDouble(tagEnd + 1, minutesEnd);
+            carrier    = parseSymbol(minutesEnd + 1, to);
+
+            if (malformed || indexOfFieldEnd(minutesEnd + 1, to) != to ||
+                !violations.record(DeviceValidation.validateIPhone(minutes, carrier)))
+            {
+                return false;
+            }
+
+            sink.acceptIPhone(minutes, carrier);
+
+            return true;
+        }
+
+        private boolean parseIPhone16(final int tagEnd,
+                                      final int to,
+                                      final DeviceSink sink)
+        {
+            final int     minutesEnd;
+            final int     carrierEnd;
+            final int     cameraEnd;
+            final double  minutes;
+            final String  carrier;
+            final boolean highResCamera;
+            final int     memory;
+
+            minutesEnd    = indexOfFieldEnd(tagEnd + 1, to);
+            carrierEnd    = indexOfFieldEnd(minutesEnd + 1, to);
+            cameraEnd     = indexOfFieldEnd(carrierEnd + 1, to);
+            minutes       = parseDouble(tagEnd + 1, minutesEnd);
+            carrier       = parseSymbol(minutesEnd + 1, carrierEnd);
+            highResCamera = parseBoolean(carrierEnd + 1, cameraEnd);
+            memory        = parseInt(cameraEnd + 1, to);
+
+            if (malformed || indexOfFieldEnd(cameraEnd + 1, to) != to ||
+                !violations.record(DeviceValidation.validateIPhone16(minutes, carrier, memory)))
+            {
+                return false;
+            }
+
+            sink.acceptIPhone16(minutes, carrier, highResCamera, memory);
+
+            return true;
+        }
+
+        private boolean parseIPod(final int tagEnd,
+                                  final int to,
+                                  final DeviceSink sink)
+        {
+            final int    volumeEnd;
+            final double volume;
+            final int    songs;
+
+            volumeEnd = indexOfFieldEnd(tagEnd + 1, to);
+            volume    = parseDouble(tagEnd + 1, volumeEnd);
+            songs     = parseInt(volumeEnd + 1, to);
+
+            if (malformed || indexOfFieldEnd(volumeEnd + 1, to) != to ||
+                !violations.record(DeviceValidation.validateIPod(volume, songs)))
+            {
+                return false;
+            }
+
+            sink.acceptIPod(volume, songs);
+
+            return true;
+        }
+
+        private boolean parseIPad(final int tagEnd,
+                                  final int to,
+                                  final DeviceSink sink)
+        {
+            final int     caseEnd;
+            final boolean hasCase;
+            final String  osVersion;
+
+            caseEnd   = indexOfFieldEnd(tagEnd + 1, to);
+            hasCase   = parseBoolean(tagEnd + 1, caseEnd);
+            osVersion = parseSymbol(caseEnd + 1, to);
+
+            if (malformed || indexOfFieldEnd(caseEnd + 1, to) != to)
+            {
+                return false;
+            }
+
+            sink.acceptIPad(hasCase, osVersion);
+
+            return true;
+        }
+
+        /*
+         * Returns whether the bytes in [from, to) are exactly the expected bytes.
+         */
+        private boolean matches(final int from,
+                                final int to,
+                                final byte[] expected)
+        {
+            if (to - from != expected.length)
+            {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++)
+            {
+                if (buffer.get(from + i) != expected[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean parseBoolean(final int from,
+                                     final int to)
+        {
+            if (matches(from, to, TRUE))
+            {
+                return true;
+            }
+            if (!matches(from, to, FALSE))
+            {
+                malformed = true;
+            }
+            return false;
+        }
+
+        private int parseInt(final int from,
+                             final int to)
+        {
+            final boolean negative;
+            int           pos;
+            long          value;
+
+            if (from >= to)
+            {
+                malformed = true;
+                return 0;
+            }
+
+            negative = buffer.get(from) == '-';
+            pos      = negative ? from + 1 : from;
+            value    = 0;
+
+            if (pos == to)
+            {
+                malformed = true;
+            }
+            while (pos < to && !malformed)
+            {
+                final int digit;
+                digit = buffer.get(pos) - '0';
+
+                if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE)
+                {
+                    malformed = true;
+                }
+                value = value * 10 + digit;
+                pos++;
+            }
+
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            {
+                malformed = true;
+            }
+
+            return (int) value;
+        }
+
+        /*
+         * Parses a plain decimal number. Numbers with up to 15 significant digits and
+         * 22 decimal places are converted exactly from a long, which gives the same result
+         * as Double.parseDouble; anything else falls back to Double.parseDouble.
+         */
+        private double parseDouble(final int from,
+                                   final int to)
+        {
+            final boolean negative;
+            int           pos;
+            long          mantissa;
+            int           digits;
+            int           scale;
+            boolean       seenPoint;
+
+            if (from >= to)
+            {
+                malformed = true;
+                return 0;
+            }
+
+            negative  = buffer.get(from) == '-';
+            pos       = negative ? from + 1 : from;
+            mantissa  = 0;
+            digits    = 0;
+            scale     = 0;
+            seenPoint = false;
+
+            while (pos < to)
+            {
+                final byte current;
+                current = buffer.get(pos);
+
+                if (current == '.' && !seenPoint)
+                {
+                    seenPoint = true;
+                }
+                else if (current >= '0' && current <= '9' && digits < MAX_EXACT_DIGITS)
+                {
+                    mantissa = mantissa * 10 + (current - '0');
+                    digits++;
+                    scale += seenPoint ? 1 : 0;
+                }
+                else
+                {
+                    return parseDoubleSlowly(from, to);
+                }
+                pos++;
+            }
+
+            if (digits == 0 || scale > MAX_EXACT_SCALE)
+            {
+                return parseDoubleSlowly(from, to);
+            }
+
+            final double value;
+            value = mantissa / POWERS_OF_TEN[scale];
+
+            return negative ? -value : value;
+        }
+
+        private double parseDoubleSlowly(final int from,
+                                         final int to)
+        {
+            try
+            {
+                return Double.parseDouble(new String(bytes(from, to), StandardCharsets.US_ASCII));
+            }
+            catch (final NumberFormatException e)
+            {
+                malformed = true;
+                return 0;
+            }
+        }
+
+        private String parseSymbol(final int from,
+                                   final int to)
+        {
+            if (from > to)
+            {
+                malformed = true;
+                return null;
+            }
+            return symbols.lookup(buffer, from, to);
+        }
+
+        private byte[] bytes(final int from,
+                             final int to)
+        {
+            final byte[] bytes;
+            bytes = new byte[to - from];
+
+            buffer.get(from, bytes);
+
+            return bytes;
+        }
+    }
+
+    /*
+     * An open-addressing cache from byte sequences to the Strings they decode to.
+     * Carrier and OS version names repeat across millions of records, so each distinct
+     * name is decoded once per chunk.
+     */
+    private static final class SymbolCache
+    {
+        private static final int DEFAULT_CAPACITY = 64;
+
+        private byte[][] keys;
+        private String[] values;
+        private int      size;
+
+        private SymbolCache()
+        {
+            keys   = new byte[DEFAULT_CAPACITY][];
+            values = new String[DEFAULT_CAPACITY];
+        }
+
+        private String lookup(final MappedByteBuffer buffer,
+                              final int from,
+                              final int to)
+        {
+            int hash;
+            hash = 1;
+
+            for (int i = from; i < to; i++)
+            {
+                hash = 31 * hash + buffer.get(i);
+            }
+
+            final int mask;
+            mask = keys.length - 1;
+
+            int slot;
+            slot = (hash ^ (hash >>> 16)) & mask;
+
+            while (keys[slot] != null)
+            {
+                if (equals(keys[slot], buffer, from, to))
+                {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            final byte[] key;
+            key = new byte[to - from];
+            buffer.get(from, key);
+
+            keys[slot]   = key;
+            values[slot] = new String(key, StandardCharsets.UTF_8);
+            size++;
+
+            final String value;
+            value = values[slot];
+
+            if (size * 2 > keys.length)
+            {
+                grow();
+            }
+
+            return value;
+        }
+
+        private static boolean equals(final byte[] key,
+                                      final MappedByteBuffer buffer,
+                                      final int from,
+                                      final int to)
+        {
+            if (key.length != to - from)
+            {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++)
+            {
+                if (key[i] != buffer.get(from + i))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow()
+        {
+            final byte[][] oldKeys;
+            final String[] oldValues;
+
+            oldKeys   = keys;
+            oldValues = values;
+            keys      = new byte[oldKeys.length * 2][];
+            values    = new String[oldKeys.length * 2];
+
+            for (int i = 0; i < oldKeys.length; i++)
+            {
+                if (oldKeys[i] != null)
+                {
+                    final int hash;
+                    hash = Arrays.hashCode(oldKeys[i]);
+
+                    int slot;
+                    slot = (hash ^ (hash >>> 16)) & (keys.length - 1);
+
+                    while (keys[slot] != null)
+                    {
+                        slot = (slot + 1) & (keys.length - 1);
+                    }
+                    keys[slot]   = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * The outcome of loading a file: the sinks in file order, and record and error counts.
+     *
+     * @param <S> the type of sink
+     */
+    public static final class LoadResult<S extends DeviceSink>
+    {
+        private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+        private final List<S>           sinks;
+        private final long[]            records;
+        private final long[]            errors;
+        private final ViolationCounts[] violations;
+        private final long              elapsedNanos;
+
+        private LoadResult(final List<S> sinks,
+                           final long[] records,
+                           final long[] errors,
+                           final ViolationCounts[] violations,
+                           final long elapsedNanos)
+        {
+            this.sinks        = sinks;
+            this.records      = records;
+            this.errors       = errors;
+            this.violations   = violations;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Getter for the sinks, one per chunk in file order.
+         *
+         * @return the sinks
+         */
+        public List<S> getSinks()
+        {
+            return sinks;
+        }
+
+        /**
+         * Getter for the number of chunks the file was split into.
+         *
+         * @return the number of chunks
+         */
+        public int getChunkCount()
+        {
+            return errors.length;
+        }
+
+        /**
+         * Getter for the number of records rejected in one chunk.
+         *
+         * @param chunk the chunk
+         * @return the number of rejected records
+         */
+        public long getChunkErrors(final int chunk)
+        {
+            return errors[chunk];
+        }
+
+        /**
+         * Getter for the number of records loaded.
+         *
+         * @return the number of records loaded
+         */
+        public long getRecords()
+        {
+            return Arrays.stream(records).sum();
+        }
+
+        /**
+         * Getter for the number of records rejected.
+         *
+         * @return the number of rejected records
+         */
+        public long getErrors()
+        {
+            return Arrays.stream(errors).sum();
+        }
+
+        /**
+         * Returns how many records broke each validation rule, across all chunks.
+         * Malformed records are counted in {@link #getErrors()} but not here.
+         *
+         * @return the violation counts
+         */
+        public ViolationCounts getViolations()
+        {
+            final ViolationCounts total;
+            total = new ViolationCounts();
+
+            for (final ViolationCounts chunk : violations)
+            {
+                total.add(chunk);
+            }
+
+            return total;
+        }
+
+        /**
+         * Getter for how long the load took.
+         *
+         * @return the elapsed time in nanoseconds
+         */
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the load throughput.
+         *
+         * @return records loaded per second
+         */
+        public double getRecordsPerSecond()
+        {
+            return getRecords() * NANOS_PER_SECOND / Math.max(1, elapsedNanos);
+        }
+    }
+}
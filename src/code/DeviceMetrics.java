@@ -0,0 +1,465 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Optional metrics for the device classes: how many devices of each type are constructed,
+ * how often {@code equals} and {@code hashCode} are called, how long {@code printDetails}
+ * takes, and how many values fail each validation rule.
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -Ddevices.metrics=true}. The switch is
+ * read once into a constant, so when metrics are off the JIT compiler removes the recording
+ * calls from the device classes entirely.
+ * <p>
+ * When metrics are on, every counter is a {@link LongAdder}, which stripes updates across cells
+ * so that many threads can count at once without a lock. The same values are also exposed to
+ * Java Flight Recorder: {@code devices.PrintDetails} and {@code devices.ValidationFailure}
+ * events for each call, and periodic {@code devices.TypeStatistics} and
+ * {@code devices.ValidationStatistics} events with the running totals.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceMetrics
+{
+    static final boolean ENABLED = Boolean.getBoolean("devices.metrics");
+
+    private static final String[] RULE_NAMES = {
+        "PURPOSE_BLANK",
+        "MINUTES_BELOW_MINIMUM",
+        "CARRIER_BLANK",
+        "MEMORY_INVALID",
+        "VOLUME_OUT_OF_RANGE",
+        "SONGS_BELOW_MINIMUM"
+    };
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private static final List<TypeMetrics>       TYPES               = new CopyOnWriteArrayList<>();
+    private static final LongAdder[]             VALIDATION_FAILURES = new LongAdder[DeviceValidation.RULE_COUNT];
+    private static final ClassValue<TypeMetrics> METRICS_BY_TYPE     = new ClassValue<>()
+    {
+        @Override
+        protected TypeMetrics computeValue(final Class<?> type)
+        {
+            final TypeMetrics metrics;
+            metrics = new TypeMetrics(type.getSimpleName());
+
+            TYPES.add(metrics);
+            return metrics;
+        }
+    };
+
+    private static volatile long startNanos = System.nanoTime();
+
+    static
+    {
+        for (int i = 0; i < VALIDATION_FAILURES.length; i++)
+        {
+            VALIDATION_FAILURES[i] = new LongAdder();
+        }
+
+        if (ENABLED)
+        {
+            FlightRecorder.addPeriodicEvent(TypeStatisticsEvent.class, DeviceMetrics::emitTypeStatistics);
+            FlightRecorder.addPeriodicEvent(ValidationStatisticsEvent.class, DeviceMetrics::emitValidationStatistics);
+        }
+    }
+
+    private DeviceMetrics()
+    {
+    }
+
+    /**
+     * Returns whether metrics are being recorded.
+     *
+     * @return true if the JVM was started with {@code -Ddevices.metrics=true}
+     */
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the metrics for one device class.
+     *
+     * @param type the device class, e.g. {@code IPod.class}
+     * @return the metrics for that class; all zero if metrics are off
+     */
+    public static TypeMetrics forType(final Class<? extends IDevice> type)
+    {
+        return METRICS_BY_TYPE.get(type);
+    }
+
+    /**
+     * Returns how many values have failed a validation rule.
+     *
+     * @param rule one of the single-rule codes in {@link DeviceValidation}, e.g.
+     *             {@link DeviceValidation#VOLUME_OUT_OF_RANGE}
+     * @return the number of failures
+     * @throws IllegalArgumentException if rule is not a single rule
+     */
+    public static long getValidationFailures(final int rule)
+    {
+        if (Integer.bitCount(rule) != 1 || rule >= 1 << DeviceValidation.RULE_COUNT)
+        {
+            throw new IllegalArgumentException("Not a single validation rule: " + rule);
+        }
+        return VALIDATION_FAILURES[Integer.numberOfTrailingZeros(rule)].sum();
+    }
+
+    /**
+     * Getter for the time since metrics started or were last reset.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public static long getElapsedNanos()
+    {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Clears every counter and histogram and restarts the elapsed time.
+     */
+    public static void reset()
+    {
+        for (final TypeMetrics metrics : TYPES)
+        {
+            metrics.reset();
+        }
+        for (final LongAdder failures : VALIDATION_FAILURES)
+        {
+            failures.reset();
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /*
+     * Counts the construction of a device. Called at the end of the constructor of the device's
+     * own class, so devices that fail validation and registry views are not counted.
+     */
+    static void recordConstruction(final Class<? extends IDevice> type)
+    {
+        if (ENABLED)
+        {
+            METRICS_BY_TYPE.get(type).constructions.increment();
+        }
+    }
+
+    /*
+     * Counts a call to equals.
+     */
+    static void recordEquals(final IDevice device)
+    {
+        if (ENABLED)
+        {
+            METRICS_BY_TYPE.get(device.getClass()).equalsCalls.increment();
+        }
+    }
+
+    /*
+     * Counts a call to hashCode.
+     */
+    static void recordHashCode(final IDevice device)
+    {
+        if (ENABLED)
+        {
+            METRICS_BY_TYPE.get(device.getClass()).hashCodeCalls.increment();
+        }
+    }
+
+    /*
+     * Returns the start time to pass to recordPrintDetails, or 0 when metrics are off.
+     */
+    static long startTimer()
+    {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /*
+     * Records how long a call to printDetails took since startTimer.
+     */
+    static void recordPrintDetails(final IDevice device,
+                                   final long start)
+    {
+        if (ENABLED)
+        {
+            final long              latency;
+            final TypeMetrics       metrics;
+            final PrintDetailsEvent event;
+
+            latency = System.nanoTime() - start;
+            metrics = METRICS_BY_TYPE.get(device.getClass());
+            event   = new PrintDetailsEvent();
+
+            metrics.printDetailsLatency.record(latency);
+
+            if (event.isEnabled())
+            {
+                event.deviceType = metrics.name;
+                event.latency    = latency;
+                event.commit();
+            }
+        }
+    }
+
+    /*
+     * Counts every rule that failed in a DeviceValidation result code.
+     */
+    static void recordValidationFailures(final int code)
+    {
+        if (ENABLED)
+        {
+            int remaining;
+            remaining = code;
+
+            while (remaining != 0)
+            {
+                final int rule;
+                rule = Integer.numberOfTrailingZeros(remaining);
+
+                if (rule < VALIDATION_FAILURES.length)
+                {
+                    VALIDATION_FAILURES[rule].increment();
+                    commitValidationFailure(rule);
+                }
+                remaining &= remaining - 1;
+            }
+        }
+    }
+
+    /*
+     * Emits a ValidationFailure event for one rule if the event is enabled.
+     */
+    private static void commitValidationFailure(final int rule)
+    {
+        final ValidationFailureEvent event;
+        event = new ValidationFailureEvent();
+
+        if (event.isEnabled())
+        {
+            event.rule    = RULE_NAMES[rule];
+            event.message = DeviceValidation.describe(1 << rule);
+            event.commit();
+        }
+    }
+
+    /*
+     * Emits one TypeStatistics event per device class seen so far.
+     */
+    private static void emitTypeStatistics()
+    {
+        for (final TypeMetrics metrics : TYPES)
+        {
+            final TypeStatisticsEvent event;
+            event = new TypeStatisticsEvent();
+
+            event.deviceType        = metrics.name;
+            event.constructions     = metrics.getConstructions();
+            event.equalsCalls       = metrics.getEqualsCalls();
+            event.hashCodeCalls     = metrics.getHashCodeCalls();
+            event.printDetailsCalls = metrics.printDetailsLatency.getTotalCount();
+            event.printDetailsP99   = metrics.printDetailsLatency.getPercentile(0.99);
+            event.commit();
+        }
+    }
+
+    /*
+     * Emits one ValidationStatistics event per rule.
+     */
+    private static void emitValidationStatistics()
+    {
+        for (int rule = 0; rule < VALIDATION_FAILURES.length; rule++)
+        {
+            final ValidationStatisticsEvent event;
+            event = new ValidationStatisticsEvent();
+
+            event.rule     = RULE_NAMES[rule];
+            event.failures = VALIDATION_FAILURES[rule].sum();
+            event.commit();
+        }
+    }
+
+    /**
+     * The metrics of one device class.
+     */
+    public static final class TypeMetrics
+    {
+        private final String           name;
+        private final LongAdder        constructions;
+        private final LongAdder        equalsCalls;
+        private final LongAdder        hashCodeCalls;
+        private final LatencyHistogram printDetailsLatency;
+
+        private TypeMetrics(final String name)
+        {
+            this.name                = name;
+            this.constructions       = new LongAdder();
+            this.equalsCalls         = new LongAdder();
+            this.hashCodeCalls       = new LongAdder();
+            this.printDetailsLatency = new LatencyHistogram();
+        }
+
+        /**
+         * Getter for how many devices of this class have been constructed. Devices that
+         * failed validation are not counted.
+         *
+         * @return the number of constructions
+         */
+        public long getConstructions()
+        {
+            return constructions.sum();
+        }
+
+        /**
+         * Getter for how many times equals has been called on devices of this class.
+         *
+         * @return the number of equals calls
+         */
+        public long getEqualsCalls()
+        {
+            return equalsCalls.sum();
+        }
+
+        /**
+         * Getter for how many times hashCode has been called on devices of this class.
+         *
+         * @return the number of hashCode calls
+         */
+        public long getHashCodeCalls()
+        {
+            return hashCodeCalls.sum();
+        }
+
+        /**
+         * Returns the average rate of equals calls since metrics started or were last reset.
+         *
+         * @return equals calls per second
+         */
+        public double getEqualsCallsPerSecond()
+        {
+            return getEqualsCalls() * NANOS_PER_SECOND / Math.max(1, getElapsedNanos());
+        }
+
+        /**
+         * Returns the average rate of hashCode calls since metrics started or were last reset.
+         *
+         * @return hashCode calls per second
+         */
+        public double getHashCodeCallsPerSecond()
+        {
+            return getHashCodeCalls() * NANOS_PER_SECOND / Math.max(1, getElapsedNanos());
+        }
+
+        /**
+         * Getter for the histogram of printDetails latencies.
+         *
+         * @return the latency histogram
+         */
+        public LatencyHistogram getPrintDetailsLatency()
+        {
+            return printDetailsLatency;
+        }
+
+        private void reset()
+        {
+            constructions.reset();
+            equalsCalls.reset();
+            hashCodeCalls.reset();
+            printDetailsLatency.reset();
+        }
+    }
+
+    /*
+     * One call to printDetails.
+     */
+    @Name("devices.PrintDetails")
+    @Label("Print Details")
+    @Category("Devices")
+    @Description("One call to printDetails on a device")
+    @StackTrace(false)
+    static final class PrintDetailsEvent extends Event
+    {
+        @Label("Device Type")
+        String deviceType;
+
+        @Label("Latency")
+        @Timespan
+        long latency;
+    }
+
+    /*
+     * One value that failed a validation rule.
+     */
+    @Name("devices.ValidationFailure")
+    @Label("Validation Failure")
+    @Category("Devices")
+    @Description("A device value that failed a validation rule")
+    static final class ValidationFailureEvent extends Event
+    {
+        @Label("Rule")
+        String rule;
+
+        @Label("Message")
+        String message;
+    }
+
+    /*
+     * The running totals for one device class.
+     */
+    @Name("devices.TypeStatistics")
+    @Label("Device Type Statistics")
+    @Category("Devices")
+    @Description("Running totals of constructions, equals, hashCode and printDetails calls")
+    @StackTrace(false)
+    @Period("1 s")
+    static final class TypeStatisticsEvent extends Event
+    {
+        @Label("Device Type")
+        String deviceType;
+
+        @Label("Constructions")
+        long constructions;
+
+        @Label("Equals Calls")
+        long equalsCalls;
+
+        @Label("HashCode Calls")
+        long hashCodeCalls;
+
+        @Label("PrintDetails Calls")
+        long printDetailsCalls;
+
+        @Label("PrintDetails P99")
+        @Timespan
+        long printDetailsP99;
+    }
+
+    /*
+     * The running total for one validation rule.
+     */
+    @Name("devices.ValidationStatistics")
+    @Label("Validation Statistics")
+    @Category("Devices")
+    @Description("Running total of failures of one validation rule")
+    @StackTrace(false)
+    @Period("1 s")
+    static final class ValidationStatisticsEvent extends Event
+    {
+        @Label("Rule")
+        String rule;
+
+        @Label("Failures")
+        long failures;
+    }
+}
@@ -0,0 +1,1023 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * A columnar registry for large fleets of devices. Rather than holding one object per device,
+ * each subclass's fields are stored in parallel primitive arrays (and a {@link BitSet} for the
+ * boolean flags). Carriers and OS versions are stored as codes from {@link SymbolTable}s
+ * that belong to the registry, so they grow and are freed with it rather than filling the
+ * bounded tables the device classes share. Devices are handed out as lightweight views that still behave like an
+ * {@link IDevice}, so code that calls {@code getPurpose}, {@code printDetails} or
+ * {@code toString} keeps working. A view is not an {@link IPhone}, {@link IPod} or {@link IPad}
+ * and has no value equality; {@link #materialize(IDevice)} copies it into one for code that
+ * needs a real device, and every class that dispatches on device type does so.
+ * Every add method runs the same validation as the matching constructor.
+ * Range queries over IPhone and IPhone16 minutes and IPod volumes can be answered by a
+ * {@link DoubleRangeIndex} that the registry builds on request and keeps up to date as
+ * devices are added.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceRegistry implements DeviceSink
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final SymbolTable carriers;
+    private final SymbolTable OSVersions;
+
+    private double[]     iPhoneMinutes;
+    private int[]        iPhoneCarriers;
+    private int          iPhoneCount;
+
+    private double[]     iPhone16Minutes;
+    private int[]        iPhone16Carriers;
+    private int[]        iPhone16MemoryGB;
+    private final BitSet iPhone16HighResCamera;
+    private int          iPhone16Count;
+
+    private double[]     iPodVolumeDB;
+    private int[]        iPodNumSongs;
+    private int          iPodCount;
+
+    private int[]        iPadOSVersions;
+    private final BitSet iPadHasCase;
+    private int          iPadCount;
+
+    private IPadView[]       iPadFeedViews;
+
+    private DoubleRangeIndex iPhoneMinutesIndex;
+    private DoubleRangeIndex iPhone16MinutesIndex;
+    private DoubleRangeIndex iPodVolumeDBIndex;
+
+    /**
+     * Constructs an empty DeviceRegistry.
+     */
+    public DeviceRegistry()
+    {
+        iPhoneMinutes         = new double[DEFAULT_CAPACITY];
+        iPhoneCarriers        = new int[DEFAULT_CAPACITY];
+        iPhone16Minutes       = new double[DEFAULT_CAPACITY];
+        iPhone16Carriers      = new int[DEFAULT_CAPACITY];
+        iPhone16MemoryGB      = new int[DEFAULT_CAPACITY];
+        iPhone16HighResCamera = new BitSet();
+        iPodVolumeDB          = new double[DEFAULT_CAPACITY];
+        iPodNumSongs          = new int[DEFAULT_CAPACITY];
+        iPadOSVersions        = new int[DEFAULT_CAPACITY];
+        iPadHasCase           = new BitSet();
+        carriers              = new SymbolTable();
+        OSVersions            = new SymbolTable();
+    }
+
+    /*
+     * Returns a capacity that can hold at least one more element than the current size.
+     */
+    private static int grow(final int length)
+    {
+        return Math.max(DEFAULT_CAPACITY, length * 2);
+    }
+
+    /**
+     * Adds an IPhone to the registry.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @return the index of the new IPhone
+     * @throws IllegalArgumentException if a value fails the {@link IPhone} validation
+     */
+    public int addIPhone(final double remainingPlanMinutes,
+                         final String planCarrier)
+    {
+        IPhone.checkRemainingPlanMinutes(remainingPlanMinutes);
+        IPhone.checkPlanCarrier(planCarrier);
+
+        if (iPhoneCount == iPhoneMinutes.length)
+        {
+            final int capacity;
+            capacity = grow(iPhoneCount);
+
+            iPhoneMinutes  = Arrays.copyOf(iPhoneMinutes, capacity);
+            iPhoneCarriers = Arrays.copyOf(iPhoneCarriers, capacity);
+        }
+
+        iPhoneMinutes[iPhoneCount]  = remainingPlanMinutes;
+        iPhoneCarriers[iPhoneCount] = carriers.encode(planCarrier);
+
+        if (iPhoneMinutesIndex != null)
+        {
+            iPhoneMinutesIndex.add(remainingPlanMinutes, iPhoneCount);
+        }
+
+        return iPhoneCount++;
+    }
+
+    /**
+     * Adds an IPhone16 to the registry.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @param highResCamera        whether the phone has a high-res camera
+     * @param memoryGigabytes      the amount of memory for the phone
+     * @return the index of the new IPhone16
+     * @throws IllegalArgumentException if a value fails the {@link IPhone16} validation
+     */
+    public int addIPhone16(final double remainingPlanMinutes,
+                           final String planCarrier,
+                           final boolean highResCamera,
+                           final int memoryGigabytes)
+    {
+        IPhone.checkRemainingPlanMinutes(remainingPlanMinutes);
+        IPhone.checkPlanCarrier(planCarrier);
+        IPhone16.checkMemoryGB(memoryGigabytes);
+
+        if (iPhone16Count == iPhone16Minutes.length)
+        {
+            final int capacity;
+            capacity = grow(iPhone16Count);
+
+            iPhone16Minutes  = Arrays.copyOf(iPhone16Minutes, capacity);
+            iPhone16Carriers = Arrays.copyOf(iPhone16Carriers, capacity);
+            iPhone16MemoryGB = Arrays.copyOf(iPhone16MemoryGB, capacity);
+        }
+
+        iPhone16Minutes[iPhone16Count]  = remainingPlanMinutes;
+        iPhone16Carriers[iPhone16Count] = carriers.encode(planCarrier);
+        iPhone16MemoryGB[iPhone16Count] = memoryGigabytes;
+        iPhone16HighResCamera.set(iPhone16Count, highResCamera);
+
+        if (iPhone16MinutesIndex != null)
+        {
+            iPhone16MinutesIndex.add(remainingPlanMinutes, iPhone16Count);
+        }
+
+        return iPhone16Count++;
+    }
+
+    /**
+     * Adds an IPod to the registry.
+     *
+     * @param currentVolumeDB the current volume in decibels (dB)
+     * @param numSongsStored  the number of songs stored on the iPod
+     * @return the index of the new IPod
+     * @throws IllegalArgumentException if a value fails the {@link IPod} validation
+     */
+    public int addIPod(final double currentVolumeDB,
+                       final int numSongsStored)
+    {
+        IPod.checkCurrentVolumeDB(currentVolumeDB);
+        IPod.checkNumSongsStored(numSongsStored);
+
+        if (iPodCount == iPodVolumeDB.length)
+        {
+            final int capacity;
+            capacity = grow(iPodCount);
+
+            iPodVolumeDB = Arrays.copyOf(iPodVolumeDB, capacity);
+            iPodNumSongs = Arrays.copyOf(iPodNumSongs, capacity);
+        }
+
+        iPodVolumeDB[iPodCount] = currentVolumeDB;
+        iPodNumSongs[iPodCount] = numSongsStored;
+
+        if (iPodVolumeDBIndex != null)
+        {
+            iPodVolumeDBIndex.add(currentVolumeDB, iPodCount);
+        }
+
+        return iPodCount++;
+    }
+
+    /**
+     * Adds an IPad to the registry.
+     *
+     * @param hasCase   true if the iPad has a protective case
+     * @param OSVersion the operating system version of the iPad
+     * @return the index of the new IPad
+     */
+    public int addIPad(final boolean hasCase,
+                       final String OSVersion)
+    {
+        if (iPadCount == iPadOSVersions.length)
+        {
+            iPadOSVersions = Arrays.copyOf(iPadOSVersions, grow(iPadCount));
+        }
+
+        iPadOSVersions[iPadCount] = OSVersions.encode(OSVersion);
+        iPadHasCase.set(iPadCount, hasCase);
+
+        return iPadCount++;
+    }
+
+    @Override
+    public void acceptIPhone(final double remainingPlanMinutes,
+                             final String planCarrier)
+    {
+        addIPhone(remainingPlanMinutes, planCarrier);
+    }
+
+    @Override
+    public void acceptIPhone16(final double remainingPlanMinutes,
+                               final String planCarrier,
+                               final boolean highResCamera,
+                               final int memoryGigabytes)
+    {
+        addIPhone16(remainingPlanMinutes, planCarrier, highResCamera, memoryGigabytes);
+    }
+
+    @Override
+    public void acceptIPod(final double currentVolumeDB,
+                           final int numSongsStored)
+    {
+        addIPod(currentVolumeDB, numSongsStored);
+    }
+
+    @Override
+    public void acceptIPad(final boolean hasCase,
+                           final String OSVersion)
+    {
+        addIPad(hasCase, OSVersion);
+    }
+
+    /**
+     * Copies an existing device, or the device a registry view shows, into the registry.
+     *
+     * @param device the device to copy
+     * @return the index of the device within its type
+     */
+    public int add(final IDevice device)
+    {
+        if (isView(device))
+        {
+            return add(materialize(device));
+        }
+        if (device instanceof IPhone16)
+        {
+            final IPhone16 iPhone16;
+            iPhone16 = (IPhone16) device;
+
+            return addIPhone16(iPhone16.getRemainingPlanMinutes(),
+                               iPhone16.getPlanCarrier(),
+                               iPhone16.isHighResCamera(),
+                               iPhone16.getMemoryGigabytes());
+        }
+        if (device instanceof IPhone)
+        {
+            final IPhone iPhone;
+            iPhone = (IPhone) device;
+
+            return addIPhone(iPhone.getRemainingPlanMinutes(), iPhone.getPlanCarrier());
+        }
+        if (device instanceof IPod)
+        {
+            final IPod iPod;
+            iPod = (IPod) device;
+
+            return addIPod(iPod.getCurrentVolumeDB(), iPod.getNumSongsStored());
+        }
+        if (device instanceof IPad)
+        {
+            final IPad iPad;
+            iPad = (IPad) device;
+
+            return addIPad(iPad.hasCase(), iPad.getOSVersion());
+        }
+        throw new IllegalArgumentException("Unsupported device type");
+    }
+
+    /**
+     * Getter for the number of IPhones in the registry.
+     *
+     * @return the number of IPhones
+     */
+    public int getIPhoneCount()
+    {
+        return iPhoneCount;
+    }
+
+    /**
+     * Getter for the number of IPhone16s in the registry.
+     *
+     * @return the number of IPhone16s
+     */
+    public int getIPhone16Count()
+    {
+        return iPhone16Count;
+    }
+
+    /**
+     * Getter for the number of IPods in the registry.
+     *
+     * @return the number of IPods
+     */
+    public int getIPodCount()
+    {
+        return iPodCount;
+    }
+
+    /**
+     * Getter for the number of IPads in the registry.
+     *
+     * @return the number of IPads
+     */
+    public int getIPadCount()
+    {
+        return iPadCount;
+    }
+
+    /**
+     * Returns a view of the IPhone at the given index.
+     *
+     * @param index the index of the IPhone
+     * @return a view of the IPhone
+     */
+    public IPhoneView getIPhone(final int index)
+    {
+        Objects.checkIndex(index, iPhoneCount);
+        return new IPhoneView(this, index);
+    }
+
+    /**
+     * Returns a view of the IPhone16 at the given index.
+     *
+     * @param index the index of the IPhone16
+     * @return a view of the IPhone16
+     */
+    public IPhone16View getIPhone16(final int index)
+    {
+        Objects.checkIndex(index, iPhone16Count);
+        return new IPhone16View(this, index);
+    }
+
+    /**
+     * Returns a view of the IPod at the given index.
+     *
+     * @param index the index of the IPod
+     * @return a view of the IPod
+     */
+    public IPodView getIPod(final int index)
+    {
+        Objects.checkIndex(index, iPodCount);
+        return new IPodView(this, index);
+    }
+
+    /**
+     * Returns a view of the IPad at the given index.
+     *
+     * @param index the index of the IPad
+     * @return a view of the IPad
+     */
+    public IPadView getIPad(final int index)
+    {
+        Objects.checkIndex(index, iPadCount);
+        return new IPadView(this, index);
+    }
+
+    /**
+     * Setter for whether the IPad at the given index has a protective case. The change is
+     * published to the running {@link DeviceChangeFeed}, if there is one.
+     *
+     * @param index   the index of the IPad
+     * @param hasCase true if the iPad has a case, false otherwise
+     */
+    public void setHasCase(final int index,
+                           final boolean hasCase)
+    {
+        Objects.checkIndex(index, iPadCount);
+        iPadHasCase.set(index, hasCase);
+        DeviceChangeFeed.recordHasCase(this, index, hasCase);
+    }
+
+    /*
+     * Returns the one view of an IPad that the change feed publishes, so the feed can
+     * coalesce changes to the same IPad by identity. Views are only kept for IPads that
+     * changed while a feed was running; IPads are never reordered, so a view stays valid.
+     */
+    IPadView feedView(final int index)
+    {
+        if (iPadFeedViews == null || iPadFeedViews.length <= index)
+        {
+            iPadFeedViews = Arrays.copyOf(iPadFeedViews == null ? new IPadView[0] : iPadFeedViews,
+                                          Math.max(index + 1, iPadCount));
+        }
+        if (iPadFeedViews[index] == null)
+        {
+            iPadFeedViews[index] = new IPadView(this, index);
+        }
+
+        return iPadFeedViews[index];
+    }
+
+    /**
+     * Returns the device itself, or, for a registry view, a new device of the matching class
+     * with the values the view shows now. The copy does not follow later changes to the
+     * registry.
+     *
+     * @param device the device or view
+     * @return a device that is an IPhone, IPhone16, IPod or IPad
+     */
+    public static IDevice materialize(final IDevice device)
+    {
+        if (device instanceof IPhoneView view)
+        {
+            return view.materialize();
+        }
+        if (device instanceof IPhone16View view)
+        {
+            return view.materialize();
+        }
+        if (device instanceof IPodView view)
+        {
+            return view.materialize();
+        }
+        if (device instanceof IPadView view)
+        {
+            return view.materialize();
+        }
+        return device;
+    }
+
+    /*
+     * Returns whether the device is a view of a row in a registry.
+     */
+    static boolean isView(final IDevice device)
+    {
+        return device instanceof IPhoneView ||
+               device instanceof IPhone16View ||
+               device instanceof IPodView ||
+               device instanceof IPadView;
+    }
+
+    /**
+     * Returns a sorted index of the IPhones' remaining plan minutes, keyed by IPhone index.
+     * The index is built the first time it is asked for and kept up to date as IPhones
+     * are added after that, so only registries that are queried by range pay for it.
+     *
+     * @return the index of remaining plan minutes
+     */
+    public DoubleRangeIndex indexIPhoneMinutes()
+    {
+        if (iPhoneMinutesIndex == null)
+        {
+            iPhoneMinutesIndex = DoubleRangeIndex.of(iPhoneMinutes, iPhoneCount);
+        }
+        return iPhoneMinutesIndex;
+    }
+
+    /**
+     * Returns a sorted index of the IPhone16s' remaining plan minutes, keyed by IPhone16
+     * index. The index is built the first time it is asked for and kept up to date as
+     * IPhone16s are added after that.
+     *
+     * @return the index of remaining plan minutes
+     */
+    public DoubleRangeIndex indexIPhone16Minutes()
+    {
+        if (iPhone16MinutesIndex == null)
+        {
+            iPhone16MinutesIndex = DoubleRangeIndex.of(iPhone16Minutes, iPhone16Count);
+        }
+        return iPhone16MinutesIndex;
+    }
+
+    /**
+     * Returns a sorted index of the IPods' current volumes, keyed by IPod index. The index
+     * is built the first time it is asked for and kept up to date as IPods are added after
+     * that.
+     *
+     * @return the index of current volumes in decibels (dB)
+     */
+    public DoubleRangeIndex indexIPodVolumeDB()
+    {
+        if (iPodVolumeDBIndex == null)
+        {
+            iPodVolumeDBIndex = DoubleRangeIndex.of(iPodVolumeDB, iPodCount);
+        }
+        return iPodVolumeDBIndex;
+    }
+
+    /**
+     * Sorts the IPhones by remaining plan minutes, keeping IPhones with equal minutes in
+     * their current order. Every column is permuted in place, so IPhones get new indexes:
+     * views taken before the sort show whichever IPhone now has their index. A range index
+     * of the minutes is rebuilt to match.
+     *
+     * @param sort the sort to order the minutes with
+     */
+    public void sortIPhonesByRemainingPlanMinutes(final DeviceSort sort)
+    {
+        final int[] order;
+        order = sort.orderByDouble(iPhoneMinutes, iPhoneCount);
+
+        iPhoneMinutes  = permute(iPhoneMinutes, order);
+        iPhoneCarriers = permute(iPhoneCarriers, order);
+
+        if (iPhoneMinutesIndex != null)
+        {
+            iPhoneMinutesIndex.replaceAll(iPhoneMinutes, iPhoneCount);
+        }
+    }
+
+    /**
+     * Sorts the IPhone16s by remaining plan minutes, keeping IPhone16s with equal minutes in
+     * their current order. Like {@link #sortIPhonesByRemainingPlanMinutes(DeviceSort)}, this
+     * gives IPhone16s new indexes and rebuilds a range index of the minutes.
+     *
+     * @param sort the sort to order the minutes with
+     */
+    public void sortIPhone16sByRemainingPlanMinutes(final DeviceSort sort)
+    {
+        final int[] order;
+        order = sort.orderByDouble(iPhone16Minutes, iPhone16Count);
+
+        iPhone16Minutes  = permute(iPhone16Minutes, order);
+        iPhone16Carriers = permute(iPhone16Carriers, order);
+        iPhone16MemoryGB = permute(iPhone16MemoryGB, order);
+        permute(iPhone16HighResCamera, order);
+
+        if (iPhone16MinutesIndex != null)
+        {
+            iPhone16MinutesIndex.replaceAll(iPhone16Minutes, iPhone16Count);
+        }
+    }
+
+    /**
+     * Sorts the IPods by number of songs stored, keeping IPods with equal numbers in their
+     * current order. Like {@link #sortIPhonesByRemainingPlanMinutes(DeviceSort)}, this gives
+     * IPods new indexes and rebuilds a range index of the volumes.
+     *
+     * @param sort the sort to order the numbers of songs with
+     */
+    public void sortIPodsByNumSongsStored(final DeviceSort sort)
+    {
+        final int[] order;
+        order = sort.orderByInt(iPodNumSongs, iPodCount);
+
+        iPodVolumeDB = permute(iPodVolumeDB, order);
+        iPodNumSongs = permute(iPodNumSongs, order);
+
+        if (iPodVolumeDBIndex != null)
+        {
+            iPodVolumeDBIndex.replaceAll(iPodVolumeDB, iPodCount);
+        }
+    }
+
+    /*
+     * Returns a column of the same capacity whose first rows are taken from the given
+     * positions of the old column.
+     */
+    private static double[] permute(final double[] column,
+                                    final int[] order)
+    {
+        final double[] permuted;
+        permuted = new double[column.length];
+
+        for (int i = 0; i < order.length; i++)
+        {
+            permuted[i] = column[order[i]];
+        }
+        return permuted;
+    }
+
+    /*
+     * Returns a column of the same capacity whose first rows are taken from the given
+     * positions of the old column.
+     */
+    private static int[] permute(final int[] column,
+                                 final int[] order)
+    {
+        final int[] permuted;
+        permuted = new int[column.length];
+
+        for (int i = 0; i < order.length; i++)
+        {
+            permuted[i] = column[order[i]];
+        }
+        return permuted;
+    }
+
+    /*
+     * Rearranges the first rows of a flag column in place so each is taken from the given
+     * position.
+     */
+    private static void permute(final BitSet column,
+                                final int[] order)
+    {
+        final BitSet original;
+        original = (BitSet) column.clone();
+
+        for (int i = 0; i < order.length; i++)
+        {
+            column.set(i, original.get(order[i]));
+        }
+    }
+
+    /*
+     * Column getters for code in this package that scans the registry in bulk, such as
+     * FleetQuery. They return the registry's own storage, which may be longer than the
+     * matching count and is replaced when the registry grows.
+     */
+    double[] getIPhoneMinutesColumn()
+    {
+        return iPhoneMinutes;
+    }
+
+    int[] getIPhoneCarrierCodesColumn()
+    {
+        return iPhoneCarriers;
+    }
+
+    double[] getIPhone16MinutesColumn()
+    {
+        return iPhone16Minutes;
+    }
+
+    int[] getIPhone16CarrierCodesColumn()
+    {
+        return iPhone16Carriers;
+    }
+
+    int[] getIPhone16MemoryGBColumn()
+    {
+        return iPhone16MemoryGB;
+    }
+
+    BitSet getIPhone16HighResCameraColumn()
+    {
+        return iPhone16HighResCamera;
+    }
+
+    double[] getIPodVolumeDBColumn()
+    {
+        return iPodVolumeDB;
+    }
+
+    int[] getIPodNumSongsColumn()
+    {
+        return iPodNumSongs;
+    }
+
+    int[] getIPadOSVersionCodesColumn()
+    {
+        return iPadOSVersions;
+    }
+
+    /*
+     * Getters for the tables that the carrier and OS version code columns are encoded with.
+     */
+    SymbolTable getCarriers()
+    {
+        return carriers;
+    }
+
+    SymbolTable getOSVersions()
+    {
+        return OSVersions;
+    }
+
+    BitSet getIPadHasCaseColumn()
+    {
+        return iPadHasCase;
+    }
+
+    /**
+     * A view of one IPhone stored in a {@link DeviceRegistry}.
+     */
+    public static final class IPhoneView extends IDevice
+    {
+        private final DeviceRegistry registry;
+        private final int            index;
+
+        private IPhoneView(final DeviceRegistry registry,
+                           final int index)
+        {
+            super(IPhone.IPHONE_PURPOSE);
+            this.registry = registry;
+            this.index    = index;
+        }
+
+        /**
+         * Getter for the IPhone's remaining plan minutes.
+         *
+         * @return the remaining plan minutes
+         */
+        public double getRemainingPlanMinutes()
+        {
+            return registry.iPhoneMinutes[index];
+        }
+
+        /**
+         * Getter for the IPhone's plan carrier.
+         *
+         * @return the plan carrier
+         */
+        public String getPlanCarrier()
+        {
+            return registry.carriers.decode(registry.iPhoneCarriers[index]);
+        }
+
+        /**
+         * Returns a new IPhone with the values this view shows now.
+         *
+         * @return the IPhone
+         */
+        public IPhone materialize()
+        {
+            return new IPhone(getRemainingPlanMinutes(), getPlanCarrier());
+        }
+
+        /**
+         * Prints the details of this IPhone to the console.
+         */
+        @Override
+        public void printDetails()
+        {
+            final long start;
+            start = DeviceMetrics.startTimer();
+
+            System.out.println(this);
+            DeviceMetrics.recordPrintDetails(this, start);
+        }
+
+        /**
+         * Appends the same details an equivalent {@link IPhone} would.
+         *
+         * @param out the Appendable to write to
+         * @throws IOException if out cannot be written to
+         */
+        @Override
+        public void writeDetails(final Appendable out) throws IOException
+        {
+            super.writeDetails(out);
+            out.append("\nRemaining Plan Minutes: ");
+            append(out, getRemainingPlanMinutes());
+            out.append("\nPlan Carrier: ");
+            out.append(getPlanCarrier());
+        }
+    }
+
+    /**
+     * A view of one IPhone16 stored in a {@link DeviceRegistry}.
+     */
+    public static final class IPhone16View extends IDevice
+    {
+        private final DeviceRegistry registry;
+        private final int            index;
+
+        private IPhone16View(final DeviceRegistry registry,
+                             final int index)
+        {
+            super(IPhone.IPHONE_PURPOSE);
+            this.registry = registry;
+            this.index    = index;
+        }
+
+        /**
+         * Getter for the IPhone16's remaining plan minutes.
+         *
+         * @return the remaining plan minutes
+         */
+        public double getRemainingPlanMinutes()
+        {
+            return registry.iPhone16Minutes[index];
+        }
+
+        /**
+         * Getter for the IPhone16's plan carrier.
+         *
+         * @return the plan carrier
+         */
+        public String getPlanCarrier()
+        {
+            return registry.carriers.decode(registry.iPhone16Carriers[index]);
+        }
+
+        /**
+         * Getter for whether the IPhone16 has a high resolution camera.
+         *
+         * @return true if the phone has a high-res camera
+         */
+        public boolean isHighResCamera()
+        {
+            return registry.iPhone16HighResCamera.get(index);
+        }
+
+        /**
+         * Getter for the amount of memory the IPhone16 has.
+         *
+         * @return the memory in gigabytes
+         */
+        public int getMemoryGigabytes()
+        {
+            return registry.iPhone16MemoryGB[index];
+        }
+
+        /**
+         * Returns a new IPhone16 with the values this view shows now.
+         *
+         * @return the IPhone16
+         */
+        public IPhone16 materialize()
+        {
+            return new IPhone16(getRemainingPlanMinutes(), getPlanCarrier(), isHighResCamera(), getMemoryGigabytes());
+        }
+
+        /**
+         * Prints the details of this IPhone16 to the console.
+         */
+        @Override
+        public void printDetails()
+        {
+            final long start;
+            start = DeviceMetrics.startTimer();
+
+            System.out.println(this);
+            DeviceMetrics.recordPrintDetails(this, start);
+        }
+
+        /**
+         * Appends the same details an equivalent {@link IPhone16} would.
+         *
+         * @param out the Appendable to write to
+         * @throws IOException if out cannot be written to
+         */
+        @Override
+        public void writeDetails(final Appendable out) throws IOException
+        {
+            super.writeDetails(out);
+            out.append("\nRemaining Plan Minutes: ");
+            append(out, getRemainingPlanMinutes());
+            out.append("\nPlan Carrier: ");
+            out.append(getPlanCarrier());
+            out.append("\nHas High Resolution Camera: ");
+            append(out, isHighResCamera());
+            out.append("\nMemory: ");
+            append(out, getMemoryGigabytes());
+            out.append("GB");
+        }
+    }
+
+    /**
+     * A view of one IPod stored in a {@link DeviceRegistry}.
+     */
+    public static final class IPodView extends IDevice
+    {
+        private final DeviceRegistry registry;
+        private final int            index;
+
+        private IPodView(final DeviceRegistry registry,
+                         final int index)
+        {
+            super(IPod.IPOD_PURPOSE);
+            this.registry = registry;
+            this.index    = index;
+        }
+
+        /**
+         * Getter for the IPod's current volume in decibels (dB).
+         *
+         * @return the current volume
+         */
+        public double getCurrentVolumeDB()
+        {
+            return registry.iPodVolumeDB[index];
+        }
+
+        /**
+         * Getter for the number of songs stored in the IPod.
+         *
+         * @return the number of songs
+         */
+        public int getNumSongsStored()
+        {
+            return registry.iPodNumSongs[index];
+        }
+
+        /**
+         * Returns a new IPod with the values this view shows now.
+         *
+         * @return the IPod
+         */
+        public IPod materialize()
+        {
+            return new IPod(getCurrentVolumeDB(), getNumSongsStored());
+        }
+
+        /**
+         * Prints the details of this IPod to the console.
+         */
+        @Override
+        public void printDetails()
+        {
+            final long start;
+            start = DeviceMetrics.startTimer();
+
+            System.out.println(this);
+            DeviceMetrics.recordPrintDetails(this, start);
+        }
+
+        /**
+         * Appends the same details an equivalent {@link IPod} would.
+         *
+         * @param out the Appendable to write to
+         * @throws IOException if out cannot be written to
+         */
+        @Override
+        public void writeDetails(final Appendable out) throws IOException
+        {
+            super.writeDetails(out);
+            out.append("\nCurrent Volume (dB): ");
+            append(out, getCurrentVolumeDB());
+            out.append("\nNumber of Songs Stored: ");
+            append(out, getNumSongsStored());
+        }
+    }
+
+    /**
+     * A view of one IPad stored in a {@link DeviceRegistry}.
+     */
+    public static final class IPadView extends IDevice
+    {
+        private final DeviceRegistry registry;
+        private final int            index;
+
+        private IPadView(final DeviceRegistry registry,
+                         final int index)
+        {
+            super(IPad.IPAD_PURPOSE);
+            this.registry = registry;
+            this.index    = index;
+        }
+
+        /**
+         * Returns whether the IPad has a protective case.
+         *
+         * @return true if the iPad has a case
+         */
+        public boolean hasCase()
+        {
+            return registry.iPadHasCase.get(index);
+        }
+
+        /**
+         * Setter for whether the IPad has a protective case. The change is published to
+         * the running {@link DeviceChangeFeed}, if there is one.
+         *
+         * @param hasCase true if the iPad has a case, false otherwise
+         */
+        public void setHasCase(final boolean hasCase)
+        {
+            registry.setHasCase(index, hasCase);
+        }
+
+        /**
+         * Returns the operating system version of the IPad.
+         *
+         * @return the OS version String
+         */
+        public String getOSVersion()
+        {
+            return registry.OSVersions.decode(registry.iPadOSVersions[index]);
+        }
+
+        /**
+         * Returns a new IPad with the values this view shows now.
+         *
+         * @return the IPad
+         */
+        public IPad materialize()
+        {
+            return new IPad(hasCase(), getOSVersion());
+        }
+
+        /**
+         * Prints the details of this IPad to the console.
+         */
+        @Override
+        public void printDetails()
+        {
+            final long start;
+            start = DeviceMetrics.startTimer();
+
+            System.out.println(this);
+            DeviceMetrics.recordPrintDetails(this, start);
+        }
+
+        /**
+         * Appends the same details an equivalent {@link IPad} would.
+         *
+         * @param out the Appendable to write to
+         * @throws IOException if out cannot be written to
+         */
+        @Override
+        public void writeDetails(final Appendable out) throws IOException
+        {
+            super.writeDetails(out);
+            out.append("\nHas Case: ");
+            append(out, hasCase());
+            out.append("\nOS Version: ");
+            out.append(getOSVersion());
+        }
+    }
+}
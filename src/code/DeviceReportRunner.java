@@ -0,0 +1,544 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders the details of a fleet of devices on several threads and ships them to any number
+ * of {@link ReportSink}s.
+ * The devices are split into chunks of {@code chunkDevices}. A fixed pool of renderer
+ * threads claims chunks in turn and renders each with
+ * {@link DeviceDispatch#writeDetails(IDevice, StringBuilder)}, one device per line, exactly as
+ * {@link IDevice#printDetails()} would print them. Rendered chunks are handed to every sink
+ * in device order through a bounded queue per sink, which one writer thread per sink drains.
+ * <p>
+ * When a sink falls behind, its queue fills up and the renderers wait for it rather than
+ * rendering further ahead, so a report never holds more than about
+ * {@code renderers + sinks * (queueCapacity + 1)} chunks in memory however slow a sink is.
+ * If a sink or a device fails, the rest of the report is abandoned and the failure is
+ * thrown from {@link #run(List, List)}.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceReportRunner implements Closeable
+{
+    /**
+     * The number of devices in a chunk if none is given.
+     */
+    public static final int DEFAULT_CHUNK_DEVICES = 256;
+
+    /**
+     * The number of chunks each sink's queue holds if no capacity is given.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+    private static final String LINE_SEPARATOR   = System.lineSeparator();
+    private static final long   END_RETRY_MILLIS = 10L;
+    // Compared by identity, so no chunk can be mistaken for it
+    private static final String END_OF_REPORT    = new String("end of report");
+
+    private final ExecutorService renderPool;
+    private final ExecutorService sinkPool;
+    private final int             renderers;
+    private final int             queueCapacity;
+    private final int             chunkDevices;
+
+    /**
+     * Constructs a DeviceReportRunner with one renderer per available processor and the
+     * default queue capacity and chunk size.
+     */
+    public DeviceReportRunner()
+    {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, DEFAULT_CHUNK_DEVICES);
+    }
+
+    /**
+     * Constructs a DeviceReportRunner.
+     *
+     * @param renderers     the number of threads rendering devices at once
+     * @param queueCapacity the number of rendered chunks each sink may fall behind by before
+     *                      the renderers wait for it
+     * @param chunkDevices  the number of devices rendered and shipped together
+     * @throws IllegalArgumentException if a limit is not positive
+     */
+    public DeviceReportRunner(final int renderers,
+                              final int queueCapacity,
+                              final int chunkDevices)
+    {
+        if (renderers <= 0 || queueCapacity <= 0 || chunkDevices <= 0)
+        {
+            throw new IllegalArgumentException("Renderers, queue capacity and chunk size must be positive");
+        }
+
+        this.renderers     = renderers;
+        this.queueCapacity = queueCapacity;
+        this.chunkDevices  = chunkDevices;
+        this.renderPool    = Executors.newFixedThreadPool(renderers, daemonThreads("report-renderer-"));
+        this.sinkPool      = Executors.newCachedThreadPool(daemonThreads("report-sink-"));
+    }
+
+    /*
+     * Returns a factory for numbered daemon threads, so an unclosed runner does not keep
+     * the JVM alive.
+     */
+    private static ThreadFactory daemonThreads(final String prefix)
+    {
+        final AtomicInteger count;
+        count = new AtomicInteger();
+
+        return task ->
+        {
+            final Thread thread;
+            thread = new Thread(task, prefix + count.incrementAndGet());
+
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Renders the details of every device and writes them to every sink. The list should
+     * support fast random access and must not change during the run. Sinks are flushed
+     * after the last chunk but not closed.
+     *
+     * @param devices the devices to report on, in report order
+     * @param sinks   the sinks that each receive the whole report
+     * @return the number of devices and chunks reported, and how long the renderers
+     *         waited for the sinks
+     * @throws IOException if a sink fails or the calling thread is interrupted
+     */
+    public ReportResult run(final List<? extends IDevice> devices,
+                            final List<? extends ReportSink> sinks) throws IOException
+    {
+        final long start;
+        final Run  run;
+
+        start = System.nanoTime();
+        run   = new Run(devices, sinks);
+
+        run.start();
+        run.finish();
+
+        return new ReportResult(devices.size(), run.chunks, run.backpressureNanos.get(),
+                                run.peakQueuedChunks.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Stops the runner's threads. Reports that are still running fail.
+     */
+    @Override
+    public void close()
+    {
+        renderPool.shutdownNow();
+        sinkPool.shutdownNow();
+    }
+
+    /*
+     * The state of one report: the chunk each renderer claims next, the chunk whose turn it
+     * is to be queued, and the queue of every sink.
+     */
+    private final class Run
+    {
+        private final List<? extends IDevice>     devices;
+        private final List<? extends ReportSink>  sinks;
+        private final List<BlockingQueue<String>> queues;
+        private final List<Future<?>>             renderTasks;
+        private final List<Future<?>>             sinkTasks;
+        private final int                         chunks;
+        private final AtomicInteger               nextChunk;
+        private final AtomicReference<Throwable>  failure;
+        private final AtomicLong                  backpressureNanos;
+        private final AtomicInteger               peakQueuedChunks;
+        private final Object                      turn;
+        private int                               queuedChunks;
+
+        private Run(final List<? extends IDevice> devices,
+                    final List<? extends ReportSink> sinks)
+        {
+            this.devices           = devices;
+            this.sinks             = sinks;
+            this.queues            = new ArrayList<>(sinks.size());
+            this.renderTasks       = new ArrayList<>(renderers);
+            this.sinkTasks         = new ArrayList<>(sinks.size());
+            this.chunks            = (devices.size() + chunkDevices - 1) / chunkDevices;
+            this.nextChunk         = new AtomicInteger();
+            this.failure           = new AtomicReference<>();
+            this.backpressureNanos = new AtomicLong();
+            this.peakQueuedChunks  = new AtomicInteger();
+            this.turn              = new Object();
+
+            for (int i = 0; i < sinks.size(); i++)
+            {
+                queues.add(new ArrayBlockingQueue<>(queueCapacity));
+            }
+        }
+
+        /*
+         * Starts a writer for every sink and the renderers.
+         */
+        private void start()
+        {
+            for (int i = 0; i < sinks.size(); i++)
+            {
+                final ReportSink            sink;
+                final BlockingQueue<String> queue;
+
+                sink  = sinks.get(i);
+                queue = queues.get(i);
+
+                sinkTasks.add(sinkPool.submit(() -> drain(sink, queue)));
+            }
+            for (int i = 0; i < Math.min(renderers, chunks); i++)
+            {
+                renderTasks.add(renderPool.submit(this::render));
+            }
+        }
+
+        /*
+         * Waits for the renderers, tells every writer the report has ended, waits for the
+         * writers and throws the first failure, if any.
+         */
+        private void finish() throws IOException
+        {
+            boolean interrupted;
+            interrupted = awaitAll(renderTasks);
+
+            for (int i = 0; i < queues.size(); i++)
+            {
+                // Writers keep draining after a failure, so there is soon room unless the
+                // writer itself was stopped
+                while (!sinkTasks.get(i).isDone())
+                {
+                    try
+                    {
+                        if (queues.get(i).offer(END_OF_REPORT, END_RETRY_MILLIS, TimeUnit.MILLISECONDS))
+                        {
+                            break;
+                        }
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        interrupted = true;
+                        fail(e);
+                    }
+                }
+            }
+            interrupted |= awaitAll(sinkTasks);
+
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            final Throwable cause;
+            cause = failure.get();
+
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException)
+            {
+                final InterruptedIOException exception;
+                exception = new InterruptedIOException("Interrupted while reporting");
+
+                exception.initCause(cause);
+                throw exception;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+        }
+
+        /*
+         * Waits for every task, failing the report if the caller is interrupted, and returns
+         * whether it was.
+         */
+        private boolean awaitAll(final List<Future<?>> tasks)
+        {
+            boolean interrupted;
+            interrupted = false;
+
+            for (final Future<?> task : tasks)
+            {
+                while (true)
+                {
+                    try
+                    {
+                        task.get();
+                        break;
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        interrupted = true;
+                        fail(e);
+                    }
+                    catch (final ExecutionException e)
+                    {
+                        fail(e.getCause());
+                        break;
+                    }
+                }
+            }
+
+            return interrupted;
+        }
+
+        /*
+         * Records the first failure; later ones are dropped.
+         */
+        private void fail(final Throwable cause)
+        {
+            failure.compareAndSet(null, cause);
+        }
+
+        /*
+         * Renders chunks until none are left. Every claimed chunk takes its turn in the
+         * queues, even once the report has failed, so renderers behind it are not stranded.
+         * Anything rendering throws, errors included, only fails the report for the same
+         * reason.
+         */
+        private void render()
+        {
+            final StringBuilder text;
+            int                 chunk;
+
+            text  = new StringBuilder();
+            chunk = nextChunk.getAndIncrement();
+
+            while (chunk < chunks)
+            {
+                String rendered;
+                rendered = null;
+
+                if (failure.get() == null)
+                {
+                    final int from;
+                    final int to;
+
+                    from = chunk * chunkDevices;
+                    to   = Math.min(devices.size(), from + chunkDevices);
+
+                    try
+                    {
+                        for (int i = from; i < to; i++)
+                        {
+                            DeviceDispatch.writeDetails(devices.get(i), text);
+                            text.append(LINE_SEPARATOR);
+                        }
+                        rendered = text.toString();
+                    }
+                    catch (final Throwable e)
+                    {
+                        fail(e);
+                    }
+                    text.setLength(0);
+                }
+
+                publish(chunk, rendered);
+                chunk = nextChunk.getAndIncrement();
+            }
+        }
+
+        /*
+         * Waits for the chunk's turn, then puts it in every sink's queue, waiting while a
+         * queue is full. A null chunk only passes the turn on.
+         */
+        private void publish(final int chunk,
+                             final String rendered)
+        {
+            synchronized (turn)
+            {
+                // Passing the turn early would reorder the report, so keep waiting
+                while (queuedChunks != chunk)
+                {
+                    try
+                    {
+                        turn.wait();
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        fail(e);
+                    }
+                }
+            }
+
+            try
+            {
+                if (rendered != null && failure.get() == null)
+                {
+                    for (final BlockingQueue<String> queue : queues)
+                    {
+                        if (!queue.offer(rendered))
+                        {
+                            final long start;
+                            start = System.nanoTime();
+
+                            queue.put(rendered);
+                            backpressureNanos.addAndGet(System.nanoTime() - start);
+                        }
+                        peakQueuedChunks.accumulateAndGet(queue.size(), Math::max);
+                    }
+                }
+            }
+            catch (final InterruptedException e)
+            {
+                fail(e);
+            }
+            finally
+            {
+                synchronized (turn)
+                {
+                    queuedChunks++;
+                    turn.notifyAll();
+                }
+            }
+        }
+
+        /*
+         * Writes every chunk in the queue to the sink until the report ends, then flushes
+         * the sink. After a failure, chunks are taken but no longer written. Anything the
+         * sink throws, errors included, only fails the report: if this thread stopped
+         * taking chunks, renderers would block forever on the full queue.
+         */
+        private void drain(final ReportSink sink,
+                           final BlockingQueue<String> queue)
+        {
+            try
+            {
+                String chunk;
+                chunk = queue.take();
+
+                while (chunk != END_OF_REPORT)
+                {
+                    if (failure.get() == null)
+                    {
+                        try
+                        {
+                            sink.write(chunk);
+                        }
+                        catch (final Throwable e)
+                        {
+                            fail(e);
+                        }
+                    }
+                    chunk = queue.take();
+                }
+
+                if (failure.get() == null)
+                {
+                    sink.flush();
+                }
+            }
+            catch (final Throwable e)
+            {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * The outcome of one report.
+     */
+    public static final class ReportResult
+    {
+        private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+        private final int  devices;
+        private final int  chunks;
+        private final long backpressureNanos;
+        private final int  peakQueuedChunks;
+        private final long elapsedNanos;
+
+        private ReportResult(final int devices,
+                             final int chunks,
+                             final long backpressureNanos,
+                             final int peakQueuedChunks,
+                             final long elapsedNanos)
+        {
+            this.devices           = devices;
+            this.chunks            = chunks;
+            this.backpressureNanos = backpressureNanos;
+            this.peakQueuedChunks  = peakQueuedChunks;
+            this.elapsedNanos      = elapsedNanos;
+        }
+
+        /**
+         * Getter for the number of devices reported.
+         *
+         * @return the number of devices
+         */
+        public int getDeviceCount()
+        {
+            return devices;
+        }
+
+        /**
+         * Getter for the number of chunks the devices were rendered in.
+         *
+         * @return the number of chunks
+         */
+        public int getChunkCount()
+        {
+            return chunks;
+        }
+
+        /**
+         * Getter for the total time renderers spent waiting for a full sink queue.
+         *
+         * @return the time in nanoseconds, summed over renderers
+         */
+        public long getBackpressureNanos()
+        {
+            return backpressureNanos;
+        }
+
+        /**
+         * Getter for the most chunks any sink's queue held at once.
+         *
+         * @return the peak queue length, at most the queue capacity
+         */
+        public int getPeakQueuedChunks()
+        {
+            return peakQueuedChunks;
+        }
+
+        /**
+         * Getter for how long the report took.
+         *
+         * @return the elapsed time in nanoseconds
+         */
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns how many devices were reported per second.
+         *
+         * @return the throughput in devices per second
+         */
+        public double getDevicesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0.0 : devices * NANOS_PER_SECOND / elapsedNanos;
+        }
+    }
+}
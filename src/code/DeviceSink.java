@@ -0,0 +1,50 @@
+/**
+ * A destination for device records that have already been validated.
+ * Loaders and builders hand each record's fields to a sink, which can create
+ * device objects or store the fields directly, for example in a {@link DeviceRegistry}.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public interface DeviceSink
+{
+    /**
+     * Accepts an IPhone record.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     */
+    void acceptIPhone(double remainingPlanMinutes,
+                      String planCarrier);
+
+    /**
+     * Accepts an IPhone16 record.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @param highResCamera        whether the phone has a high-res camera
+     * @param memoryGigabytes      the amount of memory for the phone
+     */
+    void acceptIPhone16(double remainingPlanMinutes,
+                        String planCarrier,
+                        boolean highResCamera,
+                        int memoryGigabytes);
+
+    /**
+     * Accepts an IPod record.
+     *
+     * @param currentVolumeDB the current volume in decibels (dB)
+     * @param numSongsStored  the number of songs stored on the iPod
+     */
+    void acceptIPod(double currentVolumeDB,
+                    int numSongsStored);
+
+    /**
+     * Accepts an IPad record.
+     *
+     * @param hasCase   true if the iPad has a protective case
+     * @param OSVersion the operating system version of the iPad
+     */
+    void acceptIPad(boolean hasCase,
+                    String OSVersion);
+}
@@ -0,0 +1,555 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * A read-only binary snapshot of a fleet, written by {@link DeviceSnapshotWriter}.
+ * The file is memory-mapped and its records are read in place through a {@link Cursor},
+ * so a snapshot can be scanned without creating a device object per record.
+ * <p>
+ * All values are little-endian. The file is laid out as:
+ * <pre>
+ * header      int magic, int version, long reserved                     16 bytes
+ * records     one per device                                           16 bytes each
+ *               byte   type tag ({@value IPHONE}=IPhone, {@value IPHONE16}=IPhone16,
+ *                      {@value IPOD}=IPod, {@value IPAD}=IPad)
+ *               byte   flags (bit 0: highResCamera or hasCase)
+ *               ushort dictionary id of planCarrier or OSVersion ({@value NO_STRING} for none)
+ *               int    memoryGigabytes or numSongsStored
+ *               double remainingPlanMinutes or currentVolumeDB
+ * dictionary  per entry: int length, UTF-8 bytes
+ * trailer     long dictionary offset, long record count, int dictionary size, int magic
+ * </pre>
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceSnapshot
+{
+    public static final byte IPHONE   = 1;
+    public static final byte IPHONE16 = 2;
+    public static final byte IPOD     = 3;
+    public static final byte IPAD     = 4;
+
+    static final int  MAGIC         = 0x44455631;
+    static final int  VERSION       = 1;
+    static final int  HEADER_BYTES  = 16;
+    static final int  RECORD_BYTES  = 16;
+    static final int  TRAILER_BYTES = 24;
+    static final byte FLAG_SET      = 1;
+    static final int  NO_STRING     = 0xFFFF;
+
+    private static final int  TYPE_OFFSET    = 0;
+    private static final int  FLAGS_OFFSET   = 1;
+    private static final int  STRING_OFFSET  = 2;
+    private static final int  INT_OFFSET     = 4;
+    private static final int  DOUBLE_OFFSET  = 8;
+    private static final int  SEGMENT_SHIFT  = 26;
+    private static final long SEGMENT_MASK   = (1L << SEGMENT_SHIFT) - 1;
+
+    private final ByteBuffer[] segments;
+    private final long         recordCount;
+    private final String[]     dictionary;
+
+    private DeviceSnapshot(final ByteBuffer[] segments,
+                           final long recordCount,
+                           final String[] dictionary)
+    {
+        this.segments    = segments;
+        this.recordCount = recordCount;
+        this.dictionary  = dictionary;
+    }
+
+    /**
+     * Opens a snapshot file by memory-mapping it.
+     * Records are mapped in segments, so snapshots larger than 2GB are supported.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static DeviceSnapshot open(final Path file) throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final long         size;
+            final ByteBuffer   header;
+            final ByteBuffer   trailer;
+            final long         dictionaryOffset;
+            final long         recordCount;
+            final int          dictionarySize;
+            final ByteBuffer[] segments;
+            final ByteBuffer   dictionaryBytes;
+
+            size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES)
+            {
+                throw new IOException("File is too small to be a device snapshot");
+            }
+
+            header  = map(channel, 0, HEADER_BYTES);
+            trailer = map(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+            checkHeader(header);
+
+            dictionaryOffset = trailer.getLong();
+            recordCount      = trailer.getLong();
+            dictionarySize   = trailer.getInt();
+
+            if (trailer.getInt() != MAGIC ||
+                recordCount < 0 ||
+                recordCount > (size - HEADER_BYTES - TRAILER_BYTES) / RECORD_BYTES ||
+                dictionaryOffset != HEADER_BYTES + recordCount * RECORD_BYTES ||
+                dictionaryOffset > size - TRAILER_BYTES)
+            {
+                throw new IOException("Device snapshot trailer is corrupt");
+            }
+
+            segments = new ByteBuffer[(int) ((recordCount + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++)
+            {
+                final long first;
+                final long records;
+
+                first       = (long) i << SEGMENT_SHIFT;
+                records     = Math.min(recordCount - first, 1L << SEGMENT_SHIFT);
+                segments[i] = map(channel, HEADER_BYTES + first * RECORD_BYTES, records * RECORD_BYTES);
+            }
+
+            dictionaryBytes = map(channel, dictionaryOffset, size - TRAILER_BYTES - dictionaryOffset);
+
+            return new DeviceSnapshot(segments, recordCount, readDictionary(dictionaryBytes, dictionarySize));
+        }
+    }
+
+    /**
+     * Reads a snapshot held in memory, for example one received over the network.
+     * The buffer is read in place and must not be modified while the snapshot is in use.
+     *
+     * @param bytes the complete snapshot, from its header to its trailer
+     * @return the snapshot
+     * @throws IOException if the bytes are not a valid snapshot
+     */
+    public static DeviceSnapshot wrap(final ByteBuffer bytes) throws IOException
+    {
+        final ByteBuffer all;
+        all = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (all.limit() < HEADER_BYTES + TRAILER_BYTES)
+        {
+            throw new IOException("Buffer is too small to be a device snapshot");
+        }
+        checkHeader(all.slice(0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN));
+
+        final ByteBuffer trailer;
+        final long       dictionaryOffset;
+        final long       recordCount;
+        final int        dictionarySize;
+
+        trailer          = all.slice(all.limit() - TRAILER_BYTES, TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        dictionaryOffset = trailer.getLong();
+        recordCount      = trailer.getLong();
+        dictionarySize   = trailer.getInt();
+
+        if (trailer.getInt() != MAGIC ||
+            recordCount < 0 ||
+            recordCount > (all.limit() - HEADER_BYTES - TRAILER_BYTES) / RECORD_BYTES ||
+            dictionaryOffset != HEADER_BYTES + recordCount * RECORD_BYTES ||
+            dictionaryOffset > all.limit() - TRAILER_BYTES)
+        {
+            throw new IOException("Device snapshot trailer is corrupt");
+        }
+
+        final ByteBuffer[] segments;
+        final ByteBuffer   dictionaryBytes;
+
+        segments = new ByteBuffer[(int) ((recordCount + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++)
+        {
+            final long first;
+            final long records;
+
+            first       = (long) i << SEGMENT_SHIFT;
+            records     = Math.min(recordCount - first, 1L << SEGMENT_SHIFT);
+            segments[i] = all.slice((int) (HEADER_BYTES + first * RECORD_BYTES), (int) (records * RECORD_BYTES))
+                             .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        dictionaryBytes = all.slice((int) dictionaryOffset, all.limit() - TRAILER_BYTES - (int) dictionaryOffset)
+                             .order(ByteOrder.LITTLE_ENDIAN);
+
+        return new DeviceSnapshot(segments, recordCount, readDictionary(dictionaryBytes, dictionarySize));
+    }
+
+    /*
+     * Maps part of the file as a little-endian buffer.
+     */
+    private static ByteBuffer map(final FileChannel channel,
+                                  final long position,
+                                  final long length) throws IOException
+    {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * Checks the magic number and version in the header.
+     */
+    private static void checkHeader(final ByteBuffer header) throws IOException
+    {
+        if (header.getInt() != MAGIC)
+        {
+            throw new IOException("Not a device snapshot");
+        }
+        if (header.getInt() != VERSION)
+        {
+            throw new IOException("Unsupported device snapshot version");
+        }
+    }
+
+    /*
+     * Decodes every dictionary entry.
+     */
+    private static String[] readDictionary(final ByteBuffer bytes,
+                                           final int size) throws IOException
+    {
+        final String[] dictionary;
+        dictionary = new String[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            final int    length;
+            final byte[] text;
+
+            length = bytes.getInt();
+            if (length < 0 || length > bytes.remaining())
+            {
+                throw new IOException("Device snapshot dictionary is corrupt");
+            }
+
+            text = new byte[length];
+            bytes.get(text);
+            dictionary[i] = new String(text, StandardCharsets.UTF_8);
+        }
+
+        return dictionary;
+    }
+
+    /**
+     * Getter for the number of records in the snapshot.
+     *
+     * @return the number of records
+     */
+    public long size()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Creates a cursor for reading records. Each thread should use its own cursor.
+     *
+     * @return a new cursor, positioned at the first record
+     */
+    public Cursor cursor()
+    {
+        final Cursor cursor;
+        cursor = new Cursor();
+
+        if (recordCount > 0)
+        {
+            cursor.moveTo(0);
+        }
+
+        return cursor;
+    }
+
+    /**
+     * A reusable view of one record in the snapshot. Moving the cursor only changes
+     * which bytes it reads, so scanning a snapshot creates no objects.
+     */
+    public final class Cursor
+    {
+        private ByteBuffer segment;
+        private int        offset;
+        private byte       type;
+
+        private Cursor()
+        {
+        }
+
+        /**
+         * Moves the cursor to a record.
+         *
+         * @param index the index of the record
+         * @return this cursor
+         */
+        public Cursor moveTo(final long index)
+        {
+            Objects.checkIndex(index, recordCount);
+
+            segment = segments[(int) (index >>> SEGMENT_SHIFT)];
+            offset  = (int) (index & SEGMENT_MASK) * RECORD_BYTES;
+            type    = segment.get(offset + TYPE_OFFSET);
+
+            return this;
+        }
+
+        /**
+         * Getter for the type tag of the current record.
+         *
+         * @return one of {@link #IPHONE}, {@link #IPHONE16}, {@link #IPOD} or {@link #IPAD}
+         */
+        public byte getType()
+        {
+            return type;
+        }
+
+        /*
+         * Throws if the current record is not one of the given types.
+         */
+        private void requireType(final byte first,
+                                 final byte second)
+        {
+            if (type != first && type != second)
+            {
+                throw new IllegalStateException("Record does not have this field");
+            }
+        }
+
+        private boolean flag()
+        {
+            return (segment.get(offset + FLAGS_OFFSET) & FLAG_SET) != 0;
+        }
+
+        /*
+         * Looks up the record's String. A corrupt file can hold an id past the end of the
+         * dictionary, which is reported like any other corruption.
+         */
+        private String text() throws IOException
+        {
+            final int id;
+            id = segment.getShort(offset + STRING_OFFSET) & NO_STRING;
+
+            if (id == NO_STRING)
+            {
+                return null;
+            }
+            if (id >= dictionary.length)
+            {
+                throw new IOException("Device snapshot record has unknown dictionary id " + id);
+            }
+
+            return dictionary[id];
+        }
+
+        /*
+         * Looks up the record's String for the getters that do not declare IOException.
+         */
+        private String uncheckedText()
+        {
+            try
+            {
+                return text();
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int intValue()
+        {
+            return segment.getInt(offset + INT_OFFSET);
+        }
+
+        private double doubleValue()
+        {
+            return segment.getDouble(offset + DOUBLE_OFFSET);
+        }
+
+        /**
+         * Getter for the remaining plan minutes of an IPhone or IPhone16 record.
+         *
+         * @return the remaining plan minutes
+         */
+        public double getRemainingPlanMinutes()
+        {
+            requireType(IPHONE, IPHONE16);
+            return doubleValue();
+        }
+
+        /**
+         * Getter for the plan carrier of an IPhone or IPhone16 record.
+         *
+         * @return the plan carrier
+         * @throws UncheckedIOException if the record's dictionary id is corrupt
+         */
+        public String getPlanCarrier()
+        {
+            requireType(IPHONE, IPHONE16);
+            return uncheckedText();
+        }
+
+        /**
+         * Getter for whether an IPhone16 record has a high resolution camera.
+         *
+         * @return true if the phone has a high-res camera
+         */
+        public boolean isHighResCamera()
+        {
+            requireType(IPHONE16, IPHONE16);
+            return flag();
+        }
+
+        /**
+         * Getter for the memory of an IPhone16 record.
+         *
+         * @return the memory in gigabytes
+         */
+        public int getMemoryGigabytes()
+        {
+            requireType(IPHONE16, IPHONE16);
+            return intValue();
+        }
+
+        /**
+         * Getter for the current volume of an IPod record.
+         *
+         * @return the current volume in decibels (dB)
+         */
+        public double getCurrentVolumeDB()
+        {
+            requireType(IPOD, IPOD);
+            return doubleValue();
+        }
+
+        /**
+         * Getter for the number of songs stored in an IPod record.
+         *
+         * @return the number of songs
+         */
+        public int getNumSongsStored()
+        {
+            requireType(IPOD, IPOD);
+            return intValue();
+        }
+
+        /**
+         * Returns whether an IPad record has a protective case.
+         *
+         * @return true if the iPad has a case
+         */
+        public boolean hasCase()
+        {
+            requireType(IPAD, IPAD);
+            return flag();
+        }
+
+        /**
+         * Getter for the OS version of an IPad record.
+         *
+         * @return the OS version String
+         * @throws UncheckedIOException if the record's dictionary id is corrupt
+         */
+        public String getOSVersion()
+        {
+            requireType(IPAD, IPAD);
+            return uncheckedText();
+        }
+
+        /**
+         * Appends the same details the record's device would append, without creating it.
+         *
+         * @param out the Appendable to write to
+         * @throws IOException           if out cannot be written to or the record's
+         *                               dictionary id is corrupt
+         * @throws IllegalStateException if the record's type is unknown
+         */
+        public void writeDetails(final Appendable out) throws IOException
+        {
+            out.append("Device Purpose: ");
+            switch (type)
+            {
+                case IPHONE, IPHONE16 ->
+                {
+                    out.append(IPhone.IPHONE_PURPOSE);
+                    out.append("\nRemaining Plan Minutes: ");
+                    IDevice.append(out, doubleValue());
+                    out.append("\nPlan Carrier: ");
+                    out.append(text());
+                    if (type == IPHONE16)
+                    {
+                        out.append("\nHas High Resolution Camera: ");
+                        IDevice.append(out, flag());
+                        out.append("\nMemory: ");
+                        IDevice.append(out, intValue());
+                        out.append("GB");
+                    }
+                }
+                case IPOD ->
+                {
+                    out.append(IPod.IPOD_PURPOSE);
+                    out.append("\nCurrent Volume (dB): ");
+                    IDevice.append(out, doubleValue());
+                    out.append("\nNumber of Songs Stored: ");
+                    IDevice.append(out, intValue());
+                }
+                case IPAD ->
+                {
+                    out.append(IPad.IPAD_PURPOSE);
+                    out.append("\nHas Case: ");
+                    IDevice.append(out, flag());
+                    out.append("\nOS Version: ");
+                    out.append(text());
+                }
+                default -> throw new IllegalStateException("Unknown record type " + type);
+            }
+        }
+
+        /**
+         * Creates a device object from the current record.
+         *
+         * @return a new device equal to the one that was written
+         * @throws UncheckedIOException if the record's dictionary id is corrupt
+         */
+        public IDevice toDevice()
+        {
+            return switch (type)
+            {
+                case IPHONE -> new IPhone(doubleValue(), uncheckedText());
+                case IPHONE16 -> new IPhone16(doubleValue(), uncheckedText(), flag(), intValue());
+                case IPOD -> new IPod(doubleValue(), intValue());
+                case IPAD -> new IPad(flag(), uncheckedText());
+                default -> throw new IllegalStateException("Unknown record type " + type);
+            };
+        }
+
+        /**
+         * Returns the same String the record's device would return.
+         *
+         * @return a String describing the record
+         */
+        @Override
+        public String toString()
+        {
+            final StringBuilder details;
+            details = new StringBuilder();
+
+            try
+            {
+                writeDetails(details);
+            }
+            catch (final IOException e)
+            {
+                // StringBuilder never throws IOException, so this is a corrupt dictionary id
+                throw new UncheckedIOException(e);
+            }
+
+            return details.toString();
+        }
+    }
+}
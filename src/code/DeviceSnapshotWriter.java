@@ -0,0 +1,302 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes devices to a compact binary snapshot that {@link DeviceSnapshot} can scan in place.
+ * Every device becomes one fixed-width record of {@value DeviceSnapshot#RECORD_BYTES} bytes,
+ * and carrier and OS version names are written once to a dictionary at the end of the file.
+ * See {@link DeviceSnapshot} for the layout.
+ * This class is not thread-safe.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceSnapshotWriter implements DeviceSink, Closeable
+{
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final FileChannel          channel;
+    private final ByteBuffer           buffer;
+    private final Map<String, Integer> dictionaryIds;
+    private final List<String>         dictionary;
+    private long                       recordCount;
+
+    /**
+     * Creates or replaces a snapshot file.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be opened
+     */
+    public DeviceSnapshotWriter(final Path file) throws IOException
+    {
+        channel       = FileChannel.open(file,
+                                         StandardOpenOption.CREATE,
+                                         StandardOpenOption.TRUNCATE_EXISTING,
+                                         StandardOpenOption.WRITE);
+        buffer        = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        dictionaryIds = new HashMap<>();
+        dictionary    = new ArrayList<>();
+
+        buffer.putInt(DeviceSnapshot.MAGIC);
+        buffer.putInt(DeviceSnapshot.VERSION);
+        buffer.putLong(0L);
+    }
+
+    /**
+     * Writes one device, or the device a registry view shows.
+     *
+     * @param device the device to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(final IDevice device) throws IOException
+    {
+        if (DeviceRegistry.isView(device))
+        {
+            write(DeviceRegistry.materialize(device));
+        }
+        else if (device instanceof IPhone16)
+        {
+            final IPhone16 iPhone16;
+            iPhone16 = (IPhone16) device;
+
+            writeRecord(DeviceSnapshot.IPHONE16, iPhone16.isHighResCamera(), iPhone16.getPlanCarrier(),
+                        iPhone16.getMemoryGigabytes(), iPhone16.getRemainingPlanMinutes());
+        }
+        else if (device instanceof IPhone)
+        {
+            final IPhone iPhone;
+            iPhone = (IPhone) device;
+
+            writeRecord(DeviceSnapshot.IPHONE, false, iPhone.getPlanCarrier(),
+                        0, iPhone.getRemainingPlanMinutes());
+        }
+        else if (device instanceof IPod)
+        {
+            final IPod iPod;
+            iPod = (IPod) device;
+
+            writeRecord(DeviceSnapshot.IPOD, false, null,
+                        iPod.getNumSongsStored(), iPod.getCurrentVolumeDB());
+        }
+        else if (device instanceof IPad)
+        {
+            final IPad iPad;
+            iPad = (IPad) device;
+
+            writeRecord(DeviceSnapshot.IPAD, iPad.hasCase(), iPad.getOSVersion(), 0, 0.0);
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unsupported device type");
+        }
+    }
+
+    @Override
+    public void acceptIPhone(final double remainingPlanMinutes,
+                             final String planCarrier)
+    {
+        check(DeviceValidation.validateIPhone(remainingPlanMinutes, planCarrier));
+        writeUnchecked(DeviceSnapshot.IPHONE, false, planCarrier, 0, remainingPlanMinutes);
+    }
+
+    @Override
+    public void acceptIPhone16(final double remainingPlanMinutes,
+                               final String planCarrier,
+                               final boolean highResCamera,
+                               final int memoryGigabytes)
+    {
+        check(DeviceValidation.validateIPhone16(remainingPlanMinutes, planCarrier, memoryGigabytes));
+        writeUnchecked(DeviceSnapshot.IPHONE16, highResCamera, planCarrier, memoryGigabytes, remainingPlanMinutes);
+    }
+
+    @Override
+    public void acceptIPod(final double currentVolumeDB,
+                           final int numSongsStored)
+    {
+        check(DeviceValidation.validateIPod(currentVolumeDB, numSongsStored));
+        writeUnchecked(DeviceSnapshot.IPOD, false, null, numSongsStored, currentVolumeDB);
+    }
+
+    @Override
+    public void acceptIPad(final boolean hasCase,
+                           final String OSVersion)
+    {
+        writeUnchecked(DeviceSnapshot.IPAD, hasCase, OSVersion, 0, 0.0);
+    }
+
+    /*
+     * Throws the same message a constructor would if the result code is not valid.
+     */
+    private static void check(final int code)
+    {
+        if (code != DeviceValidation.VALID)
+        {
+            throw new IllegalArgumentException(DeviceValidation.describe(code));
+        }
+    }
+
+    /*
+     * Writes a record from the sink methods, which cannot throw IOException.
+     */
+    private void writeUnchecked(final byte type,
+                                final boolean flag,
+                                final String text,
+                                final int intValue,
+                                final double doubleValue)
+    {
+        try
+        {
+            writeRecord(type, flag, text, intValue, doubleValue);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Appends one fixed-width record to the buffer, flushing it first if it is full.
+     */
+    private void writeRecord(final byte type,
+                             final boolean flag,
+                             final String text,
+                             final int intValue,
+                             final double doubleValue) throws IOException
+    {
+        if (buffer.remaining() < DeviceSnapshot.RECORD_BYTES)
+        {
+            drain();
+        }
+
+        buffer.put(type);
+        buffer.put(flag ? DeviceSnapshot.FLAG_SET : 0);
+        buffer.putShort((short) dictionaryId(text));
+        buffer.putInt(intValue);
+        buffer.putDouble(doubleValue);
+        recordCount++;
+    }
+
+    /*
+     * Returns the dictionary id of a String, adding it if it is new.
+     */
+    private int dictionaryId(final String text)
+    {
+        if (text == null)
+        {
+            return DeviceSnapshot.NO_STRING;
+        }
+
+        Integer id;
+        id = dictionaryIds.get(text);
+
+        if (id == null)
+        {
+            if (dictionary.size() == DeviceSnapshot.NO_STRING)
+            {
+                throw new IllegalStateException("Too many distinct carriers and OS versions");
+            }
+            id = dictionary.size();
+            dictionaryIds.put(text, id);
+            dictionary.add(text);
+        }
+
+        return id;
+    }
+
+    /*
+     * Writes everything in the buffer to the channel.
+     */
+    private void drain() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Getter for the number of records written so far.
+     *
+     * @return the number of records
+     */
+    public long getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Writes the dictionary and trailer and closes the file. Closing a closed writer does
+     * nothing, so the trailer is never written twice.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (!channel.isOpen())
+        {
+            return;
+        }
+
+        try
+        {
+            final long dictionaryOffset;
+            dictionaryOffset = channel.position() + buffer.position();
+
+            for (final String text : dictionary)
+            {
+                final byte[] bytes;
+                bytes = text.getBytes(StandardCharsets.UTF_8);
+
+                if (buffer.remaining() < Integer.BYTES)
+                {
+                    drain();
+                }
+                buffer.putInt(bytes.length);
+
+                int written;
+                written = 0;
+                while (written < bytes.length)
+                {
+                    if (!buffer.hasRemaining())
+                    {
+                        drain();
+                    }
+
+                    final int length;
+                    length = Math.min(buffer.remaining(), bytes.length - written);
+
+                    buffer.put(bytes, written, length);
+                    written += length;
+                }
+            }
+
+            if (buffer.remaining() < DeviceSnapshot.TRAILER_BYTES)
+            {
+                drain();
+            }
+            buffer.putLong(dictionaryOffset);
+            buffer.putLong(recordCount);
+            buffer.putInt(dictionary.size());
+            buffer.putInt(DeviceSnapshot.MAGIC);
+            drain();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,415 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Sorts devices, or columns of a {@link DeviceRegistry}, by a primitive key such as the
+ * remaining plan minutes of an IPhone or the number of songs on an IPod.
+ * The keys are copied once into a primitive array and turned into bits that sort as
+ * unsigned numbers, and an array of positions is sorted by those bits with a least
+ * significant digit radix sort, one byte per pass. Passes where every key has the same
+ * byte, such as the high bytes of small ints, are skipped. Each pass counts and then
+ * scatters the keys in chunks on a {@link ForkJoinPool}, and the devices are moved only once,
+ * at the end.
+ * <p>
+ * The sort is stable and orders doubles as {@link Double#compare(double, double)} does, so
+ * the result is the same as {@link List#sort} with {@code Comparator.comparingDouble} or
+ * {@code Comparator.comparingInt}.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceSort
+{
+    private static final int  RADIX_BITS   = 8;
+    private static final int  RADIX        = 1 << RADIX_BITS;
+    private static final int  DIGIT_MASK   = RADIX - 1;
+    private static final int  INT_DIGITS   = Integer.SIZE / RADIX_BITS;
+    private static final int  LONG_DIGITS  = Long.SIZE / RADIX_BITS;
+    private static final int  CHUNK_SIZE   = 1 << 16;
+    private static final long SIGN_BIT     = Long.MIN_VALUE;
+    private static final long INT_SIGN_BIT = 1L << (Integer.SIZE - 1);
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a DeviceSort that runs on the common pool.
+     */
+    public DeviceSort()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a DeviceSort.
+     *
+     * @param pool the pool to sort on
+     */
+    public DeviceSort(final ForkJoinPool pool)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+
+        this.pool = pool;
+    }
+
+    /*
+     * Maps a double to bits that sort as unsigned longs in the order of Double.compare:
+     * negative values have every bit flipped and positive values only the sign bit.
+     */
+    private static long sortableBits(final double value)
+    {
+        final long bits;
+        bits = Double.doubleToLongBits(value);
+
+        return bits ^ (bits >> (Long.SIZE - 1) | SIGN_BIT);
+    }
+
+    /*
+     * Maps an int to bits that sort as unsigned longs in signed int order.
+     */
+    private static long sortableBits(final int value)
+    {
+        return (value & 0xFFFF_FFFFL) ^ INT_SIGN_BIT;
+    }
+
+    /**
+     * Returns the positions of the first count keys in ascending key order, equal keys in
+     * position order.
+     *
+     * @param keys  the keys
+     * @param count how many of the keys to sort
+     * @return the positions, sorted by key
+     */
+    public int[] orderByDouble(final double[] keys,
+                               final int count)
+    {
+        final long[] bits;
+        bits = new long[count];
+
+        forEachChunk(count, chunk ->
+        {
+            final int end;
+            end = Math.min(count, chunk + CHUNK_SIZE);
+
+            for (int i = chunk; i < end; i++)
+            {
+                bits[i] = sortableBits(keys[i]);
+            }
+        });
+
+        return order(bits, LONG_DIGITS);
+    }
+
+    /**
+     * Returns the positions of the first count keys in ascending key order, equal keys in
+     * position order.
+     *
+     * @param keys  the keys
+     * @param count how many of the keys to sort
+     * @return the positions, sorted by key
+     */
+    public int[] orderByInt(final int[] keys,
+                            final int count)
+    {
+        final long[] bits;
+        bits = new long[count];
+
+        forEachChunk(count, chunk ->
+        {
+            final int end;
+            end = Math.min(count, chunk + CHUNK_SIZE);
+
+            for (int i = chunk; i < end; i++)
+            {
+                bits[i] = sortableBits(keys[i]);
+            }
+        });
+
+        return order(bits, INT_DIGITS);
+    }
+
+    /**
+     * Sorts a list by a double key, such as {@code IPhone::getRemainingPlanMinutes}.
+     *
+     * @param items the list to sort, which must support {@link ListIterator#set}
+     * @param key   extracts the key from an item; called once per item, possibly on
+     *              several threads at once
+     * @param <T>   the type of item
+     */
+    public <T> void sortByDouble(final List<T> items,
+                                 final ToDoubleFunction<? super T> key)
+    {
+        final Object[] copy;
+        final long[]   bits;
+
+        copy = items.toArray();
+        bits = new long[copy.length];
+
+        forEachChunk(copy.length, chunk ->
+        {
+            final int end;
+            end = Math.min(copy.length, chunk + CHUNK_SIZE);
+
+            for (int i = chunk; i < end; i++)
+            {
+                bits[i] = sortableBits(key.applyAsDouble(item(copy, i)));
+            }
+        });
+
+        permute(items, copy, order(bits, LONG_DIGITS));
+    }
+
+    /**
+     * Sorts a list by an int key, such as {@code IPod::getNumSongsStored}.
+     *
+     * @param items the list to sort, which must support {@link ListIterator#set}
+     * @param key   extracts the key from an item; called once per item, possibly on
+     *              several threads at once
+     * @param <T>   the type of item
+     */
+    public <T> void sortByInt(final List<T> items,
+                              final ToIntFunction<? super T> key)
+    {
+        final Object[] copy;
+        final long[]   bits;
+
+        copy = items.toArray();
+        bits = new long[copy.length];
+
+        forEachChunk(copy.length, chunk ->
+        {
+            final int end;
+            end = Math.min(copy.length, chunk + CHUNK_SIZE);
+
+            for (int i = chunk; i < end; i++)
+            {
+                bits[i] = sortableBits(key.applyAsInt(item(copy, i)));
+            }
+        });
+
+        permute(items, copy, order(bits, INT_DIGITS));
+    }
+
+    /*
+     * Returns an item from a copy of a list of Ts.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T item(final Object[] copy,
+                              final int index)
+    {
+        return (T) copy[index];
+    }
+
+    /*
+     * Writes the copied items back to the list in the given order.
+     */
+    private static <T> void permute(final List<T> items,
+                                    final Object[] copy,
+                                    final int[] order)
+    {
+        final ListIterator<T> iterator;
+        iterator = items.listIterator();
+
+        for (final int position : order)
+        {
+            iterator.next();
+            iterator.set(item(copy, position));
+        }
+    }
+
+    /*
+     * Sorts positions by their unsigned keys, looking at the given number of low bytes.
+     * Each pass moves the keys and positions from one pair of arrays to the other, so the
+     * keys array is reused as the first source and overwritten.
+     */
+    private int[] order(final long[] keys,
+                        final int digits)
+    {
+        final int     count;
+        final int     chunks;
+        final int[][] counts;
+        long[]        sourceKeys;
+        int[]         sourceOrder;
+        long[]        targetKeys;
+        int[]         targetOrder;
+
+        count       = keys.length;
+        chunks      = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        counts      = new int[chunks][RADIX];
+        sourceKeys  = keys;
+        sourceOrder = new int[count];
+        targetKeys  = new long[count];
+        targetOrder = new int[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            sourceOrder[i] = i;
+        }
+
+        for (int digit = 0; digit < digits; digit++)
+        {
+            final int    shift;
+            final long[] fromKeys;
+            final int[]  fromOrder;
+            final long[] toKeys;
+            final int[]  toOrder;
+
+            shift     = digit * RADIX_BITS;
+            fromKeys  = sourceKeys;
+            fromOrder = sourceOrder;
+            toKeys    = targetKeys;
+            toOrder   = targetOrder;
+
+            forEachChunk(count, chunk ->
+            {
+                final int[] chunkCounts;
+                final int   end;
+
+                chunkCounts = counts[chunk / CHUNK_SIZE];
+                end         = Math.min(count, chunk + CHUNK_SIZE);
+
+                Arrays.fill(chunkCounts, 0);
+                for (int i = chunk; i < end; i++)
+                {
+                    chunkCounts[(int) (fromKeys[i] >>> shift) & DIGIT_MASK]++;
+                }
+            });
+
+            if (!toOffsets(counts, count))
+            {
+                continue;
+            }
+
+            forEachChunk(count, chunk ->
+            {
+                final int[] offsets;
+                final int   end;
+
+                offsets = counts[chunk / CHUNK_SIZE];
+                end     = Math.min(count, chunk + CHUNK_SIZE);
+
+                for (int i = chunk; i < end; i++)
+                {
+                    final int target;
+                    target = offsets[(int) (fromKeys[i] >>> shift) & DIGIT_MASK]++;
+
+                    toKeys[target]  = fromKeys[i];
+                    toOrder[target] = fromOrder[i];
+                }
+            });
+
+            sourceKeys  = toKeys;
+            sourceOrder = toOrder;
+            targetKeys  = fromKeys;
+            targetOrder = fromOrder;
+        }
+
+        return sourceOrder;
+    }
+
+    /*
+     * Replaces each chunk's count of every digit with the position its first key with that
+     * digit moves to: after every key with a smaller digit, and after the keys with the
+     * same digit in earlier chunks, which keeps the sort stable. Returns false, leaving
+     * the counts alone, if every key has the same digit, so the pass can be skipped.
+     */
+    private static boolean toOffsets(final int[][] counts,
+                                     final int count)
+    {
+        int offset;
+        offset = 0;
+
+        for (int digit = 0; digit < RADIX; digit++)
+        {
+            int total;
+            total = 0;
+
+            for (final int[] chunkCounts : counts)
+            {
+                total += chunkCounts[digit];
+            }
+            if (total == count)
+            {
+                return false;
+            }
+        }
+
+        for (int digit = 0; digit < RADIX; digit++)
+        {
+            for (final int[] chunkCounts : counts)
+            {
+                final int chunkCount;
+                chunkCount = chunkCounts[digit];
+
+                chunkCounts[digit] = offset;
+                offset            += chunkCount;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Runs the action with the start of every CHUNK_SIZE chunk of 0 to count, in parallel
+     * on the pool when there is more than one chunk.
+     */
+    private void forEachChunk(final int count,
+                              final IntConsumer action)
+    {
+        final int chunks;
+        chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        if (chunks == 1)
+        {
+            action.accept(0);
+        }
+        else if (chunks > 1)
+        {
+            pool.invoke(new ChunkTask(0, chunks, action));
+        }
+    }
+
+    /*
+     * Halves its range of chunks until one is left, then runs the action on it.
+     */
+    private static final class ChunkTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int         from;
+        private final int         to;
+        private final IntConsumer action;
+
+        private ChunkTask(final int from,
+                          final int to,
+                          final IntConsumer action)
+        {
+            this.from   = from;
+            this.to     = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                action.accept(from * CHUNK_SIZE);
+                return;
+            }
+
+            final int middle;
+            middle = (from + to) >>> 1;
+
+            invokeAll(new ChunkTask(from, middle, action), new ChunkTask(middle, to, action));
+        }
+    }
+}
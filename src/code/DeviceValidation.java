@@ -0,0 +1,146 @@
+/**
+ * Validates device fields without throwing exceptions.
+ * Each validate method applies the same rules as the matching constructor and returns
+ * a compact result code: {@link #VALID}, or a bit mask with one bit set for every rule
+ * the values break. Messages are only built on request through {@link #describe(int)},
+ * so rejecting a record allocates nothing.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DeviceValidation
+{
+    public static final int VALID                 = 0;
+    public static final int PURPOSE_BLANK         = 1;
+    public static final int MINUTES_BELOW_MINIMUM = 1 << 1;
+    public static final int CARRIER_BLANK         = 1 << 2;
+    public static final int MEMORY_INVALID        = 1 << 3;
+    public static final int VOLUME_OUT_OF_RANGE   = 1 << 4;
+    public static final int SONGS_BELOW_MINIMUM   = 1 << 5;
+
+    static final int RULE_COUNT = 6;
+
+    private static final String[] MESSAGES = {
+        "Purpose must not be null or blank.",
+        "You must have more than " + IPhone.MIN_MINUTES_REQUIRED + " minutes on your plan",
+        "Carrier must not be null or blank",
+        "Invalid model of phone",
+        "Current volume DB out of range. Must be between " + IPod.MIN_VOLUME_DB + " and " + IPod.MAX_VOLUME_DB,
+        "Number of songs stored cannot be below minimum of " + IPod.MIN_NUM_SONGS_STORED
+    };
+
+    private DeviceValidation()
+    {
+    }
+
+    /**
+     * Validates the fields of an IPhone.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @return {@link #VALID} or the rules that were broken
+     */
+    public static int validateIPhone(final double remainingPlanMinutes,
+                                     final String planCarrier)
+    {
+        int code;
+        code = VALID;
+
+        if (!IPhone.isValidRemainingPlanMinutes(remainingPlanMinutes))
+        {
+            code |= MINUTES_BELOW_MINIMUM;
+        }
+        if (!IPhone.isValidPlanCarrier(planCarrier))
+        {
+            code |= CARRIER_BLANK;
+        }
+
+        return code;
+    }
+
+    /**
+     * Validates the fields of an IPhone16.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @param memoryGigabytes      the amount of memory for the phone
+     * @return {@link #VALID} or the rules that were broken
+     */
+    public static int validateIPhone16(final double remainingPlanMinutes,
+                                       final String planCarrier,
+                                       final int memoryGigabytes)
+    {
+        int code;
+        code = validateIPhone(remainingPlanMinutes, planCarrier);
+
+        if (!IPhone16.isValidMemoryGB(memoryGigabytes))
+        {
+            code |= MEMORY_INVALID;
+        }
+
+        return code;
+    }
+
+    /**
+     * Validates the fields of an IPod.
+     *
+     * @param currentVolumeDB the current volume in decibels (dB)
+     * @param numSongsStored  the number of songs stored on the iPod
+     * @return {@link #VALID} or the rules that were broken
+     */
+    public static int validateIPod(final double currentVolumeDB,
+                                   final int numSongsStored)
+    {
+        int code;
+        code = VALID;
+
+        if (!IPod.isValidCurrentVolumeDB(currentVolumeDB))
+        {
+            code |= VOLUME_OUT_OF_RANGE;
+        }
+        if (!IPod.isValidNumSongsStored(numSongsStored))
+        {
+            code |= SONGS_BELOW_MINIMUM;
+        }
+
+        return code;
+    }
+
+    /**
+     * Validates a device purpose.
+     *
+     * @param purpose the purpose of the device
+     * @return {@link #VALID} or {@link #PURPOSE_BLANK}
+     */
+    public static int validatePurpose(final String purpose)
+    {
+        return IDevice.isValidPurpose(purpose) ? VALID : PURPOSE_BLANK;
+    }
+
+    /**
+     * Returns the messages the constructors would have thrown for a result code,
+     * one per line.
+     *
+     * @param code a result code returned by one of the validate methods
+     * @return the messages, or an empty String for {@link #VALID}
+     */
+    public static String describe(final int code)
+    {
+        final StringBuilder messages;
+        messages = new StringBuilder();
+
+        for (int rule = 0; rule < RULE_COUNT; rule++)
+        {
+            if ((code & (1 << rule)) != 0)
+            {
+                if (messages.length() > 0)
+                {
+                    messages.append('\n');
+                }
+                messages.append(MESSAGES[rule]);
+            }
+        }
+
+        return messages.toString();
+    }
+}
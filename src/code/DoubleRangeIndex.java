@@ -0,0 +1,841 @@
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * A sorted index from double values to int ids, such as the remaining plan minutes of every
+ * IPhone in a {@link DeviceRegistry} keyed by the IPhone's index. Entries live in a B+-tree
+ * whose leaves hold up to {@value #LEAF_CAPACITY} values and ids in parallel primitive
+ * arrays, linked in order so that a range is read sequentially. Each inner node records how
+ * many entries lie under each of its children, so counting a range or finding a percentile
+ * takes one descent of the tree, and adding, counting and percentiles stay logarithmic in
+ * the number of entries.
+ * <p>
+ * Entries are ordered by value and then by id. NaN falls in no range, so NaN values are
+ * not indexed, and -0.0 is indexed as 0.0.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class DoubleRangeIndex
+{
+    static final int         LEAF_CAPACITY  = 256;
+    static final int         INNER_CAPACITY = 64;
+    private static final int INSERTION_SORT = 16;
+
+    private Node root;
+    private int  size;
+
+    /**
+     * Constructs an empty DoubleRangeIndex.
+     */
+    public DoubleRangeIndex()
+    {
+        root = new Leaf();
+    }
+
+    /**
+     * Builds an index of the first count values of an array, each keyed by its position.
+     * The values are sorted once and packed into full leaves, which is much faster than
+     * adding them one at a time.
+     *
+     * @param values the values to index
+     * @param count  how many of the values to index
+     * @return the index
+     * @throws IndexOutOfBoundsException if count is negative or longer than values
+     */
+    public static DoubleRangeIndex of(final double[] values,
+                                      final int count)
+    {
+        final DoubleRangeIndex index;
+        index = new DoubleRangeIndex();
+
+        index.replaceAll(values, count);
+        return index;
+    }
+
+    /*
+     * Replaces every entry with the first count values of an array, each keyed by its
+     * position, sorting them once and packing them into full leaves.
+     */
+    void replaceAll(final double[] values,
+                    final int count)
+    {
+        Objects.checkFromIndexSize(0, count, values.length);
+
+        final double[] keys;
+        final int[]    ids;
+        int            size;
+
+        keys = new double[count];
+        ids  = new int[count];
+        size = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            if (!Double.isNaN(values[i]))
+            {
+                keys[size] = values[i] + 0.0;
+                ids[size]  = i;
+                size++;
+            }
+        }
+
+        sort(keys, ids, 0, size);
+        build(keys, ids, size);
+    }
+
+    /*
+     * Orders two entries by value and then by id.
+     */
+    private static int compare(final double value,
+                               final int id,
+                               final double otherValue,
+                               final int otherId)
+    {
+        if (value < otherValue)
+        {
+            return -1;
+        }
+        if (value > otherValue)
+        {
+            return 1;
+        }
+        return Integer.compare(id, otherId);
+    }
+
+    /*
+     * Returns the first position in [from, to) whose value is at least the given value, or
+     * greater than it if inclusive is true; to if there is none.
+     */
+    private static int position(final double[] values,
+                                final int from,
+                                final int to,
+                                final double value,
+                                final boolean inclusive)
+    {
+        int low;
+        int high;
+
+        low  = from;
+        high = to;
+
+        while (low < high)
+        {
+            final int middle;
+            middle = (low + high) >>> 1;
+
+            if (values[middle] < value || inclusive && values[middle] == value)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /*
+     * Sorts the entries in [from, to) by value and then by id with a quicksort that
+     * recurses into the smaller side, so the stack stays logarithmic.
+     */
+    private static void sort(final double[] values,
+                             final int[] ids,
+                             final int from,
+                             final int to)
+    {
+        int low;
+        int high;
+
+        low  = from;
+        high = to;
+
+        while (high - low > INSERTION_SORT)
+        {
+            final int    middle;
+            final double pivotValue;
+            final int    pivotId;
+            int          left;
+            int          right;
+
+            middle     = (low + high) >>> 1;
+            pivotValue = values[middle];
+            pivotId    = ids[middle];
+            left       = low;
+            right      = high - 1;
+
+            while (left <= right)
+            {
+                while (compare(values[left], ids[left], pivotValue, pivotId) < 0)
+                {
+                    left++;
+                }
+                while (compare(values[right], ids[right], pivotValue, pivotId) > 0)
+                {
+                    right--;
+                }
+                if (left <= right)
+                {
+                    swap(values, ids, left, right);
+                    left++;
+                    right--;
+                }
+            }
+
+            if (right - low < high - left)
+            {
+                sort(values, ids, low, right + 1);
+                low = left;
+            }
+            else
+            {
+                sort(values, ids, left, high);
+                high = right + 1;
+            }
+        }
+
+        for (int i = low + 1; i < high; i++)
+        {
+            final double value;
+            final int    id;
+            int          j;
+
+            value = values[i];
+            id    = ids[i];
+            j     = i - 1;
+
+            while (j >= low && compare(values[j], ids[j], value, id) > 0)
+            {
+                values[j + 1] = values[j];
+                ids[j + 1]    = ids[j];
+                j--;
+            }
+            values[j + 1] = value;
+            ids[j + 1]    = id;
+        }
+    }
+
+    /*
+     * Swaps two entries.
+     */
+    private static void swap(final double[] values,
+                             final int[] ids,
+                             final int i,
+                             final int j)
+    {
+        final double value;
+        final int    id;
+
+        value = values[i];
+        id    = ids[i];
+
+        values[i] = values[j];
+        ids[i]    = ids[j];
+        values[j] = value;
+        ids[j]    = id;
+    }
+
+    /*
+     * Replaces the tree with full leaves holding the sorted entries, and full inner nodes
+     * above them up to a single root.
+     */
+    private void build(final double[] values,
+                       final int[] ids,
+                       final int count)
+    {
+        Node[] level;
+        int    nodes;
+        Leaf   previous;
+
+        level    = new Node[Math.max(1, (count + LEAF_CAPACITY - 1) / LEAF_CAPACITY)];
+        nodes    = 0;
+        previous = null;
+
+        for (int from = 0; from < count || nodes == 0; from += LEAF_CAPACITY)
+        {
+            final Leaf leaf;
+            leaf = new Leaf();
+
+            leaf.count = Math.min(LEAF_CAPACITY, count - from);
+            System.arraycopy(values, from, leaf.values, 0, leaf.count);
+            System.arraycopy(ids, from, leaf.ids, 0, leaf.count);
+
+            if (previous != null)
+            {
+                previous.next = leaf;
+            }
+            previous       = leaf;
+            level[nodes++] = leaf;
+        }
+
+        while (nodes > 1)
+        {
+            final Node[] parents;
+            int          parentCount;
+
+            parents     = new Node[(nodes + INNER_CAPACITY - 1) / INNER_CAPACITY];
+            parentCount = 0;
+
+            for (int from = 0; from < nodes; from += INNER_CAPACITY)
+            {
+                final Inner inner;
+                inner = new Inner();
+
+                for (int i = from; i < Math.min(nodes, from + INNER_CAPACITY); i++)
+                {
+                    inner.append(level[i]);
+                }
+                parents[parentCount++] = inner;
+            }
+
+            level = parents;
+            nodes = parentCount;
+        }
+
+        root = level[0];
+        size = count;
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param value the value to index; NaN is ignored
+     * @param id    the id to return for the value
+     */
+    public void add(final double value,
+                    final int id)
+    {
+        if (Double.isNaN(value))
+        {
+            return;
+        }
+
+        final Node split;
+        split = insert(root, value + 0.0, id);
+
+        if (split != null)
+        {
+            final Inner inner;
+            inner = new Inner();
+
+            inner.append(root);
+            inner.append(split);
+            root = inner;
+        }
+        size++;
+    }
+
+    /*
+     * Inserts an entry below the node and returns the new right sibling if the node had
+     * to be split, or null.
+     */
+    private static Node insert(final Node node,
+                               final double value,
+                               final int id)
+    {
+        if (node instanceof Leaf)
+        {
+            return ((Leaf) node).insert(value, id);
+        }
+
+        final Inner inner;
+        final int   child;
+        final Node  split;
+
+        inner = (Inner) node;
+        child = inner.childFor(value, id);
+        split = insert(inner.children[child], value, id);
+
+        inner.sizes[child]++;
+        inner.total++;
+
+        if (split == null)
+        {
+            return null;
+        }
+
+        inner.sizes[child] -= split.total();
+        inner.total        -= split.total();
+        return inner.insert(child + 1, split);
+    }
+
+    /*
+     * Returns how many entries have a value less than the given value, or at most the
+     * value if inclusive is true.
+     */
+    private int countBefore(final double value,
+                            final boolean inclusive)
+    {
+        Node node;
+        int  before;
+
+        node   = root;
+        before = 0;
+
+        while (node instanceof Inner)
+        {
+            final Inner inner;
+            final int   child;
+
+            inner = (Inner) node;
+            child = Math.max(0, position(inner.firstValues, 1, inner.count, value, inclusive) - 1);
+
+            for (int i = 0; i < child; i++)
+            {
+                before += inner.sizes[i];
+            }
+            node = inner.children[child];
+        }
+
+        final Leaf leaf;
+        leaf = (Leaf) node;
+
+        return before + position(leaf.values, 0, leaf.count, value, inclusive);
+    }
+
+    /*
+     * Calls the action with the id of every entry whose value is past the given start and
+     * before the given end, in order of value.
+     */
+    private void forEachBetween(final double from,
+                                final boolean fromInclusive,
+                                final double to,
+                                final boolean toInclusive,
+                                final IntConsumer action)
+    {
+        Node node;
+        node = root;
+
+        while (node instanceof Inner)
+        {
+            final Inner inner;
+            inner = (Inner) node;
+
+            node = inner.children[Math.max(0, position(inner.firstValues, 1, inner.count, from, !fromInclusive) - 1)];
+        }
+
+        Leaf leaf;
+        int  position;
+
+        leaf     = (Leaf) node;
+        position = position(leaf.values, 0, leaf.count, from, !fromInclusive);
+
+        while (leaf != null)
+        {
+            for (; position < leaf.count; position++)
+            {
+                final double value;
+                value = leaf.values[position];
+
+                if (value > to || !toInclusive && value == to)
+                {
+                    return;
+                }
+                action.accept(leaf.ids[position]);
+            }
+
+            leaf     = leaf.next;
+            position = 0;
+        }
+    }
+
+    /**
+     * Returns how many entries have a value less than the given value.
+     *
+     * @param value the exclusive upper bound
+     * @return the number of entries below the value
+     */
+    public int countBelow(final double value)
+    {
+        return countBefore(value, false);
+    }
+
+    /**
+     * Returns how many entries have a value greater than the given value.
+     *
+     * @param value the exclusive lower bound
+     * @return the number of entries above the value
+     */
+    public int countAbove(final double value)
+    {
+        return size - countBefore(value, true);
+    }
+
+    /**
+     * Returns how many entries have a value in a half-open range.
+     *
+     * @param from the inclusive lower bound
+     * @param to   the exclusive upper bound
+     * @return the number of entries with {@code from <= value < to}
+     */
+    public int countBetween(final double from,
+                            final double to)
+    {
+        return Math.max(0, countBefore(to, false) - countBefore(from, false));
+    }
+
+    /**
+     * Calls the action with the id of every entry whose value is less than the given
+     * value, in order of value.
+     *
+     * @param value  the exclusive upper bound
+     * @param action the action to call with each id
+     */
+    public void forEachBelow(final double value,
+                             final IntConsumer action)
+    {
+        forEachBetween(Double.NEGATIVE_INFINITY, true, value, false, action);
+    }
+
+    /**
+     * Calls the action with the id of every entry whose value is greater than the given
+     * value, in order of value.
+     *
+     * @param value  the exclusive lower bound
+     * @param action the action to call with each id
+     */
+    public void forEachAbove(final double value,
+                             final IntConsumer action)
+    {
+        forEachBetween(value, false, Double.POSITIVE_INFINITY, true, action);
+    }
+
+    /**
+     * Calls the action with the id of every entry whose value is in a half-open range, in
+     * order of value.
+     *
+     * @param from   the inclusive lower bound
+     * @param to     the exclusive upper bound
+     * @param action the action to call with each id
+     */
+    public void forEachBetween(final double from,
+                               final double to,
+                               final IntConsumer action)
+    {
+        forEachBetween(from, true, to, false, action);
+    }
+
+    /**
+     * Returns the value at a percentile by the nearest-rank method: the smallest indexed
+     * value that at least the given fraction of entries are less than or equal to.
+     *
+     * @param fraction the percentile as a fraction between 0 and 1, e.g. 0.99
+     * @return the value, or NaN if the index is empty
+     * @throws IllegalArgumentException if fraction is not between 0 and 1
+     */
+    public double getPercentile(final double fraction)
+    {
+        if (!(fraction >= 0.0 && fraction <= 1.0))
+        {
+            throw new IllegalArgumentException("Fraction must be between 0 and 1");
+        }
+
+        if (size == 0)
+        {
+            return Double.NaN;
+        }
+
+        Node node;
+        int  rank;
+
+        node = root;
+        rank = (int) Math.max(1, Math.ceil(fraction * size)) - 1;
+
+        while (node instanceof Inner)
+        {
+            final Inner inner;
+            int         child;
+
+            inner = (Inner) node;
+            child = 0;
+
+            while (rank >= inner.sizes[child])
+            {
+                rank -= inner.sizes[child];
+                child++;
+            }
+            node = inner.children[child];
+        }
+
+        return ((Leaf) node).values[rank];
+    }
+
+    /**
+     * Getter for the number of entries in the index.
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /*
+     * A node of the tree.
+     */
+    private abstract static class Node
+    {
+        int count;
+
+        /*
+         * Returns how many entries lie under this node.
+         */
+        abstract int total();
+
+        /*
+         * Returns the value of the first entry under this node.
+         */
+        abstract double firstValue();
+
+        /*
+         * Returns the id of the first entry under this node.
+         */
+        abstract int firstId();
+    }
+
+    /*
+     * A node holding sorted entries in parallel arrays, linked to the next leaf in order.
+     */
+    private static final class Leaf extends Node
+    {
+        final double[] values = new double[LEAF_CAPACITY];
+        final int[]    ids    = new int[LEAF_CAPACITY];
+        Leaf           next;
+
+        @Override
+        int total()
+        {
+            return count;
+        }
+
+        @Override
+        double firstValue()
+        {
+            return values[0];
+        }
+
+        @Override
+        int firstId()
+        {
+            return ids[0];
+        }
+
+        /*
+         * Inserts an entry in order and returns the new right sibling if this leaf was full.
+         * An entry past the end of a full leaf starts a new leaf rather than splitting this
+         * one in half, so values added in ascending order fill every leaf.
+         */
+        Node insert(final double value,
+                    final int id)
+        {
+            int low;
+            int high;
+
+            low  = 0;
+            high = count;
+
+            while (low < high)
+            {
+                final int middle;
+                middle = (low + high) >>> 1;
+
+                if (compare(values[middle], ids[middle], value, id) < 0)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+
+            if (count < LEAF_CAPACITY)
+            {
+                insertAt(low, value, id);
+                return null;
+            }
+
+            final Leaf right;
+            right = new Leaf();
+
+            right.next = next;
+            next       = right;
+
+            if (low == LEAF_CAPACITY)
+            {
+                right.insertAt(0, value, id);
+                return right;
+            }
+
+            final int half;
+            half = LEAF_CAPACITY / 2;
+
+            System.arraycopy(values, half, right.values, 0, LEAF_CAPACITY - half);
+            System.arraycopy(ids, half, right.ids, 0, LEAF_CAPACITY - half);
+            right.count = LEAF_CAPACITY - half;
+            count       = half;
+
+            if (low <= half)
+            {
+                insertAt(low, value, id);
+            }
+            else
+            {
+                right.insertAt(low - half, value, id);
+            }
+            return right;
+        }
+
+        /*
+         * Shifts the entries from the position right by one and stores the entry there.
+         */
+        private void insertAt(final int position,
+                              final double value,
+                              final int id)
+        {
+            System.arraycopy(values, position, values, position + 1, count - position);
+            System.arraycopy(ids, position, ids, position + 1, count - position);
+            values[position] = value;
+            ids[position]    = id;
+            count++;
+        }
+    }
+
+    /*
+     * A node holding its children with the number of entries under each and the first
+     * entry of each, which routes descents.
+     */
+    private static final class Inner extends Node
+    {
+        final Node[]   children    = new Node[INNER_CAPACITY];
+        final int[]    sizes       = new int[INNER_CAPACITY];
+        final double[] firstValues = new double[INNER_CAPACITY];
+        final int[]    firstIds    = new int[INNER_CAPACITY];
+        int            total;
+
+        @Override
+        int total()
+        {
+            return total;
+        }
+
+        @Override
+        double firstValue()
+        {
+            return firstValues[0];
+        }
+
+        @Override
+        int firstId()
+        {
+            return firstIds[0];
+        }
+
+        /*
+         * Returns the last child whose first entry is not after the given entry, or the
+         * first child if there is none.
+         */
+        int childFor(final double value,
+                     final int id)
+        {
+            int low;
+            int high;
+
+            low  = 1;
+            high = count;
+
+            while (low < high)
+            {
+                final int middle;
+                middle = (low + high) >>> 1;
+
+                if (compare(firstValues[middle], firstIds[middle], value, id) <= 0)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+
+            return low - 1;
+        }
+
+        /*
+         * Adds a child after the existing ones.
+         */
+        void append(final Node child)
+        {
+            children[count]    = child;
+            sizes[count]       = child.total();
+            firstValues[count] = child.firstValue();
+            firstIds[count]    = child.firstId();
+            total             += sizes[count];
+            count++;
+        }
+
+        /*
+         * Inserts a child at a position and returns the new right sibling if this node was
+         * full, splitting its children in half.
+         */
+        Node insert(final int position,
+                    final Node child)
+        {
+            if (count < INNER_CAPACITY)
+            {
+                insertAt(position, child);
+                return null;
+            }
+
+            final Inner right;
+            final int   half;
+
+            right = new Inner();
+            half  = INNER_CAPACITY / 2;
+
+            for (int i = half; i < INNER_CAPACITY; i++)
+            {
+                right.append(children[i]);
+                total -= sizes[i];
+            }
+            Arrays.fill(children, half, INNER_CAPACITY, null);
+            count = half;
+
+            if (position <= half)
+            {
+                insertAt(position, child);
+            }
+            else
+            {
+                right.insertAt(position - half, child);
+            }
+            return right;
+        }
+
+        /*
+         * Shifts the children from the position right by one and stores the child there.
+         */
+        private void insertAt(final int position,
+                              final Node child)
+        {
+            final int moved;
+            moved = count - position;
+
+            System.arraycopy(children, position, children, position + 1, moved);
+            System.arraycopy(sizes, position, sizes, position + 1, moved);
+            System.arraycopy(firstValues, position, firstValues, position + 1, moved);
+            System.arraycopy(firstIds, position, firstIds, position + 1, moved);
+
+            children[position]    = child;
+            sizes[position]       = child.total();
+            firstValues[position] = child.firstValue();
+            firstIds[position]    = child.firstId();
+            total                += sizes[position];
+            count++;
+        }
+    }
+}
@@ -0,0 +1,892 @@
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.DoubleSummaryStatistics;
+import java.util.IntSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Filter, group-by and aggregate queries over the columns of a {@link DeviceRegistry}, run as a
+ * fork-join split across a {@link ForkJoinPool}.
+ * <p>
+ * Each device type has its own query class with filters and aggregates for its fields, so
+ * questions such as "total remaining minutes per carrier" or "histogram of IPod volumes" need
+ * no {@code instanceof} checks or getter calls. Queries scan the registry's primitive columns
+ * a block of rows at a time: the filters first collect the matching row numbers of a block,
+ * then the aggregate loops over just those rows. Nothing is boxed until the final result
+ * is built.
+ * <p>
+ * The filter methods change the query and return it, so calls can be chained. A query must
+ * not be run while the registry is being changed.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class FleetQuery
+{
+    private static final int ANY        = Integer.MIN_VALUE;
+    private static final int NONE       = Integer.MIN_VALUE + 1;
+    private static final int BLOCK_ROWS = 1 << 10;
+    private static final int LEAF_ROWS  = 1 << 16;
+
+    private final DeviceRegistry registry;
+    private final ForkJoinPool   pool;
+
+    /**
+     * Constructs a FleetQuery that runs on the common pool.
+     *
+     * @param registry the registry to query
+     */
+    public FleetQuery(final DeviceRegistry registry)
+    {
+        this(registry, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a FleetQuery.
+     *
+     * @param registry the registry to query
+     * @param pool     the pool to run queries on
+     */
+    public FleetQuery(final DeviceRegistry registry,
+                      final ForkJoinPool pool)
+    {
+        this.registry = registry;
+        this.pool     = pool;
+    }
+
+    /**
+     * Creates a FleetQuery over a copy of the given devices.
+     *
+     * @param devices the devices to query
+     * @return a FleetQuery over a new registry holding the devices
+     */
+    public static FleetQuery of(final Collection<? extends IDevice> devices)
+    {
+        final DeviceRegistry registry;
+        registry = new DeviceRegistry();
+
+        for (final IDevice device : devices)
+        {
+            registry.add(device);
+        }
+
+        return new FleetQuery(registry);
+    }
+
+    /**
+     * Starts a query over every IPhone, including IPhone16s.
+     *
+     * @return a new IPhone query
+     */
+    public IPhoneQuery iPhones()
+    {
+        return new IPhoneQuery(this, true);
+    }
+
+    /**
+     * Starts a query over IPhone16s only.
+     *
+     * @return a new IPhone query that skips plain IPhones
+     */
+    public IPhoneQuery iPhone16s()
+    {
+        return new IPhoneQuery(this, false);
+    }
+
+    /**
+     * Starts a query over every IPod.
+     *
+     * @return a new IPod query
+     */
+    public IPodQuery iPods()
+    {
+        return new IPodQuery(this);
+    }
+
+    /**
+     * Starts a query over every IPad.
+     *
+     * @return a new IPad query
+     */
+    public IPadQuery iPads()
+    {
+        return new IPadQuery(this);
+    }
+
+    /*
+     * Returns the code a filter on the given String should match: NONE if it is not in the
+     * table, so that it matches no rows.
+     */
+    private static int filterCode(final SymbolTable table,
+                                  final String symbol)
+    {
+        final int code;
+        code = table.find(symbol);
+
+        return symbol != null && code == SymbolTable.NO_SYMBOL ? NONE : code;
+    }
+
+    /*
+     * Splits rows 0 to size over the pool, runs the leaf on each part and merges the results.
+     */
+    private <A> A run(final int size,
+                      final RangeFunction<A> leaf,
+                      final BinaryOperator<A> merge)
+    {
+        return pool.invoke(new RangeTask<>(0, size, leaf, merge));
+    }
+
+    /*
+     * Builds a map from symbol text to count, in code order, leaving out codes with no rows.
+     * Index 0 holds the count for NO_SYMBOL.
+     */
+    private static Map<String, Long> countsBySymbol(final SymbolTable table,
+                                                    final long[] counts)
+    {
+        final Map<String, Long> result;
+        result = new LinkedHashMap<>();
+
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] > 0)
+            {
+                result.put(table.decode(i - 1), counts[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * Adds the counts of right to left and returns left.
+     */
+    private static long[] addCounts(final long[] left,
+                                    final long[] right)
+    {
+        for (int i = 0; i < left.length; i++)
+        {
+            left[i] += right[i];
+        }
+        return left;
+    }
+
+    /*
+     * Computes a partial result over rows from to to.
+     */
+    private interface RangeFunction<A>
+    {
+        A apply(int from, int to);
+    }
+
+    /*
+     * Halves its range until it is at most LEAF_ROWS long, then runs the leaf.
+     */
+    private static final class RangeTask<A> extends RecursiveTask<A>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int               from;
+        private final int               to;
+        private final RangeFunction<A>  leaf;
+        private final BinaryOperator<A> merge;
+
+        private RangeTask(final int from,
+                          final int to,
+                          final RangeFunction<A> leaf,
+                          final BinaryOperator<A> merge)
+        {
+            this.from  = from;
+            this.to    = to;
+            this.leaf  = leaf;
+            this.merge = merge;
+        }
+
+        @Override
+        protected A compute()
+        {
+            if (to - from <= LEAF_ROWS)
+            {
+                return leaf.apply(from, to);
+            }
+
+            final int          middle;
+            final RangeTask<A> left;
+            final A            right;
+
+            middle = (from + to) >>> 1;
+            left   = new RangeTask<>(from, middle, leaf, merge);
+
+            left.fork();
+            right = new RangeTask<>(middle, to, leaf, merge).compute();
+
+            return merge.apply(left.join(), right);
+        }
+    }
+
+    /*
+     * Aggregates a block of matching phone rows. memoryGB is null for plain IPhones.
+     */
+    private interface PhoneBlock<A>
+    {
+        void accept(A result, double[] minutes, int[] carrierCodes, int[] memoryGB, int[] rows, int count);
+    }
+
+    /**
+     * A query over IPhones, and optionally IPhone16s only.
+     * Filtering on memory or camera skips plain IPhones, which have neither.
+     */
+    public static final class IPhoneQuery
+    {
+        private final FleetQuery fleet;
+        private final boolean    includeIPhones;
+        private DoublePredicate  minutesFilter;
+        private int              carrierCode;
+        private int              memoryGigabytes;
+        private int              highResCamera;
+
+        private IPhoneQuery(final FleetQuery fleet,
+                            final boolean includeIPhones)
+        {
+            this.fleet           = fleet;
+            this.includeIPhones  = includeIPhones;
+            this.carrierCode     = ANY;
+            this.memoryGigabytes = ANY;
+            this.highResCamera   = ANY;
+        }
+
+        /**
+         * Keeps only phones whose remaining plan minutes match the predicate.
+         *
+         * @param filter the predicate on remaining plan minutes
+         * @return this query
+         */
+        public IPhoneQuery whereMinutes(final DoublePredicate filter)
+        {
+            minutesFilter = minutesFilter == null ? filter : minutesFilter.and(filter);
+            return this;
+        }
+
+        /**
+         * Keeps only phones on the given carrier.
+         *
+         * @param planCarrier the carrier to match
+         * @return this query
+         */
+        public IPhoneQuery whereCarrier(final String planCarrier)
+        {
+            carrierCode = filterCode(fleet.registry.getCarriers(), planCarrier);
+            return this;
+        }
+
+        /**
+         * Keeps only IPhone16s with the given amount of memory.
+         *
+         * @param memoryGigabytes the amount of memory to match
+         * @return this query
+         */
+        public IPhoneQuery whereMemoryGigabytes(final int memoryGigabytes)
+        {
+            this.memoryGigabytes = memoryGigabytes;
+            return this;
+        }
+
+        /**
+         * Keeps only IPhone16s with or without a high resolution camera.
+         *
+         * @param highResCamera the camera quality to match
+         * @return this query
+         */
+        public IPhoneQuery whereHighResCamera(final boolean highResCamera)
+        {
+            this.highResCamera = highResCamera ? 1 : 0;
+            return this;
+        }
+
+        /**
+         * Counts the matching phones.
+         *
+         * @return the number of matching phones
+         */
+        public long count()
+        {
+            return aggregate(() -> new long[1],
+                             (result, minutes, carrierCodes, memoryGB, rows, count) -> result[0] += count,
+                             FleetQuery::addCounts)[0];
+        }
+
+        /**
+         * Summarizes the remaining plan minutes of the matching phones.
+         *
+         * @return the count, sum, minimum and maximum of the minutes
+         */
+        public DoubleSummaryStatistics minutes()
+        {
+            return aggregate(DoubleSummaryStatistics::new,
+                             (result, minutes, carrierCodes, memoryGB, rows, count) ->
+                             {
+                                 for (int i = 0; i < count; i++)
+                                 {
+                                     result.accept(minutes[rows[i]]);
+                                 }
+                             },
+                             (left, right) ->
+                             {
+                                 left.combine(right);
+                                 return left;
+                             });
+        }
+
+        /**
+         * Summarizes the remaining plan minutes of the matching phones on each carrier.
+         *
+         * @return the minutes summary for each carrier, in the order carriers were first seen
+         */
+        public Map<String, DoubleSummaryStatistics> minutesByCarrier()
+        {
+            final int                                  carriers;
+            final DoubleSummaryStatistics[]            byCode;
+            final Map<String, DoubleSummaryStatistics> result;
+
+            carriers = fleet.registry.getCarriers().size();
+            byCode   = aggregate(() -> new DoubleSummaryStatistics[carriers],
+                                 (partial, minutes, carrierCodes, memoryGB, rows, count) ->
+                                 {
+                                     for (int i = 0; i < count; i++)
+                                     {
+                                         final int row;
+                                         row = rows[i];
+
+                                         DoubleSummaryStatistics statistics;
+                                         statistics = partial[carrierCodes[row]];
+                                         if (statistics == null)
+                                         {
+                                             statistics = new DoubleSummaryStatistics();
+                                             partial[carrierCodes[row]] = statistics;
+                                         }
+                                         statistics.accept(minutes[row]);
+                                     }
+                                 },
+                                 (left, right) ->
+                                 {
+                                     for (int i = 0; i < left.length; i++)
+                                     {
+                                         if (left[i] == null)
+                                         {
+                                             left[i] = right[i];
+                                         }
+                                         else if (right[i] != null)
+                                         {
+                                             left[i].combine(right[i]);
+                                         }
+                                     }
+                                     return left;
+                                 });
+            result   = new LinkedHashMap<>();
+
+            for (int code = 0; code < byCode.length; code++)
+            {
+                if (byCode[code] != null)
+                {
+                    result.put(fleet.registry.getCarriers().decode(code), byCode[code]);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Counts the matching phones on each carrier.
+         *
+         * @return the count for each carrier, in the order carriers were first seen
+         */
+        public Map<String, Long> countByCarrier()
+        {
+            final int    carriers;
+            final long[] counts;
+
+            carriers = fleet.registry.getCarriers().size();
+            counts   = aggregate(() -> new long[carriers + 1],
+                                 (result, minutes, carrierCodes, memoryGB, rows, count) ->
+                                 {
+                                     for (int i = 0; i < count; i++)
+                                     {
+                                         result[carrierCodes[rows[i]] + 1]++;
+                                     }
+                                 },
+                                 FleetQuery::addCounts);
+
+            return countsBySymbol(fleet.registry.getCarriers(), counts);
+        }
+
+        /**
+         * Counts the matching IPhone16s of each memory size. Plain IPhones are not counted.
+         *
+         * @return the count for each memory size in gigabytes, smallest first
+         */
+        public Map<Integer, Long> countByMemoryGigabytes()
+        {
+            final long[]             counts;
+            final Map<Integer, Long> result;
+
+            counts = aggregate(() -> new long[2],
+                               (partial, minutes, carrierCodes, memoryGB, rows, count) ->
+                               {
+                                   if (memoryGB != null)
+                                   {
+                                       for (int i = 0; i < count; i++)
+                                       {
+                                           partial[memoryGB[rows[i]] == IPhone16.MODEL_512_GB ? 1 : 0]++;
+                                       }
+                                   }
+                               },
+                               FleetQuery::addCounts);
+            result = new TreeMap<>();
+
+            if (counts[0] > 0)
+            {
+                result.put(IPhone16.MODEL_256_GB, counts[0]);
+            }
+            if (counts[1] > 0)
+            {
+                result.put(IPhone16.MODEL_512_GB, counts[1]);
+            }
+
+            return result;
+        }
+
+        /**
+         * Builds a histogram of the remaining plan minutes of the matching phones.
+         *
+         * @param min         the lowest value of the first bucket
+         * @param max         the end of the last bucket
+         * @param bucketCount the number of buckets
+         * @return the histogram
+         */
+        public Histogram minutesHistogram(final double min,
+                                          final double max,
+                                          final int bucketCount)
+        {
+            final Histogram histogram;
+            histogram = new Histogram(min, max, bucketCount);
+
+            return histogram.merge(aggregate(() -> new Histogram(min, max, bucketCount),
+                                             (result, minutes, carrierCodes, memoryGB, rows, count) ->
+                                             {
+                                                 for (int i = 0; i < count; i++)
+                                                 {
+                                                     result.record(minutes[rows[i]]);
+                                                 }
+                                             },
+                                             Histogram::merge));
+        }
+
+        /*
+         * Runs the block aggregate over the matching IPhone rows followed by the matching
+         * IPhone16 rows.
+         */
+        private <A> A aggregate(final Supplier<A> create,
+                                final PhoneBlock<A> block,
+                                final BinaryOperator<A> merge)
+        {
+            final DeviceRegistry registry;
+            final boolean        scanIPhones;
+            final int            iPhoneRows;
+            final int            iPhone16Rows;
+            final double[]       iPhoneMinutes;
+            final int[]          iPhoneCarriers;
+            final double[]       iPhone16Minutes;
+            final int[]          iPhone16Carriers;
+            final int[]          iPhone16MemoryGB;
+            final BitSet         iPhone16HighResCamera;
+
+            registry              = fleet.registry;
+            scanIPhones           = includeIPhones && memoryGigabytes == ANY && highResCamera == ANY;
+            iPhoneRows            = scanIPhones ? registry.getIPhoneCount() : 0;
+            iPhone16Rows          = registry.getIPhone16Count();
+            iPhoneMinutes         = registry.getIPhoneMinutesColumn();
+            iPhoneCarriers        = registry.getIPhoneCarrierCodesColumn();
+            iPhone16Minutes       = registry.getIPhone16MinutesColumn();
+            iPhone16Carriers      = registry.getIPhone16CarrierCodesColumn();
+            iPhone16MemoryGB      = registry.getIPhone16MemoryGBColumn();
+            iPhone16HighResCamera = registry.getIPhone16HighResCameraColumn();
+
+            return fleet.run(iPhoneRows + iPhone16Rows, (from, to) ->
+            {
+                final A     result;
+                final int[] rows;
+
+                result = create.get();
+                rows   = new int[BLOCK_ROWS];
+
+                for (int start = from; start < Math.min(to, iPhoneRows); start += BLOCK_ROWS)
+                {
+                    final int end;
+                    end = Math.min(start + BLOCK_ROWS, Math.min(to, iPhoneRows));
+
+                    block.accept(result, iPhoneMinutes, iPhoneCarriers, null, rows,
+                                 select(iPhoneMinutes, iPhoneCarriers, null, null, start, end, rows));
+                }
+                for (int start = Math.max(from, iPhoneRows) - iPhoneRows; start < to - iPhoneRows; start += BLOCK_ROWS)
+                {
+                    final int end;
+                    end = Math.min(start + BLOCK_ROWS, to - iPhoneRows);
+
+                    block.accept(result, iPhone16Minutes, iPhone16Carriers, iPhone16MemoryGB, rows,
+                                 select(iPhone16Minutes, iPhone16Carriers, iPhone16MemoryGB,
+                                        iPhone16HighResCamera, start, end, rows));
+                }
+
+                return result;
+            }, merge);
+        }
+
+        /*
+         * Writes the matching rows from start to end into rows and returns how many there are.
+         * The memory and camera columns are null for plain IPhones.
+         */
+        private int select(final double[] minutes,
+                           final int[] carrierCodes,
+                           final int[] memoryGB,
+                           final BitSet highResCameras,
+                           final int start,
+                           final int end,
+                           final int[] rows)
+        {
+            final int             carrier;
+            final int             memory;
+            final int             camera;
+            final DoublePredicate filter;
+            int                   count;
+
+            carrier = carrierCode;
+            memory  = memoryGigabytes;
+            camera  = highResCamera;
+            filter  = minutesFilter;
+            count   = 0;
+
+            for (int row = start; row < end; row++)
+            {
+                if ((carrier == ANY || carrierCodes[row] == carrier) &&
+                    (memory == ANY || memoryGB[row] == memory) &&
+                    (camera == ANY || highResCameras.get(row) == (camera == 1)) &&
+                    (filter == null || filter.test(minutes[row])))
+                {
+                    rows[count++] = row;
+                }
+            }
+
+            return count;
+        }
+    }
+
+    /*
+     * Aggregates a block of matching IPod rows.
+     */
+    private interface PodBlock<A>
+    {
+        void accept(A result, double[] volumeDB, int[] numSongs, int[] rows, int count);
+    }
+
+    /**
+     * A query over IPods.
+     */
+    public static final class IPodQuery
+    {
+        private final FleetQuery fleet;
+        private DoublePredicate  volumeFilter;
+        private IntPredicate     numSongsFilter;
+
+        private IPodQuery(final FleetQuery fleet)
+        {
+            this.fleet = fleet;
+        }
+
+        /**
+         * Keeps only IPods whose current volume matches the predicate.
+         *
+         * @param filter the predicate on the current volume in dB
+         * @return this query
+         */
+        public IPodQuery whereVolumeDB(final DoublePredicate filter)
+        {
+            volumeFilter = volumeFilter == null ? filter : volumeFilter.and(filter);
+            return this;
+        }
+
+        /**
+         * Keeps only IPods whose number of songs stored matches the predicate.
+         *
+         * @param filter the predicate on the number of songs stored
+         * @return this query
+         */
+        public IPodQuery whereNumSongsStored(final IntPredicate filter)
+        {
+            numSongsFilter = numSongsFilter == null ? filter : numSongsFilter.and(filter);
+            return this;
+        }
+
+        /**
+         * Counts the matching IPods.
+         *
+         * @return the number of matching IPods
+         */
+        public long count()
+        {
+            return aggregate(() -> new long[1],
+                             (result, volumeDB, numSongs, rows, count) -> result[0] += count,
+                             FleetQuery::addCounts)[0];
+        }
+
+        /**
+         * Summarizes the current volume of the matching IPods.
+         *
+         * @return the count, sum, minimum and maximum of the volume in dB
+         */
+        public DoubleSummaryStatistics volumeDB()
+        {
+            return aggregate(DoubleSummaryStatistics::new,
+                             (result, volumeDB, numSongs, rows, count) ->
+                             {
+                                 for (int i = 0; i < count; i++)
+                                 {
+                                     result.accept(volumeDB[rows[i]]);
+                                 }
+                             },
+                             (left, right) ->
+                             {
+                                 left.combine(right);
+                                 return left;
+                             });
+        }
+
+        /**
+         * Summarizes the number of songs stored on the matching IPods.
+         *
+         * @return the count, sum, minimum and maximum of the songs stored
+         */
+        public IntSummaryStatistics numSongsStored()
+        {
+            return aggregate(IntSummaryStatistics::new,
+                             (result, volumeDB, numSongs, rows, count) ->
+                             {
+                                 for (int i = 0; i < count; i++)
+                                 {
+                                     result.accept(numSongs[rows[i]]);
+                                 }
+                             },
+                             (left, right) ->
+                             {
+                                 left.combine(right);
+                                 return left;
+                             });
+        }
+
+        /**
+         * Builds a histogram of the current volume of the matching IPods.
+         *
+         * @param min         the lowest value of the first bucket
+         * @param max         the end of the last bucket
+         * @param bucketCount the number of buckets
+         * @return the histogram
+         */
+        public Histogram volumeHistogram(final double min,
+                                         final double max,
+                                         final int bucketCount)
+        {
+            final Histogram histogram;
+            histogram = new Histogram(min, max, bucketCount);
+
+            return histogram.merge(aggregate(() -> new Histogram(min, max, bucketCount),
+                                             (result, volumeDB, numSongs, rows, count) ->
+                                             {
+                                                 for (int i = 0; i < count; i++)
+                                                 {
+                                                     result.record(volumeDB[rows[i]]);
+                                                 }
+                                             },
+                                             Histogram::merge));
+        }
+
+        /*
+         * Runs the block aggregate over the matching IPod rows.
+         */
+        private <A> A aggregate(final Supplier<A> create,
+                                final PodBlock<A> block,
+                                final BinaryOperator<A> merge)
+        {
+            final double[] volumeDB;
+            final int[]    numSongs;
+
+            volumeDB = fleet.registry.getIPodVolumeDBColumn();
+            numSongs = fleet.registry.getIPodNumSongsColumn();
+
+            return fleet.run(fleet.registry.getIPodCount(), (from, to) ->
+            {
+                final A     result;
+                final int[] rows;
+
+                result = create.get();
+                rows   = new int[BLOCK_ROWS];
+
+                for (int start = from; start < to; start += BLOCK_ROWS)
+                {
+                    final int end;
+                    int       count;
+
+                    end   = Math.min(start + BLOCK_ROWS, to);
+                    count = 0;
+
+                    for (int row = start; row < end; row++)
+                    {
+                        if ((volumeFilter == null || volumeFilter.test(volumeDB[row])) &&
+                            (numSongsFilter == null || numSongsFilter.test(numSongs[row])))
+                        {
+                            rows[count++] = row;
+                        }
+                    }
+                    block.accept(result, volumeDB, numSongs, rows, count);
+                }
+
+                return result;
+            }, merge);
+        }
+    }
+
+    /*
+     * Aggregates a block of matching IPad rows.
+     */
+    private interface PadBlock<A>
+    {
+        void accept(A result, int[] OSVersionCodes, int[] rows, int count);
+    }
+
+    /**
+     * A query over IPads.
+     */
+    public static final class IPadQuery
+    {
+        private final FleetQuery fleet;
+        private int              OSVersionCode;
+        private int              hasCase;
+
+        private IPadQuery(final FleetQuery fleet)
+        {
+            this.fleet         = fleet;
+            this.OSVersionCode = ANY;
+            this.hasCase       = ANY;
+        }
+
+        /**
+         * Keeps only IPads with the given OS version.
+         *
+         * @param OSVersion the OS version to match; may be null
+         * @return this query
+         */
+        public IPadQuery whereOSVersion(final String OSVersion)
+        {
+            OSVersionCode = filterCode(fleet.registry.getOSVersions(), OSVersion);
+            return this;
+        }
+
+        /**
+         * Keeps only IPads with or without a protective case.
+         *
+         * @param hasCase whether the IPad has a case
+         * @return this query
+         */
+        public IPadQuery whereHasCase(final boolean hasCase)
+        {
+            this.hasCase = hasCase ? 1 : 0;
+            return this;
+        }
+
+        /**
+         * Counts the matching IPads.
+         *
+         * @return the number of matching IPads
+         */
+        public long count()
+        {
+            return aggregate(() -> new long[1],
+                             (result, OSVersionCodes, rows, count) -> result[0] += count,
+                             FleetQuery::addCounts)[0];
+        }
+
+        /**
+         * Counts the matching IPads with each OS version.
+         *
+         * @return the count for each OS version, in the order versions were first seen;
+         *         IPads without an OS version are counted under a null key
+         */
+        public Map<String, Long> countByOSVersion()
+        {
+            final int    versions;
+            final long[] counts;
+
+            versions = fleet.registry.getOSVersions().size();
+            counts   = aggregate(() -> new long[versions + 1],
+                                 (result, OSVersionCodes, rows, count) ->
+                                 {
+                                     for (int i = 0; i < count; i++)
+                                     {
+                                         result[OSVersionCodes[rows[i]] + 1]++;
+                                     }
+                                 },
+                                 FleetQuery::addCounts);
+
+            return countsBySymbol(fleet.registry.getOSVersions(), counts);
+        }
+
+        /*
+         * Runs the block aggregate over the matching IPad rows.
+         */
+        private <A> A aggregate(final Supplier<A> create,
+                                final PadBlock<A> block,
+                                final BinaryOperator<A> merge)
+        {
+            final int[]  OSVersionCodes;
+            final BitSet hasCases;
+
+            OSVersionCodes = fleet.registry.getIPadOSVersionCodesColumn();
+            hasCases       = fleet.registry.getIPadHasCaseColumn();
+
+            return fleet.run(fleet.registry.getIPadCount(), (from, to) ->
+            {
+                final A     result;
+                final int[] rows;
+
+                result = create.get();
+                rows   = new int[BLOCK_ROWS];
+
+                for (int start = from; start < to; start += BLOCK_ROWS)
+                {
+                    final int end;
+                    int       count;
+
+                    end   = Math.min(start + BLOCK_ROWS, to);
+                    count = 0;
+
+                    for (int row = start; row < end; row++)
+                    {
+                        if ((OSVersionCode == ANY || OSVersionCodes[row] == OSVersionCode) &&
+                            (hasCase == ANY || hasCases.get(row) == (hasCase == 1)))
+                        {
+                            rows[count++] = row;
+                        }
+                    }
+                    block.accept(result, OSVersionCodes, rows, count);
+                }
+
+                return result;
+            }, merge);
+        }
+    }
+}
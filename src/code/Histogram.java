@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+/**
+ * A fixed-width histogram of double values. The range from {@link #getMin()} up to, but not
+ * including, {@link #getMax()} is split into equal buckets, and values outside the range are
+ * counted separately as below or above it. NaN values are counted as below the range.
+ * Histograms built over different parts of a fleet can be merged.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class Histogram
+{
+    private final double min;
+    private final double max;
+    private final double bucketsPerUnit;
+    private final long[] counts;
+    private long         below;
+    private long         above;
+
+    /**
+     * Constructs an empty Histogram.
+     *
+     * @param min         the lowest value of the first bucket
+     * @param max         the end of the last bucket; not included in it
+     * @param bucketCount the number of buckets
+     * @throws IllegalArgumentException if the range is empty or not finite, or bucketCount is not positive
+     */
+    public Histogram(final double min,
+                     final double max,
+                     final int bucketCount)
+    {
+        if (!Double.isFinite(min) || !Double.isFinite(max) || !(min < max))
+        {
+            throw new IllegalArgumentException("Histogram range must be finite and non-empty");
+        }
+        if (bucketCount <= 0)
+        {
+            throw new IllegalArgumentException("Bucket count must be positive");
+        }
+
+        this.min            = min;
+        this.max            = max;
+        this.bucketsPerUnit = bucketCount / (max - min);
+        this.counts         = new long[bucketCount];
+    }
+
+    /**
+     * Counts one value.
+     *
+     * @param value the value to count
+     */
+    public void record(final double value)
+    {
+        if (!(value >= min))
+        {
+            below++;
+        }
+        else if (value >= max)
+        {
+            above++;
+        }
+        else
+        {
+            // Rounding can put a value just under max one past the last bucket
+            counts[Math.min((int) ((value - min) * bucketsPerUnit), counts.length - 1)]++;
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram with the same range and buckets to this one.
+     *
+     * @param other the histogram to add
+     * @return this histogram
+     * @throws IllegalArgumentException if the histograms have different ranges or buckets
+     */
+    public Histogram merge(final Histogram other)
+    {
+        if (other.min != min || other.max != max || other.counts.length != counts.length)
+        {
+            throw new IllegalArgumentException("Histograms must have the same range and buckets");
+        }
+
+        for (int i = 0; i < counts.length; i++)
+        {
+            counts[i] += other.counts[i];
+        }
+        below += other.below;
+        above += other.above;
+
+        return this;
+    }
+
+    /**
+     * Getter for the lowest value of the first bucket.
+     *
+     * @return the minimum of the range
+     */
+    public double getMin()
+    {
+        return min;
+    }
+
+    /**
+     * Getter for the end of the last bucket.
+     *
+     * @return the maximum of the range
+     */
+    public double getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Getter for the number of buckets.
+     *
+     * @return the number of buckets
+     */
+    public int getBucketCount()
+    {
+        return counts.length;
+    }
+
+    /**
+     * Returns the lowest value that falls in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the lower bound of the bucket
+     */
+    public double getLowerBound(final int bucket)
+    {
+        return min + (max - min) * bucket / counts.length;
+    }
+
+    /**
+     * Returns how many values fell in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the count of the bucket
+     */
+    public long getCount(final int bucket)
+    {
+        return counts[bucket];
+    }
+
+    /**
+     * Getter for how many values were below the range, including NaN.
+     *
+     * @return the number of values below the range
+     */
+    public long getBelow()
+    {
+        return below;
+    }
+
+    /**
+     * Getter for how many values were at or above the end of the range.
+     *
+     * @return the number of values above the range
+     */
+    public long getAbove()
+    {
+        return above;
+    }
+
+    /**
+     * Getter for how many values were counted in total.
+     *
+     * @return the total count
+     */
+    public long getTotal()
+    {
+        return Arrays.stream(counts).sum() + below + above;
+    }
+}
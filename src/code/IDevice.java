@@ -1,11 +1,19 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Abstract class representing a generic IDevice with a specific purpose.
  * Has a getter for the purpose and an abstract method to print details.
+ * The hierarchy is sealed: every device is an {@link IPhone} (or its {@link IPhone16}
+ * subclass), an {@link IPod}, an {@link IPad}, or one of the {@link DeviceRegistry} views,
+ * so code such as {@link DeviceDispatch} can handle each type on its own path.
  *
  * @author David Martinez, Daniel Do
  * @version 1.0
  */
-abstract public class IDevice
+abstract public sealed class IDevice
+    permits IPhone, IPod, IPad,
+            DeviceRegistry.IPhoneView, DeviceRegistry.IPhone16View, DeviceRegistry.IPodView, DeviceRegistry.IPadView
 {
     private final String purpose;
 
@@ -22,13 +30,22 @@ abstract public class IDevice
         this.purpose = purpose;
     }
 
+    /*
+     * Returns whether the purpose String is not null or blank.
+     */
+    static boolean isValidPurpose(final String purpose)
+    {
+        return purpose != null && !purpose.isBlank();
+    }
+
     /*
      * Validates that the purpose String is not null or blank.
      */
     private void checkPurpose(final String purpose)
     {
-        if (purpose == null || purpose.isBlank())
+        if (!isValidPurpose(purpose))
         {
+            DeviceMetrics.recordValidationFailures(DeviceValidation.PURPOSE_BLANK);
             throw new IllegalArgumentException("Purpose must not be null or blank.");
         }
     }
@@ -50,9 +67,64 @@ abstract public class IDevice
     abstract void printDetails();
 
     /**
-     * Returns a String representation of the device.
-     * Subclasses should override this method to provide a meaningful summary of the device,
-     * including its purpose and any other important attributes.
+     * Appends the details of the device to the given Appendable.
+     * Subclasses should override this method, calling the superclass version first,
+     * so that the text includes the purpose and any other important attributes.
+     *
+     * @param out the Appendable to write to
+     * @throws IOException if out cannot be written to
+     */
+    public void writeDetails(final Appendable out) throws IOException
+    {
+        out.append("Device Purpose: ");
+        out.append(purpose);
+    }
+
+    /*
+     * Appends a double the same way StringBuilder does, without creating a String
+     * when out is a StringBuilder.
+     */
+    static void append(final Appendable out,
+                       final double value) throws IOException
+    {
+        if (out instanceof StringBuilder)
+        {
+            ((StringBuilder) out).append(value);
+        }
+        else
+        {
+            out.append(Double.toString(value));
+        }
+    }
+
+    /*
+     * Appends an int the same way StringBuilder does, without creating a String
+     * when out is a StringBuilder.
+     */
+    static void append(final Appendable out,
+                       final int value) throws IOException
+    {
+        if (out instanceof StringBuilder)
+        {
+            ((StringBuilder) out).append(value);
+        }
+        else
+        {
+            out.append(Integer.toString(value));
+        }
+    }
+
+    /*
+     * Appends a boolean the same way StringBuilder does.
+     */
+    static void append(final Appendable out,
+                       final boolean value) throws IOException
+    {
+        out.append(value ? "true" : "false");
+    }
+
+    /**
+     * Returns a String representation of the device, built from {@link #writeDetails(Appendable)}.
      *
      * @return a String summarizing the device
      */
@@ -62,8 +134,15 @@ abstract public class IDevice
         final StringBuilder device;
         device = new StringBuilder();
 
-        device.append("Device Purpose: ");
-        device.append(purpose);
+        try
+        {
+            writeDetails(device);
+        }
+        catch (final IOException e)
+        {
+            // StringBuilder never throws IOException
+            throw new UncheckedIOException(e);
+        }
 
         return device.toString();
     }
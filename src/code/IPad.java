@@ -1,9 +1,25 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Objects;
 
 /**
  * Represents an iPad device with instance variables for whether
- * it {@link #hasCase} and the {@link #OSVersion}.
+ * it {@link #hasCase} and its OS version.
+ * The OS version is stored as a code from the shared {@link #OS_VERSIONS} table, so
+ * equality and hashing compare ints, or as a String once that table is full.
  * This class extends IDevice and provides methods to access and modify iPad-specific details.
+ * Whether the iPad has a case may be read and changed from many threads at once: it is a
+ * volatile field, and {@link #compareAndSetHasCase(boolean, boolean)} updates it atomically
+ * through a {@link VarHandle}. Every change is also published to the running
+ * {@link DeviceChangeFeed}, if there is one.
+ * <p>
+ * The rendering returned by {@link #toString()} is cached separately for an iPad with and
+ * without a case. Each cached String is tagged by the value of {@link #hasCase} it was
+ * rendered from, so changing the case invalidates the cache without a lock: a reader that
+ * races with {@link #setHasCase(boolean)} returns the rendering for whichever value it read,
+ * and can never cache a rendering under the wrong value.
  *
  * @author David Martinez, Daniel Do
  * @version 1.0
@@ -11,9 +27,32 @@ import java.util.Objects;
 public final class IPad extends IDevice
 {
     public static final String IPAD_PURPOSE = "learning";
+    static final SymbolTable   OS_VERSIONS  = new SymbolTable(SymbolTable.SHARED_MAX_SIZE);
 
-    private boolean hasCase;
-    private String  OSVersion;
+    private static final VarHandle HAS_CASE;
+
+    static
+    {
+        try
+        {
+            HAS_CASE = MethodHandles.lookup().findVarHandle(IPad.class, "hasCase", boolean.class);
+        }
+        catch (final ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile boolean hasCase;
+    private final int        OSVersionCode;
+    private final String     OSVersion;
+
+    /*
+     * The cached renderings for each value of hasCase, written without synchronization like
+     * String's hash: a thread that misses another thread's write only renders again.
+     */
+    private String detailsWithCase;
+    private String detailsWithoutCase;
 
     /**
      * Constructor for the IPad class.
@@ -26,8 +65,13 @@ public final class IPad extends IDevice
                 final String OSVersion)
     {
         super(IPAD_PURPOSE);
-        this.hasCase   = hasCase;
-        this.OSVersion = OSVersion;
+        this.hasCase       = hasCase;
+        this.OSVersionCode = OS_VERSIONS.encode(OSVersion);
+
+        // Once OS_VERSIONS is full, new versions are kept here instead
+        this.OSVersion = OSVersionCode == SymbolTable.NO_SYMBOL ? OSVersion : null;
+
+        DeviceMetrics.recordConstruction(IPad.class);
     }
 
     /**
@@ -37,17 +81,73 @@ public final class IPad extends IDevice
      */
     public String getOSVersion()
     {
-        return OSVersion;
+        return OSVersion != null ? OSVersion : OS_VERSIONS.decode(OSVersionCode);
+    }
+
+    /*
+     * Getter for the code of this iPad's OS version in {@link #OS_VERSIONS}, or NO_SYMBOL
+     * if it has none or the table was full when the version was first seen. A String is
+     * either always or never in the table, so iPads with the same version have the same code.
+     */
+    int getOSVersionCode()
+    {
+        return OSVersionCode;
+    }
+
+    /*
+     * Returns whether this iPad has the given OS version, whose code in OS_VERSIONS has
+     * already been looked up. Comparing codes is enough unless the version has no code.
+     */
+    boolean hasOSVersion(final int code,
+                         final String OSVersion)
+    {
+        if (code == SymbolTable.NO_SYMBOL)
+        {
+            return OSVersionCode == SymbolTable.NO_SYMBOL && Objects.equals(this.OSVersion, OSVersion);
+        }
+
+        return OSVersionCode == code;
+    }
+
+    /**
+     * Returns whether this iPad has a protective case.
+     *
+     * @return true if the iPad has a case, false otherwise
+     */
+    public boolean hasCase()
+    {
+        return hasCase;
     }
 
     /**
      * Setter for whether this iPad has a protective case.
+     * The next call to {@link #toString()} returns the rendering for the new value.
      *
      * @param hasCase true if the iPad has a case, false otherwise
      */
     public void setHasCase(final boolean hasCase)
     {
         this.hasCase = hasCase;
+        DeviceChangeFeed.recordHasCase(this, hasCase);
+    }
+
+    /**
+     * Atomically sets whether this iPad has a protective case if it still has the expected value.
+     *
+     * @param expectedHasCase the value this iPad must currently have
+     * @param hasCase         the new value
+     * @return true if the value was changed
+     */
+    public boolean compareAndSetHasCase(final boolean expectedHasCase,
+                                        final boolean hasCase)
+    {
+        if (!HAS_CASE.compareAndSet(this, expectedHasCase, hasCase))
+        {
+            return false;
+        }
+
+        DeviceChangeFeed.recordHasCase(this, hasCase);
+        return true;
     }
 
     /**
@@ -55,28 +155,82 @@ public final class IPad extends IDevice
      */
     public void printDetails()
     {
+        final long start;
+        start = DeviceMetrics.startTimer();
+
         System.out.println(this);
+        DeviceMetrics.recordPrintDetails(this, start);
     }
 
     /**
-     * Returns a String containing all the details of this IPad object
-     * including whether it has a case and its OS version.
+     * Appends this IPad's details, including whether it has a case and
+     * its OS version, to the given Appendable.
      *
-     * @return a String describing this IPad instance
+     * @param out the Appendable to write to
+     * @throws IOException if out cannot be written to
+     */
+    @Override
+    public void writeDetails(final Appendable out) throws IOException
+    {
+        writeDetails(out, hasCase);
+    }
+
+    /*
+     * Appends this IPad's details as they are when it has or does not have a case.
+     */
+    void writeDetails(final Appendable out,
+                      final boolean hasCase) throws IOException
+    {
+        super.writeDetails(out);
+        out.append("\nHas Case: ");
+        append(out, hasCase);
+        out.append("\nOS Version: ");
+        out.append(getOSVersion());
+    }
+
+    /**
+     * Returns the details of this IPad as a String. The rendering for the current value of
+     * {@link #hasCase} is built once and then cached.
+     *
+     * @return a String summarizing the IPad
      */
     @Override
     public String toString()
     {
-        final StringBuilder ipadDetails;
-        ipadDetails = new StringBuilder();
+        final boolean withCase;
+        String        rendered;
+
+        withCase = hasCase;
+        rendered = withCase ? detailsWithCase : detailsWithoutCase;
+
+        if (rendered == null)
+        {
+            final StringBuilder details;
+            details = new StringBuilder();
+
+            try
+            {
+                writeDetails(details, withCase);
+            }
+            catch (final IOException e)
+            {
+                // StringBuilder never throws IOException
+                throw new UncheckedIOException(e);
+            }
 
-        ipadDetails.append(super.toString());
-        ipadDetails.append("\nHas Case: ");
-        ipadDetails.append(hasCase);
-        ipadDetails.append("\nOS Version: ");
-        ipadDetails.append(OSVersion);
+            rendered = details.toString();
 
-        return ipadDetails.toString();
+            if (withCase)
+            {
+                detailsWithCase = rendered;
+            }
+            else
+            {
+                detailsWithoutCase = rendered;
+            }
+        }
+
+        return rendered;
     }
 
     /**
@@ -88,29 +242,28 @@ public final class IPad extends IDevice
     @Override
     public boolean equals(final Object o)
     {
-        if (o == null)
-        {
-            return false;
-        }
-        if (!(o.getClass().equals(this.getClass())))
+        DeviceMetrics.recordEquals(this);
+
+        if (!(o instanceof IPad that))
         {
             return false;
         }
-        final IPad that;
-        that = (IPad) o;
 
-        return this.OSVersion.equals(that.getOSVersion());
+        return this.OSVersionCode == that.OSVersionCode && Objects.equals(this.OSVersion, that.OSVersion);
     }
 
     /**
      * Returns the hash code value for this IPad instance.
-     * The hash code is computed based on the OS version String.
+     * The hash code is computed based on the OS version's code, or on the version itself
+     * if it has none.
      *
      * @return the hash code value for this IPad instance, based on OS version
      */
     @Override
     public int hashCode()
     {
-        return Objects.hashCode(OSVersion);
+        DeviceMetrics.recordHashCode(this);
+
+        return OSVersion != null ? OSVersion.hashCode() : Integer.hashCode(OSVersionCode);
     }
 }
@@ -1,20 +1,40 @@
+import java.io.IOException;
+
 /**
- * A class that represents an IPhone device with instance variables for its {@link #planCarrier}
+ * A class that represents an IPhone device with instance variables for its plan carrier
  * and its {@link #remainingPlanMinutes} (must be greater than {@value MIN_MINUTES_REQUIRED}).
+ * The plan carrier is stored as a code from the shared {@link #CARRIERS} table, or as a
+ * String once that table is full.
  * This class extends IDevice and provides methods to access and modify IPhone-specific details.
+ * An IPhone never changes once constructed, so its {@link #toString()} and {@link #hashCode()}
+ * are computed the first time they are asked for and cached; subclasses must be immutable too.
+ * The only subclass is {@link IPhone16}.
  *
  * @author David Martinez,
  *         Daniel Do
  * @version 1.0
  */
-public class IPhone extends IDevice
+public sealed class IPhone extends IDevice
+    permits IPhone16
 {
-    private static final double MIN_MINUTES_REQUIRED = 1.0;
-    private static final String IPHONE_PURPOSE       = "Talking";
+    public static final String  IPHONE_PURPOSE       = "Talking";
+    static final double         MIN_MINUTES_REQUIRED = 1.0;
+    static final SymbolTable    CARRIERS             = new SymbolTable(SymbolTable.SHARED_MAX_SIZE);
 
+    private final int    planCarrierCode;
     private final String planCarrier;
     private final double remainingPlanMinutes;
 
+    /*
+     * The cached rendering and hash. Like String's hash, these are written without
+     * synchronization: every thread computes the same value, so a thread that does not see
+     * another thread's write only computes it again. The String is safe to publish this way
+     * because its fields are final.
+     */
+    private String  details;
+    private int     hash;
+    private boolean hashIsZero;
+
     /**
      * Constructor for the {@code IPhone} Class.
      *
@@ -31,17 +51,44 @@ public class IPhone extends IDevice
         checkPlanCarrier(planCarrier);
 
         this.remainingPlanMinutes = remainingPlanMinutes;
-        this.planCarrier = planCarrier;
+        this.planCarrierCode      = CARRIERS.encode(planCarrier);
+
+        // Once CARRIERS is full, new carriers are kept here instead
+        this.planCarrier = planCarrierCode == SymbolTable.NO_SYMBOL ? planCarrier : null;
+
+        // An IPhone16 is counted once its own constructor finishes
+        if (getClass() == IPhone.class)
+        {
+            DeviceMetrics.recordConstruction(IPhone.class);
+        }
+    }
+
+    /*
+     * Returns whether the remaining plan minutes are not less than {@value MIN_MINUTES_REQUIRED}.
+     */
+    static boolean isValidRemainingPlanMinutes(final double remainingPlanMinutes)
+    {
+        return !(remainingPlanMinutes < MIN_MINUTES_REQUIRED);
+    }
+
+    /*
+     * Returns whether the plan carrier is not null or blank.
+     */
+    static boolean isValidPlanCarrier(final String planCarrier)
+    {
+        return planCarrier != null && !planCarrier.isBlank();
     }
 
     /*
      * Validator that checks if the remaining plan minutes are not less than
      * {@value MIN_MINUTES_REQUIRED}. Throws IllegalArgumentException if invalid.
      */
-    private void checkRemainingPlanMinutes(final double remainingPlanMinutes)
+    static void checkRemainingPlanMinutes(final double remainingPlanMinutes)
     {
-        if (remainingPlanMinutes < MIN_MINUTES_REQUIRED)
+        if (!isValidRemainingPlanMinutes(remainingPlanMinutes))
         {
+            DeviceMetrics.recordValidationFailures(DeviceValidation.MINUTES_BELOW_MINIMUM);
+
             final StringBuilder errMsg;
             errMsg = new StringBuilder();
 
@@ -57,11 +104,12 @@ public class IPhone extends IDevice
      * Validator that checks if the plan carrier is not null or blank.
      * Throws IllegalArgumentException if invalid.
      */
-    private void checkPlanCarrier(final String planCarrier)
+    static void checkPlanCarrier(final String planCarrier)
     {
         // In reality planCarrier should be checking some sort of list of valid carriers
-        if (planCarrier == null || planCarrier.isBlank())
+        if (!isValidPlanCarrier(planCarrier))
         {
+            DeviceMetrics.recordValidationFailures(DeviceValidation.CARRIER_BLANK);
             throw new IllegalArgumentException("Carrier must not be null or blank");
         }
     }
@@ -72,28 +120,48 @@ public class IPhone extends IDevice
     @Override
     public void printDetails()
     {
+        final long start;
+        start = DeviceMetrics.startTimer();
+
         System.out.println(this);
+        DeviceMetrics.recordPrintDetails(this, start);
+    }
+
+    /**
+     * Appends this IPhone's details, including its remaining plan minutes
+     * and its plan carrier, to the given Appendable.
+     *
+     * @param out the Appendable to write to
+     * @throws IOException if out cannot be written to
+     */
+    @Override
+    public void writeDetails(final Appendable out) throws IOException
+    {
+        super.writeDetails(out);
+        out.append("\nRemaining Plan Minutes: ");
+        append(out, remainingPlanMinutes);
+        out.append("\nPlan Carrier: ");
+        out.append(getPlanCarrier());
     }
 
     /**
-     * Returns a String representation of this IPhone object,
-     * including its remaining plan minutes and its plan carrier.
+     * Returns the details of this IPhone as a String, rendered once and then cached.
      *
-     * @return a String describing this IPhone instance
+     * @return a String summarizing the IPhone
      */
     @Override
     public String toString()
     {
-        final StringBuilder iphoneString;
-        iphoneString = new StringBuilder();
+        String rendered;
+        rendered = details;
 
-        iphoneString.append(super.toString());
-        iphoneString.append("\nRemaining Plan Minutes: ");
-        iphoneString.append(remainingPlanMinutes);
-        iphoneString.append("\nPlan Carrier: ");
-        iphoneString.append(planCarrier);
+        if (rendered == null)
+        {
+            rendered = super.toString();
+            details  = rendered;
+        }
 
-        return iphoneString.toString();
+        return rendered;
     }
 
     /**
@@ -106,6 +174,25 @@ public class IPhone extends IDevice
         return remainingPlanMinutes;
     }
 
+    /**
+     * Getter for an IPhone's plan carrier.
+     *
+     * @return the plan carrier as String
+     */
+    public String getPlanCarrier()
+    {
+        return planCarrier != null ? planCarrier : CARRIERS.decode(planCarrierCode);
+    }
+
+    /*
+     * Getter for the code of this IPhone's plan carrier in {@link #CARRIERS}, or
+     * NO_SYMBOL if the table was full when the carrier was first seen.
+     */
+    int getPlanCarrierCode()
+    {
+        return planCarrierCode;
+    }
+
     /**
      * equals implementation that considers two {@link IPhone} objects equal
      * if they have the same value for {@link #remainingPlanMinutes}.
@@ -117,30 +204,52 @@ public class IPhone extends IDevice
     @Override
     public boolean equals(final Object o)
     {
-        if (o == null)
-        {
-            return false;
-        }
+        DeviceMetrics.recordEquals(this);
 
-        if (!(o.getClass().equals(this.getClass())))
+        // IPhone16 overrides equals, so this is a plain IPhone and must not equal an IPhone16
+        if (!(o instanceof IPhone that) || o instanceof IPhone16)
         {
             return false;
         }
 
-        final IPhone that;
-        that = (IPhone) o;
-
         return this.getRemainingPlanMinutes() == that.getRemainingPlanMinutes();
     }
 
     /**
      * Hash code implementation for the {@link #IPhone} class.
-     * The hash code is based on the {@link #remainingPlanMinutes} value.
+     * The hash code is computed by {@link #computeHashCode()} on the first call and cached.
      *
      * @return the hash code value for this {@link #IPhone}
      */
     @Override
-    public int hashCode()
+    public final int hashCode()
+    {
+        DeviceMetrics.recordHashCode(this);
+
+        int h;
+        h = hash;
+
+        if (h == 0 && !hashIsZero)
+        {
+            h = computeHashCode();
+            if (h == 0)
+            {
+                hashIsZero = true;
+            }
+            else
+            {
+                hash = h;
+            }
+        }
+
+        return h;
+    }
+
+    /*
+     * Computes the hash code from the {@link #remainingPlanMinutes} value. Subclasses that
+     * compare more fields in equals override this rather than hashCode.
+     */
+    int computeHashCode()
     {
         final int hashFromRPM;
         hashFromRPM = Double.hashCode(remainingPlanMinutes);
@@ -1,3 +1,5 @@
+import java.io.IOException;
+
 /**
  * Represents an IPhone 16 device with instance variables for whether it has a {@link #highResCamera}
  * and its {@link #memoryGigabytes} ({@value MODEL_256_GB}GB or {@value MODEL_512_GB}GB).
@@ -7,10 +9,10 @@
  * Daniel Do
  * @version 1.0
  */
-public class IPhone16 extends IPhone
+public final class IPhone16 extends IPhone
 {
-    private static final int MODEL_512_GB = 512;
-    private static final int MODEL_256_GB = 256;
+    static final int MODEL_512_GB = 512;
+    static final int MODEL_256_GB = 256;
 
     private final boolean highResCamera;
     private final int memoryGigabytes;
@@ -24,7 +26,7 @@ public class IPhone16 extends IPhone
      * @param memoryGigabytes the amount of memory for the phone
      *                        (either {@value MODEL_256_GB}GB or {@value MODEL_512_GB}GB)
      */
-    IPhone16(final Double remainingPlanMinutes,
+    IPhone16(final double remainingPlanMinutes,
              final String planCarrier,
              final boolean highResCamera,
              final int memoryGigabytes)
@@ -35,16 +37,27 @@ public class IPhone16 extends IPhone
 
         this.highResCamera   = highResCamera;
         this.memoryGigabytes = memoryGigabytes;
+
+        DeviceMetrics.recordConstruction(IPhone16.class);
+    }
+
+    /*
+     * Returns whether the memory amount is either {@value MODEL_256_GB}GB or {@value MODEL_512_GB}GB.
+     */
+    static boolean isValidMemoryGB(final int memoryGigabytes)
+    {
+        return memoryGigabytes == MODEL_512_GB || memoryGigabytes == MODEL_256_GB;
     }
 
     /*
      * Validator that checks if the memory amount is either
      * {@value MODEL_256_GB}GB or {@value MODEL_512_GB}GB.
      */
-    private void checkMemoryGB(int memoryGigabytes)
+    static void checkMemoryGB(final int memoryGigabytes)
     {
-        if (memoryGigabytes != MODEL_512_GB && memoryGigabytes != MODEL_256_GB)
+        if (!isValidMemoryGB(memoryGigabytes))
         {
+            DeviceMetrics.recordValidationFailures(DeviceValidation.MEMORY_INVALID);
             throw new IllegalArgumentException("Invalid model of phone");
         }
     }
@@ -75,30 +88,29 @@ public class IPhone16 extends IPhone
     @Override
     public void printDetails()
     {
+        final long start;
+        start = DeviceMetrics.startTimer();
+
         System.out.println(this);
+        DeviceMetrics.recordPrintDetails(this, start);
     }
 
     /**
+     * Appends this IPhone16's details, including whether it has a high
+     * resolution camera and its memory amount, to the given Appendable.
      *
-     * Returns a String representation of this IPhone16 object, including
-     * whether it has a high resolution camera and its memory amount.
-     *
-     * @return a String describing this IPhone16 instance
+     * @param out the Appendable to write to
+     * @throws IOException if out cannot be written to
      */
     @Override
-    public String toString()
+    public void writeDetails(final Appendable out) throws IOException
     {
-        final StringBuilder iphone16String;
-        iphone16String = new StringBuilder();
-
-        iphone16String.append(super.toString());
-        iphone16String.append("\nHas High Resolution Camera: ");
-        iphone16String.append(highResCamera);
-        iphone16String.append("\nMemory: ");
-        iphone16String.append(memoryGigabytes);
-        iphone16String.append("GB");
-
-        return iphone16String.toString();
+        super.writeDetails(out);
+        out.append("\nHas High Resolution Camera: ");
+        append(out, highResCamera);
+        out.append("\nMemory: ");
+        append(out, memoryGigabytes);
+        out.append("GB");
     }
 
     /**
@@ -111,16 +123,12 @@ public class IPhone16 extends IPhone
     @Override
     public boolean equals(final Object o)
     {
-        if (o == null)
-        {
-            return false;
-        }
+        DeviceMetrics.recordEquals(this);
 
-        if (!(o.getClass().equals(this.getClass())))
+        if (!(o instanceof IPhone16 that))
         {
             return false;
         }
-        final IPhone16 that = (IPhone16) o;
         final boolean checkMinutes;
         final boolean checkCamera;
 
@@ -130,13 +138,12 @@ public class IPhone16 extends IPhone
         return checkMinutes && checkCamera;
     }
 
-    /**
-     * Hashes the IPhone16's remaining plan minutes to an int value.
-     *
-     * @return the IPhone16's hash code
+    /*
+     * Hashes the IPhone16's remaining plan minutes and camera quality to an int value,
+     * matching the fields compared by {@link #equals(Object)}.
      */
     @Override
-    public int hashCode()
+    int computeHashCode()
     {
         final int hashFromRPM;
         final double remainingPlanMinutes;
@@ -144,6 +151,6 @@ public class IPhone16 extends IPhone
 
         hashFromRPM = Double.hashCode(remainingPlanMinutes);
 
-        return hashFromRPM;
+        return 31 * hashFromRPM + Boolean.hashCode(highResCamera);
     }
 }
@@ -1,7 +1,21 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * A class that represents an IPod device with instance variables for the {@link #numSongsStored}
  * and its {@link #currentVolumeDB} (must be between {@link #MIN_VOLUME_DB} and {@link #MIN_VOLUME_DB}).
  * This class extends IDevice and provides methods to access and modify IPod-specific details.
+ * The current volume may be read and changed from many threads at once: it is a volatile
+ * field, and read-modify-write updates such as {@link #clampCurrentVolumeDB(double)} use
+ * atomic compare-and-set through a {@link VarHandle}. Every change is also published to the
+ * running {@link DeviceChangeFeed}, if there is one.
+ * <p>
+ * The rendering returned by {@link #toString()} is cached together with the volume it was
+ * rendered from, and is rebuilt only when the volume has changed since. Because the cache
+ * carries its own volume, a volume change never needs to clear it and a reader racing with
+ * an update can never return a rendering for a volume it did not read.
  *
  * @author David Martinez,
  *         Daniel Do
@@ -10,13 +24,33 @@
 public final class IPod extends IDevice
 {
     public static final String IPOD_PURPOSE          = "Listening to Music";
-    private static final double MAX_VOLUME_DB        = 100.0;
-    private static final double MIN_VOLUME_DB        = 0.0;
-    private static final int    MIN_NUM_SONGS_STORED = 0;
+    static final double        MAX_VOLUME_DB        = 100.0;
+    static final double        MIN_VOLUME_DB        = 0.0;
+    static final int           MIN_NUM_SONGS_STORED = 0;
+
+    private static final VarHandle CURRENT_VOLUME_DB;
+
+    static
+    {
+        try
+        {
+            CURRENT_VOLUME_DB = MethodHandles.lookup().findVarHandle(IPod.class, "currentVolumeDB", double.class);
+        }
+        catch (final ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     private final int numSongsStored;
 
-    private double currentVolumeDB;
+    private volatile double currentVolumeDB;
+
+    /*
+     * The last rendering and the volume it shows. Written without synchronization; the
+     * Rendering's fields are final, so any thread that sees it sees it complete.
+     */
+    private Rendering details;
 
     /**
      * Constructor for the {@code IPod} Class.
@@ -38,16 +72,36 @@ public final class IPod extends IDevice
 
         this.currentVolumeDB = currentVolumeDB;
         this.numSongsStored = numSongsStored;
+
+        DeviceMetrics.recordConstruction(IPod.class);
+    }
+
+    /*
+     * Returns whether the number of songs stored is not less than {@value MIN_NUM_SONGS_STORED}.
+     */
+    static boolean isValidNumSongsStored(final int numSongsStored)
+    {
+        return numSongsStored >= MIN_NUM_SONGS_STORED;
+    }
+
+    /*
+     * Returns whether the current volume in dB is between {@value MIN_VOLUME_DB} and {@value MAX_VOLUME_DB}.
+     */
+    static boolean isValidCurrentVolumeDB(final double currentVolumeDB)
+    {
+        return !(currentVolumeDB < MIN_VOLUME_DB || currentVolumeDB > MAX_VOLUME_DB);
     }
 
     /*
      * Validator that checks if the number of songs stored is not less than
      * {@value MIN_NUM_SONGS_STORED}. Throws IllegalArgumentException if invalid.
      */
-    private void checkNumSongsStored(final int numSongsStored)
+    static void checkNumSongsStored(final int numSongsStored)
     {
-        if (numSongsStored < MIN_NUM_SONGS_STORED)
+        if (!isValidNumSongsStored(numSongsStored))
         {
+            DeviceMetrics.recordValidationFailures(DeviceValidation.SONGS_BELOW_MINIMUM);
+
             final StringBuilder errMsg;
             errMsg = new StringBuilder();
 
@@ -63,10 +117,12 @@ public final class IPod extends IDevice
      * {@value MIN_VOLUME_DB} and {@value MAX_VOLUME_DB}.
      * Throws IllegalArgumentException if invalid.
      */
-    private void checkCurrentVolumeDB(final double currentVolumeDB)
+    static void checkCurrentVolumeDB(final double currentVolumeDB)
     {
-        if (currentVolumeDB < MIN_VOLUME_DB || currentVolumeDB > MAX_VOLUME_DB)
+        if (!isValidCurrentVolumeDB(currentVolumeDB))
         {
+            DeviceMetrics.recordValidationFailures(DeviceValidation.VOLUME_OUT_OF_RANGE);
+
             final StringBuilder errMsg;
             errMsg = new StringBuilder();
 
@@ -90,6 +146,70 @@ public final class IPod extends IDevice
         return currentVolumeDB;
     }
 
+    /**
+     * Setter for the current volume in decibels (dB) of this IPod.
+     *
+     * @param currentVolumeDB the new volume. must be between
+     *                        {@value MIN_VOLUME_DB} and {@value MAX_VOLUME_DB}
+     * @throws IllegalArgumentException if currentVolumeDB is out of range
+     */
+    public void setCurrentVolumeDB(final double currentVolumeDB)
+    {
+        checkCurrentVolumeDB(currentVolumeDB);
+        this.currentVolumeDB = currentVolumeDB;
+        DeviceChangeFeed.recordCurrentVolumeDB(this, currentVolumeDB);
+    }
+
+    /**
+     * Atomically sets the current volume if it is still the expected value.
+     * Volumes are compared by their bits, as {@link Double#equals} does.
+     *
+     * @param expectedVolumeDB the volume this IPod must currently have
+     * @param newVolumeDB      the new volume. must be between
+     *                         {@value MIN_VOLUME_DB} and {@value MAX_VOLUME_DB}
+     * @return true if the volume was changed
+     * @throws IllegalArgumentException if newVolumeDB is out of range
+     */
+    public boolean compareAndSetCurrentVolumeDB(final double expectedVolumeDB,
+                                                final double newVolumeDB)
+    {
+        checkCurrentVolumeDB(newVolumeDB);
+        if (!CURRENT_VOLUME_DB.compareAndSet(this, expectedVolumeDB, newVolumeDB))
+        {
+            return false;
+        }
+
+        DeviceChangeFeed.recordCurrentVolumeDB(this, newVolumeDB);
+        return true;
+    }
+
+    /**
+     * Atomically lowers the current volume to maxVolumeDB if it is above it.
+     *
+     * @param maxVolumeDB the highest volume to allow. must be between
+     *                    {@value MIN_VOLUME_DB} and {@value MAX_VOLUME_DB}
+     * @return true if the volume was lowered
+     * @throws IllegalArgumentException if maxVolumeDB is out of range
+     */
+    public boolean clampCurrentVolumeDB(final double maxVolumeDB)
+    {
+        checkCurrentVolumeDB(maxVolumeDB);
+
+        double current;
+        do
+        {
+            current = currentVolumeDB;
+            if (!(current > maxVolumeDB))
+            {
+                return false;
+            }
+        }
+        while (!CURRENT_VOLUME_DB.compareAndSet(this, current, maxVolumeDB));
+
+        DeviceChangeFeed.recordCurrentVolumeDB(this, maxVolumeDB);
+        return true;
+    }
+
     /**
      * Getter for the number of songs stored in the IPod.
      *
@@ -106,28 +226,76 @@ public final class IPod extends IDevice
     @Override
     public void printDetails()
     {
+        final long start;
+        start = DeviceMetrics.startTimer();
+
         System.out.println(this);
+        DeviceMetrics.recordPrintDetails(this, start);
+    }
+
+    /**
+     * Appends this IPod's details, including its current volume and the
+     * number of songs it's storing, to the given Appendable.
+     *
+     * @param out the Appendable to write to
+     * @throws IOException if out cannot be written to
+     */
+    @Override
+    public void writeDetails(final Appendable out) throws IOException
+    {
+        writeDetails(out, currentVolumeDB);
+    }
+
+    /*
+     * Appends this IPod's details as they are at the given volume.
+     */
+    void writeDetails(final Appendable out,
+                      final double currentVolumeDB) throws IOException
+    {
+        super.writeDetails(out);
+        out.append("\nCurrent Volume (dB): ");
+        append(out, currentVolumeDB);
+        out.append("\nNumber of Songs Stored: ");
+        append(out, numSongsStored);
     }
 
     /**
-     * Returns a String representation of this IPod object, including its
-     * current volume and the number of songs it's storing.
+     * Returns the details of this IPod as a String. The rendering is cached and rebuilt only
+     * when the current volume has changed since it was last rendered.
      *
-     * @return a String describing this IPod instance
+     * @return a String summarizing the IPod
      */
     @Override
     public String toString()
     {
-        final StringBuilder ipodString;
-        ipodString = new StringBuilder();
+        final double volumeDB;
+        final long   volumeBits;
+        Rendering    rendering;
+
+        volumeDB   = currentVolumeDB;
+        volumeBits = Double.doubleToRawLongBits(volumeDB);
+        rendering  = details;
+
+        if (rendering == null || rendering.volumeBits != volumeBits)
+        {
+            final StringBuilder text;
+            text = new StringBuilder();
 
-        ipodString.append(super.toString());
-        ipodString.append("\nCurrent Volume (dB): ");
-        ipodString.append(currentVolumeDB);
-        ipodString.append("\nNumber of Songs Stored: ");
-        ipodString.append(numSongsStored);
+            try
+            {
+                writeDetails(text, volumeDB);
+            }
+            catch (final IOException e)
+            {
+                // StringBuilder never throws IOException
+                throw new UncheckedIOException(e);
+            }
 
-        return ipodString.toString();
+            rendering = new Rendering(volumeBits, text.toString());
+            details   = rendering;
+        }
+
+        return rendering.text;
     }
 
     /**
@@ -140,19 +308,13 @@ public final class IPod extends IDevice
     @Override
     public boolean equals(final Object o)
     {
-        if (o == null)
-        {
-            return false;
-        }
+        DeviceMetrics.recordEquals(this);
 
-        if (!(o.getClass().equals(this.getClass())))
+        if (!(o instanceof IPod that))
         {
             return false;
         }
 
-        final IPod that;
-        that = (IPod) o;
-
         return this.numSongsStored == that.numSongsStored;
     }
 
@@ -165,6 +327,25 @@ public final class IPod extends IDevice
     @Override
     public int hashCode()
     {
+        DeviceMetrics.recordHashCode(this);
+
         return Integer.hashCode(numSongsStored);
     }
+
+    /*
+     * A rendering of an IPod and the bits of the volume it shows. -0.0 and 0.0 render
+     * differently, so volumes are compared by their bits.
+     */
+    private static final class Rendering
+    {
+        private final long   volumeBits;
+        private final String text;
+
+        private Rendering(final long volumeBits,
+                          final String text)
+        {
+            this.volumeBits = volumeBits;
+            this.text       = text;
+        }
+    }
 }
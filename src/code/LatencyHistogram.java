@@ -0,0 +1,151 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, with one bucket per power of two.
+ * Bucket 0 holds latencies of 0, and bucket {@code b} holds latencies from {@code 2^(b-1)}
+ * up to, but not including, {@code 2^b}. Each bucket is a {@link LongAdder}, so many threads
+ * can record at once without contending on a single counter.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class LatencyHistogram
+{
+    private static final int BUCKETS = Long.SIZE;
+
+    private final LongAdder[] counts;
+
+    /**
+     * Constructs an empty LatencyHistogram.
+     */
+    public LatencyHistogram()
+    {
+        counts = new LongAdder[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts one latency. Negative latencies are counted as 0.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(final long nanos)
+    {
+        counts[nanos <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+    }
+
+    /**
+     * Getter for the number of buckets.
+     *
+     * @return the number of buckets
+     */
+    public int getBucketCount()
+    {
+        return BUCKETS;
+    }
+
+    /**
+     * Returns the lowest latency that falls in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the lower bound of the bucket in nanoseconds
+     */
+    public long getLowerBound(final int bucket)
+    {
+        return bucket == 0 ? 0 : 1L << (bucket - 1);
+    }
+
+    /**
+     * Returns how many latencies fell in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the count of the bucket
+     */
+    public long getCount(final int bucket)
+    {
+        return counts[bucket].sum();
+    }
+
+    /**
+     * Getter for how many latencies were recorded in total.
+     *
+     * @return the total count
+     */
+    public long getTotalCount()
+    {
+        long total;
+        total = 0;
+
+        for (final LongAdder count : counts)
+        {
+            total += count.sum();
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns an upper bound for a percentile: the smallest bucket boundary that at least
+     * the given fraction of latencies fall below.
+     *
+     * @param fraction the percentile as a fraction between 0 and 1, e.g. 0.99
+     * @return the upper bound in nanoseconds, or 0 if nothing was recorded
+     * @throws IllegalArgumentException if fraction is not between 0 and 1
+     */
+    public long getPercentile(final double fraction)
+    {
+        if (!(fraction >= 0.0 && fraction <= 1.0))
+        {
+            throw new IllegalArgumentException("Fraction must be between 0 and 1");
+        }
+
+        final long[] snapshot;
+        long         total;
+
+        snapshot = new long[BUCKETS];
+        total    = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            snapshot[i] = counts[i].sum();
+            total      += snapshot[i];
+        }
+
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        final long target;
+        long       seen;
+
+        target = Math.max(1, (long) Math.ceil(fraction * total));
+        seen   = 0;
+
+        for (int i = 0; i < BUCKETS - 1; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= target)
+            {
+                return getLowerBound(i + 1);
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Clears every bucket.
+     */
+    public void reset()
+    {
+        for (final LongAdder count : counts)
+        {
+            count.reset();
+        }
+    }
+}
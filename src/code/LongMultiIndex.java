@@ -0,0 +1,220 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An open-addressing multimap from primitive long keys to int values.
+ * Keys live in a linearly probed table and the values for each key are chained
+ * through parallel int arrays, so adding and looking up entries never allocates
+ * a per-entry object: the arrays only grow, by doubling, as the index fills.
+ * Entries for a key can be walked in the order they were added with
+ * {@link #head(long)}, {@link #next(int)} and {@link #value(int)}.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class LongMultiIndex
+{
+    static final int            NO_ENTRY         = -1;
+    private static final int    DEFAULT_CAPACITY = 16;
+    private static final long   GOLDEN_RATIO     = 0x9E3779B97F4A7C15L;
+
+    private long[] slotKeys;
+    private int[]  slotHeads;
+    private int[]  slotTails;
+    private int[]  slotCounts;
+    private int    usedSlots;
+
+    private int[]  entryValues;
+    private int[]  entryNext;
+    private int    size;
+
+    /**
+     * Constructs an empty LongMultiIndex.
+     */
+    public LongMultiIndex()
+    {
+        slotKeys    = new long[DEFAULT_CAPACITY];
+        slotHeads   = new int[DEFAULT_CAPACITY];
+        slotTails   = new int[DEFAULT_CAPACITY];
+        slotCounts  = new int[DEFAULT_CAPACITY];
+        entryValues = new int[DEFAULT_CAPACITY];
+        entryNext   = new int[DEFAULT_CAPACITY];
+
+        Arrays.fill(slotHeads, NO_ENTRY);
+    }
+
+    /*
+     * Spreads the bits of the key so that nearby keys land in different slots.
+     */
+    private static int mix(final long key)
+    {
+        final long hash;
+        hash = key * GOLDEN_RATIO;
+
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /*
+     * Returns the slot holding the key, or the empty slot where it would go.
+     */
+    private int findSlot(final long key)
+    {
+        final int mask;
+        mask = slotKeys.length - 1;
+
+        int slot;
+        slot = mix(key) & mask;
+
+        while (slotHeads[slot] != NO_ENTRY && slotKeys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /*
+     * Doubles the slot table and re-inserts every key. Entry chains are kept as they are.
+     */
+    private void rehash()
+    {
+        final long[] oldKeys;
+        final int[]  oldHeads;
+        final int[]  oldTails;
+        final int[]  oldCounts;
+
+        oldKeys   = slotKeys;
+        oldHeads  = slotHeads;
+        oldTails  = slotTails;
+        oldCounts = slotCounts;
+
+        slotKeys   = new long[oldKeys.length * 2];
+        slotHeads  = new int[oldKeys.length * 2];
+        slotTails  = new int[oldKeys.length * 2];
+        slotCounts = new int[oldKeys.length * 2];
+        Arrays.fill(slotHeads, NO_ENTRY);
+
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldHeads[i] != NO_ENTRY)
+            {
+                final int slot;
+                slot = findSlot(oldKeys[i]);
+
+                slotKeys[slot]   = oldKeys[i];
+                slotHeads[slot]  = oldHeads[i];
+                slotTails[slot]  = oldTails[i];
+                slotCounts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Adds a value under the given key, after the values already under it.
+     *
+     * @param key   the key
+     * @param value the value to store
+     */
+    public void add(final long key,
+                    final int value)
+    {
+        if ((usedSlots + 1) * 2 > slotKeys.length)
+        {
+            rehash();
+        }
+        if (size == entryValues.length)
+        {
+            entryValues = Arrays.copyOf(entryValues, size * 2);
+            entryNext   = Arrays.copyOf(entryNext, size * 2);
+        }
+
+        final int slot;
+        slot = findSlot(key);
+
+        if (slotHeads[slot] == NO_ENTRY)
+        {
+            slotKeys[slot]  = key;
+            slotHeads[slot] = size;
+            usedSlots++;
+        }
+        else
+        {
+            entryNext[slotTails[slot]] = size;
+        }
+
+        entryValues[size] = value;
+        entryNext[size]   = NO_ENTRY;
+        slotTails[slot]   = size;
+        slotCounts[slot]++;
+        size++;
+    }
+
+    /**
+     * Returns the first entry stored under the key.
+     *
+     * @param key the key
+     * @return the first entry, or {@value NO_ENTRY} if the key is absent
+     */
+    public int head(final long key)
+    {
+        return slotHeads[findSlot(key)];
+    }
+
+    /**
+     * Returns the entry added after the given one under the same key.
+     *
+     * @param entry an entry returned by {@link #head(long)} or this method
+     * @return the next entry, or {@value NO_ENTRY} if there are no more
+     */
+    public int next(final int entry)
+    {
+        return entryNext[entry];
+    }
+
+    /**
+     * Returns the value stored in the given entry.
+     *
+     * @param entry an entry returned by {@link #head(long)} or {@link #next(int)}
+     * @return the value of the entry
+     */
+    public int value(final int entry)
+    {
+        return entryValues[entry];
+    }
+
+    /**
+     * Returns how many values are stored under the key.
+     *
+     * @param key the key
+     * @return the number of values under the key
+     */
+    public int count(final long key)
+    {
+        return slotCounts[findSlot(key)];
+    }
+
+    /**
+     * Passes every value stored under the key to the action, in the order they were added.
+     *
+     * @param key    the key
+     * @param action the action to run for each value
+     */
+    public void forEach(final long key,
+                        final IntConsumer action)
+    {
+        for (int entry = head(key); entry != NO_ENTRY; entry = entryNext[entry])
+        {
+            action.accept(entryValues[entry]);
+        }
+    }
+
+    /**
+     * Getter for the total number of values in the index.
+     *
+     * @return the number of values
+     */
+    public int size()
+    {
+        return size;
+    }
+}
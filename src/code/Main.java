@@ -1,6 +1,26 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 public class Main
 {
-    public static void main(final String[] args)
+    public static void main(final String[] args) throws IOException
     {
 // Create IPod objects
         final IPod ipod1;
@@ -106,5 +126,1256 @@ public class Main
             System.out.println("INCORRECT: iphone16_1 should not be equal to iphone16_3");
         }
         System.out.println();
+// Index every device by equality, along with two phones whose minutes are NaN
+        final DeviceEqualityIndex equalityIndex;
+        final IDevice[]           indexed;
+        final IPhone              nanPhone;
+        boolean                   indexMatchesEquals;
+        boolean                   negativeZeroRejected;
+        nanPhone = new IPhone(Double.NaN, "Rogers");
+        indexed  = new IDevice[] {ipod1, ipod2, ipod3, ipad1, ipad2, ipad3, iphone1, iphone2, iphone3,
+                                  iphone16_1, iphone16_2, iphone16_3, nanPhone, new IPhone(Double.NaN, "Rogers")};
+        equalityIndex = new DeviceEqualityIndex();
+        for (int i = 0; i < indexed.length; i++)
+        {
+            equalityIndex.add(indexed[i], i);
+        }
+        indexMatchesEquals = true;
+        for (final IDevice probe : indexed)
+        {
+            final List<Integer> expectedIds;
+            final List<Integer> foundIds;
+            expectedIds = new ArrayList<>();
+            foundIds    = new ArrayList<>();
+            for (int i = 0; i < indexed.length; i++)
+            {
+                if (probe.equals(indexed[i]))
+                {
+                    expectedIds.add(i);
+                }
+            }
+            equalityIndex.forEachEqual(probe, foundIds::add);
+            indexMatchesEquals &= foundIds.equals(expectedIds) && equalityIndex.countEqual(probe) == expectedIds.size();
+        }
+        try
+        {
+            new IPhone(-0.0, "Rogers");
+            negativeZeroRejected = false;
+        }
+        catch (final IllegalArgumentException e)
+        {
+            negativeZeroRejected = true;
+        }
+// Test that the index finds exactly the devices equals does, so NaN minutes match nothing
+        System.out.println("Equality Index Test:");
+        if (indexMatchesEquals && !nanPhone.equals(nanPhone) && equalityIndex.countEqual(nanPhone) == 0)
+        {
+            System.out.println("CORRECT: the index matches equals, and a phone with NaN minutes matches nothing");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the index should match equals, and a phone with NaN minutes should match nothing");
+        }
+        if (negativeZeroRejected)
+        {
+            System.out.println("CORRECT: -0.0 minutes are rejected, so they never reach the index");
+        }
+        else
+        {
+            System.out.println("INCORRECT: -0.0 minutes should be rejected before they reach the index");
+        }
+        System.out.println();
+// Write every device to a binary snapshot and read it back
+        final IDevice[]             devices;
+        final Path                  snapshotFile;
+        final DeviceSnapshot        snapshot;
+        final DeviceSnapshot.Cursor cursor;
+        final byte[]                corruptBytes;
+        final DeviceSnapshot.Cursor corruptCursor;
+        boolean                     closedTwice;
+        boolean                     corruptIdRejected;
+        devices      = new IDevice[] {ipod1, ipod2, ipod3, ipad1, ipad2, ipad3,
+                                      iphone1, iphone2, iphone3, iphone16_1, iphone16_2, iphone16_3};
+        snapshotFile = Files.createTempFile("devices", ".snapshot");
+        try (final DeviceSnapshotWriter writer = new DeviceSnapshotWriter(snapshotFile))
+        {
+            for (final IDevice device : devices)
+            {
+                writer.write(device);
+            }
+            // Closed again by try-with-resources, which must not write a second trailer
+            writer.close();
+            closedTwice = true;
+        }
+        catch (final IOException e)
+        {
+            closedTwice = false;
+        }
+        snapshot = DeviceSnapshot.open(snapshotFile);
+        cursor   = snapshot.cursor();
+// Point iphone1's record at a dictionary id past the end of the dictionary
+        corruptBytes = Files.readAllBytes(snapshotFile);
+        corruptBytes[DeviceSnapshot.HEADER_BYTES + 6 * DeviceSnapshot.RECORD_BYTES + 2] = 0x7F;
+        corruptCursor = DeviceSnapshot.wrap(ByteBuffer.wrap(corruptBytes)).cursor().moveTo(6);
+        try
+        {
+            corruptCursor.writeDetails(new StringBuilder());
+            corruptIdRejected = false;
+        }
+        catch (final IOException e)
+        {
+            corruptIdRejected = true;
+        }
+        try
+        {
+            corruptCursor.getPlanCarrier();
+            corruptIdRejected = false;
+        }
+        catch (final UncheckedIOException e)
+        {
+            corruptIdRejected &= e.getCause() != null;
+        }
+// Test that every device reads back equal and with the same details
+        System.out.println("Binary Snapshot Round-Trip Test:");
+        for (int i = 0; i < devices.length; i++)
+        {
+            cursor.moveTo(i);
+            if (cursor.toDevice().equals(devices[i]) && cursor.toString().equals(devices[i].toString()))
+            {
+                System.out.println("CORRECT: device " + i + " round-trips through the snapshot");
+            }
+            else
+            {
+                System.out.println("INCORRECT: device " + i + " should round-trip through the snapshot");
+            }
+        }
+        if (closedTwice && snapshot.size() == devices.length)
+        {
+            System.out.println("CORRECT: closing the writer twice leaves one valid snapshot");
+        }
+        else
+        {
+            System.out.println("INCORRECT: closing the writer twice should leave one valid snapshot");
+        }
+        if (corruptIdRejected)
+        {
+            System.out.println("CORRECT: a dictionary id past the end of the dictionary is reported as an IOException");
+        }
+        else
+        {
+            System.out.println("INCORRECT: a dictionary id past the end of the dictionary should be reported as an IOException");
+        }
+        Files.delete(snapshotFile);
+        System.out.println();
+// Update a fleet in bulk from several threads at once
+        final StripedDeviceFleet fleet;
+        final Thread[]           updaters;
+        fleet    = new StripedDeviceFleet(4);
+        updaters = new Thread[4];
+        for (int i = 0; i < 100; i++)
+        {
+            fleet.add(new IPad(false, i % 2 == 0 ? "iPadOS 17" : "iPadOS 18"));
+            fleet.add(new IPod(i, 10));
+        }
+        for (int i = 0; i < updaters.length; i++)
+        {
+            final double maxVolumeDB;
+            maxVolumeDB = 90.0 - 10.0 * i;
+            updaters[i] = new Thread(() ->
+            {
+                fleet.setHasCase("iPadOS 17", true);
+                fleet.clampCurrentVolumeDB(maxVolumeDB);
+            });
+            updaters[i].start();
+        }
+        for (final Thread updater : updaters)
+        {
+            try
+            {
+                updater.join();
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+// Test that every update was applied exactly as if run one after another
+        final int[] wrong;
+        wrong = new int[1];
+        fleet.forEach(device ->
+        {
+            if (device instanceof IPad)
+            {
+                final IPad iPad;
+                iPad = (IPad) device;
+                if (iPad.hasCase() != iPad.getOSVersion().equals("iPadOS 17"))
+                {
+                    wrong[0]++;
+                }
+            }
+            else if (((IPod) device).getCurrentVolumeDB() > 60.0)
+            {
+                wrong[0]++;
+            }
+        });
+        System.out.println("Striped Bulk Update Test:");
+        if (wrong[0] == 0 && fleet.getIPadCount() == 100 && fleet.getIPodCount() == 100)
+        {
+            System.out.println("CORRECT: every iPad and iPod was updated");
+        }
+        else
+        {
+            System.out.println("INCORRECT: " + wrong[0] + " devices were not updated");
+        }
+        System.out.println();
+// Query the devices without instanceof checks
+        final FleetQuery query;
+        query = FleetQuery.of(Arrays.asList(devices));
+// Test that the query totals match the devices created above
+        System.out.println("Fleet Query Test:");
+        if (query.iPhones().minutesByCarrier().get("Verizon").getSum() == 420.0)
+        {
+            System.out.println("CORRECT: Verizon phones have 420 minutes in total");
+        }
+        else
+        {
+            System.out.println("INCORRECT: Verizon phones should have 420 minutes in total");
+        }
+        if (query.iPhone16s().countByMemoryGigabytes().equals(Map.of(256, 1L, 512, 2L)))
+        {
+            System.out.println("CORRECT: there is one 256 GB and two 512 GB IPhone16s");
+        }
+        else
+        {
+            System.out.println("INCORRECT: there should be one 256 GB and two 512 GB IPhone16s");
+        }
+        System.out.println();
+// Copy every device into an off-heap store and read it back
+        final OffHeapDeviceStore store;
+        store = new OffHeapDeviceStore();
+// Test that every device reads back equal and with the same details
+        System.out.println("Off-Heap Store Round-Trip Test:");
+        for (int i = 0; i < devices.length; i++)
+        {
+            final int     index;
+            final IDevice copy;
+            index = store.add(devices[i]);
+            if (devices[i] instanceof IPhone16)
+            {
+                copy = store.toIPhone16(index);
+            }
+            else if (devices[i] instanceof IPhone)
+            {
+                copy = store.toIPhone(index);
+            }
+            else if (devices[i] instanceof IPod)
+            {
+                copy = store.toIPod(index);
+            }
+            else
+            {
+                copy = store.toIPad(index);
+            }
+            if (copy.equals(devices[i]) && copy.toString().equals(devices[i].toString()))
+            {
+                System.out.println("CORRECT: device " + i + " round-trips through the off-heap store");
+            }
+            else
+            {
+                System.out.println("INCORRECT: device " + i + " should round-trip through the off-heap store");
+            }
+        }
+        System.out.println();
+// Write every device, and a phone whose carrier needs a surrogate pair, through the smallest buffers
+        final List<IDevice>         detailDevices;
+        final StringBuilder         expectedDetails;
+        boolean                     detailsMatch;
+        boolean                     tinyBufferRejected;
+        detailDevices   = new ArrayList<>(Arrays.asList(devices));
+        detailDevices.add(new IPhone(75.0, "T\u00e9lus \uD83D\uDCF6"));
+        expectedDetails = new StringBuilder();
+        for (final IDevice device : detailDevices)
+        {
+            expectedDetails.append(device).append(System.lineSeparator());
+        }
+        detailsMatch = true;
+        for (int bufferSize = 2; bufferSize <= 3; bufferSize++)
+        {
+            final ByteArrayOutputStream detailBytes;
+            final DeviceDetailsWriter   detailsWriter;
+            detailBytes   = new ByteArrayOutputStream();
+            detailsWriter = new DeviceDetailsWriter(Channels.newChannel(detailBytes), bufferSize, StandardCharsets.UTF_8);
+            detailsWriter.writeAll(detailDevices);
+            detailsWriter.flush();
+            detailsMatch &= detailBytes.toString(StandardCharsets.UTF_8).equals(expectedDetails.toString());
+        }
+        try
+        {
+            new DeviceDetailsWriter(Channels.newChannel(new ByteArrayOutputStream()), 1);
+            tinyBufferRejected = false;
+        }
+        catch (final IllegalArgumentException e)
+        {
+            tinyBufferRejected = true;
+        }
+// Test that the bulk writer produces exactly the toString text, and that a one-char buffer is rejected
+        System.out.println("Details Writer Test:");
+        if (detailsMatch)
+        {
+            System.out.println("CORRECT: the written details match toString, even through a two-char buffer");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the written details should match toString, even through a two-char buffer");
+        }
+        if (tinyBufferRejected)
+        {
+            System.out.println("CORRECT: a buffer too small for a surrogate pair is rejected");
+        }
+        else
+        {
+            System.out.println("INCORRECT: a buffer too small for a surrogate pair should be rejected");
+        }
+        System.out.println();
+
+// Test that cached renderings follow changes to the case and the volume
+        final IPad   cachedIPad;
+        final IPod   cachedIPod;
+        final String caseBefore;
+        final String volumeBefore;
+        cachedIPad   = new IPad(false, "iPadOS 17");
+        cachedIPod   = new IPod(40.0, 12);
+        caseBefore   = cachedIPad.toString();
+        volumeBefore = cachedIPod.toString();
+        cachedIPad.setHasCase(true);
+        cachedIPod.setCurrentVolumeDB(55.0);
+        System.out.println("Cached Rendering Test:");
+        if (caseBefore.contains("Has Case: false") && cachedIPad.toString().contains("Has Case: true"))
+        {
+            System.out.println("CORRECT: the iPad rendering shows the new case");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the iPad rendering should show the new case");
+        }
+        if (volumeBefore.contains("(dB): 40.0") && cachedIPod.toString().contains("(dB): 55.0"))
+        {
+            System.out.println("CORRECT: the iPod rendering shows the new volume");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the iPod rendering should show the new volume");
+        }
+        System.out.println();
+// Record devices and changes in a journal, then recover them as if after a restart
+        final Path          journalDirectory;
+        final boolean       toggledCase;
+        final DeviceJournal recovered;
+        journalDirectory = Files.createTempDirectory("journal");
+        toggledCase      = !((IPad) devices[3]).hasCase();
+        try (final DeviceJournal journal = DeviceJournal.open(journalDirectory))
+        {
+            for (final IDevice device : devices)
+            {
+                journal.add(device);
+            }
+            journal.checkpoint();
+            journal.setHasCase(3, toggledCase);
+            journal.setCurrentVolumeDB(0, 12.5);
+        }
+        recovered = DeviceJournal.open(journalDirectory);
+        System.out.println("Journal Recovery Test:");
+        if (recovered.size() == devices.length &&
+            ((IPad) recovered.get(3)).hasCase() == toggledCase &&
+            ((IPod) recovered.get(0)).getCurrentVolumeDB() == 12.5)
+        {
+            System.out.println("CORRECT: the checkpoint and the changes after it were recovered");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the checkpoint and the changes after it should be recovered");
+        }
+        recovered.close();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(journalDirectory))
+        {
+            for (final Path file : files)
+            {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalDirectory);
+        System.out.println();
+// Deduplicate the devices followed by copies of themselves, and compare with a HashSet
+        final Path          dedupDirectory;
+        final Set<IDevice>  distinctDevices;
+        final List<Boolean> expectedAdds;
+        final List<Boolean> actualAdds;
+        dedupDirectory  = Files.createTempDirectory("dedup");
+        distinctDevices = new HashSet<>();
+        expectedAdds    = new ArrayList<>();
+        actualAdds      = new ArrayList<>();
+        try (final DeviceDeduplicator deduplicator = new DeviceDeduplicator(DeviceDeduplicator.MIN_MEMORY_BYTES,
+                                                                            devices.length,
+                                                                            dedupDirectory))
+        {
+            for (int pass = 0; pass < 2; pass++)
+            {
+                for (final IDevice device : devices)
+                {
+                    expectedAdds.add(distinctDevices.add(device));
+                    actualAdds.add(deduplicator.add(device));
+                }
+            }
+        }
+        System.out.println("Streaming Dedup Test:");
+        if (actualAdds.equals(expectedAdds))
+        {
+            System.out.println("CORRECT: the deduplicator keeps the same " + distinctDevices.size() + " devices as a HashSet");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the deduplicator should keep the same devices as a HashSet");
+        }
+        Files.delete(dedupDirectory);
+        System.out.println();
+// Index the phones' minutes and the iPods' volumes, then add more devices after indexing
+        final DeviceRegistry   rangeRegistry;
+        final DoubleRangeIndex minutesIndex;
+        final DoubleRangeIndex volumeIndex;
+        final List<Integer>    loudIPods;
+        rangeRegistry = new DeviceRegistry();
+        rangeRegistry.addIPhone(120.0, "Verizon");
+        rangeRegistry.addIPhone(180.0, "T-Mobile");
+        rangeRegistry.addIPod(80.0, 300);
+        rangeRegistry.addIPod(85.5, 400);
+        minutesIndex = rangeRegistry.indexIPhoneMinutes();
+        volumeIndex  = rangeRegistry.indexIPodVolumeDB();
+        rangeRegistry.addIPhone(120.0, "AT&T");
+        rangeRegistry.addIPod(70.0, 300);
+        loudIPods = new ArrayList<>();
+        volumeIndex.forEachAbove(75.0, loudIPods::add);
+// Test that the indexes answer range queries over every device, including the later ones
+        System.out.println("Range Index Test:");
+        if (minutesIndex.countBelow(150.0) == 2 && minutesIndex.getPercentile(0.5) == 120.0)
+        {
+            System.out.println("CORRECT: two phones have fewer than 150 minutes and the median is 120");
+        }
+        else
+        {
+            System.out.println("INCORRECT: two phones should have fewer than 150 minutes and the median should be 120");
+        }
+        if (loudIPods.equals(List.of(0, 1)) && volumeIndex.countBetween(70.0, 80.0) == 1)
+        {
+            System.out.println("CORRECT: iPods 0 and 1 are above 75 dB and one is from 70 up to 80 dB");
+        }
+        else
+        {
+            System.out.println("INCORRECT: iPods 0 and 1 should be above 75 dB and one should be from 70 up to 80 dB");
+        }
+        System.out.println();
+// Report every device to two sinks on several threads, a few devices per chunk
+        final StringBuilder expectedReport;
+        final StringBuilder firstReport;
+        final StringBuilder secondReport;
+        expectedReport = new StringBuilder();
+        firstReport    = new StringBuilder();
+        secondReport   = new StringBuilder();
+        for (final IDevice device : devices)
+        {
+            expectedReport.append(device).append(System.lineSeparator());
+        }
+        try (final DeviceReportRunner reportRunner = new DeviceReportRunner(4, 2, 3))
+        {
+            reportRunner.run(Arrays.asList(devices), List.of(firstReport::append, secondReport::append));
+        }
+// Test that both sinks received every device in order, as printDetails would print them
+        System.out.println("Report Runner Test:");
+        if (firstReport.toString().contentEquals(expectedReport) && secondReport.toString().contentEquals(expectedReport))
+        {
+            System.out.println("CORRECT: both sinks received the details of every device in order");
+        }
+        else
+        {
+            System.out.println("INCORRECT: both sinks should receive the details of every device in order");
+        }
+        System.out.println();
+// Report a list that throws an Error part way through, on a thread that may be left waiting
+        final Throwable[] reportFailure;
+        final Thread      failingReport;
+        reportFailure = new Throwable[1];
+        failingReport = new Thread(() ->
+        {
+            final List<IDevice> failing;
+            failing = new AbstractList<>()
+            {
+                @Override
+                public IDevice get(final int index)
+                {
+                    if (index == 7)
+                    {
+                        throw new AssertionError("device 7 is broken");
+                    }
+                    return devices[index % devices.length];
+                }
+
+                @Override
+                public int size()
+                {
+                    return 40;
+                }
+            };
+            try (final DeviceReportRunner reportRunner = new DeviceReportRunner(2, 1, 1))
+            {
+                reportRunner.run(failing, List.of(chunk -> { }));
+            }
+            catch (final IOException | RuntimeException | Error e)
+            {
+                reportFailure[0] = e;
+            }
+        });
+        failingReport.setDaemon(true);
+        failingReport.start();
+        try
+        {
+            failingReport.join(10_000L);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+// Test that the run returned and rethrew the renderer's Error instead of hanging
+        if (!failingReport.isAlive() && reportFailure[0] instanceof AssertionError)
+        {
+            System.out.println("CORRECT: a renderer's Error fails the report instead of hanging it");
+        }
+        else
+        {
+            System.out.println("INCORRECT: a renderer's Error should fail the report instead of hanging it");
+        }
+        System.out.println();
+// Test that the type-specialized paths agree with the virtual calls, including for a registry view
+        final List<IDevice> dispatched;
+        boolean             dispatchAgrees;
+        dispatched = new ArrayList<>(Arrays.asList(devices));
+        dispatched.add(rangeRegistry.getIPod(0));
+        dispatchAgrees = true;
+        for (int i = 0; i < dispatched.size(); i++)
+        {
+            final IDevice device;
+            final IDevice previous;
+            device   = dispatched.get(i);
+            previous = dispatched.get(Math.max(0, i - 1));
+            dispatchAgrees &= DeviceDispatch.hashCode(device) == device.hashCode()
+                              && DeviceDispatch.equals(device, previous) == device.equals(previous)
+                              && DeviceDispatch.toString(device).equals(device.toString());
+        }
+        System.out.println("Sealed Dispatch Test:");
+        if (dispatchAgrees)
+        {
+            System.out.println("CORRECT: every type-specialized call matches the virtual call");
+        }
+        else
+        {
+            System.out.println("INCORRECT: every type-specialized call should match the virtual call");
+        }
+        System.out.println();
+// Sort the iPods by songs and the phones by minutes with the radix sort and with List.sort
+        final List<IPod>   radixIPods;
+        final List<IPod>   sortedIPods;
+        final List<IPhone> radixIPhones;
+        final List<IPhone> sortedIPhones;
+        final DeviceSort   deviceSort;
+        radixIPods    = new ArrayList<>(List.of(ipod2, ipod1, ipod3, cachedIPod));
+        sortedIPods   = new ArrayList<>(radixIPods);
+        radixIPhones  = new ArrayList<>(List.of(iphone2, iphone1, iphone3));
+        sortedIPhones = new ArrayList<>(radixIPhones);
+        deviceSort    = new DeviceSort();
+        deviceSort.sortByInt(radixIPods, IPod::getNumSongsStored);
+        deviceSort.sortByDouble(radixIPhones, IPhone::getRemainingPlanMinutes);
+        sortedIPods.sort(Comparator.comparingInt(IPod::getNumSongsStored));
+        sortedIPhones.sort(Comparator.comparingDouble(IPhone::getRemainingPlanMinutes));
+// Test that the radix sort gives the same order as List.sort, keeping ties in place
+        System.out.println("Radix Sort Test:");
+        if (radixIPods.equals(sortedIPods) && radixIPods.get(1) == ipod1 && radixIPods.get(2) == ipod3 &&
+            radixIPhones.equals(sortedIPhones) && radixIPhones.get(0) == iphone1)
+        {
+            System.out.println("CORRECT: the radix sort orders the iPods and phones like List.sort");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the radix sort should order the iPods and phones like List.sort");
+        }
+        System.out.println();
+// Diff yesterday's snapshot of a fleet against today's, after changing, removing and adding devices
+        final IPod                    diffIPod;
+        final IPad                    diffIPad;
+        final List<IDevice>           diffFleet;
+        final Path                    yesterdayFile;
+        final Path                    todayFile;
+        final List<IDevice>           diffAdded;
+        final List<IDevice>           diffRemoved;
+        final List<IDevice>           diffChanged;
+        final SnapshotDiff.DiffResult diffResult;
+        diffIPod      = new IPod(60.0, 200);
+        diffIPad      = new IPad(false, "iPadOS 18");
+        diffFleet     = new ArrayList<>(List.of(new IPad(false, "iPadOS 17"), diffIPad, new IPod(50.0, 100),
+                                                diffIPod, new IPod(70.0, 300), new IPhone(100.0, "Rogers")));
+        yesterdayFile = Files.createTempFile("yesterday", ".snapshot");
+        todayFile     = Files.createTempFile("today", ".snapshot");
+        diffAdded     = new ArrayList<>();
+        diffRemoved   = new ArrayList<>();
+        diffChanged   = new ArrayList<>();
+        writeSnapshot(yesterdayFile, diffFleet);
+        diffIPod.setCurrentVolumeDB(80.0);
+        diffIPad.setHasCase(true);
+        diffFleet.remove(4);
+        diffFleet.add(new IPhone(250.0, "Bell"));
+        writeSnapshot(todayFile, diffFleet);
+        diffResult = SnapshotDiff.diff(DeviceSnapshot.open(yesterdayFile), DeviceSnapshot.open(todayFile),
+                                       new SnapshotDiff.Listener()
+                                       {
+                                           @Override
+                                           public void added(final long afterIndex,
+                                                             final DeviceSnapshot.Cursor after)
+                                           {
+                                               diffAdded.add(after.toDevice());
+                                           }
+
+                                           @Override
+                                           public void removed(final long beforeIndex,
+                                                               final DeviceSnapshot.Cursor before)
+                                           {
+                                               diffRemoved.add(before.toDevice());
+                                           }
+
+                                           @Override
+                                           public void changed(final long beforeIndex,
+                                                               final DeviceSnapshot.Cursor before,
+                                                               final long afterIndex,
+                                                               final DeviceSnapshot.Cursor after)
+                                           {
+                                               diffChanged.add(after.toDevice());
+                                           }
+                                       });
+        Files.delete(yesterdayFile);
+        Files.delete(todayFile);
+// Test that the diff finds only the new phone, the removed iPod and the changed iPod and iPad
+        System.out.println("Snapshot Diff Test:");
+        if (diffAdded.equals(List.of(new IPhone(250.0, "Bell"))) &&
+            diffRemoved.equals(List.of(new IPod(70.0, 300))) &&
+            diffChanged.size() == 2 &&
+            diffChanged.get(0).toString().equals(diffIPod.toString()) &&
+            diffChanged.get(1).toString().equals(diffIPad.toString()) &&
+            diffResult.getAddedCount() == 1 && diffResult.getRemovedCount() == 1 && diffResult.getChangedCount() == 2)
+        {
+            System.out.println("CORRECT: the diff reports only the added, removed and changed devices");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the diff should report only the added, removed and changed devices");
+        }
+        System.out.println();
+// Commit devices through this thread's builder without constructing them, then reject a bad IPhone16
+        final DeviceBuilder  builder;
+        final DeviceListSink builtDevices;
+        boolean              builderRejected;
+        builder      = DeviceBuilder.forCurrentThread();
+        builtDevices = new DeviceListSink();
+        builder.remainingPlanMinutes(100.0).planCarrier("Verizon").highResCamera(true).memoryGigabytes(512)
+               .commitIPhone16(builtDevices);
+        builder.currentVolumeDB(80.0).numSongsStored(300).commitIPod(builtDevices);
+        builder.hasCase(true).OSVersion("iPadOS 17").commitIPad(builtDevices);
+        try
+        {
+            builder.remainingPlanMinutes(100.0).planCarrier("Verizon").highResCamera(true).memoryGigabytes(64)
+                   .commitIPhone16(builtDevices);
+            builderRejected = false;
+        }
+        catch (final IllegalArgumentException e)
+        {
+            builderRejected = true;
+        }
+// Test that the builder commits the same devices the constructors create, and nothing invalid
+        System.out.println("Device Builder Test:");
+        if (builtDevices.getDevices().equals(List.of(iphone16_1, ipod1, new IPad(true, "iPadOS 17"))) &&
+            builtDevices.getDevices().get(0).toString().equals(iphone16_1.toString()) &&
+            builderRejected)
+        {
+            System.out.println("CORRECT: the builder commits valid devices and rejects invalid ones");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the builder should commit valid devices and reject invalid ones");
+        }
+        System.out.println();
+// Render a few devices through a small cache, change a cached iPad, then overflow the cache
+        final RenderingCache renderingCache;
+        final IPad           renderedIPad;
+        final String         caselessDetails;
+        boolean              cacheMatches;
+        renderingCache = new RenderingCache(4, 1);
+        renderedIPad   = new IPad(true, "iPadOS 16");
+        cacheMatches   = renderingCache.get(renderedIPad).equals(renderedIPad.toString()) &&
+                         renderingCache.get(iphone16_1).equals(iphone16_1.toString()) &&
+                         renderingCache.get(renderedIPad).equals(renderedIPad.toString());
+        renderedIPad.setHasCase(false);
+        caselessDetails = renderingCache.get(renderedIPad);
+        for (int i = 0; i < 20; i++)
+        {
+            cacheMatches &= renderingCache.get(new IPod(50.0, i)).equals(new IPod(50.0, i).toString());
+        }
+// Test that the cache serves current details, notices the changed iPad and stays within its bound
+        System.out.println("Rendering Cache Test:");
+        if (cacheMatches &&
+            caselessDetails.equals(renderedIPad.toString()) &&
+            renderingCache.size() <= renderingCache.getMaximumSize() &&
+            renderingCache.getStats().getHitCount() == 1 &&
+            renderingCache.getStats().getInvalidationCount() == 1)
+        {
+            System.out.println("CORRECT: the cache serves current details within its bound");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the cache should serve current details within its bound");
+        }
+        System.out.println();
+// Shard a fleet by carrier, update it in bulk and query every shard at once
+        final List<Set<String>> shardedCarriers;
+        final long              shardedCases;
+        final long              shardedClamped;
+        final long              shardedRemoved;
+        final long              shardedLeft;
+        final int               shardedSize;
+        try (final ShardedDeviceFleet shardedFleet = new ShardedDeviceFleet(4, ShardedDeviceFleet.Partitioning.CARRIER))
+        {
+            final List<IDevice> shardedDevices;
+            shardedDevices = new ArrayList<>();
+            for (int i = 0; i < 40; i++)
+            {
+                shardedDevices.add(new IPhone(10.0 + i, i % 3 == 0 ? "Rogers" : i % 3 == 1 ? "Bell" : "Telus"));
+                shardedDevices.add(new IPad(false, i % 2 == 0 ? "iPadOS 17" : "iPadOS 18"));
+            }
+            shardedFleet.addAll(shardedDevices);
+            for (int i = 0; i < 10; i++)
+            {
+                shardedFleet.add(new IPod(90.0, i));
+            }
+            shardedCarriers = shardedFleet.query(shard ->
+            {
+                final Set<String> carriers;
+                carriers = new HashSet<>();
+                for (final IDevice device : shard)
+                {
+                    if (device instanceof IPhone iPhone)
+                    {
+                        carriers.add(iPhone.getPlanCarrier());
+                    }
+                }
+                return carriers;
+            });
+            shardedCases   = shardedFleet.setHasCase("iPadOS 17", true);
+            shardedClamped = shardedFleet.clampCurrentVolumeDB(60.0);
+            shardedRemoved = shardedFleet.removeIf(device -> device instanceof IPhone iPhone &&
+                                                             iPhone.getPlanCarrier().equals("Bell"));
+            shardedLeft    = shardedFleet.count(device -> device instanceof IPad iPad && iPad.hasCase());
+            shardedSize    = shardedFleet.getDeviceCount();
+        }
+        int carrierShards = 0;
+        for (final Set<String> carriers : shardedCarriers)
+        {
+            carrierShards += carriers.size();
+        }
+// Test that each carrier lives in one shard and the bulk updates reach every shard
+        System.out.println("Sharded Fleet Test:");
+        if (shardedCarriers.size() == 4 && carrierShards == 3 &&
+            shardedCases == 20 && shardedClamped == 10 && shardedRemoved == 13 &&
+            shardedLeft == 20 && shardedSize == 77)
+        {
+            System.out.println("CORRECT: the sharded fleet partitions, updates and queries every shard");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the sharded fleet should partition, update and query every shard");
+        }
+        System.out.println();
+// Change an IPod and an IPad several times while a feed with a long window is running
+        final DeviceChangeFeed              changeFeed;
+        final List<DeviceChangeFeed.Change> fedChanges;
+        final IPod                          fedIPod;
+        final IPad                          fedIPad;
+        final DeviceChangeFeed.Stats        feedStats;
+        changeFeed = new DeviceChangeFeed(64, 10_000_000_000L, 1_024);
+        fedChanges = new ArrayList<>();
+        fedIPod    = new IPod(80.0, 12);
+        fedIPad    = new IPad(false, "iPadOS 18");
+        changeFeed.subscribe(fedChanges::addAll);
+        changeFeed.start();
+        fedIPod.setCurrentVolumeDB(70.0);
+        fedIPad.setHasCase(true);
+        fedIPod.compareAndSetCurrentVolumeDB(70.0, 65.0);
+        fedIPod.compareAndSetCurrentVolumeDB(70.0, 60.0);
+        fedIPod.clampCurrentVolumeDB(50.0);
+        fedIPod.clampCurrentVolumeDB(55.0);
+        fedIPad.compareAndSetHasCase(true, false);
+        changeFeed.close();
+        feedStats = changeFeed.getStats();
+// Test that only real changes were captured, coalesced per device and delivered on close
+        System.out.println("Device Change Feed Test:");
+        if (fedChanges.size() == 2 &&
+            fedChanges.get(0).getDevice() == fedIPod && fedChanges.get(0).getCurrentVolumeDB() == 50.0 &&
+            fedChanges.get(0).getUpdateCount() == 3 &&
+            fedChanges.get(1).getDevice() == fedIPad && !fedChanges.get(1).hasCase() &&
+            feedStats.getPublishedCount() == 5 && feedStats.getCoalescedCount() == 3 &&
+            feedStats.getDroppedCount() == 0 && feedStats.getBatchCount() == 1 && feedStats.getBacklog() == 0)
+        {
+            System.out.println("CORRECT: the feed coalesces each device's changes into one batch");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the feed should coalesce each device's changes into one batch");
+        }
+        System.out.println();
+// Race four threads changing the same IPods and IPads while a feed with no window is running
+        final DeviceChangeFeed     racedFeed;
+        final Map<IDevice, Double> racedLatest;
+        final IPod[]               racedIPods;
+        final IPad[]               racedIPads;
+        final Thread[]             racers;
+        racedFeed   = new DeviceChangeFeed(1 << 16, 0L, 1_024);
+        racedLatest = new IdentityHashMap<>();
+        racedIPods  = new IPod[8];
+        racedIPads  = new IPad[8];
+        racers      = new Thread[4];
+        for (int i = 0; i < racedIPods.length; i++)
+        {
+            racedIPods[i] = new IPod(50.0, i);
+            racedIPads[i] = new IPad(false, "iPadOS 18");
+        }
+        racedFeed.subscribe(changes ->
+        {
+            for (final DeviceChangeFeed.Change change : changes)
+            {
+                racedLatest.put(change.getDevice(),
+                                change.getDevice() instanceof IPad ? (change.hasCase() ? 1.0 : 0.0)
+                                                                   : change.getCurrentVolumeDB());
+            }
+        });
+        racedFeed.start();
+        for (int i = 0; i < racers.length; i++)
+        {
+            final int racer;
+            racer     = i;
+            racers[i] = new Thread(() ->
+            {
+                for (int j = 0; j < 4_000; j++)
+                {
+                    final int device;
+                    device = (j + racer) % racedIPods.length;
+                    racedIPods[device].setCurrentVolumeDB((j * 7 + racer) % 100);
+                    racedIPads[device].compareAndSetHasCase(racedIPads[device].hasCase(),
+                                                            !racedIPads[device].hasCase());
+                }
+            });
+            racers[i].start();
+        }
+        for (final Thread racer : racers)
+        {
+            try
+            {
+                racer.join();
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        racedFeed.close();
+        int racedStale = 0;
+        for (int i = 0; i < racedIPods.length; i++)
+        {
+            if (!Double.valueOf(racedIPods[i].getCurrentVolumeDB()).equals(racedLatest.get(racedIPods[i])) ||
+                !Double.valueOf(racedIPads[i].hasCase() ? 1.0 : 0.0).equals(racedLatest.get(racedIPads[i])))
+            {
+                racedStale++;
+            }
+        }
+// Test that the last change delivered for every device is the value the device holds
+        System.out.println("Concurrent Change Feed Test:");
+        if (racedFeed.getStats().getDroppedCount() == 0 && racedStale == 0)
+        {
+            System.out.println("CORRECT: the feed's last change for each device matches the device");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the feed's last change for each device should match the device");
+        }
+        System.out.println();
+// Hand registry views to code that dispatches on device type, and change a registry iPad under a feed
+        final DeviceRegistry                viewRegistry;
+        final IDevice[]                     viewed;
+        final IDevice[]                     originals;
+        final DeviceEqualityIndex           viewIndex;
+        final DeviceRegistry                copiedRegistry;
+        final DeviceChangeFeed              viewFeed;
+        final List<DeviceChangeFeed.Change> viewChanges;
+        boolean                             viewsMaterialize;
+        viewRegistry   = new DeviceRegistry();
+        originals      = new IDevice[] {iphone1, iphone16_1, ipod1, ipad1};
+        viewIndex      = new DeviceEqualityIndex();
+        copiedRegistry = new DeviceRegistry();
+        for (int i = 0; i < originals.length; i++)
+        {
+            viewRegistry.add(originals[i]);
+            viewIndex.add(originals[i], i);
+        }
+        viewed           = new IDevice[] {viewRegistry.getIPhone(0), viewRegistry.getIPhone16(0),
+                                          viewRegistry.getIPod(0), viewRegistry.getIPad(0)};
+        viewsMaterialize = true;
+        for (int i = 0; i < viewed.length; i++)
+        {
+            copiedRegistry.add(viewed[i]);
+            viewsMaterialize &= DeviceRegistry.materialize(viewed[i]).equals(originals[i]) &&
+                                DeviceRegistry.materialize(viewed[i]).getClass() == originals[i].getClass() &&
+                                viewed[i].toString().equals(originals[i].toString()) &&
+                                viewIndex.countEqual(viewed[i]) == viewIndex.countEqual(originals[i]) &&
+                                SnapshotDiff.ORDER.compare(viewed[i], originals[i]) == 0;
+        }
+        viewsMaterialize &= copiedRegistry.getIPhoneCount() == 1 && copiedRegistry.getIPhone16Count() == 1 &&
+                            copiedRegistry.getIPodCount() == 1 && copiedRegistry.getIPadCount() == 1;
+        viewFeed    = new DeviceChangeFeed(64, 10_000_000_000L, 1_024);
+        viewChanges = new ArrayList<>();
+        viewFeed.subscribe(viewChanges::addAll);
+        viewFeed.start();
+        viewRegistry.setHasCase(0, !ipad1.hasCase());
+        viewRegistry.getIPad(0).setHasCase(ipad1.hasCase());
+        viewFeed.close();
+// Test that views act as the devices they show and that registry changes reach the feed
+        System.out.println("Registry View Test:");
+        if (viewsMaterialize)
+        {
+            System.out.println("CORRECT: registry views materialize into, index and sort as the devices they show");
+        }
+        else
+        {
+            System.out.println("INCORRECT: registry views should materialize into, index and sort as the devices they show");
+        }
+        if (viewChanges.size() == 1 && viewChanges.get(0).getUpdateCount() == 2 &&
+            viewChanges.get(0).hasCase() == ipad1.hasCase() &&
+            viewChanges.get(0).getDevice() instanceof DeviceRegistry.IPadView)
+        {
+            System.out.println("CORRECT: case changes made through the registry and its views reach the feed");
+        }
+        else
+        {
+            System.out.println("INCORRECT: case changes made through the registry and its views should reach the feed");
+        }
+        System.out.println();
+// Record an IPhone's minutes and an IPod's volume at every snapshot for two days
+        final DeviceHistory                 history;
+        final List<Double>                  readMinutes;
+        final List<DeviceHistory.Aggregate> dailyVolumes;
+        final int                           readCount;
+        history     = new DeviceHistory();
+        readMinutes = new ArrayList<>();
+        for (int minute = 0; minute < 2 * 24 * 60; minute++)
+        {
+            history.append(1L, minute * 60_000L, new IPhone(3_000.0 - minute / 10, "Rogers"));
+            history.append(2L, minute * 60_000L + minute % 3, minute < 24 * 60 ? 40.0 : 60.5);
+        }
+        readCount    = history.read(1L, 60_000L, 3 * 60_000L, (timestampMillis, value) -> readMinutes.add(value));
+        dailyVolumes = history.aggregate(2L, 0L, Long.MAX_VALUE, 24 * 60 * 60_000L);
+// Test that the points read back exactly, aggregate by day and take far less than 16 bytes each
+        System.out.println("Device History Test:");
+        if (readCount == 3 && readMinutes.equals(List.of(3_000.0, 3_000.0, 3_000.0)) &&
+            dailyVolumes.size() == 2 &&
+            dailyVolumes.get(0).getCount() == 24 * 60 && dailyVolumes.get(0).getMean() == 40.0 &&
+            dailyVolumes.get(1).getMin() == 60.5 && dailyVolumes.get(1).getLast() == 60.5 &&
+            history.getPointCount() == 4 * 24 * 60 && history.getCompressionRatio() > 10.0)
+        {
+            System.out.println("CORRECT: the history reads back, aggregates and compresses the series");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the history should read back, aggregate and compress the series");
+        }
+        System.out.println();
+// Fill a small table, then the shared tables, and create devices with new carriers and OS versions
+        final SymbolTable         smallTable;
+        final boolean             smallTableBounded;
+        final IPad                internedIPad;
+        final IPad                inlineIPad1;
+        final IPad                inlineIPad2;
+        final IPhone              inlinePhone;
+        final DeviceRegistry      inlineRegistry;
+        final DeviceEqualityIndex inlineIndex;
+        smallTable        = new SymbolTable(2);
+        smallTableBounded = smallTable.encode("a") == 0 && smallTable.encode("b") == 1 &&
+                            smallTable.encode("c") == SymbolTable.NO_SYMBOL && smallTable.encode("a") == 0 &&
+                            smallTable.find("c") == SymbolTable.NO_SYMBOL && "b".equals(smallTable.decode(1)) &&
+                            smallTable.size() == 2;
+        internedIPad      = new IPad(false, "iPadOS 17");
+        for (int i = 0; IPad.OS_VERSIONS.size() < SymbolTable.SHARED_MAX_SIZE; i++)
+        {
+            IPad.OS_VERSIONS.encode("Untrusted OS " + i);
+        }
+        for (int i = 0; IPhone.CARRIERS.size() < SymbolTable.SHARED_MAX_SIZE; i++)
+        {
+            IPhone.CARRIERS.encode("Untrusted Carrier " + i);
+        }
+        inlineIPad1    = new IPad(false, "iPadOS 99 beta");
+        inlineIPad2    = new IPad(true, new String("iPadOS 99 beta"));
+        inlinePhone    = new IPhone(120.0, "Unlisted Mobile");
+        inlineRegistry = new DeviceRegistry();
+        inlineIndex    = new DeviceEqualityIndex();
+        inlineRegistry.add(inlineIPad1);
+        inlineRegistry.add(inlinePhone);
+        inlineIndex.add(inlineIPad1, 0);
+        inlineIndex.add(new IPad(false, null), 1);
+        inlineIndex.add(internedIPad, 2);
+// Test that bounded tables stop growing and that devices round-trip and compare equal either way
+        System.out.println("Symbol Table Test:");
+        if (smallTableBounded && IPad.OS_VERSIONS.size() == SymbolTable.SHARED_MAX_SIZE &&
+            IPad.OS_VERSIONS.encode("iPadOS 99 beta") == SymbolTable.NO_SYMBOL)
+        {
+            System.out.println("CORRECT: a full table hands out no new codes");
+        }
+        else
+        {
+            System.out.println("INCORRECT: a full table should hand out no new codes");
+        }
+        if (internedIPad.equals(new IPad(true, "iPadOS 17")) &&
+            internedIPad.hashCode() == new IPad(true, "iPadOS 17").hashCode() &&
+            "iPadOS 17".equals(internedIPad.getOSVersion()) &&
+            "iPadOS 17".equals(new IPad(false, "iPadOS 17").getOSVersion()))
+        {
+            System.out.println("CORRECT: interned devices round-trip and compare equal");
+        }
+        else
+        {
+            System.out.println("INCORRECT: interned devices should round-trip and compare equal");
+        }
+        if (inlineIPad1.equals(inlineIPad2) && inlineIPad1.hashCode() == inlineIPad2.hashCode() &&
+            !inlineIPad1.equals(new IPad(false, null)) && !inlineIPad1.equals(internedIPad) &&
+            "iPadOS 99 beta".equals(inlineIPad2.getOSVersion()) &&
+            "Unlisted Mobile".equals(inlinePhone.getPlanCarrier()) &&
+            "iPadOS 99 beta".equals(inlineRegistry.getIPad(0).getOSVersion()) &&
+            "Unlisted Mobile".equals(inlineRegistry.getIPhone(0).getPlanCarrier()) &&
+            inlineIndex.countEqual(inlineIPad2) == 1 &&
+            inlineIndex.countEqual(new IPad(false, "iPadOS 98 beta")) == 0)
+        {
+            System.out.println("CORRECT: devices created after the shared tables fill up keep their text");
+        }
+        else
+        {
+            System.out.println("INCORRECT: devices created after the shared tables fill up should keep their text");
+        }
+        System.out.println();
+// Construct one device of each class, a device that fails validation and a registry view
+        final List<Class<? extends IDevice>> metricTypes;
+        final long[]                         constructionsBefore;
+        final long[]                         constructionsAdded;
+        final DeviceRegistry                 metricsRegistry;
+        final long                           expectedConstructions;
+        metricTypes         = List.of(IPhone.class, IPhone16.class, IPod.class, IPad.class,
+                                      DeviceRegistry.IPhoneView.class);
+        constructionsBefore = new long[metricTypes.size()];
+        constructionsAdded  = new long[metricTypes.size()];
+        for (int i = 0; i < constructionsBefore.length; i++)
+        {
+            constructionsBefore[i] = DeviceMetrics.forType(metricTypes.get(i)).getConstructions();
+        }
+        new IPhone(100.0, "Rogers");
+        new IPhone16(100.0, "Rogers", true, IPhone16.MODEL_256_GB);
+        new IPod(50.0, 10);
+        new IPad(true, "iPadOS 17");
+        try
+        {
+            new IPhone(0.0, "Rogers");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            // Expected: the minutes are below the minimum
+        }
+        metricsRegistry = new DeviceRegistry();
+        metricsRegistry.addIPhone(100.0, "Rogers");
+        metricsRegistry.getIPhone(0);
+        for (int i = 0; i < constructionsAdded.length; i++)
+        {
+            constructionsAdded[i] = DeviceMetrics.forType(metricTypes.get(i)).getConstructions() - constructionsBefore[i];
+        }
+        expectedConstructions = DeviceMetrics.isEnabled() ? 1 : 0;
+// Test that each finished device is counted once under its own class, and nothing else is counted
+        System.out.println("Construction Metrics Test:");
+        if (Arrays.equals(constructionsAdded, new long[] {expectedConstructions, expectedConstructions,
+                                                          expectedConstructions, expectedConstructions, 0}))
+        {
+            System.out.println("CORRECT: only devices that finish construction are counted, once each");
+        }
+        else
+        {
+            System.out.println("INCORRECT: only devices that finish construction should be counted, once each");
+        }
+        System.out.println();
+// Load a small inventory in 32-byte chunks, with invalid and malformed records mixed in
+        final Path                                    inventoryFile;
+        final ForkJoinPool                            loaderPool;
+        final DeviceLoader.LoadResult<DeviceListSink> loaded;
+        final List<IDevice>                           loadedDevices;
+        inventoryFile = Files.createTempFile("inventory", ".csv");
+        Files.writeString(inventoryFile, String.join("\n",
+                                                     "IPhone,120.5,Verizon",
+                                                     "IPhone16,300.0,Rogers,true,512",
+                                                     "IPod,120.0,12",
+                                                     "IPod,50.0,120",
+                                                     "IPhone,0.5,Bell",
+                                                     "IPad,maybe,iPadOS 18",
+                                                     "IPhone16,200.0,Fido,false,128",
+                                                     "IPad,true,iPadOS 17\r",
+                                                     "IPod,40.0,30"));
+        loaderPool    = new ForkJoinPool(2);
+        loaded        = new DeviceLoader(loaderPool, 32).load(inventoryFile, DeviceListSink::new);
+        loadedDevices = new ArrayList<>();
+        loaderPool.shutdown();
+        Files.delete(inventoryFile);
+        for (final DeviceListSink sink : loaded.getSinks())
+        {
+            loadedDevices.addAll(sink.getDevices());
+        }
+// Test that the chunks together load every valid record in file order and count the rest
+        System.out.println("Bulk Loader Test:");
+        if (loaded.getChunkCount() > 1 &&
+            loadedDevices.equals(List.of(new IPhone(120.5, "Verizon"),
+                                         new IPhone16(300.0, "Rogers", true, IPhone16.MODEL_512_GB),
+                                         new IPod(50.0, 120), new IPad(true, "iPadOS 17"), new IPod(40.0, 30))) &&
+            loadedDevices.get(3).toString().equals(new IPad(true, "iPadOS 17").toString()))
+        {
+            System.out.println("CORRECT: every valid record loads once, in file order, across chunks");
+        }
+        else
+        {
+            System.out.println("INCORRECT: every valid record should load once, in file order, across chunks");
+        }
+        if (loaded.getRecords() == 5 && loaded.getErrors() == 4 &&
+            loaded.getViolations().getRejected() == 3 &&
+            loaded.getViolations().getCount(DeviceValidation.VOLUME_OUT_OF_RANGE) == 1 &&
+            loaded.getViolations().getCount(DeviceValidation.MINUTES_BELOW_MINIMUM) == 1 &&
+            loaded.getViolations().getCount(DeviceValidation.MEMORY_INVALID) == 1)
+        {
+            System.out.println("CORRECT: invalid and malformed records are counted and skipped");
+        }
+        else
+        {
+            System.out.println("INCORRECT: invalid and malformed records should be counted and skipped");
+        }
+        System.out.println();
+// Validate a grid of edge values both ways, and create devices through a factory
+        final double[]        validationMinutes;
+        final String[]        validationCarriers;
+        final int[]           validationMemory;
+        final double[]        validationVolumes;
+        final int[]           validationSongs;
+        final ViolationCounts factoryViolations;
+        final DeviceFactory   factory;
+        boolean               validationAgrees;
+        boolean               factoryWorks;
+        validationMinutes  = new double[] {Double.NaN, -0.0, 0.0, 0.999, 1.0, 500.0};
+        validationCarriers = new String[] {null, "", "  ", "Rogers"};
+        validationMemory   = new int[] {0, 128, IPhone16.MODEL_256_GB, IPhone16.MODEL_512_GB};
+        validationVolumes  = new double[] {Double.NaN, -0.1, 0.0, 50.0, 100.0, 100.1};
+        validationSongs    = new int[] {-1, 0, 10};
+        validationAgrees   = true;
+        for (final double minutes : validationMinutes)
+        {
+            for (final String carrier : validationCarriers)
+            {
+                for (final int memory : validationMemory)
+                {
+                    final int code;
+                    code = DeviceValidation.validateIPhone16(minutes, carrier, memory);
+                    try
+                    {
+                        new IPhone16(minutes, carrier, true, memory);
+                        validationAgrees &= code == DeviceValidation.VALID;
+                    }
+                    catch (final IllegalArgumentException e)
+                    {
+                        validationAgrees &= code != DeviceValidation.VALID &&
+                                            (Integer.bitCount(code) > 1 || e.getMessage().equals(DeviceValidation.describe(code)));
+                    }
+                }
+            }
+        }
+        for (final double volume : validationVolumes)
+        {
+            for (final int songs : validationSongs)
+            {
+                final int code;
+                code = DeviceValidation.validateIPod(volume, songs);
+                try
+                {
+                    new IPod(volume, songs);
+                    validationAgrees &= code == DeviceValidation.VALID;
+                }
+                catch (final IllegalArgumentException e)
+                {
+                    validationAgrees &= code != DeviceValidation.VALID &&
+                                        (Integer.bitCount(code) > 1 || e.getMessage().equals(DeviceValidation.describe(code)));
+                }
+            }
+        }
+        factoryViolations = new ViolationCounts();
+        factory           = new DeviceFactory(factoryViolations);
+        factoryWorks      = factory.createIPhone(0.5, " ") == null &&
+                            factory.getLastResult() == (DeviceValidation.MINUTES_BELOW_MINIMUM |
+                                                        DeviceValidation.CARRIER_BLANK);
+        factoryWorks     &= factory.createIPhone16(200.0, "Fido", false, 128) == null &&
+                            factory.getLastResult() == DeviceValidation.MEMORY_INVALID;
+        factoryWorks     &= new IPod(50.0, 10).equals(factory.createIPod(50.0, 10)) &&
+                            factory.getLastResult() == DeviceValidation.VALID;
+        factoryWorks     &= factoryViolations.getRejected() == 2 &&
+                            factoryViolations.getCount(DeviceValidation.MINUTES_BELOW_MINIMUM) == 1 &&
+                            factoryViolations.getCount(DeviceValidation.CARRIER_BLANK) == 1 &&
+                            factoryViolations.getCount(DeviceValidation.MEMORY_INVALID) == 1;
+// Test that validation accepts exactly what the constructors accept and the factory counts what it rejects
+        System.out.println("Exception-Free Validation Test:");
+        if (validationAgrees)
+        {
+            System.out.println("CORRECT: validation accepts exactly the values the constructors accept, with the same messages");
+        }
+        else
+        {
+            System.out.println("INCORRECT: validation should accept exactly the values the constructors accept, with the same messages");
+        }
+        if (factoryWorks)
+        {
+            System.out.println("CORRECT: the factory returns null for invalid values and counts each broken rule");
+        }
+        else
+        {
+            System.out.println("INCORRECT: the factory should return null for invalid values and count each broken rule");
+        }
+        System.out.println();
+    }
+
+    /*
+     * Writes the devices to a snapshot in the order SnapshotDiff needs, leaving the list unsorted.
+     */
+    private static void writeSnapshot(final Path file,
+                                      final List<IDevice> devices) throws IOException
+    {
+        final List<IDevice> sorted;
+        sorted = new ArrayList<>(devices);
+
+        sorted.sort(SnapshotDiff.ORDER);
+        try (final DeviceSnapshotWriter writer = new DeviceSnapshotWriter(file))
+        {
+            for (final IDevice device : sorted)
+            {
+                writer.write(device);
+            }
+        }
     }
 }
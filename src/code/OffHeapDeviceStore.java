@@ -0,0 +1,757 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A store for very large fleets that keeps every device outside the Java heap. Each device
+ * type has its own fixed-width record layout in direct memory, so a fleet of hundreds of millions
+ * of devices costs the garbage collector a few hundred slab objects instead of one object per
+ * device. Records are only turned into device objects when {@code toIPhone} and the other
+ * {@code to} methods are called.
+ * <p>
+ * Records are stored in slabs of {@value SLAB_RECORDS} records, in native byte order:
+ * <pre>
+ * IPhone     double remainingPlanMinutes, int planCarrier code, int unused      16 bytes
+ * IPhone16   double remainingPlanMinutes, int planCarrier code,
+ *            short memoryGigabytes, byte highResCamera, byte unused            16 bytes
+ * IPod       double currentVolumeDB, int numSongsStored, int unused            16 bytes
+ * IPad       int OSVersion code, int hasCase                                    8 bytes
+ * </pre>
+ * Carriers and OS versions are stored as codes from {@link SymbolTable}s that belong to the
+ * store, so they are freed with it rather than filling the bounded tables the device classes
+ * share. Every add method runs the same validation as the matching constructor.
+ * <p>
+ * Adding devices is not thread-safe. Once added, the mutable fields, whether an IPad has a case
+ * and an IPod's current volume, may be read and updated from many threads at once: they are
+ * accessed with volatile and compare-and-set operations through {@link VarHandle}s, as in
+ * {@link IPad} and {@link IPod}.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class OffHeapDeviceStore implements DeviceSink
+{
+    private static final int SLAB_SHIFT   = 20;
+    private static final int SLAB_RECORDS = 1 << SLAB_SHIFT;
+    private static final int SLAB_MASK    = SLAB_RECORDS - 1;
+    private static final int ALIGNMENT    = Long.BYTES;
+
+    private static final int PHONE_BYTES       = 16;
+    private static final int MINUTES_OFFSET    = 0;
+    private static final int CARRIER_OFFSET    = 8;
+    private static final int MEMORY_OFFSET     = 12;
+    private static final int CAMERA_OFFSET     = 14;
+    private static final int IPOD_BYTES        = 16;
+    private static final int VOLUME_OFFSET     = 0;
+    private static final int SONGS_OFFSET      = 8;
+    private static final int IPAD_BYTES        = 8;
+    private static final int OS_VERSION_OFFSET = 0;
+    private static final int HAS_CASE_OFFSET   = 4;
+
+    private static final VarHandle DOUBLES = MethodHandles.byteBufferViewVarHandle(double[].class,
+                                                                                   ByteOrder.nativeOrder());
+    private static final VarHandle INTS    = MethodHandles.byteBufferViewVarHandle(int[].class,
+                                                                                   ByteOrder.nativeOrder());
+
+    private final Table iPhones;
+    private final Table iPhone16s;
+    private final Table iPods;
+    private final Table iPads;
+
+    private final SymbolTable carriers;
+    private final SymbolTable OSVersions;
+
+    /**
+     * Constructs an empty OffHeapDeviceStore. Memory is allocated a slab at a time as
+     * devices are added.
+     */
+    public OffHeapDeviceStore()
+    {
+        iPhones    = new Table(PHONE_BYTES);
+        iPhone16s  = new Table(PHONE_BYTES);
+        iPods      = new Table(IPOD_BYTES);
+        iPads      = new Table(IPAD_BYTES);
+        carriers   = new SymbolTable();
+        OSVersions = new SymbolTable();
+    }
+
+    /**
+     * Adds an IPhone to the store.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @return the index of the new IPhone
+     * @throws IllegalArgumentException if a value fails the {@link IPhone} validation
+     */
+    public int addIPhone(final double remainingPlanMinutes,
+                         final String planCarrier)
+    {
+        IPhone.checkRemainingPlanMinutes(remainingPlanMinutes);
+        IPhone.checkPlanCarrier(planCarrier);
+
+        final int        index;
+        final ByteBuffer slab;
+        final int        offset;
+
+        index  = iPhones.add();
+        slab   = iPhones.slab(index);
+        offset = iPhones.offset(index);
+
+        slab.putDouble(offset + MINUTES_OFFSET, remainingPlanMinutes);
+        slab.putInt(offset + CARRIER_OFFSET, carriers.encode(planCarrier));
+
+        return index;
+    }
+
+    /**
+     * Adds an IPhone16 to the store.
+     *
+     * @param remainingPlanMinutes the number of minutes remaining on the plan
+     * @param planCarrier          the carrier for the plan
+     * @param highResCamera        whether the phone has a high-res camera
+     * @param memoryGigabytes      the amount of memory for the phone
+     * @return the index of the new IPhone16
+     * @throws IllegalArgumentException if a value fails the {@link IPhone16} validation
+     */
+    public int addIPhone16(final double remainingPlanMinutes,
+                           final String planCarrier,
+                           final boolean highResCamera,
+                           final int memoryGigabytes)
+    {
+        IPhone.checkRemainingPlanMinutes(remainingPlanMinutes);
+        IPhone.checkPlanCarrier(planCarrier);
+        IPhone16.checkMemoryGB(memoryGigabytes);
+
+        final int        index;
+        final ByteBuffer slab;
+        final int        offset;
+
+        index  = iPhone16s.add();
+        slab   = iPhone16s.slab(index);
+        offset = iPhone16s.offset(index);
+
+        slab.putDouble(offset + MINUTES_OFFSET, remainingPlanMinutes);
+        slab.putInt(offset + CARRIER_OFFSET, carriers.encode(planCarrier));
+        slab.putShort(offset + MEMORY_OFFSET, (short) memoryGigabytes);
+        slab.put(offset + CAMERA_OFFSET, (byte) (highResCamera ? 1 : 0));
+
+        return index;
+    }
+
+    /**
+     * Adds an IPod to the store.
+     *
+     * @param currentVolumeDB the current volume in decibels (dB)
+     * @param numSongsStored  the number of songs stored on the iPod
+     * @return the index of the new IPod
+     * @throws IllegalArgumentException if a value fails the {@link IPod} validation
+     */
+    public int addIPod(final double currentVolumeDB,
+                       final int numSongsStored)
+    {
+        IPod.checkCurrentVolumeDB(currentVolumeDB);
+        IPod.checkNumSongsStored(numSongsStored);
+
+        final int        index;
+        final ByteBuffer slab;
+        final int        offset;
+
+        index  = iPods.add();
+        slab   = iPods.slab(index);
+        offset = iPods.offset(index);
+
+        slab.putDouble(offset + VOLUME_OFFSET, currentVolumeDB);
+        slab.putInt(offset + SONGS_OFFSET, numSongsStored);
+
+        return index;
+    }
+
+    /**
+     * Adds an IPad to the store.
+     *
+     * @param hasCase   true if the iPad has a protective case
+     * @param OSVersion the operating system version of the iPad
+     * @return the index of the new IPad
+     */
+    public int addIPad(final boolean hasCase,
+                       final String OSVersion)
+    {
+        final int        index;
+        final ByteBuffer slab;
+        final int        offset;
+
+        index  = iPads.add();
+        slab   = iPads.slab(index);
+        offset = iPads.offset(index);
+
+        slab.putInt(offset + OS_VERSION_OFFSET, OSVersions.encode(OSVersion));
+        slab.putInt(offset + HAS_CASE_OFFSET, hasCase ? 1 : 0);
+
+        return index;
+    }
+
+    @Override
+    public void acceptIPhone(final double remainingPlanMinutes,
+                             final String planCarrier)
+    {
+        addIPhone(remainingPlanMinutes, planCarrier);
+    }
+
+    @Override
+    public void acceptIPhone16(final double remainingPlanMinutes,
+                               final String planCarrier,
+                               final boolean highResCamera,
+                               final int memoryGigabytes)
+    {
+        addIPhone16(remainingPlanMinutes, planCarrier, highResCamera, memoryGigabytes);
+    }
+
+    @Override
+    public void acceptIPod(final double currentVolumeDB,
+                           final int numSongsStored)
+    {
+        addIPod(currentVolumeDB, numSongsStored);
+    }
+
+    @Override
+    public void acceptIPad(final boolean hasCase,
+                           final String OSVersion)
+    {
+        addIPad(hasCase, OSVersion);
+    }
+
+    /**
+     * Copies an existing device, or the device a registry view shows, into the store.
+     *
+     * @param device the device to copy
+     * @return the index of the device within its type
+     */
+    public int add(final IDevice device)
+    {
+        if (DeviceRegistry.isView(device))
+        {
+            return add(DeviceRegistry.materialize(device));
+        }
+        if (device instanceof IPhone16)
+        {
+            final IPhone16 iPhone16;
+            iPhone16 = (IPhone16) device;
+
+            return addIPhone16(iPhone16.getRemainingPlanMinutes(),
+                               iPhone16.getPlanCarrier(),
+                               iPhone16.isHighResCamera(),
+                               iPhone16.getMemoryGigabytes());
+        }
+        if (device instanceof IPhone)
+        {
+            final IPhone iPhone;
+            iPhone = (IPhone) device;
+
+            return addIPhone(iPhone.getRemainingPlanMinutes(), iPhone.getPlanCarrier());
+        }
+        if (device instanceof IPod)
+        {
+            final IPod iPod;
+            iPod = (IPod) device;
+
+            return addIPod(iPod.getCurrentVolumeDB(), iPod.getNumSongsStored());
+        }
+        if (device instanceof IPad)
+        {
+            final IPad iPad;
+            iPad = (IPad) device;
+
+            return addIPad(iPad.hasCase(), iPad.getOSVersion());
+        }
+        throw new IllegalArgumentException("Unsupported device type");
+    }
+
+    /**
+     * Getter for the number of IPhones in the store.
+     *
+     * @return the number of IPhones
+     */
+    public int getIPhoneCount()
+    {
+        return iPhones.count;
+    }
+
+    /**
+     * Getter for the number of IPhone16s in the store.
+     *
+     * @return the number of IPhone16s
+     */
+    public int getIPhone16Count()
+    {
+        return iPhone16s.count;
+    }
+
+    /**
+     * Getter for the number of IPods in the store.
+     *
+     * @return the number of IPods
+     */
+    public int getIPodCount()
+    {
+        return iPods.count;
+    }
+
+    /**
+     * Getter for the number of IPads in the store.
+     *
+     * @return the number of IPads
+     */
+    public int getIPadCount()
+    {
+        return iPads.count;
+    }
+
+    /**
+     * Getter for the number of bytes of direct memory the store has allocated.
+     *
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes()
+    {
+        return iPhones.allocatedBytes() + iPhone16s.allocatedBytes() +
+               iPods.allocatedBytes() + iPads.allocatedBytes();
+    }
+
+    /**
+     * Getter for the remaining plan minutes of an IPhone.
+     *
+     * @param index the index of the IPhone
+     * @return the remaining plan minutes
+     */
+    public double getIPhoneRemainingPlanMinutes(final int index)
+    {
+        return iPhones.checkedSlab(index).getDouble(iPhones.offset(index) + MINUTES_OFFSET);
+    }
+
+    /**
+     * Getter for the plan carrier of an IPhone.
+     *
+     * @param index the index of the IPhone
+     * @return the plan carrier
+     */
+    public String getIPhonePlanCarrier(final int index)
+    {
+        return carriers.decode(iPhones.checkedSlab(index).getInt(iPhones.offset(index) + CARRIER_OFFSET));
+    }
+
+    /**
+     * Getter for the remaining plan minutes of an IPhone16.
+     *
+     * @param index the index of the IPhone16
+     * @return the remaining plan minutes
+     */
+    public double getIPhone16RemainingPlanMinutes(final int index)
+    {
+        return iPhone16s.checkedSlab(index).getDouble(iPhone16s.offset(index) + MINUTES_OFFSET);
+    }
+
+    /**
+     * Getter for the plan carrier of an IPhone16.
+     *
+     * @param index the index of the IPhone16
+     * @return the plan carrier
+     */
+    public String getIPhone16PlanCarrier(final int index)
+    {
+        return carriers.decode(iPhone16s.checkedSlab(index).getInt(iPhone16s.offset(index) + CARRIER_OFFSET));
+    }
+
+    /**
+     * Getter for whether an IPhone16 has a high resolution camera.
+     *
+     * @param index the index of the IPhone16
+     * @return true if the phone has a high-res camera
+     */
+    public boolean isIPhone16HighResCamera(final int index)
+    {
+        return iPhone16s.checkedSlab(index).get(iPhone16s.offset(index) + CAMERA_OFFSET) != 0;
+    }
+
+    /**
+     * Getter for the memory of an IPhone16.
+     *
+     * @param index the index of the IPhone16
+     * @return the memory in gigabytes
+     */
+    public int getIPhone16MemoryGigabytes(final int index)
+    {
+        return iPhone16s.checkedSlab(index).getShort(iPhone16s.offset(index) + MEMORY_OFFSET);
+    }
+
+    /**
+     * Getter for the current volume of an IPod.
+     *
+     * @param index the index of the IPod
+     * @return the current volume in decibels (dB)
+     */
+    public double getIPodCurrentVolumeDB(final int index)
+    {
+        return (double) DOUBLES.getVolatile(iPods.checkedSlab(index), iPods.offset(index) + VOLUME_OFFSET);
+    }
+
+    /**
+     * Getter for the number of songs stored in an IPod.
+     *
+     * @param index the index of the IPod
+     * @return the number of songs
+     */
+    public int getIPodNumSongsStored(final int index)
+    {
+        return iPods.checkedSlab(index).getInt(iPods.offset(index) + SONGS_OFFSET);
+    }
+
+    /**
+     * Returns whether an IPad has a protective case.
+     *
+     * @param index the index of the IPad
+     * @return true if the iPad has a case
+     */
+    public boolean iPadHasCase(final int index)
+    {
+        return (int) INTS.getVolatile(iPads.checkedSlab(index), iPads.offset(index) + HAS_CASE_OFFSET) != 0;
+    }
+
+    /**
+     * Getter for the OS version of an IPad.
+     *
+     * @param index the index of the IPad
+     * @return the OS version String
+     */
+    public String getIPadOSVersion(final int index)
+    {
+        return OSVersions.decode(iPads.checkedSlab(index).getInt(iPads.offset(index) + OS_VERSION_OFFSET));
+    }
+
+    /**
+     * Setter for whether an IPad has a protective case.
+     *
+     * @param index   the index of the IPad
+     * @param hasCase true if the iPad has a case, false otherwise
+     */
+    public void setIPadHasCase(final int index,
+                               final boolean hasCase)
+    {
+        INTS.setVolatile(iPads.checkedSlab(index), iPads.offset(index) + HAS_CASE_OFFSET, hasCase ? 1 : 0);
+    }
+
+    /**
+     * Setter for the current volume of an IPod.
+     *
+     * @param index           the index of the IPod
+     * @param currentVolumeDB the new volume. must be between
+     *                        {@value IPod#MIN_VOLUME_DB} and {@value IPod#MAX_VOLUME_DB}
+     * @throws IllegalArgumentException if currentVolumeDB is out of range
+     */
+    public void setIPodCurrentVolumeDB(final int index,
+                                       final double currentVolumeDB)
+    {
+        IPod.checkCurrentVolumeDB(currentVolumeDB);
+        DOUBLES.setVolatile(iPods.checkedSlab(index), iPods.offset(index) + VOLUME_OFFSET, currentVolumeDB);
+    }
+
+    /**
+     * Atomically lowers the current volume of an IPod to maxVolumeDB if it is above it.
+     *
+     * @param index       the index of the IPod
+     * @param maxVolumeDB the highest volume to allow. must be between
+     *                    {@value IPod#MIN_VOLUME_DB} and {@value IPod#MAX_VOLUME_DB}
+     * @return true if the volume was lowered
+     * @throws IllegalArgumentException if maxVolumeDB is out of range
+     */
+    public boolean clampIPodCurrentVolumeDB(final int index,
+                                            final double maxVolumeDB)
+    {
+        IPod.checkCurrentVolumeDB(maxVolumeDB);
+
+        final ByteBuffer slab;
+        final int        offset;
+        double           current;
+
+        slab   = iPods.checkedSlab(index);
+        offset = iPods.offset(index) + VOLUME_OFFSET;
+
+        do
+        {
+            current = (double) DOUBLES.getVolatile(slab, offset);
+            if (!(current > maxVolumeDB))
+            {
+                return false;
+            }
+        }
+        while (!DOUBLES.compareAndSet(slab, offset, current, maxVolumeDB));
+
+        return true;
+    }
+
+    /**
+     * Creates an IPhone object from a stored IPhone.
+     *
+     * @param index the index of the IPhone
+     * @return a new IPhone equal to the stored one
+     */
+    public IPhone toIPhone(final int index)
+    {
+        return new IPhone(getIPhoneRemainingPlanMinutes(index), getIPhonePlanCarrier(index));
+    }
+
+    /**
+     * Creates an IPhone16 object from a stored IPhone16.
+     *
+     * @param index the index of the IPhone16
+     * @return a new IPhone16 equal to the stored one
+     */
+    public IPhone16 toIPhone16(final int index)
+    {
+        return new IPhone16(getIPhone16RemainingPlanMinutes(index),
+                            getIPhone16PlanCarrier(index),
+                            isIPhone16HighResCamera(index),
+                            getIPhone16MemoryGigabytes(index));
+    }
+
+    /**
+     * Creates an IPod object from a stored IPod.
+     *
+     * @param index the index of the IPod
+     * @return a new IPod equal to the stored one
+     */
+    public IPod toIPod(final int index)
+    {
+        return new IPod(getIPodCurrentVolumeDB(index), getIPodNumSongsStored(index));
+    }
+
+    /**
+     * Creates an IPad object from a stored IPad.
+     *
+     * @param index the index of the IPad
+     * @return a new IPad equal to the stored one
+     */
+    public IPad toIPad(final int index)
+    {
+        return new IPad(iPadHasCase(index), getIPadOSVersion(index));
+    }
+
+    /**
+     * Passes every IPhone to the visitor in index order, without creating objects.
+     *
+     * @param visitor the visitor to call for each IPhone
+     */
+    public void scanIPhones(final IPhoneVisitor visitor)
+    {
+        for (int index = 0; index < iPhones.count; index++)
+        {
+            final ByteBuffer slab;
+            final int        offset;
+
+            slab   = iPhones.slab(index);
+            offset = iPhones.offset(index);
+
+            visitor.visit(index,
+                          slab.getDouble(offset + MINUTES_OFFSET),
+                          carriers.decode(slab.getInt(offset + CARRIER_OFFSET)));
+        }
+    }
+
+    /**
+     * Passes every IPhone16 to the visitor in index order, without creating objects.
+     *
+     * @param visitor the visitor to call for each IPhone16
+     */
+    public void scanIPhone16s(final IPhone16Visitor visitor)
+    {
+        for (int index = 0; index < iPhone16s.count; index++)
+        {
+            final ByteBuffer slab;
+            final int        offset;
+
+            slab   = iPhone16s.slab(index);
+            offset = iPhone16s.offset(index);
+
+            visitor.visit(index,
+                          slab.getDouble(offset + MINUTES_OFFSET),
+                          carriers.decode(slab.getInt(offset + CARRIER_OFFSET)),
+                          slab.get(offset + CAMERA_OFFSET) != 0,
+                          slab.getShort(offset + MEMORY_OFFSET));
+        }
+    }
+
+    /**
+     * Passes every IPod to the visitor in index order, without creating objects.
+     *
+     * @param visitor the visitor to call for each IPod
+     */
+    public void scanIPods(final IPodVisitor visitor)
+    {
+        for (int index = 0; index < iPods.count; index++)
+        {
+            final ByteBuffer slab;
+            final int        offset;
+
+            slab   = iPods.slab(index);
+            offset = iPods.offset(index);
+
+            visitor.visit(index,
+                          (double) DOUBLES.getVolatile(slab, offset + VOLUME_OFFSET),
+                          slab.getInt(offset + SONGS_OFFSET));
+        }
+    }
+
+    /**
+     * Passes every IPad to the visitor in index order, without creating objects.
+     *
+     * @param visitor the visitor to call for each IPad
+     */
+    public void scanIPads(final IPadVisitor visitor)
+    {
+        for (int index = 0; index < iPads.count; index++)
+        {
+            final ByteBuffer slab;
+            final int        offset;
+
+            slab   = iPads.slab(index);
+            offset = iPads.offset(index);
+
+            visitor.visit(index,
+                          (int) INTS.getVolatile(slab, offset + HAS_CASE_OFFSET) != 0,
+                          OSVersions.decode(slab.getInt(offset + OS_VERSION_OFFSET)));
+        }
+    }
+
+    /**
+     * Receives the fields of each IPhone during a scan.
+     */
+    @FunctionalInterface
+    public interface IPhoneVisitor
+    {
+        /**
+         * Visits one IPhone.
+         *
+         * @param index                the index of the IPhone
+         * @param remainingPlanMinutes the number of minutes remaining on the plan
+         * @param planCarrier          the carrier for the plan
+         */
+        void visit(int index, double remainingPlanMinutes, String planCarrier);
+    }
+
+    /**
+     * Receives the fields of each IPhone16 during a scan.
+     */
+    @FunctionalInterface
+    public interface IPhone16Visitor
+    {
+        /**
+         * Visits one IPhone16.
+         *
+         * @param index                the index of the IPhone16
+         * @param remainingPlanMinutes the number of minutes remaining on the plan
+         * @param planCarrier          the carrier for the plan
+         * @param highResCamera        whether the phone has a high-res camera
+         * @param memoryGigabytes      the amount of memory for the phone
+         */
+        void visit(int index, double remainingPlanMinutes, String planCarrier, boolean highResCamera,
+                   int memoryGigabytes);
+    }
+
+    /**
+     * Receives the fields of each IPod during a scan.
+     */
+    @FunctionalInterface
+    public interface IPodVisitor
+    {
+        /**
+         * Visits one IPod.
+         *
+         * @param index           the index of the IPod
+         * @param currentVolumeDB the current volume in decibels (dB)
+         * @param numSongsStored  the number of songs stored on the iPod
+         */
+        void visit(int index, double currentVolumeDB, int numSongsStored);
+    }
+
+    /**
+     * Receives the fields of each IPad during a scan.
+     */
+    @FunctionalInterface
+    public interface IPadVisitor
+    {
+        /**
+         * Visits one IPad.
+         *
+         * @param index     the index of the IPad
+         * @param hasCase   true if the iPad has a protective case
+         * @param OSVersion the operating system version of the iPad
+         */
+        void visit(int index, boolean hasCase, String OSVersion);
+    }
+
+    /*
+     * The slabs holding the records of one device type.
+     */
+    private static final class Table
+    {
+        private final int    recordBytes;
+        private ByteBuffer[] slabs;
+        private int          count;
+
+        private Table(final int recordBytes)
+        {
+            this.recordBytes = recordBytes;
+            this.slabs       = new ByteBuffer[0];
+        }
+
+        /*
+         * Reserves the next record, allocating a new slab if the last one is full.
+         */
+        private int add()
+        {
+            if (count == Integer.MAX_VALUE)
+            {
+                throw new IllegalStateException("Store is full");
+            }
+
+            final int slab;
+            slab = count >>> SLAB_SHIFT;
+
+            if (slab == slabs.length)
+            {
+                final int bytes;
+                bytes = SLAB_RECORDS * recordBytes;
+
+                slabs       = Arrays.copyOf(slabs, slab + 1);
+                slabs[slab] = ByteBuffer.allocateDirect(bytes + ALIGNMENT)
+                                        .alignedSlice(ALIGNMENT)
+                                        .order(ByteOrder.nativeOrder());
+            }
+
+            return count++;
+        }
+
+        private ByteBuffer slab(final int index)
+        {
+            return slabs[index >>> SLAB_SHIFT];
+        }
+
+        private ByteBuffer checkedSlab(final int index)
+        {
+            Objects.checkIndex(index, count);
+            return slabs[index >>> SLAB_SHIFT];
+        }
+
+        private int offset(final int index)
+        {
+            return (index & SLAB_MASK) * recordBytes;
+        }
+
+        private long allocatedBytes()
+        {
+            return (long) slabs.length * SLAB_RECORDS * recordBytes;
+        }
+    }
+}
@@ -0,0 +1,756 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded cache of device renderings, the same Strings {@code toString} returns,
+ * for serving the details of a hot set of devices from a fleet too large to keep every
+ * rendering of. Devices keep their own rendering once {@code toString} is called on them,
+ * so rendering a whole fleet that way holds one String per device; this cache holds at
+ * most its maximum size, and renders through {@code writeDetails} so the devices keep
+ * nothing. Entries are keyed by device identity, not {@code equals}, since many devices
+ * are equal but render differently.
+ * <p>
+ * Which renderings to keep is decided as in W-TinyLFU. Every lookup is counted in a small
+ * count-min sketch of 4-bit counters that are halved every so often, so it estimates how
+ * often each device has been asked for recently. New renderings enter a small LRU window,
+ * about {@value #WINDOW_PERCENT}% of the cache. A rendering pushed out of the window is only
+ * admitted to the main cache if the sketch says it is asked for more often than the
+ * rendering the main cache would evict for it, so a burst of one-off lookups cannot flush
+ * out the hot set. The main cache is a segmented LRU: renderings hit again while on
+ * probation move to a protected segment holding {@value #PROTECTED_PERCENT}% of it.
+ * <p>
+ * Each rendering is tagged with the value of the mutable field it was rendered from,
+ * whether an IPad has a case or an IPod's volume. A lookup that finds the device has
+ * changed since, for example through {@link IPad#setHasCase(boolean)}, invalidates the
+ * entry and renders it again, so a stale rendering is never returned. Views from a
+ * {@link DeviceRegistry} are rendered on every call and never cached: a view shows
+ * whichever device is at its index, and sorting the registry changes that without any
+ * field of the view changing.
+ * <p>
+ * The cache is split into segments by identity hash, each with its own lock, window, main
+ * cache and sketch, so threads looking up different devices rarely wait for each other.
+ * Devices are rendered outside the lock.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class RenderingCache
+{
+    private static final int  SEGMENTS_PER_PROCESSOR = 4;
+    private static final int  WINDOW_PERCENT         = 1;
+    private static final int  PROTECTED_PERCENT      = 80;
+    private static final int  GOLDEN_RATIO           = 0x9E3779B9;
+    private static final byte WINDOW                 = 0;
+    private static final byte PROBATION              = 1;
+    private static final byte PROTECTED              = 2;
+
+    private final Segment[] segments;
+    private final int       segmentShift;
+    private final int       maximumSize;
+
+    /**
+     * Constructs an empty RenderingCache with a few segments per available processor.
+     *
+     * @param maximumSize the most renderings to keep
+     * @throws IllegalArgumentException if maximumSize is not positive
+     */
+    public RenderingCache(final int maximumSize)
+    {
+        this(maximumSize, SEGMENTS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty RenderingCache.
+     *
+     * @param maximumSize  the most renderings to keep
+     * @param segmentCount the minimum number of segments; rounded up to a power of two, but
+     *                     no more than maximumSize
+     * @throws IllegalArgumentException if maximumSize or segmentCount is not positive, or
+     *                                  segmentCount is too large
+     */
+    public RenderingCache(final int maximumSize,
+                          final int segmentCount)
+    {
+        if (maximumSize <= 0)
+        {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (segmentCount <= 0 || segmentCount > 1 << 30)
+        {
+            throw new IllegalArgumentException("Segment count must be between 1 and 2^30");
+        }
+
+        final int length;
+        length = Math.min(segmentCount == 1 ? 1 : Integer.highestOneBit(segmentCount - 1) << 1,
+                          Integer.highestOneBit(maximumSize));
+
+        this.segments     = new Segment[length];
+        this.segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(length);
+        this.maximumSize  = maximumSize;
+
+        for (int i = 0; i < length; i++)
+        {
+            segments[i] = new Segment(maximumSize / length + (i < maximumSize % length ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the device's rendering, from the cache if it holds a rendering of the device
+     * as it is now, or else rendered and offered to the cache. A registry view is always
+     * rendered, and does not count as a hit or a miss.
+     *
+     * @param device the device to render
+     * @return the same String as {@code device.toString()}
+     */
+    public String get(final IDevice device)
+    {
+        if (device == null)
+        {
+            throw new IllegalArgumentException("Device must not be null");
+        }
+
+        final int     hash;
+        final Segment segment;
+        final long    state;
+        final String  cached;
+        final String  rendered;
+
+        if (isView(device))
+        {
+            return render(device, 0);
+        }
+
+        hash    = System.identityHashCode(device) * GOLDEN_RATIO;
+        segment = segmentFor(hash);
+        state   = stateOf(device);
+        cached  = segment.lookup(device, state, hash);
+
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        rendered = render(device, state);
+        segment.store(device, state, rendered, hash);
+
+        return rendered;
+    }
+
+    /**
+     * Removes the device's rendering, if the cache holds one.
+     *
+     * @param device the device
+     */
+    public void invalidate(final IDevice device)
+    {
+        if (device != null)
+        {
+            segmentFor(System.identityHashCode(device) * GOLDEN_RATIO).invalidate(device);
+        }
+    }
+
+    /**
+     * Removes every rendering. The frequency sketch and statistics are kept.
+     */
+    public void invalidateAll()
+    {
+        for (final Segment segment : segments)
+        {
+            segment.invalidateAll();
+        }
+    }
+
+    /**
+     * Getter for the number of renderings the cache holds.
+     *
+     * @return the number of renderings
+     */
+    public int size()
+    {
+        int size;
+        size = 0;
+
+        for (final Segment segment : segments)
+        {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Getter for the most renderings the cache keeps.
+     *
+     * @return the maximum size
+     */
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the hit, miss, eviction and invalidation counts since the cache was created.
+     * Each segment is read at a slightly different time, so under load the counts are
+     * approximate.
+     *
+     * @return the statistics
+     */
+    public Stats getStats()
+    {
+        long hits;
+        long misses;
+        long evictions;
+        long invalidations;
+
+        hits          = 0;
+        misses        = 0;
+        evictions     = 0;
+        invalidations = 0;
+
+        for (final Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                hits          += segment.hits;
+                misses        += segment.misses;
+                evictions     += segment.evictions;
+                invalidations += segment.invalidations;
+            }
+        }
+
+        return new Stats(hits, misses, evictions, invalidations);
+    }
+
+    /*
+     * Returns the segment for a spread identity hash, chosen by its high bits; the sketch
+     * uses all of them.
+     */
+    private Segment segmentFor(final int hash)
+    {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    /*
+     * Returns the value of the device's mutable field, if it has one: whether an IPad has
+     * a case or the bits of an IPod's volume. Other devices are immutable and return 0.
+     */
+    private static long stateOf(final IDevice device)
+    {
+        if (device instanceof IPad iPad)
+        {
+            return iPad.hasCase() ? 1 : 0;
+        }
+        if (device instanceof IPod iPod)
+        {
+            return Double.doubleToRawLongBits(iPod.getCurrentVolumeDB());
+        }
+        return 0;
+    }
+
+    /*
+     * Returns whether the device is a view of a row in a DeviceRegistry.
+     */
+    private static boolean isView(final IDevice device)
+    {
+        return device instanceof DeviceRegistry.IPhoneView ||
+               device instanceof DeviceRegistry.IPhone16View ||
+               device instanceof DeviceRegistry.IPodView ||
+               device instanceof DeviceRegistry.IPadView;
+    }
+
+    /*
+     * Renders the device as it is in the given state, so the rendering always matches its tag.
+     */
+    private static String render(final IDevice device,
+                                 final long state)
+    {
+        final StringBuilder text;
+        text = new StringBuilder();
+
+        try
+        {
+            if (device instanceof IPad iPad)
+            {
+                iPad.writeDetails(text, state != 0);
+            }
+            else if (device instanceof IPod iPod)
+            {
+                iPod.writeDetails(text, Double.longBitsToDouble(state));
+            }
+            else
+            {
+                DeviceDispatch.writeDetails(device, (Appendable) text);
+            }
+        }
+        catch (final IOException e)
+        {
+            // StringBuilder never throws IOException
+            throw new UncheckedIOException(e);
+        }
+
+        return text.toString();
+    }
+
+    /*
+     * A cached rendering, linked into the LRU queue of the window or main segment it is in.
+     */
+    private static final class Node
+    {
+        private final IDevice device;
+        private final int     hash;
+        private String        text;
+        private long          state;
+        private byte          queue;
+        private Node          previous;
+        private Node          next;
+
+        private Node(final IDevice device,
+                     final int hash)
+        {
+            this.device = device;
+            this.hash   = hash;
+        }
+    }
+
+    /*
+     * A doubly linked queue of nodes around a sentinel, least recently used first.
+     */
+    private static final class AccessQueue
+    {
+        private final Node sentinel;
+
+        private AccessQueue()
+        {
+            sentinel          = new Node(null, 0);
+            sentinel.previous = sentinel;
+            sentinel.next     = sentinel;
+        }
+
+        private Node first()
+        {
+            return sentinel.next == sentinel ? null : sentinel.next;
+        }
+
+        private void addLast(final Node node)
+        {
+            node.previous          = sentinel.previous;
+            node.next              = sentinel;
+            sentinel.previous.next = node;
+            sentinel.previous      = node;
+        }
+
+        private void remove(final Node node)
+        {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous      = null;
+            node.next          = null;
+        }
+
+        private void moveToLast(final Node node)
+        {
+            remove(node);
+            addLast(node);
+        }
+
+        private void clear()
+        {
+            sentinel.previous = sentinel;
+            sentinel.next     = sentinel;
+        }
+    }
+
+    /*
+     * One independently locked part of the cache.
+     */
+    private static final class Segment
+    {
+        private final Map<IDevice, Node> nodes;
+        private final AccessQueue        window;
+        private final AccessQueue        probation;
+        private final AccessQueue        protectedQueue;
+        private final FrequencySketch    sketch;
+        private final int                windowCapacity;
+        private final int                mainCapacity;
+        private final int                protectedCapacity;
+        private int                      windowSize;
+        private int                      mainSize;
+        private int                      protectedSize;
+        private long                     hits;
+        private long                     misses;
+        private long                     evictions;
+        private long                     invalidations;
+
+        private Segment(final int capacity)
+        {
+            nodes             = new IdentityHashMap<>(capacity);
+            window            = new AccessQueue();
+            probation         = new AccessQueue();
+            protectedQueue    = new AccessQueue();
+            sketch            = new FrequencySketch(capacity);
+            windowCapacity    = Math.max(1, capacity * WINDOW_PERCENT / 100);
+            mainCapacity      = capacity - windowCapacity;
+            protectedCapacity = mainCapacity * PROTECTED_PERCENT / 100;
+        }
+
+        /*
+         * Counts a lookup of the device and returns its rendering if the cache holds one
+         * for the given state.
+         */
+        private synchronized String lookup(final IDevice device,
+                                           final long state,
+                                           final int hash)
+        {
+            final Node node;
+
+            sketch.increment(hash);
+            node = nodes.get(device);
+
+            if (node == null || node.text == null)
+            {
+                misses++;
+                return null;
+            }
+            if (node.state != state)
+            {
+                invalidations++;
+                misses++;
+                node.text = null;
+                return null;
+            }
+
+            hits++;
+            onHit(node);
+
+            return node.text;
+        }
+
+        /*
+         * Keeps a rendering, replacing the one for an older state or adding the device to
+         * the window and evicting if the window is full.
+         */
+        private synchronized void store(final IDevice device,
+                                        final long state,
+                                        final String text,
+                                        final int hash)
+        {
+            Node node;
+            node = nodes.get(device);
+
+            if (node == null)
+            {
+                node       = new Node(device, hash);
+                node.queue = WINDOW;
+                nodes.put(device, node);
+                window.addLast(node);
+                windowSize++;
+            }
+
+            node.text  = text;
+            node.state = state;
+
+            while (windowSize > windowCapacity)
+            {
+                final Node candidate;
+                candidate = window.first();
+
+                window.remove(candidate);
+                windowSize--;
+                admit(candidate);
+            }
+        }
+
+        /*
+         * Moves a node pushed out of the window into probation if there is room, or if it is
+         * asked for more often than the node that would be evicted for it; one of the two is
+         * evicted.
+         */
+        private void admit(final Node candidate)
+        {
+            final Node victim;
+
+            if (mainSize < mainCapacity)
+            {
+                candidate.queue = PROBATION;
+                probation.addLast(candidate);
+                mainSize++;
+                return;
+            }
+
+            victim = probation.first() != null ? probation.first() : protectedQueue.first();
+
+            if (victim == null || sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash))
+            {
+                evict(candidate);
+                return;
+            }
+
+            (victim.queue == PROBATION ? probation : protectedQueue).remove(victim);
+            if (victim.queue == PROTECTED)
+            {
+                protectedSize--;
+            }
+            evict(victim);
+
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+        }
+
+        private void evict(final Node node)
+        {
+            nodes.remove(node.device);
+            evictions++;
+        }
+
+        /*
+         * Moves a node that was hit to the back of its queue, promoting it from probation to
+         * protected and demoting the protected node used least recently if that overflows.
+         */
+        private void onHit(final Node node)
+        {
+            switch (node.queue)
+            {
+                case WINDOW -> window.moveToLast(node);
+                case PROTECTED -> protectedQueue.moveToLast(node);
+                default ->
+                {
+                    probation.remove(node);
+                    node.queue = PROTECTED;
+                    protectedQueue.addLast(node);
+                    protectedSize++;
+
+                    if (protectedSize > protectedCapacity)
+                    {
+                        final Node demoted;
+                        demoted = protectedQueue.first();
+
+                        protectedQueue.remove(demoted);
+                        protectedSize--;
+                        demoted.queue = PROBATION;
+                        probation.addLast(demoted);
+                    }
+                }
+            }
+        }
+
+        private synchronized void invalidate(final IDevice device)
+        {
+            final Node node;
+            node = nodes.remove(device);
+
+            if (node != null)
+            {
+                switch (node.queue)
+                {
+                    case WINDOW ->
+                    {
+                        window.remove(node);
+                        windowSize--;
+                    }
+                    case PROTECTED ->
+                    {
+                        protectedQueue.remove(node);
+                        protectedSize--;
+                        mainSize--;
+                    }
+                    default ->
+                    {
+                        probation.remove(node);
+                        mainSize--;
+                    }
+                }
+            }
+        }
+
+        private synchronized void invalidateAll()
+        {
+            nodes.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            windowSize    = 0;
+            mainSize      = 0;
+            protectedSize = 0;
+        }
+
+        private synchronized int size()
+        {
+            return nodes.size();
+        }
+    }
+
+    /*
+     * A count-min sketch of how often each hash has been seen recently, with four 4-bit
+     * counters per hash packed sixteen to a long. Once as many increments as ten times the
+     * capacity have been counted, every counter is halved, so old popularity fades.
+     */
+    private static final class FrequencySketch
+    {
+        private static final long[] SEEDS       = {0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L,
+                                                   0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+        private static final long   RESET_MASK  = 0x7777_7777_7777_7777L;
+        private static final int    MAX_COUNT   = 15;
+        private static final int    SAMPLE_SIZE = 10;
+
+        private final long[] table;
+        private final int    sampleSize;
+        private int          additions;
+
+        private FrequencySketch(final int capacity)
+        {
+            final int length;
+            length = Math.max(2, Integer.highestOneBit(Math.max(1, capacity) - 1) << 1);
+
+            table      = new long[length];
+            sampleSize = SAMPLE_SIZE * Math.max(1, capacity);
+        }
+
+        /*
+         * Returns the estimated number of recent lookups of a hash, at most 15.
+         */
+        private int frequency(final int hash)
+        {
+            int frequency;
+            frequency = MAX_COUNT;
+
+            for (int row = 0; row < SEEDS.length; row++)
+            {
+                final long mixed;
+                final int  index;
+                final int  shift;
+
+                mixed     = mix(hash, row);
+                index     = (int) mixed & (table.length - 1);
+                shift     = (int) (mixed >>> 60) << 2;
+                frequency = Math.min(frequency, (int) (table[index] >>> shift) & MAX_COUNT);
+            }
+
+            return frequency;
+        }
+
+        /*
+         * Counts a lookup of a hash, halving every counter once enough have been counted.
+         */
+        private void increment(final int hash)
+        {
+            boolean added;
+            added = false;
+
+            for (int row = 0; row < SEEDS.length; row++)
+            {
+                final long mixed;
+                final int  index;
+                final int  shift;
+
+                mixed = mix(hash, row);
+                index = (int) mixed & (table.length - 1);
+                shift = (int) (mixed >>> 60) << 2;
+
+                if (((table[index] >>> shift) & MAX_COUNT) != MAX_COUNT)
+                {
+                    table[index] += 1L << shift;
+                    added         = true;
+                }
+            }
+
+            if (added && ++additions == sampleSize)
+            {
+                for (int i = 0; i < table.length; i++)
+                {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        /*
+         * Hashes a hash differently for each row.
+         */
+        private static long mix(final int hash,
+                                final int row)
+        {
+            long mixed;
+            mixed  = (hash + SEEDS[row]) * SEEDS[row];
+            mixed ^= mixed >>> 32;
+
+            return mixed;
+        }
+    }
+
+    /**
+     * Counts of what a {@link RenderingCache} has done since it was created.
+     */
+    public static final class Stats
+    {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+
+        private Stats(final long hits,
+                      final long misses,
+                      final long evictions,
+                      final long invalidations)
+        {
+            this.hits          = hits;
+            this.misses        = misses;
+            this.evictions     = evictions;
+            this.invalidations = invalidations;
+        }
+
+        /**
+         * Getter for the number of lookups answered from the cache.
+         *
+         * @return the number of hits
+         */
+        public long getHitCount()
+        {
+            return hits;
+        }
+
+        /**
+         * Getter for the number of lookups that had to render, including invalidations.
+         *
+         * @return the number of misses
+         */
+        public long getMissCount()
+        {
+            return misses;
+        }
+
+        /**
+         * Getter for the number of renderings evicted, or not admitted, to stay in bounds.
+         *
+         * @return the number of evictions
+         */
+        public long getEvictionCount()
+        {
+            return evictions;
+        }
+
+        /**
+         * Getter for the number of renderings found stale because the device changed.
+         *
+         * @return the number of invalidations
+         */
+        public long getInvalidationCount()
+        {
+            return invalidations;
+        }
+
+        /**
+         * Returns the share of lookups answered from the cache.
+         *
+         * @return the hit ratio, between 0 and 1, or 0 if nothing has been looked up
+         */
+        public double getHitRatio()
+        {
+            final long lookups;
+            lookups = hits + misses;
+
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A destination for rendered device details, such as a file or a pipe.
+ * A {@link DeviceReportRunner} hands each sink the report in chunks, in device order, from
+ * one thread at a time, so a sink does not need to be thread-safe.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ReportSink extends Flushable
+{
+    /**
+     * Writes the next chunk of the report.
+     *
+     * @param chunk the details of one or more devices, each followed by a line separator
+     * @throws IOException if the chunk cannot be written
+     */
+    void write(String chunk) throws IOException;
+
+    /**
+     * Flushes anything the sink has buffered. Called once after the last chunk; does nothing
+     * by default.
+     *
+     * @throws IOException if the buffered output cannot be written
+     */
+    @Override
+    default void flush() throws IOException
+    {
+    }
+
+    /**
+     * Returns a sink that encodes each chunk as UTF-8 and writes it to a channel.
+     *
+     * @param channel the channel to write to
+     * @return the sink
+     */
+    static ReportSink of(final WritableByteChannel channel)
+    {
+        if (channel == null)
+        {
+            throw new IllegalArgumentException("Channel must not be null");
+        }
+
+        return chunk ->
+        {
+            final ByteBuffer bytes;
+            bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chunk));
+
+            while (bytes.hasRemaining())
+            {
+                channel.write(bytes);
+            }
+        };
+    }
+}
@@ -0,0 +1,561 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A fleet of devices split into shards, each owned by a single thread of its own.
+ * A device goes to the shard chosen by the fleet's {@link Partitioning}, and every read or
+ * write of a shard runs as a task on that shard's thread, so a shard's list is never
+ * shared, needs no lock, and stays in the cache of the core that runs it. Unlike
+ * {@link StripedDeviceFleet}, callers never contend for a shard: they queue work for it.
+ * <p>
+ * Adding devices is asynchronous; tasks run in the order they were submitted to a shard,
+ * so a query always sees every device added before it. Queries and bulk updates are
+ * scattered to every shard at once and gathered in shard order, so they run on as many
+ * cores as there are shards. Tasks run on the shard's thread and must not wait for this
+ * fleet themselves.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class ShardedDeviceFleet implements Closeable
+{
+    /**
+     * How devices are assigned to shards.
+     */
+    public enum Partitioning
+    {
+        /**
+         * Phones are grouped by plan carrier; IPads and IPods by their equality key.
+         */
+        CARRIER,
+
+        /**
+         * Devices are grouped by class, so each class is in one shard. At most four shards
+         * are ever used.
+         */
+        DEVICE_TYPE,
+
+        /**
+         * Devices are spread by the hash of their equality key, so equal devices are always
+         * in the same shard.
+         */
+        EQUALITY_HASH
+    }
+
+    private static final int MAX_SHARDS = 1 << 10;
+
+    private final Shard[]      shards;
+    private final int          shardMask;
+    private final Partitioning partitioning;
+
+    /**
+     * Constructs an empty ShardedDeviceFleet with one shard per available processor,
+     * partitioned by equality key.
+     */
+    public ShardedDeviceFleet()
+    {
+        this(Runtime.getRuntime().availableProcessors(), Partitioning.EQUALITY_HASH);
+    }
+
+    /**
+     * Constructs an empty ShardedDeviceFleet.
+     *
+     * @param shardCount   the minimum number of shards; rounded up to a power of two
+     * @param partitioning how devices are assigned to shards
+     * @throws IllegalArgumentException if shardCount is not between 1 and 1024 or
+     *                                  partitioning is null
+     */
+    public ShardedDeviceFleet(final int shardCount,
+                              final Partitioning partitioning)
+    {
+        if (shardCount <= 0 || shardCount > MAX_SHARDS)
+        {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS);
+        }
+        if (partitioning == null)
+        {
+            throw new IllegalArgumentException("Partitioning must not be null");
+        }
+
+        final int length;
+        length = shardCount == 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+
+        this.shards       = new Shard[length];
+        this.shardMask    = length - 1;
+        this.partitioning = partitioning;
+
+        for (int i = 0; i < length; i++)
+        {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    /*
+     * Returns the shard a device belongs to.
+     */
+    private Shard shardOf(final IDevice device)
+    {
+        final int key;
+
+        if (partitioning == Partitioning.DEVICE_TYPE)
+        {
+            key = SnapshotDiff.typeOf(device);
+        }
+        else if (partitioning == Partitioning.CARRIER && device instanceof IPhone iPhone)
+        {
+            // Carrier codes are handed out in order, so consecutive codes fill the shards evenly;
+            // carriers that did not fit in the shared table are spread by their text instead
+            key = iPhone.getPlanCarrierCode() != SymbolTable.NO_SYMBOL ? iPhone.getPlanCarrierCode()
+                                                                        : iPhone.getPlanCarrier().hashCode();
+        }
+        else
+        {
+            final int hash;
+            hash = DeviceDispatch.hashCode(device) * 0x9E3779B9;
+            key  = hash ^ hash >>> 16;
+        }
+
+        return shards[key & shardMask];
+    }
+
+    /**
+     * Queues a device to be added to its shard. A registry view is added as a copy of the
+     * device it shows, since the shard's updates need a real device.
+     *
+     * @param device the device to add
+     * @throws IllegalArgumentException if device is null
+     */
+    public void add(final IDevice device)
+    {
+        if (device == null)
+        {
+            throw new IllegalArgumentException("Device must not be null");
+        }
+
+        final IDevice added;
+        final Shard   shard;
+
+        added = DeviceRegistry.materialize(device);
+        shard = shardOf(added);
+
+        shard.executor.execute(() -> shard.add(added));
+    }
+
+    /**
+     * Adds every device to its shard and waits until all of them have been added. The
+     * devices are grouped by shard first, so each shard is handed its devices in one task.
+     * Registry views are added as copies, as in {@link #add(IDevice)}.
+     *
+     * @param devices the devices to add
+     * @throws IllegalArgumentException if a device is null
+     */
+    public void addAll(final List<? extends IDevice> devices)
+    {
+        final List<List<IDevice>> batches;
+        batches = new ArrayList<>(shards.length);
+
+        for (int i = 0; i < shards.length; i++)
+        {
+            batches.add(new ArrayList<>(devices.size() / shards.length + 1));
+        }
+        for (final IDevice device : devices)
+        {
+            if (device == null)
+            {
+                throw new IllegalArgumentException("Device must not be null");
+            }
+            final IDevice added;
+            added = DeviceRegistry.materialize(device);
+
+            batches.get(shardOf(added).index).add(added);
+        }
+
+        scatter(shard -> shard.addAll(batches.get(shard.index)));
+    }
+
+    /**
+     * Getter for the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount()
+    {
+        return shards.length;
+    }
+
+    /**
+     * Getter for how devices are assigned to shards.
+     *
+     * @return the partitioning
+     */
+    public Partitioning getPartitioning()
+    {
+        return partitioning;
+    }
+
+    /**
+     * Getter for the number of devices in each shard. Devices still queued by
+     * {@link #add(IDevice)} may not be counted yet.
+     *
+     * @return the number of devices, indexed by shard
+     */
+    public int[] getShardSizes()
+    {
+        final int[] sizes;
+        sizes = new int[shards.length];
+
+        for (int i = 0; i < shards.length; i++)
+        {
+            sizes[i] = shards[i].size;
+        }
+
+        return sizes;
+    }
+
+    /**
+     * Getter for the number of devices in the fleet. Devices still queued by
+     * {@link #add(IDevice)} may not be counted yet.
+     *
+     * @return the number of devices
+     */
+    public int getDeviceCount()
+    {
+        int count;
+        count = 0;
+
+        for (final Shard shard : shards)
+        {
+            count += shard.size;
+        }
+
+        return count;
+    }
+
+    /**
+     * Runs a task on every shard at once and returns each shard's result. The task is
+     * given a read-only view of the shard's devices, which it must not keep.
+     *
+     * @param task the task to run on each shard
+     * @param <R>  the type of the result
+     * @return the results, indexed by shard
+     * @throws IllegalStateException if the calling thread is interrupted while waiting
+     */
+    public <R> List<R> query(final Function<? super List<IDevice>, ? extends R> task)
+    {
+        return scatter(shard -> task.apply(shard.view));
+    }
+
+    /**
+     * Runs a task on every shard at once and combines the results in shard order.
+     *
+     * @param task     the task to run on each shard
+     * @param combiner combines the results of two shards
+     * @param <R>      the type of the result
+     * @return the combined result
+     * @throws IllegalStateException if the calling thread is interrupted while waiting
+     */
+    public <R> R query(final Function<? super List<IDevice>, ? extends R> task,
+                       final BinaryOperator<R> combiner)
+    {
+        final List<R> results;
+        R             combined;
+
+        results  = query(task);
+        combined = results.get(0);
+
+        for (int i = 1; i < results.size(); i++)
+        {
+            combined = combiner.apply(combined, results.get(i));
+        }
+
+        return combined;
+    }
+
+    /**
+     * Counts the devices that match a filter.
+     *
+     * @param filter the filter, run on the shards' threads
+     * @return the number of matching devices
+     */
+    public long count(final Predicate<? super IDevice> filter)
+    {
+        return query(devices ->
+        {
+            long count;
+            count = 0;
+
+            for (final IDevice device : devices)
+            {
+                if (filter.test(device))
+                {
+                    count++;
+                }
+            }
+
+            return count;
+        }, Long::sum);
+    }
+
+    /**
+     * Passes every device to the action, one shard per thread at once, so the action must
+     * be thread-safe.
+     *
+     * @param action the action to run for each device
+     */
+    public void forEach(final Consumer<? super IDevice> action)
+    {
+        query(devices ->
+        {
+            devices.forEach(action);
+            return null;
+        });
+    }
+
+    /**
+     * Runs an update on every shard at once and returns the sum of the number of devices
+     * each shard changed. The update may change the devices it is given, but not the list.
+     *
+     * @param update the update to run on each shard, returning how many devices it changed
+     * @return the number of devices changed
+     * @throws IllegalStateException if the calling thread is interrupted while waiting
+     */
+    public long update(final ToLongFunction<? super List<IDevice>> update)
+    {
+        long changed;
+        changed = 0;
+
+        for (final long shardChanged : scatter(shard -> update.applyAsLong(shard.view)))
+        {
+            changed += shardChanged;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Sets whether every IPad with the given OS version has a protective case.
+     *
+     * @param OSVersion the OS version to match
+     * @param hasCase   the new value
+     * @return the number of IPads that were changed
+     */
+    public long setHasCase(final String OSVersion,
+                           final boolean hasCase)
+    {
+        final int code;
+        code = IPad.OS_VERSIONS.find(OSVersion);
+
+        return update(devices ->
+        {
+            long changed;
+            changed = 0;
+
+            for (final IDevice device : devices)
+            {
+                if (device instanceof IPad iPad &&
+                    iPad.hasOSVersion(code, OSVersion) &&
+                    iPad.compareAndSetHasCase(!hasCase, hasCase))
+                {
+                    changed++;
+                }
+            }
+
+            return changed;
+        });
+    }
+
+    /**
+     * Lowers the volume of every IPod above maxVolumeDB to maxVolumeDB.
+     *
+     * @param maxVolumeDB the highest volume to allow. must be between
+     *                    {@value IPod#MIN_VOLUME_DB} and {@value IPod#MAX_VOLUME_DB}
+     * @return the number of IPods that were lowered
+     * @throws IllegalArgumentException if maxVolumeDB is out of range
+     */
+    public long clampCurrentVolumeDB(final double maxVolumeDB)
+    {
+        IPod.checkCurrentVolumeDB(maxVolumeDB);
+
+        return update(devices ->
+        {
+            long changed;
+            changed = 0;
+
+            for (final IDevice device : devices)
+            {
+                if (device instanceof IPod iPod && iPod.clampCurrentVolumeDB(maxVolumeDB))
+                {
+                    changed++;
+                }
+            }
+
+            return changed;
+        });
+    }
+
+    /**
+     * Removes every device that matches a filter.
+     *
+     * @param filter the filter, run on the shards' threads
+     * @return the number of devices removed
+     */
+    public long removeIf(final Predicate<? super IDevice> filter)
+    {
+        long removed;
+        removed = 0;
+
+        for (final int shardRemoved : scatter(shard -> shard.removeIf(filter)))
+        {
+            removed += shardRemoved;
+        }
+
+        return removed;
+    }
+
+    /**
+     * Stops the shards' threads. Tasks that are still queued are dropped.
+     */
+    @Override
+    public void close()
+    {
+        for (final Shard shard : shards)
+        {
+            shard.executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Submits the task to every shard, then waits for each in shard order. A task that
+     * fails has its exception thrown once every shard has finished.
+     */
+    private <R> List<R> scatter(final Function<Shard, ? extends R> task)
+    {
+        final List<Future<? extends R>> futures;
+        final List<R>                   results;
+        RuntimeException                failure;
+        boolean                         interrupted;
+
+        futures     = new ArrayList<>(shards.length);
+        results     = new ArrayList<>(shards.length);
+        failure     = null;
+        interrupted = false;
+
+        for (final Shard shard : shards)
+        {
+            futures.add(shard.executor.submit(() -> task.apply(shard)));
+        }
+        for (final Future<? extends R> future : futures)
+        {
+            while (true)
+            {
+                try
+                {
+                    results.add(future.get());
+                    break;
+                }
+                catch (final InterruptedException e)
+                {
+                    // The shards keep running the task, so wait for them before giving up
+                    interrupted = true;
+                }
+                catch (final ExecutionException e)
+                {
+                    final Throwable cause;
+                    cause = e.getCause();
+
+                    if (cause instanceof Error)
+                    {
+                        throw (Error) cause;
+                    }
+                    if (failure == null)
+                    {
+                        failure = cause instanceof RuntimeException ? (RuntimeException) cause
+                                                                    : new IllegalStateException(cause);
+                    }
+                    results.add(null);
+                    break;
+                }
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+        if (interrupted)
+        {
+            throw new IllegalStateException("Interrupted while waiting for the shards");
+        }
+
+        return results;
+    }
+
+    /*
+     * One shard of the fleet. Its list is only read and written on its own thread; the
+     * size is published so it can be read from any thread without queueing a task.
+     */
+    private static final class Shard
+    {
+        private final int             index;
+        private final ExecutorService executor;
+        private final List<IDevice>   devices;
+        private final List<IDevice>   view;
+        private volatile int          size;
+
+        private Shard(final int index)
+        {
+            this.index    = index;
+            this.executor = Executors.newSingleThreadExecutor(task ->
+            {
+                final Thread thread;
+                thread = new Thread(task, "fleet-shard-" + index);
+
+                // Daemon threads, so an unclosed fleet does not keep the JVM alive
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.devices  = new ArrayList<>();
+            this.view     = Collections.unmodifiableList(devices);
+        }
+
+        private void add(final IDevice device)
+        {
+            devices.add(device);
+            size = devices.size();
+        }
+
+        private int addAll(final List<IDevice> batch)
+        {
+            devices.addAll(batch);
+            size = devices.size();
+
+            return batch.size();
+        }
+
+        private int removeIf(final Predicate<? super IDevice> filter)
+        {
+            final int before;
+            before = devices.size();
+
+            devices.removeIf(filter);
+            size = devices.size();
+
+            return before - size;
+        }
+    }
+}
@@ -0,0 +1,537 @@
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Compares two snapshots of the same fleet, such as yesterday's and today's, and reports
+ * only the devices that were added, removed or changed. Both snapshots must be written in
+ * {@link #ORDER}: by type, within a type by the fields that {@code equals} compares, which
+ * are the device's key, and then by its other fields. The diff walks the two snapshots
+ * side by side, like a merge join, reading records in place through
+ * {@link DeviceSnapshot.Cursor}s, so it creates no objects per record and uses the same
+ * memory however large the snapshots are.
+ * <p>
+ * Devices have no identity beyond their key, and a key is often shared: every IPad on
+ * "iPadOS 17" has the same one. So a record that is in both snapshots with every field the
+ * same is unchanged, whichever device it came from. The records of a key that are left
+ * over on both sides are matched in order as changed, such as an IPod whose volume was
+ * turned up or an IPad that was given a case, and any still left over are added or removed.
+ * Each snapshot is read twice, by one walk that finds its leftover records and one that
+ * finds the other snapshot's.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class SnapshotDiff
+{
+    /**
+     * The order both snapshots must be written in: IPhones, IPhone16s, IPods and then
+     * IPads, as their snapshot type tags are ordered. IPhones are ordered by remaining plan
+     * minutes and then carrier, IPhone16s by remaining plan minutes, camera, carrier and
+     * then memory, IPods by number of songs stored and then volume, and IPads by OS version
+     * and then case. Missing carriers and OS versions come first.
+     * Only IPhone, IPhone16, IPod and IPad objects can be compared.
+     */
+    public static final Comparator<IDevice> ORDER = SnapshotDiff::compareDevices;
+
+    private SnapshotDiff()
+    {
+    }
+
+    /**
+     * Receives the differences between two snapshots, in {@link #ORDER}. The cursors are
+     * only positioned on the record during the call and must not be moved or kept.
+     * Every method does nothing by default.
+     */
+    public interface Listener
+    {
+        /**
+         * Called for a device that is only in the newer snapshot.
+         *
+         * @param afterIndex the index of the record in the newer snapshot
+         * @param after      a cursor on the record
+         */
+        default void added(final long afterIndex,
+                           final DeviceSnapshot.Cursor after)
+        {
+        }
+
+        /**
+         * Called for a device that is only in the older snapshot.
+         *
+         * @param beforeIndex the index of the record in the older snapshot
+         * @param before      a cursor on the record
+         */
+        default void removed(final long beforeIndex,
+                             final DeviceSnapshot.Cursor before)
+        {
+        }
+
+        /**
+         * Called for a device whose key is in both snapshots but whose other fields differ.
+         *
+         * @param beforeIndex the index of the record in the older snapshot
+         * @param before      a cursor on the older record
+         * @param afterIndex  the index of the record in the newer snapshot
+         * @param after       a cursor on the newer record
+         */
+        default void changed(final long beforeIndex,
+                             final DeviceSnapshot.Cursor before,
+                             final long afterIndex,
+                             final DeviceSnapshot.Cursor after)
+        {
+        }
+    }
+
+    /**
+     * Compares two snapshots, calling the listener for every difference on this thread.
+     *
+     * @param before   the older snapshot, written in {@link #ORDER}
+     * @param after    the newer snapshot, written in {@link #ORDER}
+     * @param listener receives the differences
+     * @return counts of the differences and how long the diff took
+     * @throws IllegalArgumentException if an argument is null, or if either snapshot turns
+     *                                  out not to be in {@link #ORDER}; differences found
+     *                                  before then have already been reported
+     */
+    public static DiffResult diff(final DeviceSnapshot before,
+                                  final DeviceSnapshot after,
+                                  final Listener listener)
+    {
+        if (before == null || after == null)
+        {
+            throw new IllegalArgumentException("Snapshots must not be null");
+        }
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+
+        final long      start;
+        final Leftovers older;
+        final Leftovers newer;
+        long            added;
+        long            removed;
+        long            changed;
+
+        start   = System.nanoTime();
+        older   = new Leftovers(new Side(before, "Older"), new Side(after, null));
+        newer   = new Leftovers(new Side(after, "Newer"), new Side(before, null));
+        added   = 0;
+        removed = 0;
+        changed = 0;
+
+        while (older.find() && newer.find())
+        {
+            final int order;
+            order = compareKeys(older.own.cursor, newer.own.cursor);
+
+            if (order < 0)
+            {
+                listener.removed(older.own.index, older.own.cursor);
+                removed++;
+                older.own.advance();
+            }
+            else if (order > 0)
+            {
+                listener.added(newer.own.index, newer.own.cursor);
+                added++;
+                newer.own.advance();
+            }
+            else
+            {
+                listener.changed(older.own.index, older.own.cursor, newer.own.index, newer.own.cursor);
+                changed++;
+                older.own.advance();
+                newer.own.advance();
+            }
+        }
+        while (older.find())
+        {
+            listener.removed(older.own.index, older.own.cursor);
+            removed++;
+            older.own.advance();
+        }
+        while (newer.find())
+        {
+            listener.added(newer.own.index, newer.own.cursor);
+            added++;
+            newer.own.advance();
+        }
+
+        return new DiffResult(before.size(), after.size(), added, removed, changed, System.nanoTime() - start);
+    }
+
+    /*
+     * Compares the types and then the keys of two records.
+     */
+    private static int compareKeys(final DeviceSnapshot.Cursor first,
+                                   final DeviceSnapshot.Cursor second)
+    {
+        final byte type;
+        type = first.getType();
+
+        if (type != second.getType())
+        {
+            return Byte.compare(type, second.getType());
+        }
+
+        return switch (type)
+        {
+            case DeviceSnapshot.IPHONE -> Double.compare(first.getRemainingPlanMinutes(),
+                                                         second.getRemainingPlanMinutes());
+            case DeviceSnapshot.IPHONE16 -> compareIPhone16Keys(first.getRemainingPlanMinutes(),
+                                                                first.isHighResCamera(),
+                                                                second.getRemainingPlanMinutes(),
+                                                                second.isHighResCamera());
+            case DeviceSnapshot.IPOD -> Integer.compare(first.getNumSongsStored(), second.getNumSongsStored());
+            default -> compareText(first.getOSVersion(), second.getOSVersion());
+        };
+    }
+
+    /*
+     * Compares two records as ORDER compares devices: by type, key and then other fields.
+     */
+    private static int compareRecords(final DeviceSnapshot.Cursor first,
+                                      final DeviceSnapshot.Cursor second)
+    {
+        final int order;
+        order = compareKeys(first, second);
+
+        if (order != 0)
+        {
+            return order;
+        }
+
+        return switch (first.getType())
+        {
+            case DeviceSnapshot.IPHONE -> compareText(first.getPlanCarrier(), second.getPlanCarrier());
+            case DeviceSnapshot.IPHONE16 -> compareIPhone16Values(first.getPlanCarrier(),
+                                                                  first.getMemoryGigabytes(),
+                                                                  second.getPlanCarrier(),
+                                                                  second.getMemoryGigabytes());
+            case DeviceSnapshot.IPOD -> Double.compare(first.getCurrentVolumeDB(), second.getCurrentVolumeDB());
+            default -> Boolean.compare(first.hasCase(), second.hasCase());
+        };
+    }
+
+    /*
+     * Compares two devices by type, key and then other fields; the implementation of ORDER.
+     */
+    private static int compareDevices(final IDevice first,
+                                      final IDevice second)
+    {
+        if (DeviceRegistry.isView(first) || DeviceRegistry.isView(second))
+        {
+            return compareDevices(DeviceRegistry.materialize(first), DeviceRegistry.materialize(second));
+        }
+
+        final byte type;
+        type = typeOf(first);
+
+        if (type != typeOf(second))
+        {
+            return Byte.compare(type, typeOf(second));
+        }
+
+        if (first instanceof IPhone16 firstIPhone16 && second instanceof IPhone16 secondIPhone16)
+        {
+            final int order;
+            order = compareIPhone16Keys(firstIPhone16.getRemainingPlanMinutes(), firstIPhone16.isHighResCamera(),
+                                        secondIPhone16.getRemainingPlanMinutes(), secondIPhone16.isHighResCamera());
+
+            return order != 0 ? order : compareIPhone16Values(firstIPhone16.getPlanCarrier(),
+                                                              firstIPhone16.getMemoryGigabytes(),
+                                                              secondIPhone16.getPlanCarrier(),
+                                                              secondIPhone16.getMemoryGigabytes());
+        }
+        if (first instanceof IPhone firstIPhone && second instanceof IPhone secondIPhone)
+        {
+            final int order;
+            order = Double.compare(firstIPhone.getRemainingPlanMinutes(), secondIPhone.getRemainingPlanMinutes());
+
+            return order != 0 ? order : compareText(firstIPhone.getPlanCarrier(), secondIPhone.getPlanCarrier());
+        }
+        if (first instanceof IPod firstIPod && second instanceof IPod secondIPod)
+        {
+            final int order;
+            order = Integer.compare(firstIPod.getNumSongsStored(), secondIPod.getNumSongsStored());
+
+            return order != 0 ? order : Double.compare(firstIPod.getCurrentVolumeDB(), secondIPod.getCurrentVolumeDB());
+        }
+
+        final IPad firstIPad;
+        final IPad secondIPad;
+        final int  order;
+
+        firstIPad  = (IPad) first;
+        secondIPad = (IPad) second;
+        order      = compareText(firstIPad.getOSVersion(), secondIPad.getOSVersion());
+
+        return order != 0 ? order : Boolean.compare(firstIPad.hasCase(), secondIPad.hasCase());
+    }
+
+    /*
+     * Returns the snapshot type tag of a device or registry view, testing IPhone16 before
+     * the IPhone it extends.
+     */
+    static byte typeOf(final IDevice device)
+    {
+        if (device instanceof IPhone16 || device instanceof DeviceRegistry.IPhone16View)
+        {
+            return DeviceSnapshot.IPHONE16;
+        }
+        if (device instanceof IPhone || device instanceof DeviceRegistry.IPhoneView)
+        {
+            return DeviceSnapshot.IPHONE;
+        }
+        if (device instanceof IPod || device instanceof DeviceRegistry.IPodView)
+        {
+            return DeviceSnapshot.IPOD;
+        }
+        if (device instanceof IPad || device instanceof DeviceRegistry.IPadView)
+        {
+            return DeviceSnapshot.IPAD;
+        }
+        throw new IllegalArgumentException("Unsupported device type");
+    }
+
+    /*
+     * Compares IPhone16 keys: remaining plan minutes, then phones without a high-res camera first.
+     */
+    private static int compareIPhone16Keys(final double firstMinutes,
+                                           final boolean firstCamera,
+                                           final double secondMinutes,
+                                           final boolean secondCamera)
+    {
+        final int order;
+        order = Double.compare(firstMinutes, secondMinutes);
+
+        return order != 0 ? order : Boolean.compare(firstCamera, secondCamera);
+    }
+
+    /*
+     * Compares the fields of IPhone16s outside their key: carrier, then memory.
+     */
+    private static int compareIPhone16Values(final String firstCarrier,
+                                             final int firstMemory,
+                                             final String secondCarrier,
+                                             final int secondMemory)
+    {
+        final int order;
+        order = compareText(firstCarrier, secondCarrier);
+
+        return order != 0 ? order : Integer.compare(firstMemory, secondMemory);
+    }
+
+    /*
+     * Compares two possibly null Strings, null first.
+     */
+    private static int compareText(final String first,
+                                   final String second)
+    {
+        if (Objects.equals(first, second))
+        {
+            return 0;
+        }
+        if (first == null || second == null)
+        {
+            return first == null ? -1 : 1;
+        }
+
+        return first.compareTo(second);
+    }
+
+    /*
+     * One snapshot being walked: a cursor on the current record and one on the record
+     * before it, which are swapped on every step so the order can be checked without
+     * moving a cursor back. Each snapshot is walked twice, so only the walk that has a
+     * name for the snapshot checks its order.
+     */
+    private static final class Side
+    {
+        private final long            size;
+        private final String          name;
+        private DeviceSnapshot.Cursor cursor;
+        private DeviceSnapshot.Cursor previous;
+        private long                  index;
+
+        private Side(final DeviceSnapshot snapshot,
+                     final String name)
+        {
+            this.size     = snapshot.size();
+            this.name     = name;
+            this.cursor   = snapshot.cursor();
+            this.previous = snapshot.cursor();
+            this.index    = 0;
+        }
+
+        private boolean hasRecord()
+        {
+            return index < size;
+        }
+
+        /*
+         * Moves to the next record, checking that it does not sort before the current one.
+         */
+        private void advance()
+        {
+            final DeviceSnapshot.Cursor current;
+
+            index++;
+            if (index < size)
+            {
+                current  = cursor;
+                cursor   = previous.moveTo(index);
+                previous = current;
+
+                if (name != null && compareRecords(previous, cursor) > 0)
+                {
+                    throw new IllegalArgumentException(name + " snapshot is not in order at record " + index);
+                }
+            }
+        }
+    }
+
+    /*
+     * Walks one snapshot, its own side, against the other, skipping every record that the
+     * other snapshot has an identical record for. Identical records are paired off one to
+     * one, so a record that is in one snapshot twice and the other once is left over once.
+     */
+    private static final class Leftovers
+    {
+        private final Side own;
+        private final Side other;
+
+        private Leftovers(final Side own,
+                          final Side other)
+        {
+            this.own   = own;
+            this.other = other;
+        }
+
+        /*
+         * Moves the own side to its next leftover record, if it is not on one already.
+         * Returns false if there are no more.
+         */
+        private boolean find()
+        {
+            while (own.hasRecord() && other.hasRecord())
+            {
+                final int order;
+                order = compareRecords(own.cursor, other.cursor);
+
+                if (order < 0)
+                {
+                    return true;
+                }
+                if (order == 0)
+                {
+                    own.advance();
+                }
+                other.advance();
+            }
+
+            return own.hasRecord();
+        }
+    }
+
+    /**
+     * The outcome of a {@link SnapshotDiff#diff}.
+     */
+    public static final class DiffResult
+    {
+        private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+        private final long beforeCount;
+        private final long afterCount;
+        private final long added;
+        private final long removed;
+        private final long changed;
+        private final long elapsedNanos;
+
+        private DiffResult(final long beforeCount,
+                           final long afterCount,
+                           final long added,
+                           final long removed,
+                           final long changed,
+                           final long elapsedNanos)
+        {
+            this.beforeCount  = beforeCount;
+            this.afterCount   = afterCount;
+            this.added        = added;
+            this.removed      = removed;
+            this.changed      = changed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Getter for the number of devices in the older snapshot.
+         *
+         * @return the number of devices
+         */
+        public long getBeforeCount()
+        {
+            return beforeCount;
+        }
+
+        /**
+         * Getter for the number of devices in the newer snapshot.
+         *
+         * @return the number of devices
+         */
+        public long getAfterCount()
+        {
+            return afterCount;
+        }
+
+        /**
+         * Getter for the number of devices only in the newer snapshot.
+         *
+         * @return the number of added devices
+         */
+        public long getAddedCount()
+        {
+            return added;
+        }
+
+        /**
+         * Getter for the number of devices only in the older snapshot.
+         *
+         * @return the number of removed devices
+         */
+        public long getRemovedCount()
+        {
+            return removed;
+        }
+
+        /**
+         * Getter for the number of devices in both snapshots whose fields changed.
+         *
+         * @return the number of changed devices
+         */
+        public long getChangedCount()
+        {
+            return changed;
+        }
+
+        /**
+         * Getter for how long the diff took.
+         *
+         * @return the elapsed time in nanoseconds
+         */
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns how many devices were compared per second, counting both snapshots.
+         *
+         * @return the throughput in devices per second
+         */
+        public double getDevicesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0.0 : (beforeCount + afterCount) * NANOS_PER_SECOND / elapsedNanos;
+        }
+    }
+}
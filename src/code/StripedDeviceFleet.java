@@ -0,0 +1,269 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A fleet of IPads and IPods that many threads can add to, read and update at once.
+ * Devices are spread round-robin over a fixed number of stripes, and each stripe has its
+ * own lock, so bulk operations such as {@link #setHasCase(String, boolean)} and
+ * {@link #clampCurrentVolumeDB(double)} only hold one stripe at a time and never block
+ * the whole fleet. Single devices can still be changed directly through their own atomic
+ * setters, and readers on other threads always see their latest values.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class StripedDeviceFleet
+{
+    private static final int STRIPES_PER_PROCESSOR = 4;
+
+    private final Stripe[]      stripes;
+    private final int           stripeMask;
+    private final AtomicInteger nextStripe;
+
+    /**
+     * Constructs an empty StripedDeviceFleet with a few stripes per available processor.
+     */
+    public StripedDeviceFleet()
+    {
+        this(STRIPES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty StripedDeviceFleet.
+     *
+     * @param stripeCount the minimum number of stripes; rounded up to a power of two
+     * @throws IllegalArgumentException if stripeCount is not positive or too large
+     */
+    public StripedDeviceFleet(final int stripeCount)
+    {
+        if (stripeCount <= 0 || stripeCount > 1 << 30)
+        {
+            throw new IllegalArgumentException("Stripe count must be between 1 and 2^30");
+        }
+
+        final int length;
+        length = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+
+        stripes    = new Stripe[length];
+        stripeMask = length - 1;
+        nextStripe = new AtomicInteger();
+
+        for (int i = 0; i < length; i++)
+        {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /*
+     * Returns the stripe the next added device goes to.
+     */
+    private Stripe nextStripe()
+    {
+        return stripes[nextStripe.getAndIncrement() & stripeMask];
+    }
+
+    /**
+     * Adds an IPad to the fleet.
+     *
+     * @param iPad the IPad to add
+     */
+    public void add(final IPad iPad)
+    {
+        nextStripe().addIPad(iPad);
+    }
+
+    /**
+     * Adds an IPod to the fleet.
+     *
+     * @param iPod the IPod to add
+     */
+    public void add(final IPod iPod)
+    {
+        nextStripe().addIPod(iPod);
+    }
+
+    /**
+     * Getter for the number of stripes.
+     *
+     * @return the number of stripes
+     */
+    public int getStripeCount()
+    {
+        return stripes.length;
+    }
+
+    /**
+     * Getter for the number of IPads in the fleet.
+     *
+     * @return the number of IPads
+     */
+    public int getIPadCount()
+    {
+        int count;
+        count = 0;
+
+        for (final Stripe stripe : stripes)
+        {
+            count += stripe.iPadCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * Getter for the number of IPods in the fleet.
+     *
+     * @return the number of IPods
+     */
+    public int getIPodCount()
+    {
+        int count;
+        count = 0;
+
+        for (final Stripe stripe : stripes)
+        {
+            count += stripe.iPodCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * Sets whether every IPad with the given OS version has a protective case.
+     *
+     * @param OSVersion the OS version to match
+     * @param hasCase   the new value
+     * @return the number of IPads that were changed
+     */
+    public int setHasCase(final String OSVersion,
+                          final boolean hasCase)
+    {
+        final int code;
+        code = IPad.OS_VERSIONS.find(OSVersion);
+
+        int changed;
+        changed = 0;
+
+        for (final Stripe stripe : stripes)
+        {
+            changed += stripe.setHasCase(code, OSVersion, hasCase);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Lowers the volume of every IPod above maxVolumeDB to maxVolumeDB.
+     *
+     * @param maxVolumeDB the highest volume to allow. must be between
+     *                    {@value IPod#MIN_VOLUME_DB} and {@value IPod#MAX_VOLUME_DB}
+     * @return the number of IPods that were lowered
+     * @throws IllegalArgumentException if maxVolumeDB is out of range
+     */
+    public int clampCurrentVolumeDB(final double maxVolumeDB)
+    {
+        IPod.checkCurrentVolumeDB(maxVolumeDB);
+
+        int changed;
+        changed = 0;
+
+        for (final Stripe stripe : stripes)
+        {
+            changed += stripe.clampCurrentVolumeDB(maxVolumeDB);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Passes every device in the fleet to the action, one stripe at a time.
+     * The action runs while its stripe is locked, so it must not add to this fleet.
+     *
+     * @param action the action to run for each device
+     */
+    public void forEach(final Consumer<? super IDevice> action)
+    {
+        for (final Stripe stripe : stripes)
+        {
+            stripe.forEach(action);
+        }
+    }
+
+    /*
+     * One stripe of the fleet. Every method holds the stripe's lock.
+     */
+    private static final class Stripe
+    {
+        private final List<IPad> iPads;
+        private final List<IPod> iPods;
+
+        private Stripe()
+        {
+            iPads = new ArrayList<>();
+            iPods = new ArrayList<>();
+        }
+
+        private synchronized void addIPad(final IPad iPad)
+        {
+            iPads.add(iPad);
+        }
+
+        private synchronized void addIPod(final IPod iPod)
+        {
+            iPods.add(iPod);
+        }
+
+        private synchronized int iPadCount()
+        {
+            return iPads.size();
+        }
+
+        private synchronized int iPodCount()
+        {
+            return iPods.size();
+        }
+
+        private synchronized int setHasCase(final int OSVersionCode,
+                                            final String OSVersion,
+                                            final boolean hasCase)
+        {
+            int changed;
+            changed = 0;
+
+            for (final IPad iPad : iPads)
+            {
+                if (iPad.hasOSVersion(OSVersionCode, OSVersion) &&
+                    iPad.compareAndSetHasCase(!hasCase, hasCase))
+                {
+                    changed++;
+                }
+            }
+
+            return changed;
+        }
+
+        private synchronized int clampCurrentVolumeDB(final double maxVolumeDB)
+        {
+            int changed;
+            changed = 0;
+
+            for (final IPod iPod : iPods)
+            {
+                if (iPod.clampCurrentVolumeDB(maxVolumeDB))
+                {
+                    changed++;
+                }
+            }
+
+            return changed;
+        }
+
+        private synchronized void forEach(final Consumer<? super IDevice> action)
+        {
+            iPads.forEach(action);
+            iPods.forEach(action);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent, append-only dictionary that maps Strings to small int codes.
+ * Values such as plan carriers and OS versions take only a few dozen distinct values across
+ * millions of devices, so devices store the code and look the text up when it is needed.
+ * Codes are handed out in order starting at 0 and never change or get reused.
+ * Looking up an existing String or the text of a code takes no lock.
+ * <p>
+ * A table may be given a maximum size. Once it is full, new Strings are not added and
+ * {@link #encode(String)} returns {@value #NO_SYMBOL}, so the caller keeps the String
+ * itself. The device classes share bounded tables, since they live as long as the JVM and
+ * are fed untrusted input; stores such as {@link DeviceRegistry} keep their own tables,
+ * which go away with them.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class SymbolTable
+{
+    public static final int NO_SYMBOL = -1;
+
+    /*
+     * The maximum size of the tables the device classes share. Real fleets have a few
+     * dozen carriers and OS versions; this leaves room for many more without letting
+     * untrusted input grow the tables without bound.
+     */
+    static final int SHARED_MAX_SIZE = 4_096;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final ConcurrentHashMap<String, Integer> codes;
+    private final int                                maxSize;
+    private volatile String[]                        symbols;
+    private int                                      size;
+
+    /**
+     * Constructs an empty SymbolTable with no maximum size.
+     */
+    public SymbolTable()
+    {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs an empty SymbolTable that holds at most maxSize Strings.
+     *
+     * @param maxSize the most Strings the table holds
+     * @throws IllegalArgumentException if maxSize is not positive
+     */
+    public SymbolTable(final int maxSize)
+    {
+        if (maxSize <= 0)
+        {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+
+        this.codes   = new ConcurrentHashMap<>();
+        this.maxSize = maxSize;
+        this.symbols = new String[Math.min(DEFAULT_CAPACITY, maxSize)];
+    }
+
+    /**
+     * Returns the code for a String, adding it to the table if it is new and the table is
+     * not full.
+     *
+     * @param symbol the String to encode; may be null
+     * @return the code, or {@value NO_SYMBOL} for null or a new String once the table is full
+     */
+    public int encode(final String symbol)
+    {
+        if (symbol == null)
+        {
+            return NO_SYMBOL;
+        }
+
+        final Integer code;
+        code = codes.get(symbol);
+
+        if (code != null)
+        {
+            return code;
+        }
+
+        return add(symbol);
+    }
+
+    /*
+     * Adds a String under the lock. The array is published through the volatile field
+     * before the code becomes visible in the map, so any thread that can see a code
+     * can also see its text.
+     */
+    private synchronized int add(final String symbol)
+    {
+        final Integer existing;
+        existing = codes.get(symbol);
+
+        if (existing != null)
+        {
+            return existing;
+        }
+        if (size == maxSize)
+        {
+            return NO_SYMBOL;
+        }
+
+        String[] target;
+        target = symbols;
+
+        if (size == target.length)
+        {
+            target = Arrays.copyOf(target, (int) Math.min((long) size * 2, maxSize));
+        }
+        target[size] = symbol;
+        symbols      = target;
+
+        codes.put(symbol, size);
+
+        return size++;
+    }
+
+    /**
+     * Returns the code for a String without adding it.
+     *
+     * @param symbol the String to look up; may be null
+     * @return the code, or {@value NO_SYMBOL} if the String is null or not in the table
+     */
+    public int find(final String symbol)
+    {
+        if (symbol == null)
+        {
+            return NO_SYMBOL;
+        }
+
+        final Integer code;
+        code = codes.get(symbol);
+
+        return code == null ? NO_SYMBOL : code;
+    }
+
+    /**
+     * Returns the String for a code.
+     *
+     * @param code a code returned by {@link #encode(String)}
+     * @return the String, or null for {@value NO_SYMBOL}
+     */
+    public String decode(final int code)
+    {
+        return code == NO_SYMBOL ? null : symbols[code];
+    }
+
+    /**
+     * Getter for the number of distinct Strings in the table.
+     *
+     * @return the number of Strings
+     */
+    public int size()
+    {
+        return codes.size();
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * A reusable sink that counts rejected records per validation rule.
+ * Result codes from {@link DeviceValidation} are recorded as they come in, so a loader
+ * can report why records were rejected without keeping the records or their messages.
+ * This class is not thread-safe; use one instance per thread and {@link #add} them together.
+ *
+ * @author David Martinez, Daniel Do
+ * @version 1.0
+ */
+public final class ViolationCounts
+{
+    private final long[] counts;
+    private long         rejected;
+
+    /**
+     * Constructs an empty ViolationCounts.
+     */
+    public ViolationCounts()
+    {
+        counts = new long[DeviceValidation.RULE_COUNT];
+    }
+
+    /**
+     * Records one validation result.
+     *
+     * @param code a result code returned by one of the {@link DeviceValidation} methods
+     * @return true if the code is {@link DeviceValidation#VALID}
+     */
+    public boolean record(final int code)
+    {
+        if (code == DeviceValidation.VALID)
+        {
+            return true;
+        }
+
+        rejected++;
+        DeviceMetrics.recordValidationFailures(code);
+        for (int rule = 0; rule < counts.length; rule++)
+        {
+            if ((code & (1 << rule)) != 0)
+            {
+                counts[rule]++;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns how many rejected records broke the given rule.
+     *
+     * @param rule one of the single-bit codes in {@link DeviceValidation}
+     * @return the number of records that broke the rule
+     */
+    public long getCount(final int rule)
+    {
+        if (Integer.bitCount(rule) != 1 || rule >= 1 << counts.length)
+        {
+            throw new IllegalArgumentException("Rule must be a single validation rule");
+        }
+        return counts[Integer.numberOfTrailingZeros(rule)];
+    }
+
+    /**
+     * Getter for the number of rejected records.
+     *
+     * @return the number of rejected records
+     */
+    public long getRejected()
+    {
+        return rejected;
+    }
+
+    /**
+     * Adds the counts of another instance to this one.
+     *
+     * @param other the counts to add
+     */
+    public void add(final ViolationCounts other)
+    {
+        for (int rule = 0; rule < counts.length; rule++)
+        {
+            counts[rule] += other.counts[rule];
+        }
+        rejected += other.rejected;
+    }
+
+    /**
+     * Clears every count so the instance can be reused.
+     */
+    public void reset()
+    {
+        for (int rule = 0; rule < counts.length; rule++)
+        {
+            counts[rule] = 0;
+        }
+        rejected = 0;
+    }
+}